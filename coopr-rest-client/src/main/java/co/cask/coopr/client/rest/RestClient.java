@@ -22,6 +22,9 @@ import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import org.apache.http.Header;
@@ -42,7 +45,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.lang.reflect.Type;
 import java.net.URI;
 import java.util.ArrayList;
@@ -62,11 +64,14 @@ public class RestClient {
   private static final String COOPR_API_KEY_HEADER_NAME = "Coopr-ApiKey";
   private static final String COOPR_TENANT_ID_HEADER_NAME = "Coopr-TenantID";
   private static final String COOPR_USER_ID_HEADER_NAME = "Coopr-UserID";
+  // max number of characters of response bodies kept for conditional gets
+  private static final long MAX_CACHED_CHARS = 16 * 1024 * 1024;
 
   private final Gson gson;
   private final Supplier<RestClientConnectionConfig> configSupplier;
   private final CloseableHttpClient httpClient;
   private final Set<Header> authHeaders;
+  private final Cache<String, CachedResponse> responseCache;
 
   public RestClient(Supplier<RestClientConnectionConfig> config, CloseableHttpClient httpClient) {
     this(config, httpClient, new Gson());
@@ -80,6 +85,15 @@ public class RestClient {
     this.httpClient = httpClient;
     this.authHeaders = getAuthHeaders();
     this.gson = gson;
+    this.responseCache = CacheBuilder.newBuilder()
+      .maximumWeight(MAX_CACHED_CHARS)
+      .weigher(new Weigher<String, CachedResponse>() {
+        @Override
+        public int weigh(String key, CachedResponse value) {
+          return key.length() + value.body.length();
+        }
+      })
+      .<String, CachedResponse>build();
   }
 
   /**
@@ -136,15 +150,7 @@ public class RestClient {
   }
 
   protected <T> List<T> getAll(URI url, Type type) throws IOException {
-    HttpGet getRequest = new HttpGet(url);
-    CloseableHttpResponse httpResponse = execute(getRequest);
-    List<T> resultList;
-    try {
-      RestClient.analyzeResponseCode(httpResponse);
-      resultList = gson.fromJson(EntityUtils.toString(httpResponse.getEntity(), Charsets.UTF_8), type);
-    } finally {
-      httpResponse.close();
-    }
+    List<T> resultList = gson.fromJson(getContent(url), type);
     return resultList != null ? resultList : new ArrayList<T>();
   }
 
@@ -154,23 +160,7 @@ public class RestClient {
     }
 
     String fullUrl = String.format("%s/%s%s", getBaseURL(), getConfig().getVersion(), url);
-    HttpGet getRequest = new HttpGet(fullUrl);
-    CloseableHttpResponse httpResponse = execute(getRequest);
-    InputStreamReader reader = null;
-    try {
-      RestClient.analyzeResponseCode(httpResponse);
-      reader = new InputStreamReader(httpResponse.getEntity().getContent(), Charsets.UTF_8);
-      return gson.fromJson(reader, type);
-    } finally {
-      httpResponse.close();
-      if (reader != null) {
-        try {
-          reader.close();
-        } catch (IOException e) {
-          LOG.error("Closing reader process failed.", e);
-        }
-      }
-    }
+    return gson.fromJson(getContent(URI.create(fullUrl)), type);
   }
 
   protected void execPost(URI uri) throws IOException {
@@ -188,16 +178,43 @@ public class RestClient {
   }
 
   protected <T> T getSingle(URI url, Type type) throws IOException {
+    return gson.fromJson(getContent(url), type);
+  }
+
+  /**
+   * Execute a get request and return the response body. Responses with an ETag are cached, and later gets of the
+   * same url send the tag in an If-None-Match header, so that the server can respond with a 304 instead of sending
+   * an unchanged body again.
+   *
+   * @param url url to get
+   * @return body of the response
+   * @throws IOException in case of a problem or the connection was aborted
+   */
+  protected String getContent(URI url) throws IOException {
+    String key = url.toString();
+    CachedResponse cached = responseCache.getIfPresent(key);
     HttpGet getRequest = new HttpGet(url);
+    if (cached != null) {
+      getRequest.addHeader(HttpHeaders.Names.IF_NONE_MATCH, cached.etag);
+    }
     CloseableHttpResponse httpResponse = execute(getRequest);
-    T result;
     try {
+      if (cached != null && httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+        LOG.debug("Using cached response for {}", key);
+        return cached.body;
+      }
       RestClient.analyzeResponseCode(httpResponse);
-      result = gson.fromJson(EntityUtils.toString(httpResponse.getEntity(), Charsets.UTF_8), type);
+      String body = EntityUtils.toString(httpResponse.getEntity(), Charsets.UTF_8);
+      Header etag = httpResponse.getFirstHeader(HttpHeaders.Names.ETAG);
+      if (etag == null) {
+        responseCache.invalidate(key);
+      } else {
+        responseCache.put(key, new CachedResponse(etag.getValue(), body));
+      }
+      return body;
     } finally {
       httpResponse.close();
     }
-    return result;
   }
 
   protected void delete(String urlSuffix, String name) throws IOException {
@@ -263,4 +280,17 @@ public class RestClient {
   private RestClientConnectionConfig getConfig() {
     return configSupplier.get();
   }
+
+  /**
+   * A response body and its entity tag.
+   */
+  private static final class CachedResponse {
+    private final String etag;
+    private final String body;
+
+    private CachedResponse(String etag, String body) {
+      this.etag = etag;
+      this.body = body;
+    }
+  }
 }
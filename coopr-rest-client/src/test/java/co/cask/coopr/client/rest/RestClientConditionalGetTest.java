@@ -0,0 +1,151 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.cask.coopr.client.rest;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Lists;
+import org.apache.http.Header;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.localserver.LocalTestServer;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Tests for the conditional gets made by {@link RestClient}.
+ */
+public class RestClientConditionalGetTest {
+  private static final String PATH = "/v2/things";
+
+  private LocalTestServer localTestServer;
+  private CloseableHttpClient httpClient;
+  private EtagHandler handler;
+  private RestClient restClient;
+  private URI url;
+
+  @Before
+  public void setUp() throws Exception {
+    handler = new EtagHandler();
+    localTestServer = new LocalTestServer(null, null);
+    localTestServer.register(PATH, handler);
+    localTestServer.start();
+    String host = localTestServer.getServiceAddress().getHostName();
+    int port = localTestServer.getServiceAddress().getPort();
+    httpClient = HttpClients.createDefault();
+    restClient = new RestClient(Suppliers.ofInstance(
+      RestClientConnectionConfig.builder(host, port)
+        .userId(RestClientTest.TEST_USER_ID)
+        .tenantId(RestClientTest.TEST_TENANT_ID)
+        .build()), httpClient);
+    url = restClient.getBaseURL().resolve(PATH);
+  }
+
+  @After
+  public void shutDown() throws Exception {
+    httpClient.close();
+    localTestServer.stop();
+  }
+
+  @Test
+  public void testNotModifiedUsesCachedBody() throws IOException {
+    handler.setContent("\"v1\"", "[1]");
+    Assert.assertEquals("[1]", restClient.getContent(url));
+    Assert.assertEquals("[1]", restClient.getContent(url));
+
+    // the first get has nothing to match, the second sends the tag it got and is answered with a 304
+    Assert.assertEquals(Lists.newArrayList(null, "\"v1\""), handler.getIfNoneMatches());
+    Assert.assertEquals(Lists.newArrayList(HttpStatus.SC_OK, HttpStatus.SC_NOT_MODIFIED), handler.getStatuses());
+  }
+
+  @Test
+  public void testChangedContentReplacesCachedBody() throws IOException {
+    handler.setContent("\"v1\"", "[1]");
+    Assert.assertEquals("[1]", restClient.getContent(url));
+
+    handler.setContent("\"v2\"", "[1,2]");
+    Assert.assertEquals("[1,2]", restClient.getContent(url));
+    // the new tag and body are cached, so the next get is answered from the cache
+    Assert.assertEquals("[1,2]", restClient.getContent(url));
+
+    Assert.assertEquals(Lists.newArrayList(null, "\"v1\"", "\"v2\""), handler.getIfNoneMatches());
+    Assert.assertEquals(Lists.newArrayList(HttpStatus.SC_OK, HttpStatus.SC_OK, HttpStatus.SC_NOT_MODIFIED),
+                        handler.getStatuses());
+  }
+
+  @Test
+  public void testResponseWithoutEtagIsNotCached() throws IOException {
+    handler.setContent(null, "[1]");
+    Assert.assertEquals("[1]", restClient.getContent(url));
+    Assert.assertEquals("[1]", restClient.getContent(url));
+
+    Assert.assertEquals(Lists.newArrayList(null, null), handler.getIfNoneMatches());
+  }
+
+  /**
+   * Handler that serves a body with an entity tag, and answers gets that match the tag with a 304.
+   */
+  private static final class EtagHandler implements HttpRequestHandler {
+    private final List<String> ifNoneMatches = Lists.newArrayList();
+    private final List<Integer> statuses = Lists.newArrayList();
+    private String etag;
+    private String body;
+
+    @Override
+    public synchronized void handle(HttpRequest request, HttpResponse response,
+                                    HttpContext context) throws HttpException, IOException {
+      Header ifNoneMatch = request.getFirstHeader(HttpHeaders.Names.IF_NONE_MATCH);
+      ifNoneMatches.add(ifNoneMatch == null ? null : ifNoneMatch.getValue());
+      if (etag != null && ifNoneMatch != null && etag.equals(ifNoneMatch.getValue())) {
+        response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+      } else {
+        response.setStatusCode(HttpStatus.SC_OK);
+        response.setEntity(new StringEntity(body));
+        if (etag != null) {
+          response.setHeader(HttpHeaders.Names.ETAG, etag);
+        }
+      }
+      statuses.add(response.getStatusLine().getStatusCode());
+    }
+
+    private synchronized void setContent(String etag, String body) {
+      this.etag = etag;
+      this.body = body;
+    }
+
+    private synchronized List<String> getIfNoneMatches() {
+      return Lists.newArrayList(ifNoneMatches);
+    }
+
+    private synchronized List<Integer> getStatuses() {
+      return Lists.newArrayList(statuses);
+    }
+  }
+}
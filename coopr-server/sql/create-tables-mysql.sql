@@ -177,6 +177,7 @@ CREATE TABLE IF NOT EXISTS pluginMeta (
     deleted BOOLEAN,
     create_time TIMESTAMP DEFAULT '0000-00-00 00:00:00',
     delete_time TIMESTAMP NULL,
+    checksum VARCHAR(64),
     PRIMARY KEY (tenant_id, plugin_type, plugin_name, resource_type, name, version)
 ) ENGINE = InnoDB;
 
@@ -57,3 +57,8 @@ BEGIN
   ALTER TABLE clusterTemplates ADD version BIGINT AFTER name;
   UPDATE clusterTemplates SET version = 1;
 END
+
+IF NOT EXISTS(SELECT * FROM sys.columns WHERE Name = N'checksum' AND OBJECT_ID = OBJECT_ID(N'pluginMeta'))
+BEGIN
+  ALTER TABLE pluginMeta ADD checksum VARCHAR(64) AFTER delete_time;
+END
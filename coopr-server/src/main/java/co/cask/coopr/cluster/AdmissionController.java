@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.cask.coopr.cluster;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.common.queue.QueueGroup;
+import co.cask.coopr.common.queue.QueueService;
+import co.cask.coopr.common.queue.QueueType;
+import co.cask.coopr.spec.Tenant;
+import co.cask.coopr.store.tenant.TenantStore;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.AtomicLongMap;
+import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides whether new cluster operations can be admitted, based on how much work is already in flight. In flight work
+ * is the number of elements in the solver, cluster, job, and provisioner task queues, which includes elements that
+ * are queued and elements that are being consumed. Operations are limited per tenant, relative to the number of
+ * workers assigned to the tenant, and across the entire server. Limits are checked before an operation is enqueued
+ * and not atomically with it, so concurrent operations may overshoot a limit by a small amount.
+ */
+public class AdmissionController {
+  private static final Logger LOG = LoggerFactory.getLogger(AdmissionController.class);
+  private static final long POLL_INTERVAL_MS = 100;
+
+  private final TenantStore tenantStore;
+  private final List<QueueGroup> inFlightQueues;
+  private final int maxInFlight;
+  private final int inFlightPerWorker;
+  private final long maxWaitMs;
+  private final int retryAfterSeconds;
+  private final AtomicLongMap<String> admitted;
+  private final AtomicLongMap<String> rejected;
+
+  @Inject
+  public AdmissionController(TenantStore tenantStore, QueueService queueService, Configuration conf) {
+    this.tenantStore = tenantStore;
+    this.inFlightQueues = ImmutableList.of(queueService.getQueueGroup(QueueType.SOLVER),
+                                           queueService.getQueueGroup(QueueType.CLUSTER),
+                                           queueService.getQueueGroup(QueueType.JOB),
+                                           queueService.getQueueGroup(QueueType.PROVISIONER));
+    this.maxInFlight = conf.getInt(Constants.Admission.MAX_IN_FLIGHT,
+                                   Constants.Admission.DEFAULT_MAX_IN_FLIGHT);
+    this.inFlightPerWorker = conf.getInt(Constants.Admission.IN_FLIGHT_PER_WORKER,
+                                         Constants.Admission.DEFAULT_IN_FLIGHT_PER_WORKER);
+    this.maxWaitMs = conf.getLong(Constants.Admission.MAX_WAIT_MS, Constants.Admission.DEFAULT_MAX_WAIT_MS);
+    this.retryAfterSeconds = conf.getInt(Constants.Admission.RETRY_AFTER_SECONDS,
+                                         Constants.Admission.DEFAULT_RETRY_AFTER_SECONDS);
+    this.admitted = AtomicLongMap.create();
+    this.rejected = AtomicLongMap.create();
+  }
+
+  /**
+   * Admit a new cluster operation for the given tenant, waiting up to the configured max wait time for in flight work
+   * to drain if the tenant or server is saturated.
+   *
+   * @param tenantId Id of the tenant performing the operation.
+   * @throws AdmissionException if the tenant or server is still saturated after waiting.
+   * @throws IOException if there was an error reading tenant information.
+   */
+  public void admit(String tenantId) throws AdmissionException, IOException {
+    long deadline = System.currentTimeMillis() + maxWaitMs;
+    String reason = getSaturationReason(tenantId);
+    while (reason != null) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        break;
+      }
+      try {
+        Thread.sleep(Math.min(remaining, POLL_INTERVAL_MS));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      }
+      reason = getSaturationReason(tenantId);
+    }
+
+    if (reason != null) {
+      LOG.debug("Rejecting operation for tenant {}: {}", tenantId, reason);
+      rejected.incrementAndGet(tenantId);
+      throw new AdmissionException(reason, retryAfterSeconds);
+    }
+    admitted.incrementAndGet(tenantId);
+  }
+
+  /**
+   * Get admission metrics for the given tenant.
+   *
+   * @param tenantId Id of the tenant to get admission metrics for.
+   * @return Admission metrics for the tenant.
+   * @throws IOException if there was an error reading tenant information.
+   */
+  public AdmissionMetrics getTenantMetrics(String tenantId) throws IOException {
+    return new AdmissionMetrics(getInFlight(tenantId), getTenantLimit(tenantStore.getTenantByID(tenantId)),
+                                admitted.get(tenantId), rejected.get(tenantId));
+  }
+
+  /**
+   * Get a mapping of tenant name to admission metrics for all tenants.
+   *
+   * @return Mapping of tenant name to admission metrics for that tenant.
+   * @throws IOException if there was an error reading tenant information.
+   */
+  public Map<String, AdmissionMetrics> getTenantMetrics() throws IOException {
+    Map<String, AdmissionMetrics> metrics = Maps.newHashMap();
+    for (Tenant tenant : tenantStore.getAllTenants()) {
+      String tenantId = tenant.getId();
+      metrics.put(tenant.getSpecification().getName(),
+                  new AdmissionMetrics(getInFlight(tenantId), getTenantLimit(tenant),
+                                       admitted.get(tenantId), rejected.get(tenantId)));
+    }
+    return metrics;
+  }
+
+  /**
+   * Get admission metrics across all tenants.
+   *
+   * @return Admission metrics across all tenants.
+   * @throws IOException if there was an error reading tenant information.
+   */
+  public AdmissionMetrics getServerMetrics() throws IOException {
+    return new AdmissionMetrics(getTotalInFlight(), maxInFlight, admitted.sum(), rejected.sum());
+  }
+
+  // returns null if the operation can be admitted, or the reason it cannot be admitted if not.
+  private String getSaturationReason(String tenantId) throws IOException {
+    if (inFlightPerWorker > 0) {
+      int limit = getTenantLimit(tenantStore.getTenantByID(tenantId));
+      int inFlight = getInFlight(tenantId);
+      if (inFlight >= limit) {
+        return String.format("Tenant has %d cluster operations and tasks in flight, which is at or above its limit " +
+                               "of %d. Please try again later.", inFlight, limit);
+      }
+    }
+    if (maxInFlight > 0) {
+      int inFlight = getTotalInFlight();
+      if (inFlight >= maxInFlight) {
+        return String.format("Server has %d cluster operations and tasks in flight, which is at or above its limit " +
+                               "of %d. Please try again later.", inFlight, maxInFlight);
+      }
+    }
+    return null;
+  }
+
+  // tenants without workers still get the limit of a single worker so that they can queue up some work.
+  private int getTenantLimit(Tenant tenant) {
+    if (inFlightPerWorker <= 0) {
+      return 0;
+    }
+    int workers = tenant == null ? 0 : tenant.getSpecification().getWorkers();
+    return Math.max(1, workers) * inFlightPerWorker;
+  }
+
+  private int getInFlight(String tenantId) {
+    int inFlight = 0;
+    for (QueueGroup queueGroup : inFlightQueues) {
+      inFlight += queueGroup.size(tenantId);
+    }
+    return inFlight;
+  }
+
+  // get tenants from the tenant store instead of the queue groups because queues are loaded lazily in the groups.
+  private int getTotalInFlight() throws IOException {
+    int inFlight = 0;
+    for (Tenant tenant : tenantStore.getAllTenants()) {
+      inFlight += getInFlight(tenant.getId());
+    }
+    return inFlight;
+  }
+}
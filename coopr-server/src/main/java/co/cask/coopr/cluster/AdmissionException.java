@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.cask.coopr.cluster;
+
+/**
+ * Thrown to indicate that a cluster operation was not admitted because there is too much work already in flight.
+ */
+public class AdmissionException extends Exception {
+  private final int retryAfterSeconds;
+
+  /**
+   * New exception with error message and the number of seconds the caller should wait before trying again.
+   *
+   * @param message the error message
+   * @param retryAfterSeconds seconds the caller should wait before retrying the operation
+   */
+  public AdmissionException(String message, int retryAfterSeconds) {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public int getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+}
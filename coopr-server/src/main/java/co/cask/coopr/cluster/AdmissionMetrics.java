@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.cask.coopr.cluster;
+
+import com.google.common.base.Objects;
+
+/**
+ * A snapshot of admission control metrics for a tenant, as seen by the server handling requests.
+ */
+public class AdmissionMetrics {
+  private final int inFlight;
+  private final int limit;
+  private final long admitted;
+  private final long rejected;
+
+  public AdmissionMetrics(int inFlight, int limit, long admitted, long rejected) {
+    this.inFlight = inFlight;
+    this.limit = limit;
+    this.admitted = admitted;
+    this.rejected = rejected;
+  }
+
+  /**
+   * Get the number of cluster operations and provisioner tasks in flight.
+   *
+   * @return Number of cluster operations and provisioner tasks in flight.
+   */
+  public int getInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * Get the max number of cluster operations and provisioner tasks that can be in flight before operations are
+   * rejected. A limit of 0 or less means there is no limit.
+   *
+   * @return Max number of cluster operations and provisioner tasks that can be in flight.
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  public long getAdmitted() {
+    return admitted;
+  }
+
+  public long getRejected() {
+    return rejected;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    AdmissionMetrics that = (AdmissionMetrics) o;
+
+    return inFlight == that.inFlight && limit == that.limit &&
+      admitted == that.admitted && rejected == that.rejected;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(inFlight, limit, admitted, rejected);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("inFlight", inFlight)
+      .add("limit", limit)
+      .add("admitted", admitted)
+      .add("rejected", rejected)
+      .toString();
+  }
+}
@@ -16,6 +16,7 @@
 
 package co.cask.coopr.cluster;
 
+import co.cask.coopr.macro.ClusterTopologyIndex;
 import co.cask.coopr.macro.Expander;
 import co.cask.coopr.scheduler.task.ClusterJob;
 import co.cask.coopr.spec.Link;
@@ -42,11 +43,12 @@ public class ClusterDetails {
     this.nodes = ImmutableSet.copyOf(nodes);
     this.progress = new ClusterJobProgress(job);
     this.message = job.getStatusMessage();
+    ClusterTopologyIndex clusterIndex = ClusterTopologyIndex.of(this.nodes);
     // get links from the cluster template, expanding any macros in them and populating the field
     ImmutableList.Builder linksBuilder = ImmutableList.builder();
     for (Link link : cluster.getClusterTemplate().getLinks()) {
       try {
-        linksBuilder.add(new Link(link.getLabel(), Expander.expand(link.getUrl(), cluster, nodes, null)));
+        linksBuilder.add(new Link(link.getLabel(), Expander.expand(link.getUrl(), cluster, clusterIndex, null)));
       } catch (Exception e) {
         // if we couldn't expand the macro, just use the original string
         linksBuilder.add(link);
@@ -54,7 +56,7 @@ public class ClusterDetails {
     }
     this.links = linksBuilder.build();
     for (Node node : this.nodes) {
-      node.populateLinks(cluster, nodes);
+      node.populateLinks(cluster, clusterIndex);
     }
   }
 
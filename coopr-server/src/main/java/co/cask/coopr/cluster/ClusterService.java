@@ -16,6 +16,8 @@
 package co.cask.coopr.cluster;
 
 import co.cask.coopr.account.Account;
+import co.cask.coopr.cluster.event.ClusterEvent;
+import co.cask.coopr.cluster.event.ClusterEventService;
 import co.cask.coopr.common.queue.Element;
 import co.cask.coopr.common.queue.QueueGroup;
 import co.cask.coopr.common.queue.QueueService;
@@ -34,6 +36,7 @@ import co.cask.coopr.management.ServerStats;
 import co.cask.coopr.provisioner.QuotaException;
 import co.cask.coopr.provisioner.TenantProvisionerService;
 import co.cask.coopr.scheduler.ClusterAction;
+import co.cask.coopr.scheduler.DeadlineTracker;
 import co.cask.coopr.scheduler.SolverRequest;
 import co.cask.coopr.scheduler.task.ClusterJob;
 import co.cask.coopr.scheduler.task.JobId;
@@ -88,6 +91,7 @@ public class ClusterService {
   private final CredentialStore credentialStore;
   private final LockService lockService;
   private final ServerStats serverStats;
+  private final DeadlineTracker deadlineTracker;
   private final Solver solver;
   private final IdService idService;
   private final Gson gson;
@@ -95,6 +99,8 @@ public class ClusterService {
   private final QueueGroup solverQueues;
   private final QueueGroup jobQueues;
   private final TemplateMerger templateMerger;
+  private final AdmissionController admissionController;
+  private final ClusterEventService clusterEventService;
 
   @Inject
   public ClusterService(ClusterStoreService clusterStoreService,
@@ -103,10 +109,13 @@ public class ClusterService {
                         QueueService queueService,
                         LockService lockService,
                         ServerStats serverStats,
+                        DeadlineTracker deadlineTracker,
                         Solver solver,
                         IdService idService,
                         CredentialStore credentialStore,
-                        Gson gson, TemplateMerger templateMerger) {
+                        Gson gson, TemplateMerger templateMerger,
+                        AdmissionController admissionController,
+                        ClusterEventService clusterEventService) {
     this.clusterStoreService = clusterStoreService;
     this.clusterStore = clusterStoreService.getSystemView();
     this.entityStoreService = entityStoreService;
@@ -114,6 +123,7 @@ public class ClusterService {
     this.credentialStore = credentialStore;
     this.lockService = lockService;
     this.serverStats = serverStats;
+    this.deadlineTracker = deadlineTracker;
     this.solver = solver;
     this.idService = idService;
     this.gson = gson;
@@ -121,6 +131,8 @@ public class ClusterService {
     this.solverQueues = queueService.getQueueGroup(QueueType.SOLVER);
     this.jobQueues = queueService.getQueueGroup(QueueType.JOB);
     this.templateMerger = templateMerger;
+    this.admissionController = admissionController;
+    this.clusterEventService = clusterEventService;
   }
 
   /**
@@ -152,9 +164,12 @@ public class ClusterService {
    * @throws InvalidClusterException if the requested cluster violates the template constraints.
    * @throws IllegalAccessException if the operation is not allowed for the given account.
    * @throws MissingFieldsException if there are required fields missing from the request.
+   * @throws AdmissionException if there is too much work in flight to accept the operation.
    */
   public String requestClusterCreate(ClusterCreateRequest clusterCreateRequest, Account account) throws IOException,
-    QuotaException, MissingEntityException, InvalidClusterException, IllegalAccessException, MissingFieldsException {
+    QuotaException, MissingEntityException, InvalidClusterException, IllegalAccessException, MissingFieldsException,
+    AdmissionException {
+    admissionController.admit(account.getTenantId());
     // the create lock is shared across an entire tenant and is needed so that concurrent create requests
     // cannot cause the quota to be exceeded if they both read the old value and both add clusters and nodes
     ZKInterProcessReentrantLock lock = lockService.getClusterCreateLock(account.getTenantId());
@@ -174,6 +189,8 @@ public class ClusterService {
       LOG.trace("Writing cluster {} to store", cluster);
       clusterStoreService.getView(account).writeCluster(cluster);
       clusterStore.writeClusterJob(clusterJob);
+      deadlineTracker.clusterLeaseChanged(cluster.getId(), cluster.getExpireTime());
+      publishEvents(cluster, clusterJob);
 
       LOG.debug("adding create cluster element to solverQueue");
       SolverRequest solverRequest = new SolverRequest(SolverRequest.Type.CREATE_CLUSTER,
@@ -215,6 +232,7 @@ public class ClusterService {
       LOG.debug("Writing cluster {} to store with delete job {}", clusterId, deleteJobId);
       clusterStoreService.getView(account).writeCluster(cluster);
       clusterStore.writeClusterJob(deleteJob);
+      publishEvents(cluster, deleteJob);
 
       serverStats.getClusterStats().incrementStat(ClusterAction.CLUSTER_DELETE);
       clusterQueues.add(account.getTenantId(), new Element(clusterId, ClusterAction.CLUSTER_DELETE.name()));
@@ -236,9 +254,11 @@ public class ClusterService {
    *                                used to create the cluster, could not be found.
    * @throws IllegalAccessException if the operation is not allowed for the given account.
    * @throws MissingFieldsException if there are required fields missing from the request.
+   * @throws AdmissionException if there is too much work in flight to accept the operation.
    */
   public void requestClusterReconfigure(String clusterId, Account account, ClusterConfigureRequest request)
-    throws IOException, MissingEntityException, IllegalAccessException, MissingFieldsException {
+    throws IOException, MissingEntityException, IllegalAccessException, MissingFieldsException, AdmissionException {
+    admissionController.admit(account.getTenantId());
     ZKInterProcessReentrantLock lock = lockService.getClusterLock(account.getTenantId(), clusterId);
     lock.acquire();
     try {
@@ -262,6 +282,7 @@ public class ClusterService {
       prepareClusterForOperation(cluster, request);
       clusterStoreService.getView(account).writeCluster(cluster);
       clusterStore.writeClusterJob(configureJob);
+      publishEvents(cluster, configureJob);
 
       serverStats.getClusterStats().incrementStat(action);
       clusterQueues.add(account.getTenantId(), new Element(clusterId, action.name()));
@@ -285,12 +306,14 @@ public class ClusterService {
    *                                used to create the cluster, could not be found.
    * @throws IllegalAccessException if the operation is not allowed for the given account.
    * @throws MissingFieldsException if there are required fields missing from the request.
+   * @throws AdmissionException if there is too much work in flight to accept the operation.
    */
   public void requestServiceRuntimeAction(String clusterId, Account account, ClusterAction action, String service,
                                           ClusterOperationRequest request)
-    throws IOException, MissingEntityException, IllegalAccessException, MissingFieldsException {
+    throws IOException, MissingEntityException, IllegalAccessException, MissingFieldsException, AdmissionException {
     Preconditions.checkArgument(ClusterAction.SERVICE_RUNTIME_ACTIONS.contains(action),
                                 action + " is not a service runtime action.");
+    admissionController.admit(account.getTenantId());
     ZKInterProcessReentrantLock lock = lockService.getClusterLock(account.getTenantId(), clusterId);
     lock.acquire();
     try {
@@ -311,6 +334,7 @@ public class ClusterService {
       prepareClusterForOperation(cluster, request);
       clusterStoreService.getView(account).writeCluster(cluster);
       clusterStore.writeClusterJob(job);
+      publishEvents(cluster, job);
 
       serverStats.getClusterStats().incrementStat(action);
       clusterQueues.add(account.getTenantId(), new Element(clusterId, action.name()));
@@ -368,6 +392,7 @@ public class ClusterService {
       clusterJob.setJobStatus(ClusterJob.Status.FAILED);
       clusterJob.setStatusMessage("Aborted by user.");
       clusterStore.writeClusterJob(clusterJob);
+      clusterEventService.publish(ClusterEvent.of(cluster, clusterJob));
       // Reschedule the job.
       jobQueues.add(account.getTenantId(), new Element(clusterJob.getJobId()));
     } finally {
@@ -410,6 +435,7 @@ public class ClusterService {
       clusterJob.setJobStatus(ClusterJob.Status.PAUSED);
       clusterJob.setStatusMessage("Paused by user.");
       clusterStore.writeClusterJob(clusterJob);
+      clusterEventService.publish(ClusterEvent.of(cluster, clusterJob));
     } finally {
       lock.release();
     }
@@ -449,6 +475,7 @@ public class ClusterService {
       clusterJob.setJobStatus(ClusterJob.Status.RUNNING);
       clusterJob.setStatusMessage("Resumed by user.");
       clusterStore.writeClusterJob(clusterJob);
+      clusterEventService.publish(ClusterEvent.of(cluster, clusterJob));
       // Reschedule the job.
       jobQueues.add(account.getTenantId(), new Element(clusterJob.getJobId()));
     } finally {
@@ -469,9 +496,11 @@ public class ClusterService {
    *                                used to create the cluster, could not be found.
    * @throws IllegalAccessException if the operation is not allowed for the given account.
    * @throws MissingFieldsException if there are required fields missing from the request.
+   * @throws AdmissionException if there is too much work in flight to accept the operation.
    */
   public void requestAddServices(String clusterId, Account account, AddServicesRequest addRequest)
-    throws IOException, MissingEntityException, IllegalAccessException, MissingFieldsException {
+    throws IOException, MissingEntityException, IllegalAccessException, MissingFieldsException, AdmissionException {
+    admissionController.admit(account.getTenantId());
     ZKInterProcessReentrantLock lock = lockService.getClusterLock(account.getTenantId(), clusterId);
     lock.acquire();
     try {
@@ -491,6 +520,7 @@ public class ClusterService {
       prepareClusterForOperation(cluster, addRequest);
       clusterStoreService.getView(account).writeCluster(cluster);
       clusterStore.writeClusterJob(job);
+      publishEvents(cluster, job);
 
       serverStats.getClusterStats().incrementStat(action);
       SolverRequest solverRequest = new SolverRequest(SolverRequest.Type.ADD_SERVICES, gson.toJson(addRequest));
@@ -594,6 +624,7 @@ public class ClusterService {
       cluster.setExpireTime(expireTime);
       LOG.debug("Prolonging lease of cluster {} by {} to {}", clusterId, expireTime, cluster.getExpireTime());
       clusterStoreService.getView(account).writeCluster(cluster);
+      deadlineTracker.clusterLeaseChanged(clusterId, expireTime);
     } finally {
       lock.release();
     }
@@ -734,6 +765,12 @@ public class ClusterService {
     return serviceNames;
   }
 
+  // publish the current state of the cluster and of its job
+  private void publishEvents(Cluster cluster, ClusterJob job) {
+    clusterEventService.publish(ClusterEvent.of(cluster));
+    clusterEventService.publish(ClusterEvent.of(cluster, job));
+  }
+
   // get the specified cluster, throwing an exception if it does not exist
   private Cluster getCluster(String clusterId, Account account) throws IOException, MissingClusterException {
     Cluster cluster = clusterStoreService.getView(account).getCluster(clusterId);
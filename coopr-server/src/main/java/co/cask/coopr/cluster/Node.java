@@ -15,6 +15,7 @@
  */
 package co.cask.coopr.cluster;
 
+import co.cask.coopr.macro.ClusterTopologyIndex;
 import co.cask.coopr.macro.Expander;
 import co.cask.coopr.spec.Link;
 import co.cask.coopr.spec.service.Service;
@@ -142,7 +143,7 @@ public class Node implements Comparable<Node> {
   }
 
   /**
-   * Get an immutable list of service links on the node. Unless {@link #populateLinks(Cluster, java.util.Set)} is
+   * Get an immutable list of service links on the node. Unless {@link #populateLinks(Cluster, ClusterTopologyIndex)} is
    * called first, this will return null.
    *
    * @return Immutable list of service links on the node.
@@ -175,7 +176,7 @@ public class Node implements Comparable<Node> {
    * Get all service links on the node, combine them all, and expand any macros in them. Only useful for display
    * purposes.
    */
-  public void populateLinks(Cluster cluster, Set<Node> nodes) {
+  public void populateLinks(Cluster cluster, ClusterTopologyIndex nodes) {
     // take links from the services on this node, expand any self macros that may be there, and combine them all
     ImmutableList.Builder<Link> linksBuilder = ImmutableList.builder();
     for (Service service : services) {
@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.cask.coopr.cluster.event;
+
+import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.scheduler.task.ClusterJob;
+import co.cask.coopr.scheduler.task.ClusterTask;
+import com.google.common.base.Objects;
+
+/**
+ * A change in the status of a cluster, a cluster job, or a cluster task. Fields that do not apply to the type of event
+ * are null. For example, a cluster event has no job or task id, and a job event has no task id.
+ */
+public class ClusterEvent {
+  private final transient String tenantId;
+  private final Type type;
+  private final String clusterId;
+  private final String ownerId;
+  private final String jobId;
+  private final String taskId;
+  private final String nodeId;
+  private final String action;
+  private final String status;
+  private final long timestamp;
+
+  /**
+   * Type of object that changed.
+   */
+  public enum Type {
+    CLUSTER,
+    JOB,
+    TASK
+  }
+
+  private ClusterEvent(String tenantId, Type type, String clusterId, String ownerId, String jobId, String taskId,
+                       String nodeId, String action, String status) {
+    this.tenantId = tenantId;
+    this.type = type;
+    this.clusterId = clusterId;
+    this.ownerId = ownerId;
+    this.jobId = jobId;
+    this.taskId = taskId;
+    this.nodeId = nodeId;
+    this.action = action;
+    this.status = status;
+    this.timestamp = System.currentTimeMillis();
+  }
+
+  /**
+   * Create an event for the current status of the given cluster.
+   *
+   * @param cluster Cluster whose status changed.
+   * @return Event for the current status of the cluster.
+   */
+  public static ClusterEvent of(Cluster cluster) {
+    return new ClusterEvent(cluster.getAccount().getTenantId(), Type.CLUSTER, cluster.getId(),
+                            cluster.getAccount().getUserId(), null, null, null, null, cluster.getStatus().name());
+  }
+
+  /**
+   * Create an event for the current status of the given job of the given cluster.
+   *
+   * @param cluster Cluster the job is for.
+   * @param job Job whose status changed.
+   * @return Event for the current status of the job.
+   */
+  public static ClusterEvent of(Cluster cluster, ClusterJob job) {
+    return new ClusterEvent(cluster.getAccount().getTenantId(), Type.JOB, cluster.getId(),
+                            cluster.getAccount().getUserId(), job.getJobId(), null, null,
+                            job.getClusterAction().name(), job.getJobStatus().name());
+  }
+
+  /**
+   * Create an event for the current status of the given task.
+   *
+   * @param task Task whose status changed.
+   * @return Event for the current status of the task.
+   */
+  public static ClusterEvent of(ClusterTask task) {
+    return new ClusterEvent(task.getAccount().getTenantId(), Type.TASK, task.getClusterId(),
+                            task.getAccount().getUserId(), task.getJobId(), task.getTaskId(), task.getNodeId(),
+                            task.getTaskName().name(), task.getStatus().name());
+  }
+
+  /**
+   * Get the id of the tenant the event belongs to. The tenant id is not part of the serialized event.
+   *
+   * @return Id of the tenant the event belongs to.
+   */
+  public String getTenantId() {
+    return tenantId;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getClusterId() {
+    return clusterId;
+  }
+
+  public String getOwnerId() {
+    return ownerId;
+  }
+
+  public String getJobId() {
+    return jobId;
+  }
+
+  public String getTaskId() {
+    return taskId;
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Get the cluster action of a job event, or the provisioner action of a task event.
+   *
+   * @return Cluster action of a job event, provisioner action of a task event, or null for a cluster event.
+   */
+  public String getAction() {
+    return action;
+  }
+
+  public String getStatus() {
+    return status;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    ClusterEvent that = (ClusterEvent) o;
+
+    return timestamp == that.timestamp &&
+      type == that.type &&
+      Objects.equal(clusterId, that.clusterId) &&
+      Objects.equal(ownerId, that.ownerId) &&
+      Objects.equal(jobId, that.jobId) &&
+      Objects.equal(taskId, that.taskId) &&
+      Objects.equal(nodeId, that.nodeId) &&
+      Objects.equal(action, that.action) &&
+      Objects.equal(status, that.status);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(type, clusterId, ownerId, jobId, taskId, nodeId, action, status, timestamp);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("type", type)
+      .add("clusterId", clusterId)
+      .add("ownerId", ownerId)
+      .add("jobId", jobId)
+      .add("taskId", taskId)
+      .add("nodeId", nodeId)
+      .add("action", action)
+      .add("status", status)
+      .add("timestamp", timestamp)
+      .toString();
+  }
+}
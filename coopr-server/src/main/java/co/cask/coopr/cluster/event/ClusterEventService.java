@@ -0,0 +1,320 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.cask.coopr.cluster.event;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.common.zookeeper.ZKClientExt;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.google.inject.Inject;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.zookeeper.NodeChildren;
+import org.apache.twill.zookeeper.NodeData;
+import org.apache.twill.zookeeper.ZKClient;
+import org.apache.twill.zookeeper.ZKOperations;
+import org.apache.zookeeper.CreateMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes {@link ClusterEvent ClusterEvents} and pushes them to local {@link ClusterEventSubscriber subscribers}.
+ * Events are written to zookeeper as sequential nodes under a node for their tenant, so that events published on any
+ * server reach subscribers on every server, in the same order. The sequence number of a node is the id of its event,
+ * and subscribers can resume from an id as long as the events after it are still retained. Each server only watches
+ * the tenants it has subscribers for. Watching and delivery happen on a single thread, so subscribers do not need to
+ * be thread safe.
+ */
+public class ClusterEventService extends AbstractIdleService {
+  private static final Logger LOG = LoggerFactory.getLogger(ClusterEventService.class);
+  private static final String EVENT_PREFIX = "event-";
+  // trim old events every this many sequence numbers instead of after every event. Deletes also advance the sequence,
+  // so this and the retention are approximate.
+  private static final int TRIM_INTERVAL = 100;
+
+  private final ZKClient zkClient;
+  private final Gson gson;
+  private final int retention;
+  private final long heartbeatSeconds;
+  // only accessed from the executor thread
+  private final Map<String, TenantEvents> tenantEvents;
+  private ScheduledExecutorService executor;
+
+  @Inject
+  private ClusterEventService(ZKClient zkClient, Gson gson, Configuration conf) {
+    this.zkClient = zkClient;
+    this.gson = gson;
+    this.retention = conf.getInt(Constants.ClusterEvents.RETENTION, Constants.ClusterEvents.DEFAULT_RETENTION);
+    this.heartbeatSeconds = conf.getLong(Constants.ClusterEvents.HEARTBEAT_SECONDS,
+                                         Constants.ClusterEvents.DEFAULT_HEARTBEAT_SECONDS);
+    this.tenantEvents = Maps.newHashMap();
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    executor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("cluster-events").setDaemon(true).build());
+    executor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        heartbeat();
+      }
+    }, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    executor.submit(new Runnable() {
+      @Override
+      public void run() {
+        for (TenantEvents events : tenantEvents.values()) {
+          events.watch.cancel();
+          for (ClusterEventSubscriber subscriber : events.subscribers) {
+            subscriber.close();
+          }
+        }
+        tenantEvents.clear();
+      }
+    }).get();
+    executor.shutdownNow();
+  }
+
+  /**
+   * Publish an event. Events are written asynchronously, and failures to write an event are logged but otherwise
+   * ignored, since events are only used for notification. Events can be published whether or not the service is
+   * running.
+   *
+   * @param event Event to publish.
+   */
+  public void publish(ClusterEvent event) {
+    final String tenantPath = getTenantPath(event.getTenantId());
+    byte[] data = gson.toJson(event).getBytes(Charsets.UTF_8);
+    Futures.addCallback(zkClient.create(tenantPath + "/" + EVENT_PREFIX, data, CreateMode.PERSISTENT_SEQUENTIAL, true),
+                        new FutureCallback<String>() {
+      @Override
+      public void onSuccess(String path) {
+        long sequenceId = getSequenceId(path);
+        if (sequenceId % TRIM_INTERVAL == 0) {
+          trim(tenantPath, sequenceId - retention);
+        }
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        LOG.warn("Unable to publish cluster event under {}.", tenantPath, t);
+      }
+    });
+  }
+
+  /**
+   * Subscribe to the events of a tenant. If a resume id is given, retained events after that id are delivered before
+   * any new events. Otherwise, only events published after subscribing are delivered.
+   *
+   * @param subscriber Subscriber to add.
+   * @param resumeId Id of the last event the subscriber has seen, or null to only receive new events.
+   */
+  public void subscribe(final ClusterEventSubscriber subscriber, final Long resumeId) {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        addSubscriber(subscriber, resumeId);
+      }
+    });
+  }
+
+  private void addSubscriber(ClusterEventSubscriber subscriber, Long resumeId) {
+    String tenantId = subscriber.getTenantId();
+    TenantEvents events = tenantEvents.get(tenantId);
+    try {
+      if (events == null) {
+        events = watch(tenantId);
+      }
+      if (resumeId != null && resumeId < events.lastSequenceId) {
+        String tenantPath = getTenantPath(tenantId);
+        for (String name : getSortedEventNames(Futures.getUnchecked(zkClient.getChildren(tenantPath)))) {
+          long sequenceId = getSequenceId(name);
+          if (sequenceId > resumeId && sequenceId <= events.lastSequenceId) {
+            ClusterEvent event = readEvent(tenantPath + "/" + name);
+            if (event != null && subscriber.accept(event)) {
+              subscriber.onEvent(sequenceId, event);
+            }
+          }
+        }
+      }
+      events.subscribers.add(subscriber);
+    } catch (Exception e) {
+      LOG.debug("Unable to subscribe to events of tenant {}.", tenantId, e);
+      subscriber.close();
+      if (events != null) {
+        removeIfUnused(tenantId, events);
+      }
+    }
+  }
+
+  private TenantEvents watch(final String tenantId) {
+    String tenantPath = getTenantPath(tenantId);
+    Futures.getUnchecked(ZKClientExt.ensureExists(zkClient, tenantPath));
+    List<String> names = getSortedEventNames(Futures.getUnchecked(zkClient.getChildren(tenantPath)));
+    long lastSequenceId = names.isEmpty() ? -1 : getSequenceId(names.get(names.size() - 1));
+    final TenantEvents events = new TenantEvents(lastSequenceId);
+    events.watch = ZKOperations.watchChildren(zkClient, tenantPath, new ZKOperations.ChildrenCallback() {
+      @Override
+      public void updated(final NodeChildren nodeChildren) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            deliver(tenantId, events, nodeChildren);
+          }
+        });
+      }
+    });
+    tenantEvents.put(tenantId, events);
+    return events;
+  }
+
+  private void deliver(String tenantId, TenantEvents events, NodeChildren nodeChildren) {
+    if (tenantEvents.get(tenantId) != events) {
+      return;
+    }
+    String tenantPath = getTenantPath(tenantId);
+    for (String name : getSortedEventNames(nodeChildren)) {
+      long sequenceId = getSequenceId(name);
+      if (sequenceId <= events.lastSequenceId) {
+        continue;
+      }
+      events.lastSequenceId = sequenceId;
+      ClusterEvent event = readEvent(tenantPath + "/" + name);
+      if (event == null) {
+        continue;
+      }
+      for (ClusterEventSubscriber subscriber : Lists.newArrayList(events.subscribers)) {
+        try {
+          if (subscriber.accept(event)) {
+            subscriber.onEvent(sequenceId, event);
+          }
+        } catch (Exception e) {
+          LOG.debug("Removing cluster event subscriber for tenant {}.", tenantId, e);
+          events.subscribers.remove(subscriber);
+          subscriber.close();
+        }
+      }
+    }
+    removeIfUnused(tenantId, events);
+  }
+
+  private void heartbeat() {
+    for (Map.Entry<String, TenantEvents> entry : Lists.newArrayList(tenantEvents.entrySet())) {
+      TenantEvents events = entry.getValue();
+      for (ClusterEventSubscriber subscriber : Lists.newArrayList(events.subscribers)) {
+        try {
+          subscriber.onHeartbeat();
+        } catch (Exception e) {
+          LOG.debug("Removing cluster event subscriber for tenant {}.", entry.getKey(), e);
+          events.subscribers.remove(subscriber);
+          subscriber.close();
+        }
+      }
+      removeIfUnused(entry.getKey(), events);
+    }
+  }
+
+  private void removeIfUnused(String tenantId, TenantEvents events) {
+    if (events.subscribers.isEmpty()) {
+      events.watch.cancel();
+      tenantEvents.remove(tenantId);
+    }
+  }
+
+  // returns null if the event was trimmed before it could be read.
+  private ClusterEvent readEvent(String path) {
+    NodeData nodeData = Futures.getUnchecked(ZKClientExt.getDataOrNull(zkClient, path));
+    if (nodeData == null || nodeData.getData() == null) {
+      return null;
+    }
+    return gson.fromJson(new String(nodeData.getData(), Charsets.UTF_8), ClusterEvent.class);
+  }
+
+  private void trim(final String tenantPath, final long maxSequenceIdToDelete) {
+    if (maxSequenceIdToDelete < 0) {
+      return;
+    }
+    Futures.addCallback(zkClient.getChildren(tenantPath), new FutureCallback<NodeChildren>() {
+      @Override
+      public void onSuccess(NodeChildren result) {
+        for (String name : result.getChildren()) {
+          if (name.startsWith(EVENT_PREFIX) && getSequenceId(name) <= maxSequenceIdToDelete) {
+            ZKClientExt.delete(zkClient, tenantPath + "/" + name, true);
+          }
+        }
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        LOG.warn("Unable to trim cluster events under {}.", tenantPath, t);
+      }
+    });
+  }
+
+  private static List<String> getSortedEventNames(NodeChildren nodeChildren) {
+    List<String> names = Lists.newArrayList();
+    for (String name : nodeChildren.getChildren()) {
+      if (name.startsWith(EVENT_PREFIX)) {
+        names.add(name);
+      }
+    }
+    // sequence numbers are zero padded, so sorting names sorts by sequence.
+    Collections.sort(names);
+    return names;
+  }
+
+  private static long getSequenceId(String path) {
+    return Long.parseLong(path.substring(path.lastIndexOf('-') + 1));
+  }
+
+  private static String getTenantPath(String tenantId) {
+    return Constants.ClusterEvents.BASE_PATH + "/" + tenantId;
+  }
+
+  /**
+   * Subscribers and delivery state for the events of a tenant.
+   */
+  private static final class TenantEvents {
+    private final Set<ClusterEventSubscriber> subscribers;
+    private long lastSequenceId;
+    private Cancellable watch;
+
+    private TenantEvents(long lastSequenceId) {
+      this.subscribers = Sets.newLinkedHashSet();
+      this.lastSequenceId = lastSequenceId;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.cask.coopr.cluster.event;
+
+import java.io.IOException;
+
+/**
+ * Receives {@link ClusterEvent ClusterEvents} of a tenant from the {@link ClusterEventService}. All methods are called
+ * from a single thread. If a method throws an exception, the subscriber is removed and closed.
+ */
+public interface ClusterEventSubscriber {
+
+  /**
+   * Get the id of the tenant whose events should be received.
+   *
+   * @return Id of the tenant whose events should be received.
+   */
+  String getTenantId();
+
+  /**
+   * Whether or not the given event of the tenant should be received.
+   *
+   * @param event Event to check.
+   * @return True if the event should be received, false if not.
+   */
+  boolean accept(ClusterEvent event);
+
+  /**
+   * Receive an event.
+   *
+   * @param sequenceId Id of the event, which increases with each event of the tenant and can be used to resume.
+   * @param event Event received.
+   * @throws IOException if the event could not be handled.
+   */
+  void onEvent(long sequenceId, ClusterEvent event) throws IOException;
+
+  /**
+   * Called periodically while the subscriber is subscribed, so that idle subscribers can keep their connections alive
+   * and find out if they were closed.
+   *
+   * @throws IOException if the subscriber is no longer able to receive events.
+   */
+  void onHeartbeat() throws IOException;
+
+  /**
+   * Called when the subscriber is removed, either because it threw an exception or because the service stopped.
+   */
+  void close();
+}
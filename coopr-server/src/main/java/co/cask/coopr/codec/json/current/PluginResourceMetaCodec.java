@@ -40,6 +40,9 @@ public class PluginResourceMetaCodec extends AbstractCodec<ResourceMeta> {
     jsonObj.add("name", context.serialize(meta.getName()));
     jsonObj.add("version", context.serialize(meta.getVersion()));
     jsonObj.add("status", context.serialize(meta.getStatus()));
+    if (meta.getChecksum() != null) {
+      jsonObj.addProperty("checksum", meta.getChecksum());
+    }
 
     return jsonObj;
   }
@@ -52,7 +55,8 @@ public class PluginResourceMetaCodec extends AbstractCodec<ResourceMeta> {
     String name = context.deserialize(jsonObj.get("name"), String.class);
     Integer version = context.deserialize(jsonObj.get("version"), Integer.class);
     ResourceStatus status = context.deserialize(jsonObj.get("status"), ResourceStatus.class);
+    String checksum = context.deserialize(jsonObj.get("checksum"), String.class);
 
-    return new ResourceMeta(name, version, status);
+    return new ResourceMeta(name, version, status, checksum);
   }
 }
@@ -53,7 +53,8 @@ public class ResourceCollectionCodec implements JsonSerializer<ResourceCollectio
      *         "active": [
      *           {
      *             "name":"reactor",
-     *             "version":9
+     *             "version":9,
+     *             "checksum":"9f86d08..."
      *           }
      *         ]
      *       }
@@ -93,6 +94,10 @@ public class ResourceCollectionCodec implements JsonSerializer<ResourceCollectio
         JsonObject metaObj = new JsonObject();
         metaObj.addProperty("name", meta.getName());
         metaObj.addProperty("version", meta.getVersion());
+        // lets provisioners skip downloading contents they already have
+        if (meta.getChecksum() != null) {
+          metaObj.addProperty("checksum", meta.getChecksum());
+        }
         activeList.add(metaObj);
       }
       resourceListObj.add("active", activeList);
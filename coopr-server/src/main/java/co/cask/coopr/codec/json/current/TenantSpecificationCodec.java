@@ -40,7 +40,9 @@ public class TenantSpecificationCodec implements JsonDeserializer<TenantSpecific
     Integer workers = context.deserialize(jsonObj.get("workers"), Integer.class);
     Integer maxClusters = context.deserialize(jsonObj.get("maxClusters"), Integer.class);
     Integer maxNodes = context.deserialize(jsonObj.get("maxNodes"), Integer.class);
+    Integer weight = context.deserialize(jsonObj.get("weight"), Integer.class);
+    Integer maxInFlight = context.deserialize(jsonObj.get("maxInFlight"), Integer.class);
 
-    return new TenantSpecification(name, description, workers, maxClusters, maxNodes);
+    return new TenantSpecification(name, description, workers, maxClusters, maxNodes, weight, maxInFlight);
   }
 }
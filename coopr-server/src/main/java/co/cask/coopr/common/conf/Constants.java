@@ -47,6 +47,16 @@ public class Constants {
   public static final String INTERNAL_SSL_TRUST_KEYSTORE_PATH = "server.tasks.ssl.trust.keystore.path";
   public static final String INTERNAL_SSL_TRUST_KEYPASSWORD = "server.tasks.ssl.trust.keystore.password";
 
+  public static final String EXTERNAL_COMPRESSION_LEVEL = "server.compression.level";
+  public static final String EXTERNAL_COMPRESSION_MIN_BYTES = "server.compression.min.bytes";
+  public static final String EXTERNAL_DECOMPRESSION_ENABLED = "server.decompression.enabled";
+  public static final String INTERNAL_COMPRESSION_LEVEL = "server.tasks.compression.level";
+  public static final String INTERNAL_COMPRESSION_MIN_BYTES = "server.tasks.compression.min.bytes";
+  public static final String INTERNAL_DECOMPRESSION_ENABLED = "server.tasks.decompression.enabled";
+  public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+  public static final int DEFAULT_COMPRESSION_MIN_BYTES = 1024;
+  public static final boolean DEFAULT_DECOMPRESSION_ENABLED = true;
+
   public static final String JDBC_DRIVER = "server.jdbc.driver";
   public static final String JDBC_CONNECTION_STRING = "server.jdbc.connection.string";
   public static final String DB_USER = "server.db.user";
@@ -58,9 +68,16 @@ public class Constants {
 
   public static final String SCHEDULER_INTERVAL_SECS = "server.scheduler.run.interval.seconds";
   public static final String SOLVER_NUM_THREADS = "server.solver.num.threads";
+  public static final String SOLVER_CACHE_SIZE = "server.solver.cache.size";
+  public static final int DEFAULT_SOLVER_CACHE_SIZE = 1000;
+  public static final String SOLVER_SEARCH_PARALLELISM = "server.solver.search.parallelism";
+  public static final int DEFAULT_SOLVER_SEARCH_PARALLELISM = 4;
+  public static final String SOLVER_TIMEOUT_SECS = "server.solver.timeout.seconds";
+  public static final long DEFAULT_SOLVER_TIMEOUT_SECS = 300;
   public static final String TASK_TIMEOUT_SECS = "server.task.timeout.seconds";
   public static final String CLUSTER_CLEANUP_SECS = "server.cluster.cleanup.seconds";
-  public static final String NETTY_EXEC_NUM_THREADS = "server.netty.exec.num.threads";
+  public static final String CLUSTER_CLEANUP_TICK_MS = "server.cluster.cleanup.tick.ms";
+  public static final long DEFAULT_CLUSTER_CLEANUP_TICK_MS = 1000;
   public static final String NETTY_WORKER_NUM_THREADS = "server.netty.worker.num.threads";
 
   public static final String MAX_PER_NODE_LOG_LENGTH = "server.node.max.log.length";
@@ -70,6 +87,8 @@ public class Constants {
 
   public static final String ID_START_NUM = "server.ids.start.num";
   public static final String ID_INCREMENT_BY = "server.ids.increment.by";
+  public static final String ID_BLOCK_SIZE = "server.ids.block.size";
+  public static final int DEFAULT_ID_BLOCK_SIZE = 100;
 
   public static final String CALLBACK_CLASS = "server.callback.class";
   public static final String PLUGIN_STORE_CLASS = "server.plugin.store.class";
@@ -80,6 +99,13 @@ public class Constants {
   public static final String PROVISIONER_REQUEST_MAX_RETRIES = "server.provisioner.request.max.retries";
   public static final String PROVISIONER_REQUEST_MS_BETWEEN_RETRIES = "server.provisioner.request.ms.between.retries";
   public static final String PROVISIONER_REQUEST_SOCKET_TIMEOUT_MS = "server.provisioner.request.socket.timeout.ms";
+  public static final String WORKER_BALANCE_POLICY_CLASS = "server.provisioner.balance.policy.class";
+  public static final String PROVISIONER_REQUEST_TIMEOUT_MS = "server.provisioner.request.timeout.ms";
+  public static final long DEFAULT_PROVISIONER_REQUEST_TIMEOUT_MS = 30000;
+  public static final String PROVISIONER_REQUEST_THREADS = "server.provisioner.request.threads";
+  public static final int DEFAULT_PROVISIONER_REQUEST_THREADS = 20;
+  public static final String PROVISIONER_REQUEST_MAX_CONNECTIONS = "server.provisioner.request.max.connections";
+  public static final int DEFAULT_PROVISIONER_REQUEST_MAX_CONNECTIONS = 100;
 
   /**
    * Config settings for the crendential store.
@@ -140,6 +166,27 @@ public class Constants {
 
     public static final String MAX_CONNECTIONS = prefix + "max.connections";
     public static final int DEFAULT_MAX_CONNECTIONS = 100;
+
+    public static final String MAX_CONCURRENT_REQUESTS = prefix + "max.concurrent.requests";
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 10;
+
+    public static final String BATCH_SIZE = prefix + "batch.size";
+    public static final int DEFAULT_BATCH_SIZE = 1;
+
+    public static final String MAX_ATTEMPTS = prefix + "max.attempts";
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    public static final String RETRY_INITIAL_DELAY_MS = prefix + "retry.initial.delay.ms";
+    public static final long DEFAULT_RETRY_INITIAL_DELAY_MS = 1000;
+
+    public static final String RETRY_MAX_DELAY_MS = prefix + "retry.max.delay.ms";
+    public static final long DEFAULT_RETRY_MAX_DELAY_MS = 60000;
+
+    public static final String CIRCUIT_FAILURE_THRESHOLD = prefix + "circuit.failure.threshold";
+    public static final int DEFAULT_CIRCUIT_FAILURE_THRESHOLD = 5;
+
+    public static final String CIRCUIT_OPEN_MS = prefix + "circuit.open.ms";
+    public static final long DEFAULT_CIRCUIT_OPEN_MS = 30000;
   }
 
   /**
@@ -149,6 +196,96 @@ public class Constants {
     public static final String DATA_DIR = "server.plugin.store.localfilestore.data.dir";
   }
 
+  /**
+   * Config settings for partitioning scheduling work across servers.
+   */
+  public static final class SchedulerPartition {
+    private static final String prefix = "server.scheduler.partition.";
+    public static final String ENABLED = prefix + "enabled";
+    public static final boolean DEFAULT_ENABLED = false;
+    public static final String VIRTUAL_NODES = prefix + "virtual.nodes";
+    public static final int DEFAULT_VIRTUAL_NODES = 64;
+    public static final String MEMBERS_PATH = "/scheduler-members";
+  }
+
+  /**
+   * Config settings for cluster status events.
+   */
+  public static final class ClusterEvents {
+    private static final String prefix = "server.cluster.events.";
+    public static final String RETENTION = prefix + "retention";
+    public static final int DEFAULT_RETENTION = 1000;
+    public static final String HEARTBEAT_SECONDS = prefix + "heartbeat.seconds";
+    public static final long DEFAULT_HEARTBEAT_SECONDS = 15;
+    public static final String BASE_PATH = "/cluster-events";
+  }
+
+  /**
+   * Config settings for admission control of cluster operations.
+   */
+  public static final class Admission {
+    private static final String prefix = "server.admission.";
+    public static final String MAX_IN_FLIGHT = prefix + "max.in.flight";
+    public static final int DEFAULT_MAX_IN_FLIGHT = 10000;
+    public static final String IN_FLIGHT_PER_WORKER = prefix + "in.flight.per.worker";
+    public static final int DEFAULT_IN_FLIGHT_PER_WORKER = 20;
+    public static final String MAX_WAIT_MS = prefix + "max.wait.ms";
+    public static final long DEFAULT_MAX_WAIT_MS = 0;
+    public static final String RETRY_AFTER_SECONDS = prefix + "retry.after.seconds";
+    public static final int DEFAULT_RETRY_AFTER_SECONDS = 10;
+  }
+
+  /**
+   * Config settings for the executors that run http handlers, one for each class of requests.
+   */
+  public static final class HandlerExecutors {
+    private static final String prefix = "server.handler.";
+    public static final String TASKS_THREADS = prefix + "tasks.threads";
+    public static final int DEFAULT_TASKS_THREADS = 20;
+    public static final String TASKS_MAX_QUEUED = prefix + "tasks.max.queued";
+    public static final String READS_THREADS = prefix + "reads.threads";
+    public static final int DEFAULT_READS_THREADS = 20;
+    public static final String READS_MAX_QUEUED = prefix + "reads.max.queued";
+    public static final String WRITES_THREADS = prefix + "writes.threads";
+    public static final int DEFAULT_WRITES_THREADS = 10;
+    public static final String WRITES_MAX_QUEUED = prefix + "writes.max.queued";
+    public static final int DEFAULT_MAX_QUEUED = 1000;
+    public static final String RETRY_AFTER_SECONDS = prefix + "retry.after.seconds";
+    public static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
+  }
+
+  /**
+   * Config settings for limiting the rate of requests to the external api, for each class of requests. Rates are in
+   * requests per second, where 0 means there is no limit.
+   */
+  public static final class RateLimit {
+    private static final String prefix = "server.ratelimit.";
+    public static final String READS_TENANT_RATE = prefix + "reads.tenant.rate";
+    public static final float DEFAULT_READS_TENANT_RATE = 200;
+    public static final String READS_USER_RATE = prefix + "reads.user.rate";
+    public static final float DEFAULT_READS_USER_RATE = 50;
+    public static final String WRITES_TENANT_RATE = prefix + "writes.tenant.rate";
+    public static final float DEFAULT_WRITES_TENANT_RATE = 50;
+    public static final String WRITES_USER_RATE = prefix + "writes.user.rate";
+    public static final float DEFAULT_WRITES_USER_RATE = 20;
+    public static final String BURST_SECONDS = prefix + "burst.seconds";
+    public static final float DEFAULT_BURST_SECONDS = 10;
+    public static final String COORDINATION_ENABLED = prefix + "coordination.enabled";
+    public static final boolean DEFAULT_COORDINATION_ENABLED = false;
+    public static final String MAX_BUCKETS = prefix + "max.buckets";
+    public static final int DEFAULT_MAX_BUCKETS = 100000;
+    public static final String SERVERS_PATH = "/ratelimit-servers";
+  }
+
+  /**
+   * Config settings for caching serialized responses of entity and plugin endpoints.
+   */
+  public static final class ResponseCache {
+    private static final String prefix = "server.response.cache.";
+    public static final String MAX_BYTES = prefix + "max.bytes";
+    public static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+  }
+
   /**
    * Queue related constants.
    */
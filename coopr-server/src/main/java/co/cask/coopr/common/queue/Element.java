@@ -25,6 +25,7 @@ import java.util.UUID;
 public class Element {
   private String id;
   private String value;
+  private long queueTime;
 
   /**
    * Queue element with the given id and value.
@@ -33,8 +34,20 @@ public class Element {
    * @param value Value of the element.
    */
   public Element(String id, String value) {
+    this(id, value, 0);
+  }
+
+  /**
+   * Queue element with the given id and value, that was added to a queue at the given time.
+   *
+   * @param id Id of the element.
+   * @param value Value of the element.
+   * @param queueTime Timestamp in milliseconds of when the element was added to a queue.
+   */
+  public Element(String id, String value, long queueTime) {
     this.id = id;
     this.value = value;
+    this.queueTime = queueTime;
   }
 
   /**
@@ -64,6 +77,15 @@ public class Element {
     return value;
   }
 
+  /**
+   * Timestamp in milliseconds of when the element was added to a queue.
+   *
+   * @return Timestamp in milliseconds of when the element was added to a queue, or 0 if it is not known.
+   */
+  public long getQueueTime() {
+    return queueTime;
+  }
+
   @Override
   public String toString() {
     JsonObject object = new JsonObject();
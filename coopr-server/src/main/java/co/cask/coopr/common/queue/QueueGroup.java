@@ -16,10 +16,12 @@
 
 package co.cask.coopr.common.queue;
 
+import com.google.common.base.Predicate;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.Service;
 
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -51,6 +53,31 @@ public interface QueueGroup extends Service {
    */
   Iterator<GroupElement> takeIterator(String consumerId);
 
+  /**
+   * Get an iterator that will take elements from each queue in the group whose name is accepted by the given filter,
+   * in a round robin fashion until it reaches a state where there are no more elements to take from any of those
+   * queues.
+   *
+   * @param consumerId Id of the consumer taking the element.
+   * @param queueFilter Filter on queue names. Elements are only taken from queues whose name the filter accepts.
+   * @return Iterator that will take elements from each accepted queue in the group in a round robin fashion until it
+   *         reaches a state where there are no more elements to take from any accepted queue.
+   */
+  Iterator<GroupElement> takeIterator(String consumerId, Predicate<String> queueFilter);
+
+  /**
+   * Get an iterator that will take elements from queues in the group whose name is accepted by the given filter,
+   * sharing takes across queues according to the given shares, until it reaches a state where there are no more
+   * elements that can be taken from any of those queues.
+   *
+   * @param consumerId Id of the consumer taking the element.
+   * @param queueFilter Filter on queue names. Elements are only taken from queues whose name the filter accepts.
+   * @param queueShares Weights and in progress limits of the queues in the group.
+   * @return Iterator that will take elements from accepted queues in the group according to their shares until it
+   *         reaches a state where there are no more elements that can be taken from any accepted queue.
+   */
+  Iterator<GroupElement> takeIterator(String consumerId, Predicate<String> queueFilter, QueueShares queueShares);
+
   /**
    * Take an element from a specific queue in the group, or null if there are no elements to take.
    *
@@ -128,4 +155,12 @@ public interface QueueGroup extends Service {
    * @return Iterator over all queued elements in the queue.
    */
   Iterator<QueuedElement> getQueued(String queueName);
+
+  /**
+   * Get scheduling metrics for elements taken through group iterators on this instance of the group, for all queues
+   * an element has been taken from.
+   *
+   * @return Map of queue name to scheduling metrics for the queue.
+   */
+  Map<String, QueueSchedulingMetrics> getSchedulingMetrics();
 }
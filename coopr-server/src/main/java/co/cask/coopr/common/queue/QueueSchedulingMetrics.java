@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.common.queue;
+
+import com.google.common.base.Objects;
+
+/**
+ * A snapshot of scheduling metrics for a queue in a {@link QueueGroup}, where scheduling latency is the time between
+ * an element being added to the queue and it being taken from the queue by a group iterator.
+ */
+public class QueueSchedulingMetrics {
+  private final long taken;
+  private final long avgLatencyMs;
+  private final long maxLatencyMs;
+
+  public QueueSchedulingMetrics(long taken, long avgLatencyMs, long maxLatencyMs) {
+    this.taken = taken;
+    this.avgLatencyMs = avgLatencyMs;
+    this.maxLatencyMs = maxLatencyMs;
+  }
+
+  public long getTaken() {
+    return taken;
+  }
+
+  public long getAvgLatencyMs() {
+    return avgLatencyMs;
+  }
+
+  public long getMaxLatencyMs() {
+    return maxLatencyMs;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    QueueSchedulingMetrics that = (QueueSchedulingMetrics) o;
+
+    return taken == that.taken && avgLatencyMs == that.avgLatencyMs && maxLatencyMs == that.maxLatencyMs;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(taken, avgLatencyMs, maxLatencyMs);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("taken", taken)
+      .add("avgLatencyMs", avgLatencyMs)
+      .add("maxLatencyMs", maxLatencyMs)
+      .toString();
+  }
+}
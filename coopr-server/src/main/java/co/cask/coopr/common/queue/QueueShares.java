@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.common.queue;
+
+/**
+ * Shares of the queues in a {@link QueueGroup}, used to decide how elements are taken across queues in the group.
+ * When multiple queues have elements, each queue gets to take a number of elements proportional to its weight.
+ */
+public interface QueueShares {
+
+  /**
+   * Shares that give each queue the same weight and do not limit the number of elements in progress.
+   */
+  QueueShares EQUAL = new QueueShares() {
+    @Override
+    public int getWeight(String queueName) {
+      return 1;
+    }
+
+    @Override
+    public int getMaxInFlight(String queueName) {
+      return Integer.MAX_VALUE;
+    }
+  };
+
+  /**
+   * Get the weight of the given queue relative to the other queues in the group.
+   *
+   * @param queueName Name of the queue to get the weight for.
+   * @return Positive weight of the queue.
+   */
+  int getWeight(String queueName);
+
+  /**
+   * Get the max number of elements from the given queue that can be in progress at the same time. No elements are
+   * taken from the queue while it has this many elements in progress.
+   *
+   * @param queueName Name of the queue to get the limit for.
+   * @return Max number of elements of the queue that can be in progress, or {@link Integer#MAX_VALUE} for no limit.
+   */
+  int getMaxInFlight(String queueName);
+}
@@ -46,7 +46,8 @@ public class ElementsTrackingQueue implements TrackingQueue {
   public ListenableFuture<String> add(Element element) {
     Preconditions.checkArgument(element != null, "element to add must not be null");
     SettableFuture<String> result = addConsumingResultToWaitFor(element.getId());
-    if (!elementsTracking.addToQueue(element)) {
+    Element queuedElement = new Element(element.getId(), element.getValue(), System.currentTimeMillis());
+    if (!elementsTracking.addToQueue(queuedElement)) {
       result.setException(new RuntimeException("failed to add element to a queue " + element.toString()));
       stopWaitingForConsumingResult(element.getId());
     }
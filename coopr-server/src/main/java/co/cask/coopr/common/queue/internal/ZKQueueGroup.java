@@ -19,14 +19,23 @@ package co.cask.coopr.common.queue.internal;
 import co.cask.coopr.common.queue.Element;
 import co.cask.coopr.common.queue.GroupElement;
 import co.cask.coopr.common.queue.QueueGroup;
+import co.cask.coopr.common.queue.QueueSchedulingMetrics;
+import co.cask.coopr.common.queue.QueueShares;
 import co.cask.coopr.common.queue.QueueType;
 import co.cask.coopr.common.queue.QueuedElement;
 import co.cask.coopr.common.queue.TrackingQueue;
 import co.cask.coopr.common.zookeeper.ZKClientExt;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.common.util.concurrent.Futures;
@@ -36,20 +45,43 @@ import org.apache.twill.zookeeper.ZKClient;
 import org.apache.twill.zookeeper.ZKOperations;
 import org.apache.zookeeper.KeeperException;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implementation of a {@link QueueGroup} that uses queues built on zookeeper. Whenever a queue name is referenced in a
  * method, the queue is cached and the physical zookeeper queue is created if it does not already exist. Watches
  * zookeeper to make sure queues added or deleted by another instance of the group are reflected in this group.
+ *
+ * Group iterators take elements across queues using deficit round robin. Each time a queue is visited, its deficit
+ * grows by its weight, and elements are taken from it until the deficit is used up or the queue has nothing to take,
+ * at which point the next queue is visited. Deficits and the position in the round are kept across iterators, so
+ * that weights are honored over time and not just within a single scheduler run. The round position is only updated
+ * under the group lock, while takes from zookeeper happen outside of it, so concurrent iterators do not wait on each
+ * other's zookeeper operations.
+ *
+ * The number of elements being consumed from a queue, which is needed to enforce in progress limits, is counted from
+ * zookeeper at most once every few seconds. In between, it is kept up to date with the takes and finishes made through
+ * this group. Takes and finishes made by other servers are picked up on the next count.
  */
 public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
+  private static final long IN_FLIGHT_RECOUNT_SECONDS = 5;
   private final ZKClient zkClient;
   private final QueueType queueType;
   private final LoadingCache<String, TrackingQueue> queueMap;
+  // deficit round robin state, guarded by this. Deficits are also cleared from the zookeeper watch, which should not
+  // wait on takes, so they are kept in a concurrent map instead.
+  private final Map<String, Integer> deficits;
+  private final Map<String, SchedulingLatency> latencies;
+  private final LoadingCache<String, AtomicInteger> inFlightCounts;
+  private String nextQueue;
+  private boolean nextQueueCharged;
 
   /**
    * Create a zookeeper queue group of the given type, using the given zookeeper client. Physical queues in the group
@@ -69,6 +101,16 @@ public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
           return new LazyZKTrackingQueue(zkClient, getZKPathForQueue(queueName));
         }
       });
+    this.deficits = Maps.newConcurrentMap();
+    this.latencies = Maps.newHashMap();
+    this.inFlightCounts = CacheBuilder.newBuilder()
+      .expireAfterWrite(IN_FLIGHT_RECOUNT_SECONDS, TimeUnit.SECONDS)
+      .build(new CacheLoader<String, AtomicInteger>() {
+        @Override
+        public AtomicInteger load(String queueName) throws Exception {
+          return new AtomicInteger(Iterators.size(queueMap.getUnchecked(queueName).getBeingConsumed()));
+        }
+      });
   }
 
   @Override
@@ -85,7 +127,37 @@ public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
    */
   @Override
   public Iterator<GroupElement> takeIterator(String consumerId) {
-    return new GroupElementIterator(consumerId);
+    return new GroupElementIterator(consumerId, Predicates.<String>alwaysTrue(), QueueShares.EQUAL);
+  }
+
+  /**
+   * Returns a live iterator that cycles through queues in the group that are accepted by the given filter in a
+   * round-robin fashion, returning an element from the first queue that has one available. If all accepted queues
+   * are cycled through once without an element, null is returned.
+   *
+   * @param consumerId Id of the consumer taking the element.
+   * @param queueFilter Filter on queue names.
+   * @return An element from an accepted queue in the group, or null if none exists.
+   */
+  @Override
+  public Iterator<GroupElement> takeIterator(String consumerId, Predicate<String> queueFilter) {
+    return new GroupElementIterator(consumerId, queueFilter, QueueShares.EQUAL);
+  }
+
+  /**
+   * Returns a live iterator that cycles through queues in the group that are accepted by the given filter using
+   * deficit round robin with the weights from the given shares, skipping queues that have reached their in progress
+   * limit. If all accepted queues are cycled through once without an element, null is returned.
+   *
+   * @param consumerId Id of the consumer taking the element.
+   * @param queueFilter Filter on queue names.
+   * @param queueShares Weights and in progress limits of queues.
+   * @return An element from an accepted queue in the group, or null if none can be taken.
+   */
+  @Override
+  public Iterator<GroupElement> takeIterator(String consumerId, Predicate<String> queueFilter,
+                                             QueueShares queueShares) {
+    return new GroupElementIterator(consumerId, queueFilter, queueShares);
   }
 
   @Override
@@ -96,12 +168,23 @@ public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
   @Override
   public TrackingQueue.PossessionState recordProgress(String consumerId, String queueName, String elementId,
                                                       TrackingQueue.ConsumingStatus status, String result) {
-    return queueMap.getUnchecked(queueName).recordProgress(consumerId, elementId, status, result);
+    TrackingQueue.PossessionState state =
+      queueMap.getUnchecked(queueName).recordProgress(consumerId, elementId, status, result);
+    if (state == TrackingQueue.PossessionState.POSSESSES && status != TrackingQueue.ConsumingStatus.IN_PROGRESS) {
+      AtomicInteger inFlight = inFlightCounts.getIfPresent(queueName);
+      if (inFlight != null) {
+        inFlight.decrementAndGet();
+      }
+    }
+    return state;
   }
 
   @Override
   public boolean remove(String queueName, String elementId) {
-    return queueMap.getUnchecked(queueName).remove(elementId);
+    boolean removed = queueMap.getUnchecked(queueName).remove(elementId);
+    // the removed element may have been in progress
+    inFlightCounts.invalidate(queueName);
+    return removed;
   }
 
   @Override
@@ -110,12 +193,15 @@ public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
     for (TrackingQueue queue : queueMap.asMap().values()) {
       allRemoved = allRemoved && queue.removeAll();
     }
+    inFlightCounts.invalidateAll();
     return allRemoved;
   }
 
   @Override
   public boolean removeAll(String queueName) {
-    return queueMap.getUnchecked(queueName).removeAll();
+    boolean removed = queueMap.getUnchecked(queueName).removeAll();
+    inFlightCounts.invalidate(queueName);
+    return removed;
   }
 
   @Override
@@ -138,6 +224,17 @@ public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
     return queueMap.getUnchecked(queueName).getQueued();
   }
 
+  @Override
+  public synchronized Map<String, QueueSchedulingMetrics> getSchedulingMetrics() {
+    ImmutableMap.Builder<String, QueueSchedulingMetrics> builder = ImmutableMap.builder();
+    for (Map.Entry<String, SchedulingLatency> entry : latencies.entrySet()) {
+      SchedulingLatency latency = entry.getValue();
+      builder.put(entry.getKey(), new QueueSchedulingMetrics(latency.taken, latency.totalMs / latency.taken,
+                                                             latency.maxMs));
+    }
+    return builder.build();
+  }
+
   @Override
   protected void startUp() throws Exception {
     Futures.getUnchecked(ZKClientExt.ensureExists(zkClient, queueType.getPath()));
@@ -167,18 +264,122 @@ public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
     Set<String> toRemove = Sets.difference(existingQueues, queueNames);
     for (String queueName : toRemove) {
       queueMap.invalidate(queueName);
+      deficits.remove(queueName);
+      inFlightCounts.invalidate(queueName);
+    }
+  }
+
+  /**
+   * Take the next element according to deficit round robin, or return null if a full round over the accepted queues
+   * did not find an element that can be taken.
+   */
+  private GroupElement takeNext(String consumerId, Predicate<String> queueFilter, QueueShares queueShares) {
+    List<String> queueNames = Lists.newArrayList(Iterables.filter(queueMap.asMap().keySet(), queueFilter));
+    if (queueNames.isEmpty()) {
+      return null;
+    }
+    // sort so that the position in the round is stable as queues come and go
+    Collections.sort(queueNames);
+    int numQueues = queueNames.size();
+    int start = 0;
+    boolean startCharged = false;
+    synchronized (this) {
+      if (nextQueue != null) {
+        int pos = Collections.binarySearch(queueNames, nextQueue);
+        start = pos >= 0 ? pos : -(pos + 1);
+        startCharged = pos >= 0 && nextQueueCharged;
+      }
+    }
+
+    // if the starting queue already got its quantum this round, it is visited once more at the end of the round.
+    int numVisits = startCharged ? numQueues + 1 : numQueues;
+    for (int i = 0; i < numVisits; i++) {
+      String queueName = queueNames.get((start + i) % numQueues);
+      Element element = takeFrom(queueName, consumerId, queueShares);
+      if (element != null) {
+        synchronized (this) {
+          // queues visited before this one had nothing to take, so they are not backlogged and do not get to save up
+          // their deficit.
+          for (int j = 0; j < i; j++) {
+            deficits.remove(queueNames.get((start + j) % numQueues));
+          }
+          Integer deficit = deficits.get(queueName);
+          int newDeficit = deficit == null ? 0 : deficit;
+          if (i > 0 || !startCharged) {
+            newDeficit += Math.max(1, queueShares.getWeight(queueName));
+          }
+          newDeficit--;
+          if (newDeficit > 0) {
+            deficits.put(queueName, newDeficit);
+            nextQueue = queueName;
+            nextQueueCharged = true;
+          } else {
+            deficits.remove(queueName);
+            nextQueue = queueNames.get((start + i + 1) % numQueues);
+            nextQueueCharged = false;
+          }
+          recordLatency(queueName, element);
+        }
+        return new GroupElement(queueName, element);
+      }
+    }
+    synchronized (this) {
+      for (String queueName : queueNames) {
+        deficits.remove(queueName);
+      }
+      nextQueueCharged = false;
+    }
+    return null;
+  }
+
+  private Element takeFrom(String queueName, String consumerId, QueueShares queueShares) {
+    TrackingQueue queue = queueMap.getUnchecked(queueName);
+    int maxInFlight = queueShares.getMaxInFlight(queueName);
+    if (maxInFlight == Integer.MAX_VALUE) {
+      Element element = queue.take(consumerId);
+      AtomicInteger inFlight = element == null ? null : inFlightCounts.getIfPresent(queueName);
+      if (inFlight != null) {
+        inFlight.incrementAndGet();
+      }
+      return element;
+    }
+
+    // reserve a slot before taking, so that concurrent takes cannot go over the limit
+    AtomicInteger inFlight = inFlightCounts.getUnchecked(queueName);
+    if (inFlight.incrementAndGet() > maxInFlight) {
+      inFlight.decrementAndGet();
+      return null;
+    }
+    Element element = queue.take(consumerId);
+    if (element == null) {
+      inFlight.decrementAndGet();
+    }
+    return element;
+  }
+
+  // must be called while holding the group lock
+  private void recordLatency(String queueName, Element element) {
+    if (element.getQueueTime() > 0) {
+      SchedulingLatency latency = latencies.get(queueName);
+      if (latency == null) {
+        latency = new SchedulingLatency();
+        latencies.put(queueName, latency);
+      }
+      latency.record(Math.max(0, System.currentTimeMillis() - element.getQueueTime()));
     }
   }
 
   private class GroupElementIterator implements Iterator<GroupElement> {
     private final String consumerId;
+    private final Predicate<String> queueFilter;
+    private final QueueShares queueShares;
     private GroupElement nextElement;
     private boolean foundElement = false;
-    private Iterator<Map.Entry<String, TrackingQueue>> currentBatch;
 
-    private GroupElementIterator(String consumerId) {
+    private GroupElementIterator(String consumerId, Predicate<String> queueFilter, QueueShares queueShares) {
       this.consumerId = consumerId;
-      this.currentBatch = queueMap.asMap().entrySet().iterator();
+      this.queueFilter = queueFilter;
+      this.queueShares = queueShares;
     }
 
     @Override
@@ -186,30 +387,11 @@ public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
       if (foundElement) {
         return true;
       }
-      nextElement = getNextElement();
-      // if the current batch of queues was exhausted without finding an element, go through one more time to check
-      // queues in the group that we haven't checked yet.
-      if (nextElement == null) {
-        this.currentBatch = queueMap.asMap().entrySet().iterator();
-        nextElement = getNextElement();
-      }
+      nextElement = takeNext(consumerId, queueFilter, queueShares);
       foundElement = nextElement != null;
       return foundElement;
     }
 
-    private GroupElement getNextElement() {
-      while (currentBatch.hasNext()) {
-        Map.Entry<String, TrackingQueue> currentQueueEntry = currentBatch.next();
-        TrackingQueue queue = currentQueueEntry.getValue();
-        String queueName = currentQueueEntry.getKey();
-        Element element = queue.take(consumerId);
-        if (element != null) {
-          return new GroupElement(queueName, element);
-        }
-      }
-      return null;
-    }
-
     @Override
     public GroupElement next() {
       if (hasNext()) {
@@ -225,6 +407,21 @@ public class ZKQueueGroup extends AbstractIdleService implements QueueGroup {
     }
   }
 
+  /**
+   * Running scheduling latency of a queue, guarded by the group.
+   */
+  private static final class SchedulingLatency {
+    private long taken;
+    private long totalMs;
+    private long maxMs;
+
+    private void record(long latencyMs) {
+      taken++;
+      totalMs += latencyMs;
+      maxMs = Math.max(maxMs, latencyMs);
+    }
+  }
+
   private String getZKPathForQueue(String queueName) {
     return queueType.getPath() + "/" + queueName;
   }
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.common.utils;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent hash ring that maps string keys onto a set of members. Each member is placed on the ring
+ * multiple times, once per virtual node, to even out the distribution of keys. Adding or removing a member only moves
+ * the keys that hash to the ring segments owned by that member.
+ */
+public final class ConsistentHash {
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_32();
+  private final TreeMap<Integer, String> ring;
+  private final Set<String> members;
+
+  /**
+   * Create a ring for the given members.
+   *
+   * @param members Members to place on the ring.
+   * @param virtualNodes Number of times each member is placed on the ring.
+   */
+  public ConsistentHash(Collection<String> members, int virtualNodes) {
+    Preconditions.checkArgument(virtualNodes > 0, "number of virtual nodes must be positive.");
+    this.members = ImmutableSet.copyOf(members);
+    this.ring = new TreeMap<Integer, String>();
+    for (String member : this.members) {
+      for (int i = 0; i < virtualNodes; i++) {
+        int hash = hash(member + "#" + i);
+        // on collision, keep the smaller member so that every server builds the same ring.
+        String existing = ring.get(hash);
+        if (existing == null || member.compareTo(existing) < 0) {
+          ring.put(hash, member);
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the member that owns the given key.
+   *
+   * @param key Key to look up.
+   * @return Member that owns the key, or null if there are no members.
+   */
+  public String get(String key) {
+    if (ring.isEmpty()) {
+      return null;
+    }
+    Map.Entry<Integer, String> entry = ring.ceilingEntry(hash(key));
+    return entry == null ? ring.firstEntry().getValue() : entry.getValue();
+  }
+
+  /**
+   * Get all members on the ring.
+   *
+   * @return Immutable set of all members on the ring.
+   */
+  public Set<String> getMembers() {
+    return members;
+  }
+
+  private static int hash(String key) {
+    return HASH_FUNCTION.hashString(key, Charsets.UTF_8).asInt();
+  }
+}
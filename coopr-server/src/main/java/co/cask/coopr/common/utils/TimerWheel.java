@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.common.utils;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hashed timer wheel that tracks a deadline per key. Time is divided into ticks, and each key is placed in the bucket
+ * for the tick of its deadline, wrapping around the wheel for deadlines more than a full rotation away. Scheduling and
+ * cancelling a key are constant time, and advancing the wheel only looks at the buckets for the ticks that passed.
+ * Deadlines are rounded up to the next tick, so keys never expire before their deadline, and expire at most one tick
+ * after it if the wheel is advanced every tick.
+ *
+ * @param <K> Type of key to track deadlines for.
+ */
+public final class TimerWheel<K> {
+  private final long tickMillis;
+  private final List<Set<K>> buckets;
+  private final Map<K, Long> ticks;
+  private long currentTick;
+
+  /**
+   * Create a timer wheel.
+   *
+   * @param tickMillis Length of a tick in milliseconds.
+   * @param numBuckets Number of buckets in the wheel.
+   * @param startTime Time in milliseconds to start the wheel at.
+   */
+  public TimerWheel(long tickMillis, int numBuckets, long startTime) {
+    Preconditions.checkArgument(tickMillis > 0, "tick length must be positive.");
+    Preconditions.checkArgument(numBuckets > 0, "number of buckets must be positive.");
+    this.tickMillis = tickMillis;
+    this.buckets = Lists.newArrayListWithCapacity(numBuckets);
+    for (int i = 0; i < numBuckets; i++) {
+      buckets.add(Sets.<K>newLinkedHashSet());
+    }
+    this.ticks = Maps.newHashMap();
+    this.currentTick = startTime / tickMillis;
+  }
+
+  /**
+   * Schedule the given key to expire at the given time, replacing any deadline it already had. Deadlines in the past
+   * expire on the next call to {@link #advance(long)}.
+   *
+   * @param key Key to schedule.
+   * @param deadline Time in milliseconds at which the key expires.
+   */
+  public synchronized void schedule(K key, long deadline) {
+    cancel(key);
+    // round up so that keys never expire early, and never place keys in a tick that has already been processed.
+    long tick = Math.max(ceilDiv(deadline, tickMillis), currentTick + 1);
+    ticks.put(key, tick);
+    bucket(tick).add(key);
+  }
+
+  /**
+   * Cancel the deadline of the given key.
+   *
+   * @param key Key to cancel.
+   * @return True if the key had a deadline, false if not.
+   */
+  public synchronized boolean cancel(K key) {
+    Long tick = ticks.remove(key);
+    if (tick == null) {
+      return false;
+    }
+    bucket(tick).remove(key);
+    return true;
+  }
+
+  /**
+   * Advance the wheel to the given time, removing and returning all keys whose deadline has been reached.
+   *
+   * @param now Time in milliseconds to advance the wheel to.
+   * @return Keys that expired, in no particular order.
+   */
+  public synchronized List<K> advance(long now) {
+    long nowTick = now / tickMillis;
+    List<K> expired = Lists.newArrayList();
+    if (nowTick <= currentTick) {
+      return expired;
+    }
+    // if more than a full rotation passed, every bucket needs to be looked at exactly once.
+    long numTicks = Math.min(nowTick - currentTick, buckets.size());
+    for (long tick = nowTick - numTicks + 1; tick <= nowTick; tick++) {
+      Iterator<K> iter = bucket(tick).iterator();
+      while (iter.hasNext()) {
+        K key = iter.next();
+        if (ticks.get(key) <= nowTick) {
+          iter.remove();
+          ticks.remove(key);
+          expired.add(key);
+        }
+      }
+    }
+    currentTick = nowTick;
+    return expired;
+  }
+
+  /**
+   * Get the number of keys with a deadline.
+   *
+   * @return Number of keys with a deadline.
+   */
+  public synchronized int size() {
+    return ticks.size();
+  }
+
+  /**
+   * Cancel the deadlines of all keys.
+   */
+  public synchronized void clear() {
+    ticks.clear();
+    for (Set<K> bucket : buckets) {
+      bucket.clear();
+    }
+  }
+
+  private Set<K> bucket(long tick) {
+    return buckets.get((int) (tick % buckets.size()));
+  }
+
+  private static long ceilDiv(long x, long y) {
+    return x <= 0 ? x / y : (x - 1) / y + 1;
+  }
+}
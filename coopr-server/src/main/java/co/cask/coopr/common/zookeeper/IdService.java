@@ -20,23 +20,36 @@ import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.zookeeper.lib.ZKInterProcessReentrantLock;
 import co.cask.coopr.scheduler.task.JobId;
 import co.cask.coopr.scheduler.task.TaskId;
+import com.google.common.collect.Maps;
 import com.google.common.primitives.Longs;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
 import org.apache.twill.zookeeper.NodeData;
 import org.apache.twill.zookeeper.ZKClient;
 import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.data.Stat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
 
 /**
- * Uses Zookeeper for creating new unique ids.
+ * Uses Zookeeper for creating new unique ids. Ids of each type are leased from zookeeper in blocks, by moving the
+ * counter for that type ahead by the size of a block with a versioned compare and set, and then handed out from
+ * memory. Within a block, ids still start at the counter value and go up by the configured increment, so servers
+ * that use different start numbers with the same increment never generate the same id.
  */
 public final class IdService extends AbstractIdleService {
+  private static final Logger LOG = LoggerFactory.getLogger(IdService.class);
   private static final String IDS_BASEPATH = "/ids";
 
   private final long startId;
   private final long incrementBy;
+  private final long blockSize;
+  private final Map<Type, IdBlock> idBlocks;
   private ThreadLocal<ZKInterProcessReentrantLock> idLock;
 
   private final ZKClient zkClient;
@@ -61,13 +74,30 @@ public final class IdService extends AbstractIdleService {
     this.zkClient = zkClient;
     this.startId = conf.getInt(Constants.ID_START_NUM);
     this.incrementBy = conf.getInt(Constants.ID_INCREMENT_BY);
+    this.blockSize = conf.getInt(Constants.ID_BLOCK_SIZE, Constants.DEFAULT_ID_BLOCK_SIZE);
+    this.idBlocks = createIdBlocks();
   }
 
   // for unit testing
   IdService(final ZKClient zkClient, int startId, int incrementBy) {
+    this(zkClient, startId, incrementBy, Constants.DEFAULT_ID_BLOCK_SIZE);
+  }
+
+  // for unit testing
+  IdService(final ZKClient zkClient, int startId, int incrementBy, int blockSize) {
     this.zkClient = zkClient;
     this.startId = startId;
     this.incrementBy = incrementBy;
+    this.blockSize = blockSize;
+    this.idBlocks = createIdBlocks();
+  }
+
+  private static Map<Type, IdBlock> createIdBlocks() {
+    Map<Type, IdBlock> blocks = Maps.newEnumMap(Type.class);
+    for (Type type : Type.values()) {
+      blocks.put(type, new IdBlock());
+    }
+    return blocks;
   }
 
   @Override
@@ -122,17 +152,37 @@ public final class IdService extends AbstractIdleService {
     return new TaskId(jobId, generateId(Type.TASK));
   }
 
-  // This generally should not be a noticeable amount of time compared to the time it takes to perform tasks
-  // TODO: try optimistic locking before actual locking to improve performance.
   private long generateId(Type type) {
-    idLock.get().acquire();
-    try {
+    IdBlock block = idBlocks.get(type);
+    synchronized (block) {
+      if (block.remaining == 0) {
+        leaseBlock(type, block);
+      }
+      long id = block.next;
+      block.next += incrementBy;
+      block.remaining--;
+      return id;
+    }
+  }
+
+  // Moves the counter ahead by a block of ids with a versioned set, so no lock is needed. If another server moved the
+  // counter in between, the set fails and is retried with the new counter value.
+  private void leaseBlock(Type type, IdBlock block) {
+    while (true) {
       NodeData nodeData = Futures.getUnchecked(zkClient.getData(type.path));
       long counterVal = Longs.fromByteArray(nodeData.getData());
-      Futures.getUnchecked(zkClient.setData(type.path, Longs.toByteArray(counterVal + incrementBy)));
-      return counterVal;
-    } finally {
-      idLock.get().release();
+      byte[] newCounterVal = Longs.toByteArray(counterVal + blockSize * incrementBy);
+      try {
+        Futures.getUnchecked(zkClient.setData(type.path, newCounterVal, nodeData.getStat().getVersion()));
+        block.next = counterVal;
+        block.remaining = blockSize;
+        return;
+      } catch (UncheckedExecutionException e) {
+        if (!(e.getCause() instanceof KeeperException.BadVersionException)) {
+          throw e;
+        }
+        LOG.debug("Counter for {} ids changed while leasing a block, retrying.", type);
+      }
     }
   }
 
@@ -142,4 +192,12 @@ public final class IdService extends AbstractIdleService {
       Futures.getUnchecked(zkClient.create(type.path, Longs.toByteArray(startId), CreateMode.PERSISTENT, true));
     }
   }
+
+  /**
+   * Block of ids leased from zookeeper, starting at next and going up by the increment.
+   */
+  private static final class IdBlock {
+    private long next;
+    private long remaining;
+  }
 }
@@ -2,6 +2,7 @@ package co.cask.coopr.common.zookeeper.guice;
 
 import co.cask.coopr.common.zookeeper.IdService;
 import co.cask.coopr.common.zookeeper.LockService;
+import co.cask.coopr.store.TenantGenerations;
 import com.google.inject.AbstractModule;
 import com.google.inject.Scopes;
 import org.apache.twill.zookeeper.ZKClient;
@@ -22,5 +23,6 @@ public class ZookeeperModule extends AbstractModule {
     bind(ZKClient.class).toInstance(zkClient);
     bind(IdService.class).in(Scopes.SINGLETON);
     bind(LockService.class).in(Scopes.SINGLETON);
+    bind(TenantGenerations.class).in(Scopes.SINGLETON);
   }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.http;
+
+import com.google.common.base.Objects;
+
+import javax.annotation.Nullable;
+
+/**
+ * A single range of bytes requested through the Range header of a request, such as "bytes=0-499", "bytes=500-" or
+ * "bytes=-500".
+ */
+public final class ByteRange {
+  private static final String BYTES_UNIT = "bytes=";
+
+  private final long start;
+  private final long end;
+  private final long totalLength;
+
+  private ByteRange(long start, long end, long totalLength) {
+    this.start = start;
+    this.end = end;
+    this.totalLength = totalLength;
+  }
+
+  /**
+   * Parse the value of a Range header for content of the given length. Headers that are missing, cannot be parsed, or
+   * ask for several ranges yield null, meaning the whole content should be sent.
+   *
+   * @param header Value of the Range header, or null if there was none.
+   * @param totalLength Length of the content the range is for.
+   * @return Range of bytes to send, or null if the whole content should be sent.
+   * @throws IllegalArgumentException if the range starts beyond the end of the content.
+   */
+  @Nullable
+  public static ByteRange parse(@Nullable String header, long totalLength) {
+    if (header == null || !header.startsWith(BYTES_UNIT) || header.indexOf(',') >= 0) {
+      return null;
+    }
+    String spec = header.substring(BYTES_UNIT.length()).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+    try {
+      long start;
+      long end;
+      if (dash == 0) {
+        // suffix range with the number of bytes at the end of the content
+        long suffixLength = Long.parseLong(spec.substring(1));
+        if (suffixLength <= 0 || totalLength == 0) {
+          throw new IllegalArgumentException("Range " + header + " is not satisfiable.");
+        }
+        start = Math.max(0, totalLength - suffixLength);
+        end = totalLength - 1;
+      } else {
+        start = Long.parseLong(spec.substring(0, dash));
+        end = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+        if (start < 0 || end < start) {
+          return null;
+        }
+        if (start >= totalLength) {
+          throw new IllegalArgumentException("Range " + header + " is not satisfiable.");
+        }
+        end = Math.min(end, totalLength - 1);
+      }
+      return new ByteRange(start, end, totalLength);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  /**
+   * Get the position of the last byte in the range, inclusive.
+   *
+   * @return Position of the last byte in the range.
+   */
+  public long getEnd() {
+    return end;
+  }
+
+  public long getLength() {
+    return end - start + 1;
+  }
+
+  /**
+   * Get the value of the Content-Range header for a response with this range.
+   *
+   * @return Value of the Content-Range header for a response with this range.
+   */
+  public String getContentRange() {
+    return "bytes " + start + "-" + end + "/" + totalLength;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    ByteRange that = (ByteRange) o;
+
+    return start == that.start && end == that.end && totalLength == that.totalLength;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(start, end, totalLength);
+  }
+
+  @Override
+  public String toString() {
+    return getContentRange();
+  }
+}
@@ -21,11 +21,14 @@ import co.cask.cdap.security.auth.AccessTokenTransformer;
 import co.cask.cdap.security.auth.TokenValidator;
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.management.HttpStats;
 import co.cask.http.HttpHandler;
 import co.cask.http.NettyHttpService;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import org.apache.twill.discovery.DiscoveryServiceClient;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
 
 import java.util.Set;
 
@@ -39,9 +42,13 @@ public class ExternalHandlerServer extends HandlerServer {
                                 final CConfiguration cConf,
                                 final TokenValidator tokenValidator,
                                 final AccessTokenTransformer accessTokenTransformer,
-                                final DiscoveryServiceClient discoveryServiceClient) {
+                                final DiscoveryServiceClient discoveryServiceClient,
+                                HandlerExecutors handlerExecutors,
+                                HttpStats httpStats,
+                                RequestRateLimiter rateLimiter) {
     super(handlers, conf, Constants.EXTERNAL_PORT,
-          cConf, tokenValidator, accessTokenTransformer, discoveryServiceClient);
+          cConf, tokenValidator, accessTokenTransformer, discoveryServiceClient, handlerExecutors, httpStats,
+          rateLimiter);
   }
 
   @Override
@@ -55,4 +62,17 @@ public class ExternalHandlerServer extends HandlerServer {
                                      Constants.EXTERNAL_SSL_TRUST_KEYPASSWORD));
     }
   }
+
+  @Override
+  CompressionConfig getCompressionConfig(Configuration conf) {
+    return getCompressionConfig(conf, Constants.EXTERNAL_COMPRESSION_LEVEL, Constants.EXTERNAL_COMPRESSION_MIN_BYTES,
+                                Constants.EXTERNAL_DECOMPRESSION_ENABLED);
+  }
+
+  @Override
+  HandlerWorkload getWorkload(HttpRequest request) {
+    HttpMethod method = request.getMethod();
+    return HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method) ? HandlerWorkload.READS
+      : HandlerWorkload.WRITES;
+  }
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.cask.coopr.http;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelUpstreamHandler;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.execution.ChannelUpstreamEventRunnable;
+import org.jboss.netty.handler.execution.OrderedMemoryAwareThreadPoolExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executors that run http handlers, one for each {@link HandlerWorkload}. Each executor has its own threads and its own
+ * limit on the number of requests waiting for a thread, so that a backlog of slow requests in one workload does not
+ * delay or starve requests in the others. Requests that would exceed the limit of their workload are rejected with a
+ * 503. Events of a channel are run in order within a workload. Executors are shared by all servers in the process,
+ * each of which must {@link #acquire()} them when it starts and {@link #release()} them when it stops. Threads are
+ * stopped once the last server has released the executors, and started again when a server next acquires them.
+ */
+public class HandlerExecutors {
+  private static final Logger LOG = LoggerFactory.getLogger(HandlerExecutors.class);
+  private static final long THREAD_KEEP_ALIVE_SECONDS = 60;
+  private static final long TERMINATION_TIMEOUT_SECONDS = 5;
+
+  private final Configuration conf;
+  private final int retryAfterSeconds;
+  private volatile Map<HandlerWorkload, WorkloadExecutor> executors;
+  private int users;
+  private boolean stopped;
+
+  @Inject
+  private HandlerExecutors(Configuration conf) {
+    this.conf = conf;
+    this.executors = createExecutors();
+    this.retryAfterSeconds = conf.getInt(Constants.HandlerExecutors.RETRY_AFTER_SECONDS,
+                                         Constants.HandlerExecutors.DEFAULT_RETRY_AFTER_SECONDS);
+  }
+
+  /**
+   * Register a user of the executors, creating new executors if they were stopped by the last user releasing them.
+   */
+  public synchronized void acquire() {
+    if (stopped) {
+      executors = createExecutors();
+      stopped = false;
+    }
+    users++;
+  }
+
+  /**
+   * Unregister a user of the executors. Once there are no more users, the executors are stopped, interrupting any
+   * handlers that are still running, and waiting a short while for their threads to finish.
+   *
+   * @throws InterruptedException if interrupted while waiting for the threads to finish
+   */
+  public synchronized void release() throws InterruptedException {
+    Preconditions.checkState(users > 0, "Handler executors released more times than they were acquired.");
+    users--;
+    if (users > 0) {
+      return;
+    }
+    stopped = true;
+    for (WorkloadExecutor executor : executors.values()) {
+      executor.shutdownNow();
+    }
+    for (WorkloadExecutor executor : executors.values()) {
+      if (!executor.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOG.warn("Timed out waiting for {} handlers to finish.", executor.workload);
+      }
+    }
+  }
+
+  /**
+   * Create a channel handler that runs the rest of the pipeline on the executor of the workload of each request. A new
+   * handler must be created for each channel.
+   *
+   * @param classifier Function that determines the workload of a request
+   * @return Channel handler that runs the rest of the pipeline on the executors
+   */
+  public ChannelUpstreamHandler newExecutionHandler(Function<HttpRequest, HandlerWorkload> classifier) {
+    return new WorkloadExecutionHandler(classifier);
+  }
+
+  /**
+   * Get a snapshot of the metrics of each workload.
+   *
+   * @return Mapping of workload to its metrics
+   */
+  public Map<HandlerWorkload, HandlerWorkloadMetrics> getMetrics() {
+    Map<HandlerWorkload, HandlerWorkloadMetrics> metrics = Maps.newEnumMap(HandlerWorkload.class);
+    for (Map.Entry<HandlerWorkload, WorkloadExecutor> entry : executors.entrySet()) {
+      metrics.put(entry.getKey(), entry.getValue().getMetrics());
+    }
+    return metrics;
+  }
+
+  private Map<HandlerWorkload, WorkloadExecutor> createExecutors() {
+    Map<HandlerWorkload, WorkloadExecutor> workloadExecutors = Maps.newEnumMap(HandlerWorkload.class);
+    for (HandlerWorkload workload : HandlerWorkload.values()) {
+      int threads = conf.getInt(workload.getThreadsKey(), workload.getDefaultThreads());
+      int maxQueued = conf.getInt(workload.getMaxQueuedKey(), Constants.HandlerExecutors.DEFAULT_MAX_QUEUED);
+      workloadExecutors.put(workload, new WorkloadExecutor(workload, threads, maxQueued));
+    }
+    return workloadExecutors;
+  }
+
+  /**
+   * Runs upstream events on the executor of the workload of the request they belong to. Events that arrive before
+   * the first request of the channel are passed on directly, since there is nothing they need to be ordered with.
+   */
+  private final class WorkloadExecutionHandler implements ChannelUpstreamHandler {
+    private final Function<HttpRequest, HandlerWorkload> classifier;
+    private WorkloadExecutor executor;
+    private boolean rejected;
+
+    private WorkloadExecutionHandler(Function<HttpRequest, HandlerWorkload> classifier) {
+      this.classifier = classifier;
+    }
+
+    @Override
+    public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+      boolean isRequest = e instanceof MessageEvent && ((MessageEvent) e).getMessage() instanceof HttpRequest;
+      if (isRequest) {
+        executor = executors.get(classifier.apply((HttpRequest) ((MessageEvent) e).getMessage()));
+        rejected = !executor.tryQueue();
+        if (rejected) {
+          reject(ctx, executor.workload);
+          return;
+        }
+      } else if (rejected && e instanceof MessageEvent) {
+        // rest of the body of a rejected request
+        return;
+      }
+
+      if (executor == null) {
+        ctx.sendUpstream(e);
+      } else {
+        executor.execute(new WorkloadEventRunnable(ctx, e, executor, isRequest));
+      }
+    }
+
+    private void reject(ChannelHandlerContext ctx, HandlerWorkload workload) {
+      LOG.debug("Rejecting request, too many {} requests are waiting to be handled.", workload);
+      HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.SERVICE_UNAVAILABLE);
+      response.setHeader(HttpHeaders.Names.RETRY_AFTER, retryAfterSeconds);
+      response.setHeader(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.CLOSE);
+      response.setContent(ChannelBuffers.copiedBuffer("Server is too busy, please try again later.", Charsets.UTF_8));
+      HttpHeaders.setContentLength(response, response.getContent().readableBytes());
+      ctx.getChannel().write(response).addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+
+  /**
+   * Runs an upstream event, recording how long it waited and how long it ran if it is the start of a request.
+   */
+  private static final class WorkloadEventRunnable extends ChannelUpstreamEventRunnable {
+    private final WorkloadExecutor executor;
+    private final boolean isRequest;
+    private final long queuedNanos;
+
+    private WorkloadEventRunnable(ChannelHandlerContext ctx, ChannelEvent e, WorkloadExecutor executor,
+                                  boolean isRequest) {
+      super(ctx, e, executor);
+      this.executor = executor;
+      this.isRequest = isRequest;
+      this.queuedNanos = System.nanoTime();
+    }
+
+    @Override
+    protected void doRun() {
+      if (!isRequest) {
+        super.doRun();
+        return;
+      }
+      long startNanos = System.nanoTime();
+      executor.started();
+      try {
+        super.doRun();
+      } finally {
+        executor.finished(startNanos - queuedNanos, System.nanoTime() - startNanos);
+      }
+    }
+  }
+
+  /**
+   * Executor for a single workload, which keeps the events of a channel in order.
+   */
+  private static final class WorkloadExecutor extends OrderedMemoryAwareThreadPoolExecutor {
+    private final HandlerWorkload workload;
+    private final int threads;
+    private final int maxQueued;
+    private final AtomicInteger queued;
+    private final AtomicInteger inProgress;
+    private final AtomicLong handled;
+    private final AtomicLong rejected;
+    private final AtomicLong totalQueueNanos;
+    private final AtomicLong totalHandleNanos;
+
+    private WorkloadExecutor(HandlerWorkload workload, int threads, int maxQueued) {
+      super(threads, 0, 0, THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new ThreadFactoryBuilder()
+              .setDaemon(true)
+              .setNameFormat("handler-" + workload.name().toLowerCase() + "-%d")
+              .build());
+      this.workload = workload;
+      this.threads = threads;
+      this.maxQueued = maxQueued;
+      this.queued = new AtomicInteger();
+      this.inProgress = new AtomicInteger();
+      this.handled = new AtomicLong();
+      this.rejected = new AtomicLong();
+      this.totalQueueNanos = new AtomicLong();
+      this.totalHandleNanos = new AtomicLong();
+    }
+
+    // the limit is checked before queueing and not atomically with it, so it may be overshot by a few requests.
+    private boolean tryQueue() {
+      if (queued.get() >= maxQueued) {
+        rejected.incrementAndGet();
+        return false;
+      }
+      queued.incrementAndGet();
+      return true;
+    }
+
+    private void started() {
+      queued.decrementAndGet();
+      inProgress.incrementAndGet();
+    }
+
+    private void finished(long queueNanos, long handleNanos) {
+      totalQueueNanos.addAndGet(queueNanos);
+      totalHandleNanos.addAndGet(handleNanos);
+      handled.incrementAndGet();
+      inProgress.decrementAndGet();
+    }
+
+    private HandlerWorkloadMetrics getMetrics() {
+      long handledCount = handled.get();
+      double meanQueueMillis = 0;
+      double meanHandleMillis = 0;
+      if (handledCount > 0) {
+        meanQueueMillis = (double) TimeUnit.NANOSECONDS.toMicros(totalQueueNanos.get()) / handledCount / 1000;
+        meanHandleMillis = (double) TimeUnit.NANOSECONDS.toMicros(totalHandleNanos.get()) / handledCount / 1000;
+      }
+      return new HandlerWorkloadMetrics(threads, maxQueued, queued.get(), inProgress.get(), handledCount,
+                                        rejected.get(), meanQueueMillis, meanHandleMillis);
+    }
+  }
+}
@@ -21,15 +21,19 @@ import co.cask.cdap.security.auth.TokenValidator;
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.http.handler.auth.SecurityAuthenticationHttpHandler;
+import co.cask.coopr.management.HttpStats;
 import co.cask.http.HttpHandler;
 import co.cask.http.NettyHttpService;
 import co.cask.http.SSLConfig;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.AbstractIdleService;
 import org.apache.twill.discovery.DiscoveryServiceClient;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.Channels;
+import org.jboss.netty.handler.codec.http.HttpContentDecompressor;
+import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,46 +51,91 @@ abstract class HandlerServer extends AbstractIdleService {
 
   private static final String DECODER_CHANNEL_HANDLER_NAME = "decoder";
   private static final String AUTHENTICATION_CHANNEL_HANDLER_NAME = "access-token-authenticator";
+  private static final String COMPRESSOR_CHANNEL_HANDLER_NAME = "compressor";
+  private static final String DECOMPRESSOR_CHANNEL_HANDLER_NAME = "decompressor";
+  private static final String EXECUTOR_CHANNEL_HANDLER_NAME = "executor";
+  private static final String DISPATCHER_CHANNEL_HANDLER_NAME = "dispatcher";
+  private static final String STATS_CHANNEL_HANDLER_NAME = "stats";
+  private static final String RATE_LIMITER_CHANNEL_HANDLER_NAME = "rate-limiter";
 
   private final NettyHttpService httpService;
+  private final RequestRateLimiter rateLimiter;
+  private final HandlerExecutors handlerExecutors;
 
   HandlerServer(Set<HttpHandler> handlers, Configuration conf, String portKey,
                 final CConfiguration cConf,
                 final TokenValidator tokenValidator,
                 final AccessTokenTransformer accessTokenTransformer,
-                final DiscoveryServiceClient discoveryServiceClient) {
+                final DiscoveryServiceClient discoveryServiceClient,
+                final HandlerExecutors handlerExecutors,
+                final HttpStats httpStats,
+                @Nullable final RequestRateLimiter rateLimiter) {
     String host = conf.get(Constants.HOST);
     int port = conf.getInt(portKey);
-    int numExecThreads = conf.getInt(Constants.NETTY_EXEC_NUM_THREADS);
     int numWorkerThreads = conf.getInt(Constants.NETTY_WORKER_NUM_THREADS);
     final boolean securityEnabled = conf.getBoolean(co.cask.cdap.common.conf.Constants.Security.ENABLED);
     final String realm = conf.get(co.cask.cdap.common.conf.Constants.Security.CFG_REALM);
+    final CompressionConfig compressionConfig = getCompressionConfig(conf);
+    final Function<HttpRequest, HandlerWorkload> workloadClassifier = new Function<HttpRequest, HandlerWorkload>() {
+      @Override
+      public HandlerWorkload apply(HttpRequest request) {
+        return getWorkload(request);
+      }
+    };
+    this.rateLimiter = rateLimiter;
+    this.handlerExecutors = handlerExecutors;
 
     NettyHttpService.Builder builder = NettyHttpService.builder();
     builder.addHttpHandlers(handlers);
+    builder.setHandlerHooks(ImmutableList.of(new HttpStatsHandler.RouteHook(handlers)));
 
     builder.setHost(host);
     builder.setPort(port);
 
     builder.setConnectionBacklog(20000);
-    builder.setExecThreadPoolSize(numExecThreads);
+    // handlers run on the executors of their workload instead of a single pool shared by all requests
+    builder.setExecThreadPoolSize(0);
     builder.setBossThreadPoolSize(1);
     builder.setWorkerThreadPoolSize(numWorkerThreads);
-    if (securityEnabled) {
-      builder.modifyChannelPipeline(new Function<ChannelPipeline, ChannelPipeline>() {
-        @Nullable
-        @Override
-        public ChannelPipeline apply(@Nullable ChannelPipeline input) {
-          if (input == null) {
-            input = Channels.pipeline();
-          }
+    builder.modifyChannelPipeline(new Function<ChannelPipeline, ChannelPipeline>() {
+      @Nullable
+      @Override
+      public ChannelPipeline apply(@Nullable ChannelPipeline input) {
+        if (input == null) {
+          input = Channels.pipeline();
+        }
+        if (securityEnabled) {
           input.addAfter(DECODER_CHANNEL_HANDLER_NAME, AUTHENTICATION_CHANNEL_HANDLER_NAME,
                          new SecurityAuthenticationHttpHandler(realm, tokenValidator, cConf, accessTokenTransformer,
                                                                discoveryServiceClient));
-          return input;
         }
-      });
-    }
+        if (compressionConfig.isDecompressionEnabled()) {
+          input.addAfter(DECODER_CHANNEL_HANDLER_NAME, DECOMPRESSOR_CHANNEL_HANDLER_NAME,
+                         new HttpContentDecompressor());
+        }
+        // the compressor added by default sits in front of the response encoder, where it only sees encoded bytes.
+        // it is replaced by one behind the request decoder, so that it sees both requests and responses.
+        if (input.get(COMPRESSOR_CHANNEL_HANDLER_NAME) != null) {
+          input.remove(COMPRESSOR_CHANNEL_HANDLER_NAME);
+        }
+        if (compressionConfig.getLevel() > 0) {
+          input.addAfter(DECODER_CHANNEL_HANDLER_NAME, COMPRESSOR_CHANNEL_HANDLER_NAME,
+                         new ThresholdContentCompressor(compressionConfig.getLevel(),
+                                                        compressionConfig.getMinBytes()));
+        }
+        input.addBefore(DISPATCHER_CHANNEL_HANDLER_NAME, EXECUTOR_CHANNEL_HANDLER_NAME,
+                        handlerExecutors.newExecutionHandler(workloadClassifier));
+        // behind the executors instead of in front of the router, since it may look up tenants in the store and must
+        // not block an I/O thread. The router calls the hooks that record the route of a request, so it stays in front.
+        if (rateLimiter != null) {
+          input.addBefore(DISPATCHER_CHANNEL_HANDLER_NAME, RATE_LIMITER_CHANNEL_HANDLER_NAME,
+                          rateLimiter.newRateLimitHandler(workloadClassifier));
+        }
+        // added last right behind the decoder, so that it sees requests before anything else can reject them
+        input.addAfter(DECODER_CHANNEL_HANDLER_NAME, STATS_CHANNEL_HANDLER_NAME, new HttpStatsHandler(httpStats));
+        return input;
+      }
+    });
 
     addSSLConfig(builder, conf);
     this.httpService = builder.build();
@@ -94,6 +143,18 @@ abstract class HandlerServer extends AbstractIdleService {
 
   abstract void addSSLConfig(NettyHttpService.Builder builder, Configuration conf);
 
+  abstract CompressionConfig getCompressionConfig(Configuration conf);
+
+  abstract HandlerWorkload getWorkload(HttpRequest request);
+
+  CompressionConfig getCompressionConfig(Configuration conf, String levelKey, String minBytesKey,
+                                         String decompressionEnabledKey) {
+    int level = conf.getInt(levelKey, Constants.DEFAULT_COMPRESSION_LEVEL);
+    Preconditions.checkArgument(level >= 0 && level <= 9, "%s must be between 0 and 9.", levelKey);
+    return new CompressionConfig(level, conf.getInt(minBytesKey, Constants.DEFAULT_COMPRESSION_MIN_BYTES),
+                                 conf.getBoolean(decompressionEnabledKey, Constants.DEFAULT_DECOMPRESSION_ENABLED));
+  }
+
   SSLConfig getSSLConfig(Configuration conf, String keyStorePathKey,
                                                       String keyStorePasswordKey, String keyPasswordKey,
                                                       String trustKeyStorePathKey, String trustKeyPasswordKey) {
@@ -115,6 +176,10 @@ abstract class HandlerServer extends AbstractIdleService {
 
   @Override
   protected void startUp() throws Exception {
+    if (rateLimiter != null) {
+      rateLimiter.startAndWait();
+    }
+    handlerExecutors.acquire();
     httpService.startAndWait();
     LOG.info("Started successfully on {}", httpService.getBindAddress());
   }
@@ -122,6 +187,10 @@ abstract class HandlerServer extends AbstractIdleService {
   @Override
   protected void shutDown() throws Exception {
     httpService.stopAndWait();
+    handlerExecutors.release();
+    if (rateLimiter != null) {
+      rateLimiter.stopAndWait();
+    }
   }
 
   /**
@@ -132,4 +201,36 @@ abstract class HandlerServer extends AbstractIdleService {
   public InetSocketAddress getBindAddress() {
     return httpService.getBindAddress();
   }
+
+  /**
+   * Settings for compressing responses and decompressing requests.
+   */
+  static final class CompressionConfig {
+    private final int level;
+    private final int minBytes;
+    private final boolean decompressionEnabled;
+
+    private CompressionConfig(int level, int minBytes, boolean decompressionEnabled) {
+      this.level = level;
+      this.minBytes = minBytes;
+      this.decompressionEnabled = decompressionEnabled;
+    }
+
+    /**
+     * Get the compression level for responses, where 0 means responses are not compressed.
+     *
+     * @return Compression level for responses.
+     */
+    int getLevel() {
+      return level;
+    }
+
+    int getMinBytes() {
+      return minBytes;
+    }
+
+    boolean isDecompressionEnabled() {
+      return decompressionEnabled;
+    }
+  }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.cask.coopr.http;
+
+import co.cask.coopr.common.conf.Constants;
+
+/**
+ * Classes of requests whose handlers run on separate executors, so that slow requests of one class do not hold up
+ * requests of another.
+ */
+public enum HandlerWorkload {
+  /**
+   * Requests from provisioners, such as taking and finishing tasks.
+   */
+  TASKS(Constants.HandlerExecutors.TASKS_THREADS, Constants.HandlerExecutors.DEFAULT_TASKS_THREADS,
+        Constants.HandlerExecutors.TASKS_MAX_QUEUED),
+  /**
+   * Requests that read state, such as those from the UI.
+   */
+  READS(Constants.HandlerExecutors.READS_THREADS, Constants.HandlerExecutors.DEFAULT_READS_THREADS,
+        Constants.HandlerExecutors.READS_MAX_QUEUED),
+  /**
+   * Requests that change state, such as cluster operations and admin writes.
+   */
+  WRITES(Constants.HandlerExecutors.WRITES_THREADS, Constants.HandlerExecutors.DEFAULT_WRITES_THREADS,
+         Constants.HandlerExecutors.WRITES_MAX_QUEUED);
+
+  private final String threadsKey;
+  private final int defaultThreads;
+  private final String maxQueuedKey;
+
+  private HandlerWorkload(String threadsKey, int defaultThreads, String maxQueuedKey) {
+    this.threadsKey = threadsKey;
+    this.defaultThreads = defaultThreads;
+    this.maxQueuedKey = maxQueuedKey;
+  }
+
+  String getThreadsKey() {
+    return threadsKey;
+  }
+
+  int getDefaultThreads() {
+    return defaultThreads;
+  }
+
+  String getMaxQueuedKey() {
+    return maxQueuedKey;
+  }
+}
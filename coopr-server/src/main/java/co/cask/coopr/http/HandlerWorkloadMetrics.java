@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.cask.coopr.http;
+
+import com.google.common.base.Objects;
+
+/**
+ * A snapshot of metrics for the executor of a {@link HandlerWorkload}, as seen by the server handling requests.
+ */
+public class HandlerWorkloadMetrics {
+  private final int threads;
+  private final int maxQueued;
+  private final int queued;
+  private final int inProgress;
+  private final long handled;
+  private final long rejected;
+  private final double meanQueueMillis;
+  private final double meanHandleMillis;
+
+  public HandlerWorkloadMetrics(int threads, int maxQueued, int queued, int inProgress, long handled, long rejected,
+                                double meanQueueMillis, double meanHandleMillis) {
+    this.threads = threads;
+    this.maxQueued = maxQueued;
+    this.queued = queued;
+    this.inProgress = inProgress;
+    this.handled = handled;
+    this.rejected = rejected;
+    this.meanQueueMillis = meanQueueMillis;
+    this.meanHandleMillis = meanHandleMillis;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Get the max number of requests that can wait for a thread before requests are rejected.
+   *
+   * @return Max number of requests that can wait for a thread.
+   */
+  public int getMaxQueued() {
+    return maxQueued;
+  }
+
+  /**
+   * Get the number of requests waiting for a thread.
+   *
+   * @return Number of requests waiting for a thread.
+   */
+  public int getQueued() {
+    return queued;
+  }
+
+  /**
+   * Get the number of requests being handled.
+   *
+   * @return Number of requests being handled.
+   */
+  public int getInProgress() {
+    return inProgress;
+  }
+
+  public long getHandled() {
+    return handled;
+  }
+
+  public long getRejected() {
+    return rejected;
+  }
+
+  /**
+   * Get the mean time in milliseconds handled requests waited for a thread.
+   *
+   * @return Mean time in milliseconds handled requests waited for a thread.
+   */
+  public double getMeanQueueMillis() {
+    return meanQueueMillis;
+  }
+
+  /**
+   * Get the mean time in milliseconds it took to run the handler of a request.
+   *
+   * @return Mean time in milliseconds it took to run the handler of a request.
+   */
+  public double getMeanHandleMillis() {
+    return meanHandleMillis;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    HandlerWorkloadMetrics that = (HandlerWorkloadMetrics) o;
+
+    return threads == that.threads && maxQueued == that.maxQueued && queued == that.queued &&
+      inProgress == that.inProgress && handled == that.handled && rejected == that.rejected &&
+      Double.compare(meanQueueMillis, that.meanQueueMillis) == 0 &&
+      Double.compare(meanHandleMillis, that.meanHandleMillis) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(threads, maxQueued, queued, inProgress, handled, rejected,
+                            meanQueueMillis, meanHandleMillis);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("threads", threads)
+      .add("maxQueued", maxQueued)
+      .add("queued", queued)
+      .add("inProgress", inProgress)
+      .add("handled", handled)
+      .add("rejected", rejected)
+      .add("meanQueueMillis", meanQueueMillis)
+      .add("meanHandleMillis", meanHandleMillis)
+      .toString();
+  }
+}
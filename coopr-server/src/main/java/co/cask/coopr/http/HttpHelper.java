@@ -1,9 +1,17 @@
 package co.cask.coopr.http;
 
+import co.cask.http.ChunkResponder;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.io.Closeables;
 import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
@@ -11,6 +19,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.lang.reflect.Type;
 
@@ -19,6 +29,8 @@ import java.lang.reflect.Type;
  */
 public final class HttpHelper {
   private static final Logger LOG  = LoggerFactory.getLogger(HttpHelper.class);
+  // size of each chunk written when streaming responses
+  private static final int CHUNK_SIZE = 64 * 1024;
 
   /**
    * Decode the request body into the given type of object using the give gson instance. In the case of an error,
@@ -50,4 +62,97 @@ public final class HttpHelper {
       }
     }
   }
+
+  /**
+   * Start a chunked json response with a 200 status, returning a writer that writes directly into response chunks.
+   * Json is written into a fixed size buffer that is sent as a chunk whenever it fills up, so the entire response
+   * never needs to be in memory at once. Since the status has already been sent, errors that happen while writing
+   * can only be handled by closing the writer, which ends the response. The caller must close the writer when done.
+   *
+   * @param responder Responder to stream the response to
+   * @return Writer for writing the response body
+   */
+  public static JsonWriter startJsonStream(HttpResponder responder) {
+    ChunkResponder chunkResponder = responder.sendChunkStart(
+      HttpResponseStatus.OK, ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE, "application/json"));
+    return new JsonWriter(new OutputStreamWriter(new ChunkOutputStream(chunkResponder), Charsets.UTF_8));
+  }
+
+  /**
+   * Stream the given items as a json array in a chunked response with a 200 status, serializing one item at a time.
+   * Errors writing the response, such as the client closing the connection, are logged and end the response.
+   *
+   * @param responder Responder to stream the response to
+   * @param items Items to write as a json array
+   * @param itemType Type of each item
+   * @param gson Gson to use for encoding each item
+   */
+  public static void sendJsonStream(HttpResponder responder, Iterable<?> items, Type itemType, Gson gson) {
+    JsonWriter writer = startJsonStream(responder);
+    try {
+      writer.beginArray();
+      for (Object item : items) {
+        gson.toJson(item, itemType, writer);
+      }
+      writer.endArray();
+    } catch (IOException e) {
+      LOG.debug("Exception streaming json response.", e);
+    } catch (JsonIOException e) {
+      LOG.debug("Exception streaming json response.", e);
+    } finally {
+      Closeables.closeQuietly(writer);
+    }
+  }
+
+  /**
+   * Output stream that buffers bytes and sends them as chunks of a chunked response. A new buffer is used for every
+   * chunk since chunks are written to the channel asynchronously.
+   */
+  private static final class ChunkOutputStream extends OutputStream {
+    private final ChunkResponder chunkResponder;
+    private ChannelBuffer buffer;
+
+    private ChunkOutputStream(ChunkResponder chunkResponder) {
+      this.chunkResponder = chunkResponder;
+      this.buffer = ChannelBuffers.buffer(CHUNK_SIZE);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (!buffer.writable()) {
+        sendBuffer();
+      }
+      buffer.writeByte(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int off, int len) throws IOException {
+      while (len > 0) {
+        if (!buffer.writable()) {
+          sendBuffer();
+        }
+        int toWrite = Math.min(len, buffer.writableBytes());
+        buffer.writeBytes(bytes, off, toWrite);
+        off += toWrite;
+        len -= toWrite;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        if (buffer.readable()) {
+          sendBuffer();
+        }
+      } finally {
+        chunkResponder.close();
+      }
+    }
+
+    private void sendBuffer() throws IOException {
+      ChannelBuffer chunk = buffer;
+      buffer = ChannelBuffers.buffer(CHUNK_SIZE);
+      chunkResponder.sendChunk(chunk);
+    }
+  }
 }
@@ -0,0 +1,260 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.http;
+
+import co.cask.coopr.management.HttpStats;
+import co.cask.http.AbstractHandlerHook;
+import co.cask.http.HandlerInfo;
+import co.cask.http.HttpHandler;
+import co.cask.http.HttpResponder;
+import co.cask.http.PatternPathRouterWithGroups;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.FileRegion;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelHandler;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.QueryStringDecoder;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.HEAD;
+import javax.ws.rs.OPTIONS;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+
+/**
+ * Channel handler that records stats for every request of a channel, keyed by the {@link Path} template of the
+ * handler method that handled it. It sits right behind the request decoder, so bytes are counted as they are on the
+ * wire and requests rejected before reaching a handler are recorded as well. Latency is measured from receiving a
+ * request to writing the end of its response.
+ *
+ * The template is not resolved again here. Instead, the {@link RouteHook} is called by the router with the handler
+ * method it matched, while the event of the request is passed upstream on the thread of this handler.
+ */
+final class HttpStatsHandler extends SimpleChannelHandler {
+  private static final ThreadLocal<Exchange> CURRENT_EXCHANGE = new ThreadLocal<Exchange>();
+
+  private final HttpStats httpStats;
+  // requests that have not been completely responded to, in the order they were received
+  private final Queue<Exchange> pending;
+  // request that is still receiving chunks
+  private Exchange receiving;
+  // request whose response is still being written in chunks
+  private volatile Exchange sending;
+
+  HttpStatsHandler(HttpStats httpStats) {
+    this.httpStats = httpStats;
+    this.pending = new ConcurrentLinkedQueue<Exchange>();
+  }
+
+  @Override
+  public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    Object message = e.getMessage();
+    Exchange exchange = null;
+    if (message instanceof HttpRequest) {
+      HttpRequest request = (HttpRequest) message;
+      exchange = new Exchange(request.getMethod().getName(), System.nanoTime());
+      exchange.bytesIn = request.getContent().readableBytes();
+      pending.add(exchange);
+      receiving = request.isChunked() ? exchange : null;
+    } else if (message instanceof HttpChunk && receiving != null) {
+      HttpChunk chunk = (HttpChunk) message;
+      exchange = receiving;
+      exchange.bytesIn += chunk.getContent().readableBytes();
+      if (chunk.isLast()) {
+        receiving = null;
+      }
+    }
+
+    CURRENT_EXCHANGE.set(exchange);
+    try {
+      ctx.sendUpstream(e);
+    } finally {
+      CURRENT_EXCHANGE.set(null);
+    }
+  }
+
+  @Override
+  public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    Object message = e.getMessage();
+    if (message instanceof HttpResponse) {
+      HttpResponse response = (HttpResponse) message;
+      Exchange exchange = pending.peek();
+      // interim responses and responses that do not answer a request, such as errors decoding it, are not recorded
+      if (exchange != null && !HttpResponseStatus.CONTINUE.equals(response.getStatus())) {
+        exchange.statusCode = response.getStatus().getCode();
+        exchange.bytesOut = response.getContent().readableBytes();
+        long contentLength = HttpHeaders.getContentLength(response, exchange.bytesOut);
+        if (response.isChunked()) {
+          sending = exchange;
+        } else if (contentLength > exchange.bytesOut) {
+          // content follows the response as a file region or buffers, as when sending a file
+          exchange.remainingBytes = contentLength - exchange.bytesOut;
+          sending = exchange;
+        } else {
+          complete(exchange);
+        }
+      }
+    } else if (message instanceof HttpChunk && sending != null) {
+      HttpChunk chunk = (HttpChunk) message;
+      Exchange exchange = sending;
+      exchange.bytesOut += chunk.getContent().readableBytes();
+      if (chunk.isLast()) {
+        sending = null;
+        complete(exchange);
+      }
+    } else if ((message instanceof FileRegion || message instanceof ChannelBuffer) && sending != null) {
+      Exchange exchange = sending;
+      long bytes = message instanceof FileRegion ?
+        ((FileRegion) message).getCount() : ((ChannelBuffer) message).readableBytes();
+      exchange.bytesOut += bytes;
+      exchange.remainingBytes -= bytes;
+      if (exchange.remainingBytes <= 0) {
+        sending = null;
+        complete(exchange);
+      }
+    }
+    ctx.sendDownstream(e);
+  }
+
+  private void complete(Exchange exchange) {
+    pending.remove(exchange);
+    String route = exchange.route == null ? HttpStats.UNMATCHED_ROUTE : exchange.route;
+    httpStats.record(route, exchange.statusCode, exchange.bytesIn, exchange.bytesOut,
+                     System.nanoTime() - exchange.startNanos);
+  }
+
+  /**
+   * A request and what is known so far about its response.
+   */
+  private static final class Exchange {
+    private final String method;
+    private final long startNanos;
+    private volatile String route;
+    private volatile long bytesIn;
+    private volatile long bytesOut;
+    private volatile long remainingBytes;
+    private volatile int statusCode;
+
+    private Exchange(String method, long startNanos) {
+      this.method = method;
+      this.startNanos = startNanos;
+    }
+  }
+
+  /**
+   * Hook that sets the route of the request being passed upstream to the request method and the {@link Path}
+   * template of the handler method the router matched, such as "GET /v2/clusters/{cluster-id}".
+   */
+  static final class RouteHook extends AbstractHandlerHook {
+    // handler class and method name to the templates of handler methods with that name, which are overloaded if
+    // there are several. Overloaded methods are told apart by matching the request path against their templates.
+    private final Map<String, String> templates;
+    private final Map<String, PatternPathRouterWithGroups<String>> overloadedTemplates;
+
+    RouteHook(Iterable<? extends HttpHandler> handlers) {
+      ListMultimap<String, String> handlerTemplates = ArrayListMultimap.create();
+      for (HttpHandler handler : handlers) {
+        Class<?> handlerClass = handler.getClass();
+        String basePath = handlerClass.isAnnotationPresent(Path.class) ?
+          handlerClass.getAnnotation(Path.class).value() : "";
+        for (Method method : handlerClass.getDeclaredMethods()) {
+          if (method.isAnnotationPresent(Path.class) && isHttpMethod(method)) {
+            String template = normalize(basePath + "/" + method.getAnnotation(Path.class).value());
+            handlerTemplates.put(getKey(handlerClass.getName(), method.getName()), template);
+          }
+        }
+      }
+
+      ImmutableMap.Builder<String, String> templates = ImmutableMap.builder();
+      Map<String, PatternPathRouterWithGroups<String>> overloadedTemplates = Maps.newHashMap();
+      for (Map.Entry<String, Collection<String>> entry : handlerTemplates.asMap().entrySet()) {
+        Collection<String> methodTemplates = entry.getValue();
+        if (methodTemplates.size() == 1) {
+          templates.put(entry.getKey(), methodTemplates.iterator().next());
+        } else {
+          PatternPathRouterWithGroups<String> router = PatternPathRouterWithGroups.create();
+          for (String template : methodTemplates) {
+            router.add(template, template);
+          }
+          overloadedTemplates.put(entry.getKey(), router);
+        }
+      }
+      this.templates = templates.build();
+      this.overloadedTemplates = ImmutableMap.copyOf(overloadedTemplates);
+    }
+
+    @Override
+    public boolean preCall(HttpRequest request, HttpResponder responder, HandlerInfo handlerInfo) {
+      Exchange exchange = CURRENT_EXCHANGE.get();
+      if (exchange != null) {
+        String template = getTemplate(handlerInfo, request);
+        if (template != null) {
+          exchange.route = exchange.method + " " + template;
+        }
+      }
+      return true;
+    }
+
+    private String getTemplate(HandlerInfo handlerInfo, HttpRequest request) {
+      String key = getKey(handlerInfo.getHandlerName(), handlerInfo.getMethodName());
+      String template = templates.get(key);
+      if (template != null) {
+        return template;
+      }
+      PatternPathRouterWithGroups<String> router = overloadedTemplates.get(key);
+      if (router == null) {
+        return null;
+      }
+      List<PatternPathRouterWithGroups.RoutableDestination<String>> destinations =
+        router.getDestinations(normalize(new QueryStringDecoder(request.getUri()).getPath()));
+      return destinations.isEmpty() ? null : destinations.get(0).getDestination();
+    }
+
+    private static boolean isHttpMethod(Method method) {
+      return method.isAnnotationPresent(GET.class) || method.isAnnotationPresent(PUT.class) ||
+        method.isAnnotationPresent(POST.class) || method.isAnnotationPresent(DELETE.class) ||
+        method.isAnnotationPresent(HEAD.class) || method.isAnnotationPresent(OPTIONS.class);
+    }
+
+    private static String getKey(String handlerName, String methodName) {
+      return handlerName + "#" + methodName;
+    }
+
+    // collapse repeated slashes and drop the trailing one, as the router does
+    private static String normalize(String path) {
+      String normalized = path.replaceAll("/+", "/");
+      return normalized.length() > 1 && normalized.endsWith("/") ?
+        normalized.substring(0, normalized.length() - 1) : normalized;
+    }
+  }
+}
@@ -22,12 +22,14 @@ import co.cask.cdap.security.auth.TokenValidator;
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.http.handler.TaskHandler;
+import co.cask.coopr.management.HttpStats;
 import co.cask.http.HttpHandler;
 import co.cask.http.NettyHttpService;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import org.apache.twill.discovery.DiscoveryServiceClient;
+import org.jboss.netty.handler.codec.http.HttpRequest;
 
 import java.util.Arrays;
 import java.util.Set;
@@ -42,9 +44,12 @@ public class InternalHandlerServer extends HandlerServer {
                                 final CConfiguration cConf,
                                 final TokenValidator tokenValidator,
                                 final AccessTokenTransformer accessTokenTransformer,
-                                final DiscoveryServiceClient discoveryServiceClient) {
+                                final DiscoveryServiceClient discoveryServiceClient,
+                                HandlerExecutors handlerExecutors,
+                                HttpStats httpStats) {
     super(handlers, conf, Constants.INTERNAL_PORT,
-          cConf, tokenValidator, accessTokenTransformer, discoveryServiceClient);
+          cConf, tokenValidator, accessTokenTransformer, discoveryServiceClient, handlerExecutors, httpStats,
+          null);
   }
 
   @Override
@@ -58,4 +63,15 @@ public class InternalHandlerServer extends HandlerServer {
                                      Constants.INTERNAL_SSL_TRUST_KEYPASSWORD));
     }
   }
+
+  @Override
+  CompressionConfig getCompressionConfig(Configuration conf) {
+    return getCompressionConfig(conf, Constants.INTERNAL_COMPRESSION_LEVEL, Constants.INTERNAL_COMPRESSION_MIN_BYTES,
+                                Constants.INTERNAL_DECOMPRESSION_ENABLED);
+  }
+
+  @Override
+  HandlerWorkload getWorkload(HttpRequest request) {
+    return HandlerWorkload.TASKS;
+  }
 }
@@ -0,0 +1,410 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.http;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.common.zookeeper.ZKClientExt;
+import co.cask.coopr.spec.Tenant;
+import co.cask.coopr.store.tenant.TenantStore;
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.inject.Inject;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.zookeeper.NodeChildren;
+import org.apache.twill.zookeeper.ZKClient;
+import org.apache.twill.zookeeper.ZKOperations;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelUpstreamHandler;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of requests to the external api with token buckets, kept for each tenant and for each user within a
+ * tenant, as given by the tenant and user headers of the request. Each {@link HandlerWorkload} has its own limits and
+ * buckets, so a flood of reads does not use up the budget for writes. Buckets hold enough tokens for a burst of
+ * requests at the full rate, and requests that find an empty bucket are rejected with a 429 and the number of seconds
+ * until a token is available. Requests without tenant or user headers are not limited, as they cannot be authenticated
+ * anyway. Requests for tenants that do not exist are rejected with a 404 before any bucket is touched, and buckets are
+ * kept by tenant id instead of name. Tenant lookups are cached for a few seconds, with unknown tenants kept in a
+ * separate small cache so that made up names cannot push out real tenants, and the number of buckets is capped, so
+ * that requests with made up headers cannot use up memory. Since looking up a tenant may block on the store, the
+ * handler must run on the {@link HandlerExecutors} and not on an I/O thread.
+ *
+ * Buckets are kept in memory. If coordination is enabled, each server registers itself in zookeeper and divides the
+ * configured rates by the number of live servers, so that the limits apply to the server cluster as a whole as long as
+ * requests are spread evenly across servers.
+ */
+public class RequestRateLimiter extends AbstractIdleService {
+  static final HttpResponseStatus TOO_MANY_REQUESTS = new HttpResponseStatus(429, "Too Many Requests");
+  private static final Logger LOG = LoggerFactory.getLogger(RequestRateLimiter.class);
+  private static final long IDLE_BUCKET_EXPIRE_MINUTES = 10;
+  private static final long TENANT_EXPIRE_SECONDS = 10;
+  private static final long MAX_UNKNOWN_TENANTS = 1000;
+
+  private final Map<HandlerWorkload, Rates> rates;
+  private final float burstSeconds;
+  private final boolean coordinationEnabled;
+  private final Ticker ticker;
+  private final LoadingCache<String, TokenBucket> buckets;
+  private final TenantStore tenantStore;
+  private final Cache<String, String> tenantIds;
+  private final Cache<String, Boolean> unknownTenants;
+  private final String serverPath;
+  private volatile int numServers;
+  private ZKClient zkClient;
+  private Cancellable serversWatch;
+
+  @Inject
+  private RequestRateLimiter(Configuration conf, TenantStore tenantStore) {
+    this(conf, tenantStore, Ticker.systemTicker());
+  }
+
+  RequestRateLimiter(Configuration conf, TenantStore tenantStore, Ticker ticker) {
+    this.rates = Maps.newEnumMap(HandlerWorkload.class);
+    rates.put(HandlerWorkload.READS,
+              new Rates(conf.getFloat(Constants.RateLimit.READS_TENANT_RATE,
+                                      Constants.RateLimit.DEFAULT_READS_TENANT_RATE),
+                        conf.getFloat(Constants.RateLimit.READS_USER_RATE,
+                                      Constants.RateLimit.DEFAULT_READS_USER_RATE)));
+    rates.put(HandlerWorkload.WRITES,
+              new Rates(conf.getFloat(Constants.RateLimit.WRITES_TENANT_RATE,
+                                      Constants.RateLimit.DEFAULT_WRITES_TENANT_RATE),
+                        conf.getFloat(Constants.RateLimit.WRITES_USER_RATE,
+                                      Constants.RateLimit.DEFAULT_WRITES_USER_RATE)));
+    this.burstSeconds = conf.getFloat(Constants.RateLimit.BURST_SECONDS, Constants.RateLimit.DEFAULT_BURST_SECONDS);
+    this.coordinationEnabled = conf.getBoolean(Constants.RateLimit.COORDINATION_ENABLED,
+                                               Constants.RateLimit.DEFAULT_COORDINATION_ENABLED);
+    this.ticker = ticker;
+    int maxBuckets = conf.getInt(Constants.RateLimit.MAX_BUCKETS, Constants.RateLimit.DEFAULT_MAX_BUCKETS);
+    this.buckets = CacheBuilder.newBuilder()
+      .maximumSize(maxBuckets)
+      .expireAfterAccess(IDLE_BUCKET_EXPIRE_MINUTES, TimeUnit.MINUTES)
+      .build(new CacheLoader<String, TokenBucket>() {
+        @Override
+        public TokenBucket load(String key) {
+          return new TokenBucket();
+        }
+      });
+    this.tenantStore = tenantStore;
+    this.tenantIds = CacheBuilder.newBuilder()
+      .maximumSize(maxBuckets)
+      .expireAfterWrite(TENANT_EXPIRE_SECONDS, TimeUnit.SECONDS)
+      .build();
+    this.unknownTenants = CacheBuilder.newBuilder()
+      .maximumSize(MAX_UNKNOWN_TENANTS)
+      .expireAfterWrite(TENANT_EXPIRE_SECONDS, TimeUnit.SECONDS)
+      .build();
+    this.serverPath = Constants.RateLimit.SERVERS_PATH + "/" + UUID.randomUUID().toString();
+    this.numServers = 1;
+  }
+
+  /**
+   * Set the zookeeper client used to coordinate limits across servers. Only needed if coordination is enabled.
+   *
+   * @param zkClient Client for zookeeper.
+   */
+  @Inject(optional = true)
+  void setZKClient(ZKClient zkClient) {
+    this.zkClient = zkClient;
+  }
+
+  /**
+   * Take a token for a request of the given workload from the buckets of its tenant and its user.
+   *
+   * @param workload Workload of the request.
+   * @param tenantId Id, not name, of the tenant the request is for.
+   * @param userId Id of the user making the request.
+   * @return 0 if the request is allowed, or the number of nanoseconds until a token is available if it is not.
+   */
+  public long tryAcquire(HandlerWorkload workload, String tenantId, String userId) {
+    Rates workloadRates = rates.get(workload);
+    if (workloadRates == null) {
+      return 0;
+    }
+    int servers = Math.max(1, numServers);
+    long now = ticker.read();
+    String tenantKey = workload.name() + "/" + tenantId;
+
+    TokenBucket userBucket = null;
+    if (workloadRates.userRate > 0) {
+      userBucket = buckets.getUnchecked(tenantKey + "/" + userId);
+      long waitNanos = userBucket.tryTake(workloadRates.userRate / servers, burstSeconds, now);
+      if (waitNanos > 0) {
+        return waitNanos;
+      }
+    }
+    if (workloadRates.tenantRate > 0) {
+      long waitNanos = buckets.getUnchecked(tenantKey).tryTake(workloadRates.tenantRate / servers, burstSeconds, now);
+      if (waitNanos > 0) {
+        // the request is not made, so the user should not pay for it
+        if (userBucket != null) {
+          userBucket.giveBack();
+        }
+        return waitNanos;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Create a channel handler that rejects requests that exceed the rate limits of their workload. A new handler must be
+   * created for each channel, and placed behind the handler executors since it may look up tenants in the store.
+   *
+   * @param classifier Function that determines the workload of a request
+   * @return Channel handler that rejects requests that exceed the rate limits of their workload
+   */
+  public ChannelUpstreamHandler newRateLimitHandler(Function<HttpRequest, HandlerWorkload> classifier) {
+    return new RateLimitHandler(classifier);
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    if (!coordinationEnabled) {
+      return;
+    }
+    if (zkClient == null) {
+      LOG.warn("Rate limit coordination is enabled but there is no zookeeper, limits will only apply per server.");
+      return;
+    }
+    Futures.getUnchecked(ZKClientExt.ensureExists(zkClient, Constants.RateLimit.SERVERS_PATH));
+    register();
+    serversWatch = ZKOperations.watchChildren(
+      zkClient, Constants.RateLimit.SERVERS_PATH, new ZKOperations.ChildrenCallback() {
+      @Override
+      public void updated(NodeChildren nodeChildren) {
+        numServers = nodeChildren.getChildren().size();
+        LOG.info("Rate limits are shared by {} servers.", numServers);
+      }
+    });
+    zkClient.addConnectionWatcher(new Watcher() {
+      private boolean expired;
+
+      @Override
+      public void process(WatchedEvent event) {
+        if (!isRunning()) {
+          return;
+        }
+        if (event.getState() == Event.KeeperState.Expired) {
+          expired = true;
+        } else if (event.getState() == Event.KeeperState.SyncConnected && expired) {
+          expired = false;
+          register();
+        }
+      }
+    });
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    if (serversWatch != null) {
+      serversWatch.cancel();
+      Futures.getUnchecked(ZKClientExt.delete(zkClient, serverPath, true));
+    }
+  }
+
+  // id of the tenant with the given name, or absent if there is no such tenant
+  Optional<String> getTenantId(String tenantName) throws IOException {
+    String tenantId = tenantIds.getIfPresent(tenantName);
+    if (tenantId != null) {
+      return Optional.of(tenantId);
+    }
+    if (unknownTenants.getIfPresent(tenantName) != null) {
+      return Optional.absent();
+    }
+    Tenant tenant = tenantStore.getTenantByName(tenantName);
+    if (tenant == null) {
+      unknownTenants.put(tenantName, Boolean.TRUE);
+      return Optional.absent();
+    }
+    tenantIds.put(tenantName, tenant.getId());
+    return Optional.of(tenant.getId());
+  }
+
+  private void register() {
+    Futures.addCallback(zkClient.create(serverPath, null, CreateMode.EPHEMERAL), new FutureCallback<String>() {
+      @Override
+      public void onSuccess(String result) {
+        LOG.debug("Created rate limit server node {}", result);
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        if (!(t instanceof KeeperException.NodeExistsException)) {
+          LOG.error("Unable to create rate limit server node {}", serverPath, t);
+        }
+      }
+    });
+  }
+
+  /**
+   * Rejects requests that exceed their rate limits before they are dispatched to a handler, dropping the rest of the
+   * body of rejected requests that are streamed to their handler.
+   */
+  private final class RateLimitHandler implements ChannelUpstreamHandler {
+    private final Function<HttpRequest, HandlerWorkload> classifier;
+    private boolean rejected;
+
+    private RateLimitHandler(Function<HttpRequest, HandlerWorkload> classifier) {
+      this.classifier = classifier;
+    }
+
+    @Override
+    public void handleUpstream(ChannelHandlerContext ctx, ChannelEvent e) throws Exception {
+      if (e instanceof MessageEvent) {
+        Object message = ((MessageEvent) e).getMessage();
+        if (message instanceof HttpRequest) {
+          HttpRequest request = (HttpRequest) message;
+          HttpResponse rejection = checkLimits(request);
+          rejected = rejection != null && request.isChunked();
+          if (rejection != null) {
+            reject(ctx, request, rejection);
+            return;
+          }
+        } else if (rejected && message instanceof HttpChunk) {
+          rejected = !((HttpChunk) message).isLast();
+          return;
+        }
+      }
+      ctx.sendUpstream(e);
+    }
+
+    // returns the response to reject the request with, or null if it is allowed
+    private HttpResponse checkLimits(HttpRequest request) {
+      String tenantName = request.getHeader(Constants.TENANT_HEADER);
+      String userId = request.getHeader(Constants.USER_HEADER);
+      if (tenantName == null || userId == null) {
+        return null;
+      }
+      Optional<String> tenantId;
+      try {
+        tenantId = getTenantId(tenantName);
+      } catch (Exception e) {
+        // not limited, the handler will fail to look up the tenant as well and respond with an error
+        LOG.warn("Unable to look up tenant {} for rate limiting.", tenantName, e);
+        return null;
+      }
+      if (!tenantId.isPresent()) {
+        LOG.debug("Rejecting request from user {} of unknown tenant {}.", userId, tenantName);
+        return createResponse(HttpResponseStatus.NOT_FOUND, "Tenant does not exist.");
+      }
+
+      long waitNanos = tryAcquire(classifier.apply(request), tenantId.get(), userId);
+      if (waitNanos == 0) {
+        return null;
+      }
+      long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+      LOG.debug("Rejecting request from user {} of tenant {}, retry after {} seconds.",
+                userId, tenantName, retryAfterSeconds);
+      HttpResponse response = createResponse(TOO_MANY_REQUESTS, "Too many requests, please try again later.");
+      response.setHeader(HttpHeaders.Names.RETRY_AFTER, retryAfterSeconds);
+      return response;
+    }
+
+    private HttpResponse createResponse(HttpResponseStatus status, String message) {
+      HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, status);
+      response.setContent(ChannelBuffers.copiedBuffer(message, Charsets.UTF_8));
+      HttpHeaders.setContentLength(response, response.getContent().readableBytes());
+      return response;
+    }
+
+    private void reject(ChannelHandlerContext ctx, HttpRequest request, HttpResponse response) {
+      boolean keepAlive = HttpHeaders.isKeepAlive(request);
+      if (!keepAlive) {
+        response.setHeader(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.CLOSE);
+      }
+      ChannelFuture future = ctx.getChannel().write(response);
+      if (!keepAlive) {
+        future.addListener(ChannelFutureListener.CLOSE);
+      }
+    }
+  }
+
+  /**
+   * Rates of a workload in requests per second, where 0 means there is no limit.
+   */
+  private static final class Rates {
+    private final float tenantRate;
+    private final float userRate;
+
+    private Rates(float tenantRate, float userRate) {
+      this.tenantRate = tenantRate;
+      this.userRate = userRate;
+    }
+  }
+
+  /**
+   * Bucket of tokens that fills up at a given rate, up to the number of tokens needed for a burst at that rate.
+   * Starts out full.
+   */
+  static final class TokenBucket {
+    private double tokens = Double.NaN;
+    private double capacity;
+    private long lastRefillNanos;
+
+    synchronized long tryTake(double rate, float burstSeconds, long nowNanos) {
+      capacity = Math.max(1, rate * burstSeconds);
+      if (Double.isNaN(tokens)) {
+        tokens = capacity;
+      } else {
+        double refill = (nowNanos - lastRefillNanos) * rate / TimeUnit.SECONDS.toNanos(1);
+        tokens = Math.min(capacity, tokens + refill);
+      }
+      lastRefillNanos = nowNanos;
+      if (tokens >= 1) {
+        tokens--;
+        return 0;
+      }
+      return (long) Math.ceil((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    // the bucket may have refilled since the token was taken, and must not end up holding more than it can
+    synchronized void giveBack() {
+      tokens = Math.min(capacity, tokens + 1);
+    }
+  }
+}
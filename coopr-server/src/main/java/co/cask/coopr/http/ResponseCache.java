@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.http;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.scheduler.task.MissingEntityException;
+import co.cask.coopr.store.TenantGenerations;
+import co.cask.http.HttpResponder;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Multimap;
+import com.google.gson.Gson;
+import com.google.inject.Inject;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Sends json responses for endpoints whose content only changes when an admin entity or plugin resource of the tenant
+ * changes. Responses are tagged with the generation of the tenant, which is sent as the ETag of the response.
+ * Requests with an If-None-Match header containing the current tag get a 304 without reading from the store. Other
+ * requests get the cached serialized response if there is one for the current generation, and only read from the
+ * store and serialize the response on a cache miss. Cached responses are keyed by tenant and request uri, and the
+ * total size of cached responses is bounded.
+ */
+public class ResponseCache {
+  private static final Logger LOG  = LoggerFactory.getLogger(ResponseCache.class);
+  private static final String JSON_CONTENT_TYPE = "application/json";
+
+  private final TenantGenerations generations;
+  private final Gson gson;
+  // null if caching of serialized responses is disabled
+  private final Cache<String, CachedResponse> cache;
+
+  @Inject
+  private ResponseCache(TenantGenerations generations, Gson gson, Configuration conf) {
+    this.generations = generations;
+    this.gson = gson;
+    long maxBytes = conf.getLong(Constants.ResponseCache.MAX_BYTES, Constants.ResponseCache.DEFAULT_MAX_BYTES);
+    this.cache = maxBytes <= 0 ? null : CacheBuilder.newBuilder()
+      .maximumWeight(maxBytes)
+      .weigher(new Weigher<String, CachedResponse>() {
+        @Override
+        public int weigh(String key, CachedResponse value) {
+          return key.length() + value.body.length;
+        }
+      })
+      .<String, CachedResponse>build();
+  }
+
+  /**
+   * Loads the content of a response from the store.
+   *
+   * @param <T> Type of content
+   */
+  public interface Loader<T> {
+
+    /**
+     * Load the content of the response.
+     *
+     * @return Content of the response
+     * @throws IOException if there was an error reading from the store
+     * @throws MissingEntityException if the requested content does not exist
+     */
+    T load() throws IOException, MissingEntityException;
+  }
+
+  /**
+   * Send a 200 json response with an ETag, or a 304 if the request already has the current version of the response.
+   * If the loader finds that the content does not exist, a 404 is sent. Other errors loading the content are thrown
+   * before anything is sent, so that the caller can send the right error.
+   *
+   * @param request Request to respond to
+   * @param responder Responder for sending the response
+   * @param tenantId Id of the tenant whose entities or resources make up the response
+   * @param type Type of content to send
+   * @param loader Loader for the content, only called if the response is not cached
+   * @param <T> Type of content to send
+   * @throws IOException if there was an error loading the content
+   */
+  public <T> void sendJson(HttpRequest request, HttpResponder responder, String tenantId, Type type,
+                           Loader<T> loader) throws IOException {
+    try {
+      send(request, responder, tenantId, type, loader);
+    } catch (MissingEntityException e) {
+      responder.sendError(HttpResponseStatus.NOT_FOUND, e.getMessage());
+    }
+  }
+
+  private <T> void send(HttpRequest request, HttpResponder responder, String tenantId, Type type,
+                        Loader<T> loader) throws IOException, MissingEntityException {
+    String etag;
+    try {
+      etag = "\"" + generations.get(tenantId) + "\"";
+    } catch (IOException e) {
+      // entities are still readable if generations are not, so respond without a tag instead of failing
+      LOG.warn("Unable to get generation of tenant {}, responding without an entity tag.", tenantId, e);
+      responder.sendJson(HttpResponseStatus.OK, loader.load(), type, gson);
+      return;
+    }
+
+    Multimap<String, String> headers = ImmutableMultimap.of(HttpHeaders.Names.ETAG, etag);
+    if (matches(request.getHeader(HttpHeaders.Names.IF_NONE_MATCH), etag)) {
+      responder.sendStatus(HttpResponseStatus.NOT_MODIFIED, headers);
+      return;
+    }
+
+    String key = tenantId + " " + request.getUri();
+    CachedResponse cached = cache == null ? null : cache.getIfPresent(key);
+    byte[] body;
+    if (cached != null && cached.etag.equals(etag)) {
+      body = cached.body;
+    } else {
+      body = gson.toJson(loader.load(), type).getBytes(Charsets.UTF_8);
+      if (cache != null) {
+        cache.put(key, new CachedResponse(etag, body));
+      }
+    }
+    responder.sendContent(HttpResponseStatus.OK, ChannelBuffers.wrappedBuffer(body), JSON_CONTENT_TYPE, headers);
+  }
+
+  // check if an If-None-Match header value contains the given entity tag.
+  private static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*") || tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A serialized response and the tag it was serialized for.
+   */
+  private static final class CachedResponse {
+    private final String etag;
+    private final byte[] body;
+
+    private CachedResponse(String etag, byte[] body) {
+      this.etag = etag;
+      this.body = body;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.cask.coopr.http;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.codec.embedder.EncoderEmbedder;
+import org.jboss.netty.handler.codec.http.HttpContentCompressor;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMessage;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compresses responses with gzip or deflate, as negotiated through the Accept-Encoding header of the request.
+ * Responses whose content is smaller than a minimum size are sent as is, since compressing them costs more than it
+ * saves. Chunked responses are compressed regardless of size, since their size is not known up front, except for
+ * server-sent event streams, whose small events are each flushed on their own. Responses that do not answer a request,
+ * such as errors sent for input that could not be decoded, are passed on as is, and so are ranges of content and files
+ * written after their response.
+ */
+class ThresholdContentCompressor extends HttpContentCompressor {
+  private static final String EVENT_STREAM_CONTENT_TYPE = "text/event-stream";
+
+  private final int minBytes;
+  private final AtomicInteger pendingRequests;
+
+  /**
+   * Create a compressor that compresses at the given level, responses of at least the given size.
+   *
+   * @param compressionLevel zlib compression level, from 1 for the fastest to 9 for the best compression
+   * @param minBytes minimum number of content bytes a response must have to be compressed
+   */
+  ThresholdContentCompressor(int compressionLevel, int minBytes) {
+    super(compressionLevel);
+    this.minBytes = minBytes;
+    this.pendingRequests = new AtomicInteger();
+  }
+
+  @Override
+  public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    if (e.getMessage() instanceof HttpMessage) {
+      pendingRequests.incrementAndGet();
+    }
+    super.messageReceived(ctx, e);
+  }
+
+  @Override
+  public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+    Object msg = e.getMessage();
+    if (msg instanceof HttpResponse && !HttpResponseStatus.CONTINUE.equals(((HttpResponse) msg).getStatus())) {
+      if (pendingRequests.get() <= 0) {
+        ctx.sendDownstream(e);
+        return;
+      }
+      pendingRequests.decrementAndGet();
+    }
+    super.writeRequested(ctx, e);
+  }
+
+  @Override
+  protected EncoderEmbedder<ChannelBuffer> newContentEncoder(HttpMessage msg, String acceptEncoding) throws Exception {
+    // ranges are of the content as is, and content written after the message, such as a file, cannot be compressed
+    if (msg.getHeader(HttpHeaders.Names.CONTENT_RANGE) != null
+      || HttpHeaders.getContentLength(msg, 0) > msg.getContent().readableBytes()) {
+      return null;
+    }
+    if (msg.isChunked()) {
+      String contentType = msg.getHeader(HttpHeaders.Names.CONTENT_TYPE);
+      if (contentType != null && contentType.startsWith(EVENT_STREAM_CONTENT_TYPE)) {
+        return null;
+      }
+    } else if (msg.getContent().readableBytes() < minBytes) {
+      return null;
+    }
+    return super.newContentEncoder(msg, acceptEncoding);
+  }
+}
@@ -16,7 +16,11 @@
 package co.cask.coopr.http.guice;
 
 import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.http.HandlerExecutors;
+import co.cask.coopr.http.RequestRateLimiter;
+import co.cask.coopr.http.ResponseCache;
 import co.cask.coopr.http.handler.AdminHandler;
+import co.cask.coopr.http.handler.ClusterEventHandler;
 import co.cask.coopr.http.handler.ClusterHandler;
 import co.cask.coopr.http.handler.MetricHandler;
 import co.cask.coopr.http.handler.NodeHandler;
@@ -29,6 +33,7 @@ import co.cask.coopr.http.handler.TaskHandler;
 import co.cask.coopr.http.handler.UserHandler;
 import co.cask.http.HttpHandler;
 import com.google.inject.AbstractModule;
+import com.google.inject.Scopes;
 import com.google.inject.multibindings.Multibinder;
 import com.google.inject.name.Names;
 
@@ -39,6 +44,9 @@ public class HttpModule extends AbstractModule {
 
   @Override
   protected void configure() {
+    bind(ResponseCache.class).in(Scopes.SINGLETON);
+    bind(HandlerExecutors.class).in(Scopes.SINGLETON);
+    bind(RequestRateLimiter.class).in(Scopes.SINGLETON);
 
     Multibinder<HttpHandler> externalHandlerBinder =
       Multibinder.newSetBinder(binder(), HttpHandler.class, Names.named(Constants.HandlersNames.EXTERNAL));
@@ -51,6 +59,7 @@ public class HttpModule extends AbstractModule {
     externalHandlerBinder.addBinding().to(PluginHandler.class);
     externalHandlerBinder.addBinding().to(UserHandler.class);
     externalHandlerBinder.addBinding().to(MetricHandler.class);
+    externalHandlerBinder.addBinding().to(ClusterEventHandler.class);
 
     Multibinder<HttpHandler> internalHandlerBinder =
       Multibinder.newSetBinder(binder(), HttpHandler.class, Names.named(Constants.HandlersNames.INTERNAL));
@@ -16,13 +16,27 @@
 package co.cask.coopr.http.handler;
 
 import co.cask.coopr.account.Account;
+import co.cask.coopr.cluster.AdmissionController;
+import co.cask.coopr.cluster.AdmissionMetrics;
 import co.cask.coopr.cluster.ClusterService;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.queue.QueueMetrics;
+import co.cask.coopr.common.queue.QueueSchedulingMetrics;
+import co.cask.coopr.common.queue.QueueService;
+import co.cask.coopr.common.queue.QueueType;
+import co.cask.coopr.http.HandlerExecutors;
+import co.cask.coopr.http.HandlerWorkload;
+import co.cask.coopr.http.HandlerWorkloadMetrics;
+import co.cask.coopr.http.HttpHelper;
+import co.cask.coopr.http.ResponseCache;
+import co.cask.coopr.management.HttpRouteStats;
+import co.cask.coopr.management.HttpStats;
+import co.cask.coopr.scheduler.task.MissingEntityException;
 import co.cask.coopr.scheduler.task.TaskQueueService;
 import co.cask.coopr.spec.HardwareType;
 import co.cask.coopr.spec.ImageType;
 import co.cask.coopr.spec.Provider;
+import co.cask.coopr.spec.Tenant;
 import co.cask.coopr.spec.plugin.AutomatorType;
 import co.cask.coopr.spec.plugin.ProviderType;
 import co.cask.coopr.spec.service.Service;
@@ -41,10 +55,12 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 import com.google.inject.Inject;
 import org.jboss.netty.buffer.ChannelBufferInputStream;
 import org.jboss.netty.handler.codec.http.HttpRequest;
@@ -80,19 +96,36 @@ public class AdminHandler extends AbstractAuthHandler {
   public static final String CLUSTER_TEMPLATES = "clustertemplates";
   public static final String PARTIAL_TEMPLATES = "partialtemplates";
   public static final String SERVICES = "services";
+  private static final List<QueueType> SCHEDULED_QUEUE_TYPES =
+    ImmutableList.of(QueueType.CLUSTER, QueueType.SOLVER, QueueType.JOB);
 
+  private final TenantStore tenantStore;
   private final EntityStoreService entityStoreService;
   private final TaskQueueService taskQueueService;
+  private final QueueService queueService;
   private final ClusterService clusterService;
+  private final AdmissionController admissionController;
+  private final ResponseCache responseCache;
+  private final HandlerExecutors handlerExecutors;
+  private final HttpStats httpStats;
   private final Gson gson;
 
   @Inject
   private AdminHandler(TenantStore tenantStore, EntityStoreService entityStoreService,
-                       TaskQueueService taskQueueService, ClusterService clusterService, Gson gson) {
+                       TaskQueueService taskQueueService, QueueService queueService,
+                       ClusterService clusterService, AdmissionController admissionController,
+                       ResponseCache responseCache, HandlerExecutors handlerExecutors, HttpStats httpStats,
+                       Gson gson) {
     super(tenantStore);
+    this.tenantStore = tenantStore;
     this.taskQueueService = taskQueueService;
+    this.queueService = queueService;
     this.entityStoreService = entityStoreService;
     this.clusterService = clusterService;
+    this.admissionController = admissionController;
+    this.responseCache = responseCache;
+    this.handlerExecutors = handlerExecutors;
+    this.httpStats = httpStats;
     this.gson = gson;
   }
 
@@ -129,6 +162,148 @@ public class AdminHandler extends AbstractAuthHandler {
     }
   }
 
+  /**
+   * Get a mapping of tenant to scheduling metrics of the cluster, solver and job queues of that tenant, as seen by the
+   * server handling the request. User requesting the metrics must be a tenant admin or the superadmin, with tenant
+   * admins getting back only the metrics for their own tenant and with superadmins getting the metrics across all
+   * tenants.
+   *
+   * @param request Request for scheduling metrics.
+   * @param responder Responder for sending the response.
+   */
+  @GET
+  @Path("/metrics/scheduling")
+  public void getSchedulingMetrics(HttpRequest request, HttpResponder responder) {
+    Account account = getAndAuthenticateAccount(request, responder);
+    if (account == null) {
+      return;
+    }
+
+    Map<QueueType, Map<String, QueueSchedulingMetrics>> groupMetrics = Maps.newEnumMap(QueueType.class);
+    for (QueueType queueType : SCHEDULED_QUEUE_TYPES) {
+      groupMetrics.put(queueType, queueService.getQueueGroup(queueType).getSchedulingMetrics());
+    }
+
+    try {
+      if (account.isSuperadmin()) {
+        Map<String, Map<String, QueueSchedulingMetrics>> responseBody = Maps.newHashMap();
+        for (Tenant tenant : tenantStore.getAllTenants()) {
+          responseBody.put(tenant.getSpecification().getName(), getSchedulingMetrics(groupMetrics, tenant.getId()));
+        }
+        responder.sendJson(HttpResponseStatus.OK, responseBody);
+      } else if (account.isAdmin()) {
+        String tenantName = request.getHeader(Constants.TENANT_HEADER);
+        responder.sendJson(HttpResponseStatus.OK,
+                           ImmutableMap.of(tenantName, getSchedulingMetrics(groupMetrics, account.getTenantId())));
+      } else {
+        responder.sendError(HttpResponseStatus.FORBIDDEN, "Forbidden to get scheduling metrics.");
+      }
+    } catch (IOException e) {
+      responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Internal error getting scheduling metrics.");
+    }
+  }
+
+  /**
+   * Get admission control metrics, which include the number of cluster operations and tasks in flight, the max number
+   * that can be in flight, and the number of operations admitted and rejected by the server handling the request.
+   * User requesting the metrics must be a tenant admin or the superadmin, with tenant admins getting back only the
+   * metrics for their own tenant and with superadmins getting back server wide metrics plus the metrics across all
+   * tenants.
+   *
+   * @param request Request for admission metrics.
+   * @param responder Responder for sending the response.
+   */
+  @GET
+  @Path("/metrics/admission")
+  public void getAdmissionMetrics(HttpRequest request, HttpResponder responder) {
+    Account account = getAndAuthenticateAccount(request, responder);
+    if (account == null) {
+      return;
+    }
+
+    try {
+      if (account.isSuperadmin()) {
+        responder.sendJson(HttpResponseStatus.OK,
+                           ImmutableMap.of("server", admissionController.getServerMetrics(),
+                                           "tenants", admissionController.getTenantMetrics()));
+      } else if (account.isAdmin()) {
+        String tenantName = request.getHeader(Constants.TENANT_HEADER);
+        Map<String, AdmissionMetrics> tenantMetrics =
+          ImmutableMap.of(tenantName, admissionController.getTenantMetrics(account.getTenantId()));
+        responder.sendJson(HttpResponseStatus.OK, ImmutableMap.of("tenants", tenantMetrics));
+      } else {
+        responder.sendError(HttpResponseStatus.FORBIDDEN, "Forbidden to get admission metrics.");
+      }
+    } catch (IOException e) {
+      responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Internal error getting admission metrics.");
+    }
+  }
+
+  /**
+   * Get a mapping of lower case request workload to metrics of the executor that handles requests of that workload,
+   * as seen by the server handling the request. Metrics include the number of requests waiting and in progress, and
+   * the mean time requests waited and took to handle. User requesting the metrics must be the superadmin.
+   *
+   * @param request Request for handler metrics.
+   * @param responder Responder for sending the response.
+   */
+  @GET
+  @Path("/metrics/handlers")
+  public void getHandlerMetrics(HttpRequest request, HttpResponder responder) {
+    Account account = getAndAuthenticateAccount(request, responder);
+    if (account == null) {
+      return;
+    }
+
+    if (!account.isSuperadmin()) {
+      responder.sendError(HttpResponseStatus.FORBIDDEN, "Forbidden to get handler metrics.");
+      return;
+    }
+    Map<String, HandlerWorkloadMetrics> metrics = Maps.newHashMap();
+    for (Map.Entry<HandlerWorkload, HandlerWorkloadMetrics> entry : handlerExecutors.getMetrics().entrySet()) {
+      metrics.put(entry.getKey().name().toLowerCase(), entry.getValue());
+    }
+    responder.sendJson(HttpResponseStatus.OK, metrics);
+  }
+
+  /**
+   * Get a mapping of route to stats of requests to that route, across the apis of the server handling the request.
+   * Routes are the request method and the path template of the handler method, with requests that did not reach a
+   * handler method under "unmatched". Stats include request counts, response status codes, body bytes in and out,
+   * and latency percentiles. User requesting the metrics must be the superadmin.
+   *
+   * @param request Request for http metrics.
+   * @param responder Responder for sending the response.
+   */
+  @GET
+  @Path("/metrics/http")
+  public void getHttpMetrics(HttpRequest request, HttpResponder responder) {
+    Account account = getAndAuthenticateAccount(request, responder);
+    if (account == null) {
+      return;
+    }
+
+    if (!account.isSuperadmin()) {
+      responder.sendError(HttpResponseStatus.FORBIDDEN, "Forbidden to get http metrics.");
+      return;
+    }
+    Map<String, HttpRouteStats> metrics = httpStats.getRoutes();
+    responder.sendJson(HttpResponseStatus.OK, metrics);
+  }
+
+  // get a mapping of lower case queue type to scheduling metrics of the queue of that type for the given tenant.
+  private Map<String, QueueSchedulingMetrics> getSchedulingMetrics(
+    Map<QueueType, Map<String, QueueSchedulingMetrics>> groupMetrics, String tenantId) {
+    Map<String, QueueSchedulingMetrics> tenantMetrics = Maps.newHashMap();
+    for (Map.Entry<QueueType, Map<String, QueueSchedulingMetrics>> entry : groupMetrics.entrySet()) {
+      QueueSchedulingMetrics metrics = entry.getValue().get(tenantId);
+      if (metrics != null) {
+        tenantMetrics.put(entry.getKey().name().toLowerCase(), metrics);
+      }
+    }
+    return tenantMetrics;
+  }
+
   /**
    * Get a specific {@link Provider} if readable by the user.
    *
@@ -138,15 +313,22 @@ public class AdminHandler extends AbstractAuthHandler {
    */
   @GET
   @Path("/providers/{provider-id}")
-  public void getProvider(HttpRequest request, HttpResponder responder, @PathParam("provider-id") String providerId) {
+  public void getProvider(HttpRequest request, HttpResponder responder,
+                          @PathParam("provider-id") final String providerId) {
     Account account = getAndAuthenticateAccount(request, responder);
     if (account == null) {
       return;
     }
 
     try {
-      respondToGetEntity(entityStoreService.getView(account).getProvider(providerId), "provider",
-                         providerId, Provider.class, responder);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(), Provider.class,
+                             new ResponseCache.Loader<Provider>() {
+        @Override
+        public Provider load() throws IOException, MissingEntityException {
+          return checkFound(view.getProvider(providerId), "provider", providerId);
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Exception getting provider " + providerId);
     }
@@ -193,15 +375,21 @@ public class AdminHandler extends AbstractAuthHandler {
   @GET
   @Path("/hardwaretypes/{hardwaretype-id}")
   public void getHardwareType(HttpRequest request, HttpResponder responder,
-                              @PathParam("hardwaretype-id") String hardwaretypeId) {
+                              @PathParam("hardwaretype-id") final String hardwaretypeId) {
     Account account = getAndAuthenticateAccount(request, responder);
     if (account == null) {
       return;
     }
 
     try {
-      respondToGetEntity(entityStoreService.getView(account).getHardwareType(hardwaretypeId), "hardware type",
-                         hardwaretypeId, HardwareType.class, responder);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(), HardwareType.class,
+                             new ResponseCache.Loader<HardwareType>() {
+        @Override
+        public HardwareType load() throws IOException, MissingEntityException {
+          return checkFound(view.getHardwareType(hardwaretypeId), "hardware type", hardwaretypeId);
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR,
                           "Exception getting hardware type " + hardwaretypeId);
@@ -250,15 +438,21 @@ public class AdminHandler extends AbstractAuthHandler {
   @GET
   @Path("/imagetypes/{imagetype-id}")
   public void getImageType(HttpRequest request, HttpResponder responder,
-                           @PathParam("imagetype-id") String imagetypeId) {
+                           @PathParam("imagetype-id") final String imagetypeId) {
     Account account = getAndAuthenticateAccount(request, responder);
     if (account == null) {
       return;
     }
 
     try {
-      respondToGetEntity(entityStoreService.getView(account).getImageType(imagetypeId),
-                         "image type", imagetypeId, ImageType.class, responder);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(), ImageType.class,
+                             new ResponseCache.Loader<ImageType>() {
+        @Override
+        public ImageType load() throws IOException, MissingEntityException {
+          return checkFound(view.getImageType(imagetypeId), "image type", imagetypeId);
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Exception getting image type " + imagetypeId);
     }
@@ -304,15 +498,22 @@ public class AdminHandler extends AbstractAuthHandler {
    */
   @GET
   @Path("/services/{service-id}")
-  public void getService(HttpRequest request, HttpResponder responder, @PathParam("service-id") String serviceId) {
+  public void getService(HttpRequest request, HttpResponder responder,
+                         @PathParam("service-id") final String serviceId) {
     Account account = getAndAuthenticateAccount(request, responder);
     if (account == null) {
       return;
     }
 
     try {
-      respondToGetEntity(entityStoreService.getView(account).getService(serviceId), "service",
-                         serviceId, Service.class, responder);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(), Service.class,
+                             new ResponseCache.Loader<Service>() {
+        @Override
+        public Service load() throws IOException, MissingEntityException {
+          return checkFound(view.getService(serviceId), "service", serviceId);
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Exception getting service " + serviceId);
     }
@@ -359,15 +560,21 @@ public class AdminHandler extends AbstractAuthHandler {
   @GET
   @Path("/clustertemplates/{clustertemplate-id}")
   public void getClusterTemplate(HttpRequest request, HttpResponder responder,
-                                 @PathParam("clustertemplate-id") String clustertemplateId) {
+                                 @PathParam("clustertemplate-id") final String clustertemplateId) {
     Account account = getAndAuthenticateAccount(request, responder);
     if (account == null) {
       return;
     }
 
     try {
-      respondToGetEntity(entityStoreService.getView(account).getClusterTemplate(clustertemplateId), "cluster template",
-                         clustertemplateId, ClusterTemplate.class, responder);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(), ClusterTemplate.class,
+                             new ResponseCache.Loader<ClusterTemplate>() {
+        @Override
+        public ClusterTemplate load() throws IOException, MissingEntityException {
+          return checkFound(view.getClusterTemplate(clustertemplateId), "cluster template", clustertemplateId);
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR,
                           "Exception getting cluster template " + clustertemplateId);
@@ -416,15 +623,21 @@ public class AdminHandler extends AbstractAuthHandler {
   @GET
   @Path("/partialtemplates/{partialtemplate-id}")
   public void getPartialTemplate(HttpRequest request, HttpResponder responder,
-                                 @PathParam("partialtemplate-id") String partialtemplateId) {
+                                 @PathParam("partialtemplate-id") final String partialtemplateId) {
     Account account = getAndAuthenticateAccount(request, responder);
     if (account == null) {
       return;
     }
 
     try {
-      respondToGetEntity(entityStoreService.getView(account).getPartialTemplate(partialtemplateId), "partial template",
-      partialtemplateId, PartialTemplate.class, responder);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(), PartialTemplate.class,
+                             new ResponseCache.Loader<PartialTemplate>() {
+        @Override
+        public PartialTemplate load() throws IOException, MissingEntityException {
+          return checkFound(view.getPartialTemplate(partialtemplateId), "partial template", partialtemplateId);
+        }
+      });
     } catch (IOException e) {
       responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR,
                            "Exception getting partial template " + partialtemplateId);
@@ -473,15 +686,21 @@ public class AdminHandler extends AbstractAuthHandler {
   @GET
   @Path("/plugins/providertypes/{providertype-id}")
   public void getProviderType(HttpRequest request, HttpResponder responder,
-                              @PathParam("providertype-id") String providertypeId) {
+                              @PathParam("providertype-id") final String providertypeId) {
     Account account = getAndAuthenticateAccount(request, responder);
     if (account == null) {
       return;
     }
 
     try {
-      respondToGetEntity(entityStoreService.getView(account).getProviderType(providertypeId), "provider type",
-                         providertypeId, ProviderType.class, responder);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(), ProviderType.class,
+                             new ResponseCache.Loader<ProviderType>() {
+        @Override
+        public ProviderType load() throws IOException, MissingEntityException {
+          return checkFound(view.getProviderType(providertypeId), "provider type", providertypeId);
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR,
                           "Exception getting provider type " + providertypeId);
@@ -530,15 +749,21 @@ public class AdminHandler extends AbstractAuthHandler {
   @GET
   @Path("/plugins/automatortypes/{automatortype-id}")
   public void getAutomatorType(HttpRequest request, HttpResponder responder,
-                              @PathParam("automatortype-id") String automatortypeId) {
+                              @PathParam("automatortype-id") final String automatortypeId) {
     Account account = getAndAuthenticateAccount(request, responder);
     if (account == null) {
       return;
     }
 
     try {
-      respondToGetEntity(entityStoreService.getView(account).getAutomatorType(automatortypeId), "automator type",
-                         automatortypeId, AutomatorType.class, responder);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(), AutomatorType.class,
+                             new ResponseCache.Loader<AutomatorType>() {
+        @Override
+        public AutomatorType load() throws IOException, MissingEntityException {
+          return checkFound(view.getAutomatorType(automatortypeId), "automator type", automatortypeId);
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR,
                           "Exception getting automator type " + automatortypeId);
@@ -592,8 +817,15 @@ public class AdminHandler extends AbstractAuthHandler {
     }
 
     try {
-      responder.sendJson(HttpResponseStatus.OK, entityStoreService.getView(account).getAllProviders(),
-                         new TypeToken<Collection<Provider>>() { }.getType(), gson);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(),
+                             new TypeToken<Collection<Provider>>() { }.getType(),
+                             new ResponseCache.Loader<Collection<Provider>>() {
+        @Override
+        public Collection<Provider> load() throws IOException {
+          return view.getAllProviders();
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Exception getting providers");
     }
@@ -614,8 +846,15 @@ public class AdminHandler extends AbstractAuthHandler {
     }
 
     try {
-      responder.sendJson(HttpResponseStatus.OK, entityStoreService.getView(account).getAllHardwareTypes(),
-                         new TypeToken<Collection<HardwareType>>() { }.getType(), gson);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(),
+                             new TypeToken<Collection<HardwareType>>() { }.getType(),
+                             new ResponseCache.Loader<Collection<HardwareType>>() {
+        @Override
+        public Collection<HardwareType> load() throws IOException {
+          return view.getAllHardwareTypes();
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Exception getting hardware types");
     }
@@ -636,8 +875,15 @@ public class AdminHandler extends AbstractAuthHandler {
     }
 
     try {
-      responder.sendJson(HttpResponseStatus.OK, entityStoreService.getView(account).getAllImageTypes(),
-                         new TypeToken<Collection<ImageType>>() { }.getType(), gson);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(),
+                             new TypeToken<Collection<ImageType>>() { }.getType(),
+                             new ResponseCache.Loader<Collection<ImageType>>() {
+        @Override
+        public Collection<ImageType> load() throws IOException {
+          return view.getAllImageTypes();
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Exception getting image types");
     }
@@ -658,8 +904,15 @@ public class AdminHandler extends AbstractAuthHandler {
     }
 
     try {
-      responder.sendJson(HttpResponseStatus.OK, entityStoreService.getView(account).getAllServices(),
-                         new TypeToken<Collection<Service>>() { }.getType(), gson);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(),
+                             new TypeToken<Collection<Service>>() { }.getType(),
+                             new ResponseCache.Loader<Collection<Service>>() {
+        @Override
+        public Collection<Service> load() throws IOException {
+          return view.getAllServices();
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Exception getting services");
     }
@@ -680,8 +933,15 @@ public class AdminHandler extends AbstractAuthHandler {
     }
 
     try {
-      responder.sendJson(HttpResponseStatus.OK, entityStoreService.getView(account).getAllProviderTypes(),
-                         new TypeToken<Collection<ProviderType>>() { }.getType(), gson);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(),
+                             new TypeToken<Collection<ProviderType>>() { }.getType(),
+                             new ResponseCache.Loader<Collection<ProviderType>>() {
+        @Override
+        public Collection<ProviderType> load() throws IOException {
+          return view.getAllProviderTypes();
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Exception getting provider types");
     }
@@ -702,8 +962,15 @@ public class AdminHandler extends AbstractAuthHandler {
     }
 
     try {
-      responder.sendJson(HttpResponseStatus.OK, entityStoreService.getView(account).getAllAutomatorTypes(),
-                         new TypeToken<Collection<AutomatorType>>() { }.getType(), gson);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(),
+                             new TypeToken<Collection<AutomatorType>>() { }.getType(),
+                             new ResponseCache.Loader<Collection<AutomatorType>>() {
+        @Override
+        public Collection<AutomatorType> load() throws IOException {
+          return view.getAllAutomatorTypes();
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Exception getting automator types");
     }
@@ -724,8 +991,15 @@ public class AdminHandler extends AbstractAuthHandler {
     }
 
     try {
-      responder.sendJson(HttpResponseStatus.OK, entityStoreService.getView(account).getAllClusterTemplates(),
-                         new TypeToken<Collection<ClusterTemplate>>() { }.getType(), gson);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(),
+                             new TypeToken<Collection<ClusterTemplate>>() { }.getType(),
+                             new ResponseCache.Loader<Collection<ClusterTemplate>>() {
+        @Override
+        public Collection<ClusterTemplate> load() throws IOException {
+          return view.getAllClusterTemplates();
+        }
+      });
     } catch (IOException e) {
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Exception getting cluster templates");
     }
@@ -746,8 +1020,15 @@ public class AdminHandler extends AbstractAuthHandler {
     }
 
     try {
-      responder.sendJson(HttpResponseStatus.OK, entityStoreService.getView(account).getAllPartialTemplates(),
-                         new TypeToken<Collection<PartialTemplate>>() { }.getType(), gson);
+      final EntityStoreView view = entityStoreService.getView(account);
+      responseCache.sendJson(request, responder, account.getTenantId(),
+                             new TypeToken<Collection<PartialTemplate>>() { }.getType(),
+                             new ResponseCache.Loader<Collection<PartialTemplate>>() {
+        @Override
+        public Collection<PartialTemplate> load() throws IOException {
+          return view.getAllPartialTemplates();
+        }
+      });
     } catch (IOException e) {
       responder.sendString(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Exception getting partial templates");
     }
@@ -1664,36 +1945,43 @@ public class AdminHandler extends AbstractAuthHandler {
       return;
     }
 
-    Map<String, JsonElement> outJson = Maps.newHashMap();
-
+    // read everything before starting the response so that store errors can still be sent as an error status
     EntityStoreView view = entityStoreService.getView(account);
     Collection<Provider> providers = view.getAllProviders();
-    LOG.debug("Exporting {} providers", providers.size());
-    outJson.put(PROVIDERS, gson.toJsonTree(providers));
-
     Collection<HardwareType> hardwareTypes = view.getAllHardwareTypes();
-    LOG.debug("Exporting {} hardware types", hardwareTypes.size());
-    outJson.put(HARDWARE_TYPES, gson.toJsonTree(hardwareTypes));
-
     Collection<ImageType> imageTypes = view.getAllImageTypes();
-    LOG.debug("Exporting {} image types", imageTypes.size());
-    outJson.put(IMAGE_TYPES, gson.toJsonTree(imageTypes));
-
     Collection<Service> services = view.getAllServices();
-    LOG.debug("Exporting {} services", services.size());
-    outJson.put(SERVICES, gson.toJsonTree(services));
-
     Collection<ClusterTemplate> clusterTemplates = view.getAllClusterTemplates();
-    LOG.debug("Exporting {} cluster templates", clusterTemplates.size());
-    outJson.put(CLUSTER_TEMPLATES, gson.toJsonTree(clusterTemplates));
-
     Collection<PartialTemplate> partialTemplates = view.getAllPartialTemplates();
-    LOG.debug("Exporting {} partial templates", partialTemplates.size());
-    outJson.put(PARTIAL_TEMPLATES, gson.toJsonTree(partialTemplates));
+    LOG.debug("Exporting {} providers, {} hardware types, {} image types, {} services, {} cluster templates and " +
+                "{} partial templates", providers.size(), hardwareTypes.size(), imageTypes.size(), services.size(),
+              clusterTemplates.size(), partialTemplates.size());
 
-    LOG.trace("Exporting {}", outJson);
+    JsonWriter writer = HttpHelper.startJsonStream(responder);
+    try {
+      writer.beginObject();
+      writeEntities(writer, PROVIDERS, providers, Provider.class);
+      writeEntities(writer, HARDWARE_TYPES, hardwareTypes, HardwareType.class);
+      writeEntities(writer, IMAGE_TYPES, imageTypes, ImageType.class);
+      writeEntities(writer, SERVICES, services, Service.class);
+      writeEntities(writer, CLUSTER_TEMPLATES, clusterTemplates, ClusterTemplate.class);
+      writeEntities(writer, PARTIAL_TEMPLATES, partialTemplates, PartialTemplate.class);
+      writer.endObject();
+    } catch (IOException e) {
+      LOG.debug("Exception streaming export for account {}.", account, e);
+    } finally {
+      Closeables.closeQuietly(writer);
+    }
+  }
 
-    responder.sendJson(HttpResponseStatus.OK, outJson);
+  private <T> void writeEntities(JsonWriter writer, String name, Collection<T> entities,
+                                 Class<T> entityClass) throws IOException {
+    writer.name(name);
+    writer.beginArray();
+    for (T entity : entities) {
+      gson.toJson(entity, entityClass, writer);
+    }
+    writer.endArray();
   }
 
   /**
@@ -1902,6 +2190,13 @@ public class AdminHandler extends AbstractAuthHandler {
     return result;
   }
 
+  private static <T> T checkFound(T entity, String entityType, String entityId) throws MissingEntityException {
+    if (entity == null) {
+      throw new MissingEntityException(Joiner.on(" ").join(entityType, entityId, " not found."));
+    }
+    return entity;
+  }
+
   private <T> void respondToGetEntity(Object entity, String entityType, String entityId,
                                       Class<T> entityClass, HttpResponder responder) {
     if (entity == null) {
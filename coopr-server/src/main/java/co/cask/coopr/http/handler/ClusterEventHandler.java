@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.cask.coopr.http.handler;
+
+import co.cask.coopr.account.Account;
+import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.event.ClusterEventService;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.store.cluster.ClusterStoreService;
+import co.cask.coopr.store.tenant.TenantStore;
+import co.cask.http.ChunkResponder;
+import co.cask.http.HttpResponder;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.gson.Gson;
+import com.google.inject.Inject;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.QueryStringDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+/**
+ * Handler for streaming cluster, job and task status changes as server-sent events, so that clients do not need to
+ * poll for cluster status.
+ */
+@Path(Constants.API_BASE + "/events")
+public class ClusterEventHandler extends AbstractAuthHandler {
+  private static final Logger LOG = LoggerFactory.getLogger(ClusterEventHandler.class);
+  private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+  private static final String LAST_EVENT_ID_PARAM = "lastEventId";
+
+  private final ClusterStoreService clusterStoreService;
+  private final ClusterEventService clusterEventService;
+  private final Gson gson;
+
+  @Inject
+  private ClusterEventHandler(TenantStore tenantStore, ClusterStoreService clusterStoreService,
+                              ClusterEventService clusterEventService, Gson gson) {
+    super(tenantStore);
+    this.clusterStoreService = clusterStoreService;
+    this.clusterEventService = clusterEventService;
+    this.gson = gson;
+  }
+
+  /**
+   * Stream status changes of all clusters visible to the user. Admins get events for all clusters in their tenant,
+   * while other users only get events for their own clusters. Clients can resume from the last event they saw by
+   * passing its id in the Last-Event-ID header or the lastEventId query parameter.
+   *
+   * @param request Request for cluster events.
+   * @param responder Responder for streaming events.
+   */
+  @GET
+  @Path("/clusters")
+  public void getClusterEvents(HttpRequest request, HttpResponder responder) {
+    Account account = getAndAuthenticateAccount(request, responder);
+    if (account == null) {
+      return;
+    }
+
+    String ownerId = account.isAdmin() ? null : account.getUserId();
+    stream(request, responder, account.getTenantId(), null, ownerId);
+  }
+
+  /**
+   * Stream status changes of a specific cluster visible to the user. Clients can resume from the last event they saw
+   * by passing its id in the Last-Event-ID header or the lastEventId query parameter.
+   *
+   * @param request Request for cluster events.
+   * @param responder Responder for streaming events.
+   * @param clusterId Id of the cluster whose events to stream.
+   */
+  @GET
+  @Path("/clusters/{cluster-id}")
+  public void getClusterEvents(HttpRequest request, HttpResponder responder,
+                               @PathParam("cluster-id") String clusterId) {
+    Account account = getAndAuthenticateAccount(request, responder);
+    if (account == null) {
+      return;
+    }
+
+    try {
+      Cluster cluster = clusterStoreService.getView(account).getCluster(clusterId);
+      if (cluster == null) {
+        responder.sendError(HttpResponseStatus.NOT_FOUND, String.format("cluster %s not found", clusterId));
+        return;
+      }
+      stream(request, responder, cluster.getAccount().getTenantId(), clusterId, null);
+    } catch (IOException e) {
+      LOG.error("Exception getting cluster {}.", clusterId, e);
+      responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Exception getting cluster " + clusterId);
+    }
+  }
+
+  private void stream(HttpRequest request, HttpResponder responder,
+                      String tenantId, String clusterId, String ownerId) {
+    if (!clusterEventService.isRunning()) {
+      responder.sendError(HttpResponseStatus.SERVICE_UNAVAILABLE, "Cluster events are not available.");
+      return;
+    }
+
+    String lastEventId = request.getHeader(LAST_EVENT_ID_HEADER);
+    if (lastEventId == null) {
+      List<String> params = new QueryStringDecoder(request.getUri()).getParameters().get(LAST_EVENT_ID_PARAM);
+      lastEventId = params == null || params.isEmpty() ? null : params.get(0);
+    }
+    Long resumeId = null;
+    if (lastEventId != null) {
+      try {
+        resumeId = Long.parseLong(lastEventId);
+      } catch (NumberFormatException e) {
+        responder.sendError(HttpResponseStatus.BAD_REQUEST, "Invalid last event id " + lastEventId);
+        return;
+      }
+    }
+
+    ChunkResponder chunkResponder = responder.sendChunkStart(
+      HttpResponseStatus.OK, ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE, "text/event-stream",
+                                                  HttpHeaders.Names.CACHE_CONTROL, HttpHeaders.Values.NO_CACHE));
+    clusterEventService.subscribe(new ClusterEventStream(tenantId, clusterId, ownerId, chunkResponder, gson),
+                                  resumeId);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.cask.coopr.http.handler;
+
+import co.cask.coopr.cluster.event.ClusterEvent;
+import co.cask.coopr.cluster.event.ClusterEventSubscriber;
+import co.cask.http.ChunkResponder;
+import com.google.common.base.Charsets;
+import com.google.gson.Gson;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link ClusterEvent ClusterEvents} to a chunked response in the server-sent events format, using the event
+ * id as the event stream id so that clients can resume with the Last-Event-ID header. Events can be limited to a
+ * single cluster and to clusters of a single owner.
+ */
+class ClusterEventStream implements ClusterEventSubscriber {
+  private static final Logger LOG = LoggerFactory.getLogger(ClusterEventStream.class);
+  private static final String HEARTBEAT = ":\n\n";
+
+  private final String tenantId;
+  private final String clusterId;
+  private final String ownerId;
+  private final ChunkResponder chunkResponder;
+  private final Gson gson;
+
+  /**
+   * Create a stream of events for a tenant.
+   *
+   * @param tenantId Id of the tenant whose events to stream.
+   * @param clusterId Id of the cluster whose events to stream, or null to stream events of all clusters.
+   * @param ownerId Id of the user whose clusters to stream events for, or null to stream events of all users.
+   * @param chunkResponder Responder to write events to.
+   * @param gson Gson to serialize events with.
+   */
+  ClusterEventStream(String tenantId, String clusterId, String ownerId, ChunkResponder chunkResponder, Gson gson) {
+    this.tenantId = tenantId;
+    this.clusterId = clusterId;
+    this.ownerId = ownerId;
+    this.chunkResponder = chunkResponder;
+    this.gson = gson;
+  }
+
+  @Override
+  public String getTenantId() {
+    return tenantId;
+  }
+
+  @Override
+  public boolean accept(ClusterEvent event) {
+    return (clusterId == null || clusterId.equals(event.getClusterId())) &&
+      (ownerId == null || ownerId.equals(event.getOwnerId()));
+  }
+
+  @Override
+  public void onEvent(long sequenceId, ClusterEvent event) throws IOException {
+    write("id: " + sequenceId + "\nevent: " + event.getType().name().toLowerCase() +
+            "\ndata: " + gson.toJson(event) + "\n\n");
+  }
+
+  @Override
+  public void onHeartbeat() throws IOException {
+    write(HEARTBEAT);
+  }
+
+  @Override
+  public void close() {
+    try {
+      chunkResponder.close();
+    } catch (IOException e) {
+      LOG.trace("Exception closing event stream for tenant {}.", tenantId, e);
+    }
+  }
+
+  private void write(String data) throws IOException {
+    chunkResponder.sendChunk(ChannelBuffers.wrappedBuffer(data.getBytes(Charsets.UTF_8)));
+  }
+}
@@ -16,6 +16,7 @@
 package co.cask.coopr.http.handler;
 
 import co.cask.coopr.account.Account;
+import co.cask.coopr.cluster.AdmissionException;
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.cluster.ClusterDetails;
 import co.cask.coopr.cluster.ClusterService;
@@ -24,6 +25,7 @@ import co.cask.coopr.cluster.MissingFieldsException;
 import co.cask.coopr.cluster.Node;
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.http.HttpHelper;
 import co.cask.coopr.http.request.AddServicesRequest;
 import co.cask.coopr.http.request.ClusterConfigureRequest;
 import co.cask.coopr.http.request.ClusterCreateRequest;
@@ -45,14 +47,15 @@ import co.cask.coopr.store.tenant.TenantStore;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
-import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
 import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.jboss.netty.handler.codec.http.QueryStringDecoder;
@@ -78,6 +81,7 @@ import javax.ws.rs.PathParam;
 @Path(Constants.API_BASE + "/clusters")
 public class ClusterHandler extends AbstractAuthHandler {
   private static final Logger LOG = LoggerFactory.getLogger(ClusterHandler.class);
+  private static final HttpResponseStatus TOO_MANY_REQUESTS = new HttpResponseStatus(429, "Too Many Requests");
 
   private final ClusterService clusterService;
   private final ClusterStoreService clusterStoreService;
@@ -118,7 +122,7 @@ public class ClusterHandler extends AbstractAuthHandler {
     try {
       Set<Cluster.Status> statusFilter = getStatusFilter(request);
       List<ClusterSummary> summaries = clusterService.getClusterSummaries(account, statusFilter);
-      responder.sendJson(HttpResponseStatus.OK, summaries, new TypeToken<List<ClusterSummary>>() { }.getType(), gson);
+      HttpHelper.sendJsonStream(responder, summaries, ClusterSummary.class, gson);
     } catch (IllegalArgumentException e) {
       responder.sendError(HttpResponseStatus.BAD_REQUEST, "Invalid status requested.");
     } catch (IOException e) {
@@ -296,6 +300,8 @@ public class ClusterHandler extends AbstractAuthHandler {
       responder.sendError(HttpResponseStatus.CONFLICT, e.getMessage());
     } catch (InvalidClusterException e) {
       responder.sendError(HttpResponseStatus.BAD_REQUEST, e.getMessage());
+    } catch (AdmissionException e) {
+      sendTooManyRequests(responder, e);
     } catch (MissingFieldsException e) {
       responder.sendJson(HttpResponseStatus.BAD_REQUEST, ImmutableMap.of("missingFields", e.getMissingFields()));
     } finally {
@@ -616,6 +622,8 @@ public class ClusterHandler extends AbstractAuthHandler {
       LOG.error("Exception requesting reconfigure on cluster {}.", clusterId, e);
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR,
                           "Internal error while requesting cluster reconfigure");
+    } catch (AdmissionException e) {
+      sendTooManyRequests(responder, e);
     } catch (MissingFieldsException e) {
       responder.sendJson(HttpResponseStatus.BAD_REQUEST, ImmutableMap.of("missingFields", e.getMissingFields()));
     }
@@ -666,6 +674,8 @@ public class ClusterHandler extends AbstractAuthHandler {
       LOG.error("Exception requesting to add services to cluster {}.", clusterId, e);
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR,
                           "Internal error while requesting service action.");
+    } catch (AdmissionException e) {
+      sendTooManyRequests(responder, e);
     } catch (MissingFieldsException e) {
       responder.sendJson(HttpResponseStatus.BAD_REQUEST, ImmutableMap.of("missingFields", e.getMissingFields()));
     }
@@ -827,6 +837,8 @@ public class ClusterHandler extends AbstractAuthHandler {
     } catch (IOException e) {
       LOG.error("Exception performing service action for cluster {}", clusterId, e);
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Internal error performing service action");
+    } catch (AdmissionException e) {
+      sendTooManyRequests(responder, e);
     } catch (MissingFieldsException e) {
       responder.sendJson(HttpResponseStatus.BAD_REQUEST, ImmutableMap.of("missingFields", e.getMissingFields()));
     }
@@ -862,6 +874,12 @@ public class ClusterHandler extends AbstractAuthHandler {
     return jobJson;
   }
 
+  private void sendTooManyRequests(HttpResponder responder, AdmissionException e) {
+    responder.sendString(TOO_MANY_REQUESTS, e.getMessage(),
+                         ImmutableMultimap.of(HttpHeaders.Names.RETRY_AFTER,
+                                              String.valueOf(e.getRetryAfterSeconds())));
+  }
+
   private Set<Cluster.Status> getStatusFilter(HttpRequest request) {
     Set<Cluster.Status> filter = Sets.newHashSet();
     Map<String, List<String>> queryParams = new QueryStringDecoder(request.getUri()).getParameters();
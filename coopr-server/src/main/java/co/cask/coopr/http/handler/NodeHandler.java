@@ -18,6 +18,7 @@ package co.cask.coopr.http.handler;
 import co.cask.coopr.account.Account;
 import co.cask.coopr.cluster.Node;
 import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.http.HttpHelper;
 import co.cask.coopr.scheduler.task.NodeService;
 import co.cask.coopr.store.node.NodeStore;
 import co.cask.coopr.store.node.NodeStoreService;
@@ -87,7 +88,7 @@ public class NodeHandler extends AbstractAuthHandler {
       return;
     }
 
-    responder.sendJson(HttpResponseStatus.OK, nodes);
+    HttpHelper.sendJsonStream(responder, nodes, Node.class, gson);
   }
 
   /**
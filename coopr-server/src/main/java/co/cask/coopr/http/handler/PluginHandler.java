@@ -17,6 +17,7 @@ package co.cask.coopr.http.handler;
 
 import co.cask.coopr.account.Account;
 import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.http.ResponseCache;
 import co.cask.coopr.provisioner.TenantProvisionerService;
 import co.cask.coopr.provisioner.plugin.PluginType;
 import co.cask.coopr.provisioner.plugin.ResourceMeta;
@@ -59,17 +60,20 @@ public class PluginHandler extends AbstractAuthHandler {
   private final ResourceService resourceService;
   private final EntityStoreService entityStoreService;
   private final TenantProvisionerService tenantProvisionerService;
+  private final ResponseCache responseCache;
 
   @Inject
   private PluginHandler(TenantStore tenantStore,
                         ResourceService resourceService,
                         EntityStoreService entityStoreService,
                         TenantProvisionerService tenantProvisionerService,
+                        ResponseCache responseCache,
                         Gson gson) {
     super(tenantStore);
     this.resourceService = resourceService;
     this.entityStoreService = entityStoreService;
     this.tenantProvisionerService = tenantProvisionerService;
+    this.responseCache = responseCache;
     this.gson = gson;
   }
 
@@ -583,43 +587,47 @@ public class PluginHandler extends AbstractAuthHandler {
     }
   }
 
-  private void getResources(HttpRequest request, HttpResponder responder, Account account,
+  private void getResources(HttpRequest request, HttpResponder responder, final Account account,
                             PluginType type, String pluginName, String resourceType) {
-    ResourceType pluginResourceType = new ResourceType(type, pluginName, resourceType);
+    final ResourceType pluginResourceType = new ResourceType(type, pluginName, resourceType);
     try {
-      validateTypeExists(account, pluginResourceType);
-      ResourceStatus statusFilter = getStatusParam(request);
-      responder.sendJson(HttpResponseStatus.OK,
-                         resourceService.getAll(account, pluginResourceType, statusFilter),
-                         new TypeToken<Map<String, Set<ResourceMeta>>>() { }.getType(),
-                         gson);
+      final ResourceStatus statusFilter = getStatusParam(request);
+      responseCache.sendJson(request, responder, account.getTenantId(),
+                             new TypeToken<Map<String, Set<ResourceMeta>>>() { }.getType(),
+                             new ResponseCache.Loader<Map<String, Set<ResourceMeta>>>() {
+        @Override
+        public Map<String, Set<ResourceMeta>> load() throws IOException, MissingEntityException {
+          validateTypeExists(account, pluginResourceType);
+          return resourceService.getAll(account, pluginResourceType, statusFilter);
+        }
+      });
     } catch (IllegalArgumentException e) {
       responder.sendError(HttpResponseStatus.BAD_REQUEST, "invalid status filter.");
     } catch (IOException e) {
       LOG.error("Exception getting resources.", e);
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Error getting resources.");
-    } catch (MissingEntityException e) {
-      responder.sendError(HttpResponseStatus.NOT_FOUND, e.getMessage());
     }
   }
 
-  private void getResources(HttpRequest request, HttpResponder responder, Account account,
-                            PluginType type, String pluginName, String resourceType, String resourceName) {
-    ResourceType pluginResourceType = new ResourceType(type, pluginName, resourceType);
+  private void getResources(HttpRequest request, HttpResponder responder, final Account account,
+                            PluginType type, String pluginName, String resourceType, final String resourceName) {
+    final ResourceType pluginResourceType = new ResourceType(type, pluginName, resourceType);
     try {
-      validateTypeExists(account, pluginResourceType);
-      ResourceStatus statusFilter = getStatusParam(request);
-      responder.sendJson(HttpResponseStatus.OK,
-                         resourceService.getAll(account, pluginResourceType, resourceName, statusFilter),
-                         new TypeToken<Set<ResourceMeta>>() { }.getType(),
-                         gson);
+      final ResourceStatus statusFilter = getStatusParam(request);
+      responseCache.sendJson(request, responder, account.getTenantId(),
+                             new TypeToken<Set<ResourceMeta>>() { }.getType(),
+                             new ResponseCache.Loader<Set<ResourceMeta>>() {
+        @Override
+        public Set<ResourceMeta> load() throws IOException, MissingEntityException {
+          validateTypeExists(account, pluginResourceType);
+          return resourceService.getAll(account, pluginResourceType, resourceName, statusFilter);
+        }
+      });
     } catch (IllegalArgumentException e) {
       responder.sendError(HttpResponseStatus.BAD_REQUEST, "invalid status filter.");
     } catch (IOException e) {
       LOG.error("Exception getting resources.", e);
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Error getting resources.");
-    } catch (MissingEntityException e) {
-      responder.sendError(HttpResponseStatus.NOT_FOUND, e.getMessage());
     }
   }
 
@@ -16,7 +16,11 @@
 package co.cask.coopr.http.handler;
 
 import co.cask.coopr.account.Account;
+import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.http.ByteRange;
+import co.cask.coopr.http.request.FinishTaskRequest;
+import co.cask.coopr.http.request.FinishTaskResponse;
 import co.cask.coopr.provisioner.Provisioner;
 import co.cask.coopr.provisioner.ProvisionerHeartbeat;
 import co.cask.coopr.provisioner.TenantProvisionerService;
@@ -24,6 +28,7 @@ import co.cask.coopr.provisioner.plugin.PluginType;
 import co.cask.coopr.provisioner.plugin.ResourceService;
 import co.cask.coopr.provisioner.plugin.ResourceType;
 import co.cask.coopr.scheduler.task.MissingEntityException;
+import co.cask.coopr.scheduler.task.TaskQueueService;
 import co.cask.coopr.spec.plugin.AutomatorType;
 import co.cask.coopr.spec.plugin.ProviderType;
 import co.cask.coopr.store.entity.EntityStoreService;
@@ -32,20 +37,29 @@ import co.cask.http.ChunkResponder;
 import co.cask.http.HttpResponder;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Lists;
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferInputStream;
 import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.List;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
@@ -60,23 +74,30 @@ import javax.ws.rs.PathParam;
 @Path(Constants.API_BASE)
 public final class ProvisionerHandler extends AbstractAuthHandler {
   private static final Logger LOG = LoggerFactory.getLogger(ProvisionerHandler.class);
+  private static final String APPLICATION_OCTET_STREAM = "application/octet-stream";
 
   private final Gson gson;
   private final ResourceService resourceService;
   private final TenantProvisionerService tenantProvisionerService;
   private final EntityStoreService entityStoreService;
+  private final TaskQueueService taskQueueService;
+  private final boolean sslEnabled;
 
   @Inject
   private ProvisionerHandler(TenantStore tenantStore,
                              TenantProvisionerService tenantProvisionerService,
                              EntityStoreService entityStoreService,
                              ResourceService resourceService,
+                             TaskQueueService taskQueueService,
+                             Configuration conf,
                              Gson gson) {
     super(tenantStore);
+    this.sslEnabled = conf.getBoolean(Constants.INTERNAL_ENABLE_SSL);
     this.gson = gson;
     this.resourceService = resourceService;
     this.tenantProvisionerService = tenantProvisionerService;
     this.entityStoreService = entityStoreService;
+    this.taskQueueService = taskQueueService;
   }
 
   /**
@@ -125,7 +146,10 @@ public final class ProvisionerHandler extends AbstractAuthHandler {
   }
 
   /**
-   * Heartbeat containing provisioner usage information and indicating that it is still alive.
+   * Heartbeat containing provisioner usage information and indicating that it is still alive. The heartbeat may also
+   * contain a "finishedTasks" json array of requests to finish tasks, in the same format as a batch task finish.
+   * In that case the response is a json array with the outcome of finishing each task, otherwise the response is
+   * empty. Tasks that were not taken by a worker of the provisioner in the path are not finished.
    *
    * @param request The request to write a provisioner.
    * @param responder Responder to send the response.
@@ -155,14 +179,56 @@ public final class ProvisionerHandler extends AbstractAuthHandler {
     try {
       LOG.trace("Received heartbeat for provisioner {}. heartbeat = {}", provisionerId, heartbeat);
       tenantProvisionerService.handleHeartbeat(provisionerId, heartbeat);
-      responder.sendStatus(HttpResponseStatus.OK);
     } catch (IOException e) {
       LOG.error("Exception writing provisioner {}", provisionerId, e);
       responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR,
                           "Exception writing provisioner " + provisionerId);
+      return;
     } catch (MissingEntityException e) {
       responder.sendError(HttpResponseStatus.NOT_FOUND, "Provisioner " + provisionerId + " not found.");
+      return;
+    }
+
+    if (heartbeat.getFinishedTasks().isEmpty()) {
+      responder.sendStatus(HttpResponseStatus.OK);
+      return;
+    }
+    // the heartbeat was recorded, so errors finishing tasks are reported for each task instead
+    responder.sendJson(HttpResponseStatus.OK, finishTasks(provisionerId, heartbeat.getFinishedTasks()),
+                       new TypeToken<List<FinishTaskResponse>>() { }.getType(), gson);
+  }
+
+  private List<FinishTaskResponse> finishTasks(String provisionerId, List<FinishTaskRequest> finishRequests) {
+    // only tasks from workers of this provisioner can be finished through its heartbeat
+    List<FinishTaskRequest> validRequests = Lists.newArrayListWithCapacity(finishRequests.size());
+    for (FinishTaskRequest finishRequest : finishRequests) {
+      if (provisionerId.equals(finishRequest.getProvisionerId())) {
+        validRequests.add(finishRequest);
+      }
+    }
+    Iterator<FinishTaskResponse> validResponses;
+    try {
+      validResponses = taskQueueService.finishClusterTasks(validRequests).iterator();
+    } catch (IOException e) {
+      LOG.error("Exception finishing tasks from provisioner {}", provisionerId, e);
+      List<FinishTaskResponse> errors = Lists.newArrayListWithCapacity(validRequests.size());
+      for (FinishTaskRequest finishRequest : validRequests) {
+        errors.add(new FinishTaskResponse(finishRequest.getTaskId(), FinishTaskResponse.Status.ERROR,
+                                          "Error finishing task " + finishRequest.getTaskId()));
+      }
+      validResponses = errors.iterator();
+    }
+
+    List<FinishTaskResponse> responses = Lists.newArrayListWithCapacity(finishRequests.size());
+    for (FinishTaskRequest finishRequest : finishRequests) {
+      if (provisionerId.equals(finishRequest.getProvisionerId())) {
+        responses.add(validResponses.next());
+      } else {
+        responses.add(new FinishTaskResponse(finishRequest.getTaskId(), FinishTaskResponse.Status.INVALID,
+                                             "Task was not taken by provisioner " + provisionerId));
+      }
     }
+    return responses;
   }
 
   /**
@@ -208,7 +274,7 @@ public final class ProvisionerHandler extends AbstractAuthHandler {
     Account account = new Account(Constants.ADMIN_USER, tenantId);
 
     ResourceType resourceTypeObj = new ResourceType(PluginType.AUTOMATOR, automatortypeId, resourceType);
-    sendResourceInChunks(responder, account, resourceTypeObj, name, version);
+    sendResource(request, responder, account, resourceTypeObj, name, version);
   }
 
   /**
@@ -233,7 +299,7 @@ public final class ProvisionerHandler extends AbstractAuthHandler {
     Account account = new Account(Constants.ADMIN_USER, tenantId);
 
     ResourceType resourceTypeObj = new ResourceType(PluginType.PROVIDER, providertypeId, resourceType);
-    sendResourceInChunks(responder, account, resourceTypeObj, name, version);
+    sendResource(request, responder, account, resourceTypeObj, name, version);
   }
 
   /**
@@ -321,31 +387,15 @@ public final class ProvisionerHandler extends AbstractAuthHandler {
     return result;
   }
 
-  private void sendResourceInChunks(HttpResponder responder, Account account,
-                                    ResourceType resourceType, String name, String versionStr) {
+  private void sendResource(HttpRequest request, HttpResponder responder, Account account,
+                            ResourceType resourceType, String name, String versionStr) {
     try {
       int version = Integer.parseInt(versionStr);
-      InputStream inputStream =
-        resourceService.getResourceInputStream(account, resourceType, name, version);
-      if (inputStream == null) {
-        LOG.error("No input stream available, but metadata exists for version {} of resource {} for tenant {}.",
-                  version, name, account.getTenantId());
-        responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Error getting resource.");
-      }
-      try {
-        ChunkResponder chunkResponder = responder.sendChunkStart(
-          HttpResponseStatus.OK, ImmutableMultimap.<String, String>of());
-        while (true) {
-          byte[] chunkBytes = new byte[Constants.PLUGIN_RESOURCE_CHUNK_SIZE];
-          int bytesRead = inputStream.read(chunkBytes, 0, Constants.PLUGIN_RESOURCE_CHUNK_SIZE);
-          if (bytesRead == -1) {
-            break;
-          }
-          chunkResponder.sendChunk(ChannelBuffers.wrappedBuffer(chunkBytes, 0, bytesRead));
-        }
-        chunkResponder.close();
-      } finally {
-        inputStream.close();
+      File file = resourceService.getResourceFile(account, resourceType, name, version);
+      if (file != null) {
+        sendResourceFile(request, responder, file);
+      } else {
+        sendResourceInChunks(responder, account, resourceType, name, version);
       }
     } catch (NumberFormatException e) {
       responder.sendError(HttpResponseStatus.BAD_REQUEST, "Invalid version " + versionStr);
@@ -355,4 +405,73 @@ public final class ProvisionerHandler extends AbstractAuthHandler {
       responder.sendError(HttpResponseStatus.NOT_FOUND, "Resource not found.");
     }
   }
+
+  /**
+   * Send a resource stored in a local file, or the range of it asked for by the Range header of the request. The whole
+   * file is transferred with sendfile, without copying it through user space. Ranges, and files sent over SSL, which
+   * has to encrypt the bytes, are memory mapped instead.
+   */
+  private void sendResourceFile(HttpRequest request, HttpResponder responder, File file) throws IOException {
+    long length = file.length();
+    ByteRange range;
+    try {
+      range = ByteRange.parse(request.getHeader(HttpHeaders.Names.RANGE), length);
+    } catch (IllegalArgumentException e) {
+      responder.sendString(HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE, e.getMessage(),
+                           ImmutableMultimap.of(HttpHeaders.Names.CONTENT_RANGE, "bytes */" + length));
+      return;
+    }
+
+    if (range == null && !sslEnabled) {
+      responder.sendFile(file, ImmutableMultimap.of(HttpHeaders.Names.CONTENT_TYPE, APPLICATION_OCTET_STREAM,
+                                                    HttpHeaders.Names.ACCEPT_RANGES, HttpHeaders.Values.BYTES));
+      return;
+    }
+
+    long start = range == null ? 0 : range.getStart();
+    long count = range == null ? length : range.getLength();
+    ChannelBuffer content;
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      content = ChannelBuffers.wrappedBuffer(
+        randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, start, count));
+    } finally {
+      randomAccessFile.close();
+    }
+    if (range == null) {
+      responder.sendContent(HttpResponseStatus.OK, content, APPLICATION_OCTET_STREAM,
+                            ImmutableMultimap.of(HttpHeaders.Names.ACCEPT_RANGES, HttpHeaders.Values.BYTES));
+    } else {
+      responder.sendContent(HttpResponseStatus.PARTIAL_CONTENT, content, APPLICATION_OCTET_STREAM,
+                            ImmutableMultimap.of(HttpHeaders.Names.ACCEPT_RANGES, HttpHeaders.Values.BYTES,
+                                                 HttpHeaders.Names.CONTENT_RANGE, range.getContentRange()));
+    }
+  }
+
+  private void sendResourceInChunks(HttpResponder responder, Account account, ResourceType resourceType,
+                                    String name, int version) throws IOException, MissingEntityException {
+    InputStream inputStream = resourceService.getResourceInputStream(account, resourceType, name, version);
+    if (inputStream == null) {
+      LOG.error("No input stream available, but metadata exists for version {} of resource {} for tenant {}.",
+                version, name, account.getTenantId());
+      responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Error getting resource.");
+      return;
+    }
+    try {
+      ChunkResponder chunkResponder = responder.sendChunkStart(
+        HttpResponseStatus.OK, ImmutableMultimap.<String, String>of());
+      while (true) {
+        // each chunk is written asynchronously, so it needs a buffer of its own
+        byte[] chunkBytes = new byte[Constants.PLUGIN_RESOURCE_CHUNK_SIZE];
+        int bytesRead = inputStream.read(chunkBytes, 0, Constants.PLUGIN_RESOURCE_CHUNK_SIZE);
+        if (bytesRead == -1) {
+          break;
+        }
+        chunkResponder.sendChunk(ChannelBuffers.wrappedBuffer(chunkBytes, 0, bytesRead));
+      }
+      chunkResponder.close();
+    } finally {
+      inputStream.close();
+    }
+  }
 }
@@ -18,12 +18,14 @@ package co.cask.coopr.http.handler;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.http.HttpHelper;
 import co.cask.coopr.http.request.FinishTaskRequest;
+import co.cask.coopr.http.request.FinishTaskResponse;
 import co.cask.coopr.http.request.TakeTaskRequest;
 import co.cask.coopr.scheduler.task.MissingEntityException;
 import co.cask.coopr.scheduler.task.TaskQueueService;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.HttpResponder;
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
@@ -31,6 +33,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.List;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 
@@ -117,4 +120,35 @@ public final class TaskHandler extends AbstractHttpHandler {
         + " is not registered.");
     }
   }
+
+  /**
+   * Finish several previously taken tasks at once. Post body must be a json array of finish requests, each of which
+   * is in the same format as the body of a single finish request, or a 400 is returned. Each task is finished
+   * independently, so a task that cannot be finished does not stop other tasks from finishing. The response is a
+   * json array with an object for each task, in the same order as the requests, with the "taskId", a "status" of
+   * finished, not_owner, invalid, unregistered, or error, and a "message" explaining why the task was not finished.
+   *
+   * @param request The request to finish tasks.
+   * @param responder Responder to send the response.
+   */
+  @POST
+  @Path("/finish/batch")
+  public void handleFinishTasks(HttpRequest request, HttpResponder responder) {
+    List<FinishTaskRequest> finishRequests = HttpHelper.decodeRequestBody(
+      request, responder, new TypeToken<List<FinishTaskRequest>>() { }.getType(), gson);
+    if (finishRequests == null) {
+      return;
+    }
+
+    LOG.trace("Got {} task finishes", finishRequests.size());
+
+    try {
+      List<FinishTaskResponse> responses = taskQueueService.finishClusterTasks(finishRequests);
+      responder.sendJson(HttpResponseStatus.OK, responses, new TypeToken<List<FinishTaskResponse>>() { }.getType(),
+                         gson);
+    } catch (IOException e) {
+      LOG.error("Exception finishing {} tasks.", finishRequests.size(), e);
+      responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Error finishing tasks.");
+    }
+  }
 }
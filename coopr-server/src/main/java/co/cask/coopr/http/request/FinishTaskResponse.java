@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.http.request;
+
+import com.google.common.base.Objects;
+
+/**
+ * The response for a single task in a request to finish several tasks at once.
+ */
+public class FinishTaskResponse {
+  private final String taskId;
+  private final Status status;
+  private final String message;
+
+  /**
+   * Outcome of finishing a task.
+   */
+  public enum Status {
+    // the task was finished
+    FINISHED,
+    // the worker is not the owner of the task, usually because the task timed out and was given to someone else
+    NOT_OWNER,
+    // the finish request was invalid
+    INVALID,
+    // the provisioner of the worker is not registered
+    UNREGISTERED,
+    // there was an error finishing the task, it may be retried
+    ERROR
+  }
+
+  public FinishTaskResponse(String taskId, Status status, String message) {
+    this.taskId = taskId;
+    this.status = status;
+    this.message = message;
+  }
+
+  public String getTaskId() {
+    return taskId;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof FinishTaskResponse)) {
+      return false;
+    }
+
+    FinishTaskResponse that = (FinishTaskResponse) o;
+
+    return Objects.equal(taskId, that.taskId) &&
+      status == that.status &&
+      Objects.equal(message, that.message);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(taskId, status, message);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("taskId", taskId)
+      .add("status", status)
+      .add("message", message)
+      .toString();
+  }
+}
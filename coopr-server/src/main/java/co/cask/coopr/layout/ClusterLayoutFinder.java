@@ -17,11 +17,18 @@ package co.cask.coopr.layout;
 
 import co.cask.coopr.spec.template.ClusterTemplate;
 import co.cask.coopr.spec.template.ServiceConstraint;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * Class that takes in an ordered list of {@link NodeLayout}s by preference, {@link ClusterTemplate}, number of
@@ -29,15 +36,78 @@ import java.util.Set;
  * be used to satisfy constraints in the template.
  */
 public class ClusterLayoutFinder {
+  private static final Logger LOG  = LoggerFactory.getLogger(ClusterLayoutFinder.class);
+  // limit on the number of remembered dead ends, to bound memory use on large searches.
+  private static final int MAX_DEAD_ENDS = 100000;
+  // number of search steps to take on the calling thread before splitting the search up to run in parallel.
+  private static final long DEFAULT_SEQUENTIAL_STEPS = 10000;
+  // number of partitions to split the search into per thread, so that threads that finish early can take more.
+  private static final int PARTITIONS_PER_THREAD = 4;
+  // only check the deadline every 1024 search steps, since a step is much cheaper than reading the clock.
+  private static final int DEADLINE_CHECK_MASK = 0x3ff;
   private final List<NodeLayout> nodePreferences;
   private final int numMachines;
   private final Map<String, ServiceConstraint> serviceConstraints;
+  private final Executor executor;
+  private final int parallelism;
+  private final long sequentialSteps;
+  private final SolveDeadline deadline;
   private Map<String, Integer> serviceCounts;
+  // constraints and node layouts with constrained services referred to by index, shared by all searches.
+  private int[] minCounts;
+  private int[] maxCounts;
+  private int[][] layoutServices;
+  private int[][] serviceLayouts;
+  private int[][] remainingServices;
+  private Set<SearchState> deadEnds;
 
   public ClusterLayoutFinder(List<NodeLayout> nodePreferences, ClusterTemplate template, Set<String> services,
                              int numMachines) {
+    this(nodePreferences, template, services, numMachines, null, 1);
+  }
+
+  /**
+   * Create a layout finder that splits large searches up to run in parallel. The search always starts on the calling
+   * thread, and is only split up if it does not finish quickly.
+   *
+   * @param nodePreferences Node layouts that can be used, ordered by preference.
+   * @param template Template of the cluster.
+   * @param services Services to place on the cluster.
+   * @param numMachines Number of machines in the cluster.
+   * @param executor Executor to run parts of the search on, or null to search on the calling thread only.
+   * @param parallelism Max number of threads, including the calling thread, to use for a search.
+   */
+  public ClusterLayoutFinder(List<NodeLayout> nodePreferences, ClusterTemplate template, Set<String> services,
+                             int numMachines, Executor executor, int parallelism) {
+    this(nodePreferences, template, services, numMachines, executor, parallelism, SolveDeadline.NONE);
+  }
+
+  /**
+   * Create a layout finder that splits large searches up to run in parallel, and that gives up searching by throwing
+   * a {@link SolverTimeoutException} once the given deadline has passed.
+   *
+   * @param nodePreferences Node layouts that can be used, ordered by preference.
+   * @param template Template of the cluster.
+   * @param services Services to place on the cluster.
+   * @param numMachines Number of machines in the cluster.
+   * @param executor Executor to run parts of the search on, or null to search on the calling thread only.
+   * @param parallelism Max number of threads, including the calling thread, to use for a search.
+   * @param deadline Deadline to stop searching at.
+   */
+  public ClusterLayoutFinder(List<NodeLayout> nodePreferences, ClusterTemplate template, Set<String> services,
+                             int numMachines, Executor executor, int parallelism, SolveDeadline deadline) {
+    this(nodePreferences, template, services, numMachines, executor, parallelism, DEFAULT_SEQUENTIAL_STEPS, deadline);
+  }
+
+  ClusterLayoutFinder(List<NodeLayout> nodePreferences, ClusterTemplate template, Set<String> services,
+                      int numMachines, Executor executor, int parallelism, long sequentialSteps,
+                      SolveDeadline deadline) {
     this.nodePreferences = nodePreferences;
     this.numMachines = numMachines;
+    this.executor = executor;
+    this.parallelism = executor == null ? 1 : parallelism;
+    this.sequentialSteps = sequentialSteps;
+    this.deadline = deadline;
     serviceConstraints = Maps.newHashMap();
 
     // we only care about the constraints that apply to services that are on the cluster
@@ -61,103 +131,114 @@ public class ClusterLayoutFinder {
    * array being the number of nodes to use of the i'th node layout. For example, returning {5, 3, 0, 0, 1} means
    * there should be 5 of the first node layout, 3 of the second, and 1 of the fifth.
    *
+   * Layouts are searched in order of preference, meaning the returned layout uses as many of the first node layout as
+   * possible, then as many of the second node layout as possible, and so on. Instead of enumerating every combination
+   * and validating it afterwards, the search assigns node counts one node layout at a time and backtracks as soon as
+   * the remaining node layouts can no longer satisfy the service constraints and cluster size. If the search does not
+   * finish quickly and an executor was given, it is split into partitions by the counts of the first node layouts,
+   * which are searched in parallel. The result is the same as searching on a single thread.
+   *
    * @return Array containing how many of each node type to use.
+   * @throws SolverTimeoutException if the deadline passed before the search finished.
    */
   public int[] findValidNodeCounts() {
-    int[] initialLayout = getInitialNodeCounts();
-    if (initialLayout == null) {
+    if (nodePreferences.isEmpty()) {
       return null;
     }
+    initSearch();
+    if (parallelism <= 1) {
+      return new LayoutSearch(new int[0], -1).search();
+    }
 
-    SlottedCombinationIterator layoutIter = new SlottedCombinationIterator(initialLayout, getGlobalNodeLayoutMaxes());
-    int[] previousLayout = initialLayout;
-    // while we haven't looked at all candidate layouts
-    while (layoutIter.hasNext()) {
-      int[] candidateLayout = layoutIter.next();
-      // update service counts for layout validation
-      for (int i = 0; i < candidateLayout.length; i++) {
-        // update is based on the difference between this layout and the previous one.
-        int countDiff = candidateLayout[i] - previousLayout[i];
-        updateServiceCounts(i, countDiff);
-      }
-      // if this is a valid layout, return it
-      if (isValidCluster(serviceCounts)) {
-        return candidateLayout;
-      }
-      previousLayout = candidateLayout;
+    // most searches finish quickly, so only split up the search if it takes a while.
+    LayoutSearch search = new LayoutSearch(new int[0], sequentialSteps);
+    int[] nodeCounts = search.search();
+    if (!search.outOfSteps) {
+      return nodeCounts;
     }
-    return null;
+    List<LayoutSearch> partitions = partition();
+    LOG.debug("searching {} partitions of the layout search space in parallel", partitions.size());
+    return PartitionedSearch.findFirst(partitions, executor, parallelism);
   }
 
-  // get the max number of each nodelayout possible, assuming no other node layouts are used.
-  private int[] getGlobalNodeLayoutMaxes() {
-    int[] layoutsMaxes = new int[nodePreferences.size()];
-    for (int i = 0; i < layoutsMaxes.length; i++) {
-      NodeLayout layout = nodePreferences.get(i);
-      int max = Integer.MAX_VALUE;
-      for (String service : layout.getServiceNames()) {
-        ServiceConstraint constraint = serviceConstraints.get(service);
-        if (constraint != null) {
-          int constraintMax = constraint.getMaxCount();
-          if (constraintMax < max) {
-            max = constraintMax;
-          }
-        }
-      }
-      layoutsMaxes[i] = max;
+  // set up the constrained services as integer indices so that the search does not need to do map lookups.
+  private void initSearch() {
+    List<String> constrainedServices = Lists.newArrayList(serviceConstraints.keySet());
+    int numServices = constrainedServices.size();
+    int numLayouts = nodePreferences.size();
+    minCounts = new int[numServices];
+    maxCounts = new int[numServices];
+    for (int s = 0; s < numServices; s++) {
+      ServiceConstraint constraint = serviceConstraints.get(constrainedServices.get(s));
+      minCounts[s] = constraint.getMinCount();
+      maxCounts[s] = constraint.getMaxCount();
     }
-    return layoutsMaxes;
-  }
 
-  // initialize the node counts to the first possible cluster layout based on max service counts.
-  private int[] getInitialNodeCounts() {
-    int[] nodeCounts = new int[nodePreferences.size()];
-    // start off with as many of the most preferred node layout as possible
-    for (int i = 0; i < nodeCounts.length; i++) {
-      int maxNodeCount = getMaxForNodelayout(i, nodeCounts);
-      nodeCounts[i] = maxNodeCount;
-      if (maxNodeCount > 0) {
-        updateServiceCounts(i, maxNodeCount);
+    layoutServices = new int[numLayouts][];
+    List<List<Integer>> serviceLayouts = Lists.newArrayListWithCapacity(numServices);
+    for (int s = 0; s < numServices; s++) {
+      serviceLayouts.add(Lists.<Integer>newArrayList());
+    }
+    for (int i = 0; i < numLayouts; i++) {
+      Set<String> services = nodePreferences.get(i).getServiceNames();
+      List<Integer> indices = Lists.newArrayList();
+      for (int s = 0; s < numServices; s++) {
+        if (services.contains(constrainedServices.get(s))) {
+          indices.add(s);
+          serviceLayouts.get(s).add(i);
+        }
       }
+      layoutServices[i] = Ints.toArray(indices);
     }
-    // if the max # of nodes we can place is below the # of nodes in the cluster, there is no possible solution.
-    int total = 0;
-    for (int nodeCount : nodeCounts) {
-      total += nodeCount;
+    this.serviceLayouts = new int[numServices][];
+    for (int s = 0; s < numServices; s++) {
+      this.serviceLayouts[s] = Ints.toArray(serviceLayouts.get(s));
     }
-    if (total < numMachines) {
-      return null;
+
+    // the services whose counts can still change once the search reaches the i'th node layout.
+    remainingServices = new int[numLayouts + 1][];
+    remainingServices[numLayouts] = new int[0];
+    Set<Integer> remaining = Sets.newTreeSet();
+    for (int i = numLayouts - 1; i >= 0; i--) {
+      remaining.addAll(Ints.asList(layoutServices[i]));
+      remainingServices[i] = Ints.toArray(remaining);
     }
-    return nodeCounts;
+    // dead ends don't depend on how they were reached, so they are shared by all partitions of the search.
+    deadEnds = Sets.newSetFromMap(Maps.<SearchState, Boolean>newConcurrentMap());
   }
 
-  // get the max number of nodes of the i'th node layout, given the service constraints and how many machines are
-  // accounted for already.
-  int getMaxForNodelayout(int i, int[] counts) {
-    int maxSoFar = numMachines - getTotalCount(counts);
-    if (maxSoFar == 0) {
-      return 0;
-    }
-    NodeLayout nodeLayout = nodePreferences.get(i);
-    for (String service : nodeLayout.getServiceNames()) {
-      ServiceConstraint constraint = serviceConstraints.get(service);
-      if (constraint != null) {
-        int serviceCount = serviceCounts.get(service);
-        int serviceMax = constraint.getMaxCount() - serviceCount;
-        if (serviceMax < maxSoFar) {
-          maxSoFar = serviceMax;
+  // split the search into partitions by fixing the node counts of the first few node layouts. Partitions are ordered
+  // the same way the search would reach them, so the first partition with a solution has the solution the search
+  // would have found.
+  private List<LayoutSearch> partition() {
+    int numPartitions = parallelism * PARTITIONS_PER_THREAD;
+    List<int[]> prefixes = Lists.newArrayList();
+    prefixes.add(new int[0]);
+    for (int layout = 0; layout < nodePreferences.size() - 1 && prefixes.size() < numPartitions; layout++) {
+      List<int[]> longerPrefixes = Lists.newArrayList();
+      for (int[] prefix : prefixes) {
+        LayoutSearch search = new LayoutSearch(prefix, -1);
+        int remainingMachines = search.applyPrefix();
+        int max = search.getCapacity(layout, remainingMachines);
+        int min = Math.max(0, remainingMachines - search.getTotalCapacity(layout + 1, remainingMachines));
+        for (int count = max; count >= min; count--) {
+          search.addNodes(layout, count);
+          if (search.canComplete(layout + 1, remainingMachines - count)) {
+            int[] longerPrefix = Arrays.copyOf(prefix, prefix.length + 1);
+            longerPrefix[prefix.length] = count;
+            longerPrefixes.add(longerPrefix);
+          }
+          search.addNodes(layout, -count);
         }
       }
+      prefixes = longerPrefixes;
     }
-    return maxSoFar;
-  }
 
-  private int getTotalCount(int[] counts) {
-    int sum = 0;
-    for (int count : counts) {
-      sum += count;
+    List<LayoutSearch> partitions = Lists.newArrayListWithCapacity(prefixes.size());
+    for (int[] prefix : prefixes) {
+      partitions.add(new LayoutSearch(prefix, -1));
     }
-    return sum;
+    return partitions;
   }
 
   // update service counts from changing nodePreferences[nodeNum] by nodesChanged
@@ -200,4 +281,185 @@ public class ClusterLayoutFinder {
     }
     return isValidCluster(serviceCounts);
   }
+
+  /**
+   * Search through the node counts that start with a given prefix of node counts. Keeps track of the node counts and
+   * service counts of the assignment being searched, so each search must only be used by one thread.
+   */
+  private final class LayoutSearch extends PartitionedSearch.Partition<int[]> {
+    private final int[] prefix;
+    private final int[] nodeCounts;
+    private final int[] counts;
+    private long stepsLeft;
+    private boolean outOfSteps;
+    private int steps;
+
+    /**
+     * Create a search through node counts starting with the given prefix.
+     *
+     * @param prefix Node counts of the first node layouts.
+     * @param maxSteps Max number of steps to take before giving up, or -1 for no limit.
+     */
+    private LayoutSearch(int[] prefix, long maxSteps) {
+      this.prefix = prefix;
+      this.nodeCounts = new int[nodePreferences.size()];
+      this.counts = new int[minCounts.length];
+      this.stepsLeft = maxSteps;
+    }
+
+    @Override
+    int[] search() {
+      int remainingMachines = applyPrefix();
+      if (remainingMachines >= 0 && canComplete(prefix.length, remainingMachines)
+        && search(prefix.length, remainingMachines)) {
+        return Arrays.copyOf(nodeCounts, nodeCounts.length);
+      }
+      return null;
+    }
+
+    // add the nodes of the prefix, returning how many machines are left to place.
+    private int applyPrefix() {
+      int remainingMachines = numMachines;
+      for (int i = 0; i < prefix.length; i++) {
+        addNodes(i, prefix[i]);
+        remainingMachines -= prefix[i];
+      }
+      return remainingMachines;
+    }
+
+    // assign node counts to node layouts starting from the given one, with the given number of machines left to place.
+    // Node counts of earlier layouts are already assigned, and the caller has checked that the search can be
+    // completed.
+    private boolean search(int layout, int remainingMachines) {
+      if (layout == nodeCounts.length) {
+        return remainingMachines == 0;
+      }
+      if (stopped()) {
+        return false;
+      }
+      SearchState state = new SearchState(layout, remainingMachines, counts);
+      if (deadEnds.contains(state)) {
+        return false;
+      }
+      int max = getCapacity(layout, remainingMachines);
+      // whatever this node layout does not take must fit in the node layouts after it.
+      int min = Math.max(0, remainingMachines - getTotalCapacity(layout + 1, remainingMachines));
+      // try larger counts first so that more preferred node layouts are used as much as possible.
+      for (int count = max; count >= min; count--) {
+        addNodes(layout, count);
+        if (canComplete(layout + 1, remainingMachines - count) && search(layout + 1, remainingMachines - count)) {
+          return true;
+        }
+        addNodes(layout, -count);
+      }
+      // a search that was stopped part way through did not prove anything.
+      if (!outOfSteps && !isCancelled() && deadEnds.size() < MAX_DEAD_ENDS) {
+        deadEnds.add(state);
+      }
+      return false;
+    }
+
+    private boolean stopped() {
+      if ((steps++ & DEADLINE_CHECK_MASK) == 0) {
+        deadline.check();
+      }
+      if (stepsLeft >= 0 && --stepsLeft < 0) {
+        outOfSteps = true;
+      }
+      return outOfSteps || isCancelled();
+    }
+
+    // check whether the node layouts starting from the given one could possibly take the given number of machines
+    // while satisfying min service counts. Does not guarantee that a solution exists, only rules out ones that
+    // cannot.
+    private boolean canComplete(int layout, int remainingMachines) {
+      if (getTotalCapacity(layout, remainingMachines) < remainingMachines) {
+        return false;
+      }
+      for (int s = 0; s < counts.length; s++) {
+        int needed = minCounts[s] - counts[s];
+        if (needed <= 0) {
+          continue;
+        }
+        int reachable = 0;
+        for (int i : serviceLayouts[s]) {
+          if (i >= layout) {
+            reachable += getCapacity(i, remainingMachines);
+            if (reachable >= needed) {
+              break;
+            }
+          }
+        }
+        if (Math.min(reachable, remainingMachines) < needed) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // get the max number of nodes of the given node layout that can be added given the current service counts.
+    private int getCapacity(int layout, int remainingMachines) {
+      int capacity = remainingMachines;
+      for (int s : layoutServices[layout]) {
+        capacity = Math.min(capacity, maxCounts[s] - counts[s]);
+      }
+      return Math.max(capacity, 0);
+    }
+
+    // get an upper bound on the number of nodes that can be added using node layouts starting from the given one.
+    private int getTotalCapacity(int layout, int remainingMachines) {
+      int total = 0;
+      for (int i = layout; i < layoutServices.length && total < remainingMachines; i++) {
+        total += getCapacity(i, remainingMachines);
+      }
+      return total;
+    }
+
+    private void addNodes(int layout, int count) {
+      nodeCounts[layout] += count;
+      for (int s : layoutServices[layout]) {
+        counts[s] += count;
+      }
+    }
+  }
+
+  /**
+   * Point in the search, identified by the node layout being assigned, the number of machines left to place, and the
+   * counts of the services that node layouts from there on can change. Whether the search can be completed from a
+   * point only depends on these, so once a point is found to be a dead end, it does not need to be searched again
+   * when reached through a different assignment of earlier node layouts.
+   */
+  private final class SearchState {
+    private final int layout;
+    private final int remainingMachines;
+    private final int[] serviceCounts;
+
+    private SearchState(int layout, int remainingMachines, int[] counts) {
+      this.layout = layout;
+      this.remainingMachines = remainingMachines;
+      int[] services = remainingServices[layout];
+      this.serviceCounts = new int[services.length];
+      for (int i = 0; i < services.length; i++) {
+        serviceCounts[i] = counts[services[i]];
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof SearchState)) {
+        return false;
+      }
+      SearchState other = (SearchState) o;
+      return layout == other.layout && remainingMachines == other.remainingMachines
+        && Arrays.equals(serviceCounts, other.serviceCounts);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * layout + remainingMachines) + Arrays.hashCode(serviceCounts);
+    }
+  }
 }
@@ -17,6 +17,8 @@ package co.cask.coopr.layout;
 
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.cluster.Node;
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.layout.change.AddServiceChangeIterator;
 import co.cask.coopr.layout.change.ClusterLayoutChange;
 import co.cask.coopr.layout.change.ClusterLayoutTracker;
@@ -25,23 +27,68 @@ import co.cask.coopr.spec.template.ServiceConstraint;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.Executor;
 
 /**
  * Class that takes in an existing cluster and a request to update the cluster in some way, whether its by adding
  * services, removing services, adding nodes, or removing nodes.
  */
 public class ClusterLayoutUpdater {
+  private static final Logger LOG  = LoggerFactory.getLogger(ClusterLayoutUpdater.class);
   private static final ServiceMaxComparator serviceComparator = new ServiceMaxComparator();
+  // number of search steps to take on the calling thread before splitting the search up to run in parallel.
+  private static final long DEFAULT_SEQUENTIAL_STEPS = 10000;
+  private final Executor executor;
+  private final int parallelism;
+  private final long sequentialSteps;
+
+  public ClusterLayoutUpdater() {
+    this(null, 1, DEFAULT_SEQUENTIAL_STEPS);
+  }
+
+  @Inject
+  private ClusterLayoutUpdater(@Named("solver.executor.service") ListeningExecutorService executor,
+                               Configuration conf) {
+    this(executor, conf.getInt(Constants.SOLVER_SEARCH_PARALLELISM, Constants.DEFAULT_SOLVER_SEARCH_PARALLELISM),
+         DEFAULT_SEQUENTIAL_STEPS);
+  }
+
+  ClusterLayoutUpdater(Executor executor, int parallelism, long sequentialSteps) {
+    this.executor = executor;
+    this.parallelism = parallelism;
+    this.sequentialSteps = sequentialSteps;
+  }
 
   public ClusterLayoutTracker addServicesToCluster(Cluster cluster, Set<Node> clusterNodes,
                                                    Set<String> servicesToAdd) throws Exception {
+    return addServicesToCluster(cluster, clusterNodes, servicesToAdd, SolveDeadline.NONE);
+  }
+
+  /**
+   * Find a way to add services to a cluster, giving up with a {@link SolverTimeoutException} if no way is found before
+   * the given deadline.
+   *
+   * @param cluster Cluster to add services to.
+   * @param clusterNodes Nodes in the cluster.
+   * @param servicesToAdd Services to add to the cluster.
+   * @param deadline Deadline to stop searching at.
+   * @return Tracker containing the changes to make to the cluster, or null if there is no way to add the services.
+   * @throws Exception
+   */
+  public ClusterLayoutTracker addServicesToCluster(Cluster cluster, Set<Node> clusterNodes, Set<String> servicesToAdd,
+                                                   SolveDeadline deadline) throws Exception {
     Preconditions.checkArgument(cluster != null, "Cannot add services to a nonexistant cluster.");
     Preconditions.checkArgument(clusterNodes != null && !clusterNodes.isEmpty(),
                                 "Cannot add services to nonexistant nodes.");
@@ -52,7 +99,9 @@ public class ClusterLayoutUpdater {
     Set<String> servicesToAddCopy = Sets.newHashSet(servicesToAdd);
     SortedSet<Map.Entry<String, ServiceConstraint>> sortedConstraints = Sets.newTreeSet(serviceComparator);
     sortedConstraints.addAll(clusterConstraints.getServiceConstraints().entrySet());
-    Queue<String> sortedServices = Lists.newLinkedList();
+    // searches index into the list instead of removing services from it, so that a service is tried again after
+    // backing up past it, and so that searches running in parallel can share the list.
+    List<String> sortedServices = Lists.newArrayList();
     for (Map.Entry<String, ServiceConstraint> entry : sortedConstraints) {
       if (servicesToAddCopy.contains(entry.getKey())) {
         sortedServices.add(entry.getKey());
@@ -62,42 +111,113 @@ public class ClusterLayoutUpdater {
     // any service without a constraint has no limit on the number of nodes it can be placed on, so add them to the end
     sortedServices.addAll(servicesToAddCopy);
 
-    ClusterLayoutTracker tracker = new ClusterLayoutTracker(clusterLayout);
-    return canAddServicesToCluster(tracker, sortedServices) ? tracker : null;
+    if (executor == null || parallelism <= 1 || sortedServices.isEmpty()) {
+      return new AddServicesSearch(new ClusterLayoutTracker(clusterLayout), sortedServices, 0, -1, deadline).search();
+    }
+
+    // most searches finish quickly, so only split up the search if it takes a while.
+    AddServicesSearch search =
+      new AddServicesSearch(new ClusterLayoutTracker(clusterLayout), sortedServices, 0, sequentialSteps, deadline);
+    ClusterLayoutTracker tracker = search.search();
+    if (!search.outOfSteps) {
+      return tracker;
+    }
+
+    // split the search up by the ways the first service can be added, in the order they would have been searched.
+    List<AddServicesSearch> partitions = Lists.newArrayList();
+    Iterator<ClusterLayoutChange> changes =
+      new AddServiceChangeIterator(clusterLayout, sortedServices.get(0), deadline);
+    while (changes.hasNext()) {
+      ClusterLayoutTracker partitionTracker = new ClusterLayoutTracker(clusterLayout);
+      if (partitionTracker.addChangeIfValid(changes.next()) && partitionTracker.getCurrentLayout().isValid()) {
+        partitions.add(new AddServicesSearch(partitionTracker, sortedServices, 1, -1, deadline));
+      }
+    }
+    LOG.debug("searching {} partitions of the add services search space in parallel", partitions.size());
+    return PartitionedSearch.findFirst(partitions, executor, parallelism);
   }
 
-  private boolean canAddServicesToCluster(ClusterLayoutTracker tracker, Queue<String> servicesToAdd) {
-    if (servicesToAdd.isEmpty()) {
-      return true;
+  /**
+   * Search for a way to add services to a cluster, starting from some layout of the cluster. Services are added one at
+   * a time, in order, backtracking whenever the remaining services can't be added. Each search must only be used by
+   * one thread.
+   */
+  private static final class AddServicesSearch extends PartitionedSearch.Partition<ClusterLayoutTracker> {
+    private final ClusterLayoutTracker tracker;
+    private final List<String> servicesToAdd;
+    private final int firstService;
+    private final SolveDeadline deadline;
+    private long stepsLeft;
+    private boolean outOfSteps;
+
+    /**
+     * Create a search for adding services to a cluster.
+     *
+     * @param tracker Tracker with the layout to start from.
+     * @param servicesToAdd Services to add, in the order to add them.
+     * @param firstService Index of the first service that still needs to be added.
+     * @param maxSteps Max number of steps to take before giving up, or -1 for no limit.
+     * @param deadline Deadline to give up at by throwing a {@link SolverTimeoutException}.
+     */
+    private AddServicesSearch(ClusterLayoutTracker tracker, List<String> servicesToAdd, int firstService,
+                              long maxSteps, SolveDeadline deadline) {
+      this.tracker = tracker;
+      this.servicesToAdd = servicesToAdd;
+      this.firstService = firstService;
+      this.stepsLeft = maxSteps;
+      this.deadline = deadline;
+    }
+
+    @Override
+    ClusterLayoutTracker search() {
+      return canAddServicesToCluster(firstService) ? tracker : null;
     }
 
-    String service = servicesToAdd.remove();
-    ClusterLayout currentLayout = tracker.getCurrentLayout();
-    // find valid moves, where a move is adding some number of the first service in the queue to nodes in the cluster
-    Iterator<ClusterLayoutChange> changes = new AddServiceChangeIterator(currentLayout, service);
+    private boolean canAddServicesToCluster(int serviceIndex) {
+      if (serviceIndex == servicesToAdd.size()) {
+        return true;
+      }
+
+      String service = servicesToAdd.get(serviceIndex);
+      ClusterLayout currentLayout = tracker.getCurrentLayout();
+      // find valid moves, where a move is adding some number of the service to nodes in the cluster
+      Iterator<ClusterLayoutChange> changes = new AddServiceChangeIterator(currentLayout, service, deadline);
 
-    while (changes.hasNext()) {
-      // expand the cluster
-      ClusterLayoutChange change = changes.next();
-      if (tracker.addChangeIfValid(change)) {
-        // though the change was applied, the layout may not satisfy all constraints
-        ClusterLayout nextLayout = tracker.getCurrentLayout();
-        if (!nextLayout.isValid()) {
-          // if constraints were not all satisfied, remove the last change and keep searching
-          tracker.removeLastChange();
-          continue;
+      while (changes.hasNext()) {
+        if (stopped()) {
+          return false;
         }
+        // expand the cluster
+        ClusterLayoutChange change = changes.next();
+        if (tracker.addChangeIfValid(change)) {
+          // though the change was applied, the layout may not satisfy all constraints
+          ClusterLayout nextLayout = tracker.getCurrentLayout();
+          if (!nextLayout.isValid()) {
+            // if constraints were not all satisfied, remove the last change and keep searching
+            tracker.removeLastChange();
+            continue;
+          }
 
-        // successfully added the service. See if we can add the rest of the services.
-        if (canAddServicesToCluster(tracker, servicesToAdd)) {
-          return true;
-        } else {
-          // we were not able to add the rest of the services. Move on to the next change for this service.
-          tracker.removeLastChange();
+          // successfully added the service. See if we can add the rest of the services.
+          if (canAddServicesToCluster(serviceIndex + 1)) {
+            return true;
+          } else {
+            // we were not able to add the rest of the services. Move on to the next change for this service.
+            tracker.removeLastChange();
+          }
         }
       }
+      return false;
+    }
+
+    private boolean stopped() {
+      // each step validates a whole cluster layout, which is much more expensive than reading the clock.
+      deadline.check();
+      if (stepsLeft >= 0 && --stepsLeft < 0) {
+        outOfSteps = true;
+      }
+      return outOfSteps || isCancelled();
     }
-    return false;
   }
 
   /**
@@ -0,0 +1,162 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.layout;
+
+import co.cask.coopr.spec.template.ClusterTemplate;
+import co.cask.coopr.spec.template.Compatibilities;
+import co.cask.coopr.spec.template.Constraints;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Bounded cache of solved cluster layouts. Solving a layout only depends on the template, the services to place, the
+ * hardware and image types that can be used, and the number of machines, so layouts are keyed by those. The template
+ * is identified by its name and version along with its constraints and compatibilities, and hardware and image types
+ * by the names of the ones that can be used. A change to the template or to the entities that decide which hardware
+ * and image types can be used therefore results in a different key, so that stale layouts are never returned and are
+ * instead evicted once they become the least recently used. Both layouts that were found and the absence of a valid
+ * layout are cached.
+ */
+final class LayoutSolutionCache {
+  private final Cache<Key, Optional<Solution>> cache;
+
+  LayoutSolutionCache(int maxSize) {
+    this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+  }
+
+  /**
+   * Get the cached layout for the given inputs, or null if there is nothing cached for them.
+   *
+   * @param key Inputs of the layout to get.
+   * @return Cached layout for the inputs, absent if the inputs are cached as not having a valid layout, or null if
+   *         nothing is cached for the inputs.
+   */
+  Optional<Solution> get(Key key) {
+    return cache.getIfPresent(key);
+  }
+
+  void put(Key key, Solution solution) {
+    cache.put(key, Optional.fromNullable(solution));
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  static Key createKey(ClusterTemplate template, Set<String> services, Set<String> hardwareTypes,
+                       Set<String> imageTypes, int numMachines) {
+    return new Key(template.getName(), template.getVersion(), template.getConstraints(),
+                   template.getCompatibilities(), ImmutableSet.copyOf(services), ImmutableSet.copyOf(hardwareTypes),
+                   ImmutableSet.copyOf(imageTypes), numMachines);
+  }
+
+  /**
+   * Inputs that determine the layout of a cluster.
+   */
+  static final class Key {
+    private final String templateName;
+    private final int templateVersion;
+    private final Constraints constraints;
+    private final Compatibilities compatibilities;
+    private final Set<String> services;
+    private final Set<String> hardwareTypes;
+    private final Set<String> imageTypes;
+    private final int numMachines;
+    private final int hashCode;
+
+    private Key(String templateName, int templateVersion, Constraints constraints, Compatibilities compatibilities,
+                Set<String> services, Set<String> hardwareTypes, Set<String> imageTypes, int numMachines) {
+      this.templateName = templateName;
+      this.templateVersion = templateVersion;
+      this.constraints = constraints;
+      this.compatibilities = compatibilities;
+      this.services = services;
+      this.hardwareTypes = hardwareTypes;
+      this.imageTypes = imageTypes;
+      this.numMachines = numMachines;
+      this.hashCode = Objects.hashCode(templateName, templateVersion, constraints, compatibilities,
+                                       services, hardwareTypes, imageTypes, numMachines);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return hashCode == other.hashCode &&
+        numMachines == other.numMachines &&
+        templateVersion == other.templateVersion &&
+        Objects.equal(templateName, other.templateName) &&
+        Objects.equal(constraints, other.constraints) &&
+        Objects.equal(compatibilities, other.compatibilities) &&
+        Objects.equal(services, other.services) &&
+        Objects.equal(hardwareTypes, other.hardwareTypes) &&
+        Objects.equal(imageTypes, other.imageTypes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * Solved layout, as the node layouts to use in order of preference along with how many nodes of each to use.
+   */
+  static final class Solution {
+    private final List<NodeLayout> nodeLayouts;
+    private final int[] nodeCounts;
+
+    Solution(List<NodeLayout> nodeLayouts, int[] nodeCounts) {
+      ImmutableList.Builder<NodeLayout> layouts = ImmutableList.builder();
+      int numUsed = 0;
+      for (int count : nodeCounts) {
+        if (count > 0) {
+          numUsed++;
+        }
+      }
+      // only keep the node layouts that are used, since those are all that is needed to create the nodes.
+      this.nodeCounts = new int[numUsed];
+      int j = 0;
+      for (int i = 0; i < nodeCounts.length; i++) {
+        if (nodeCounts[i] > 0) {
+          layouts.add(nodeLayouts.get(i));
+          this.nodeCounts[j++] = nodeCounts[i];
+        }
+      }
+      this.nodeLayouts = layouts.build();
+    }
+
+    List<NodeLayout> getNodeLayouts() {
+      return nodeLayouts;
+    }
+
+    int getNodeCount(int i) {
+      return nodeCounts[i];
+    }
+  }
+}
@@ -18,15 +18,18 @@ package co.cask.coopr.layout;
 import co.cask.coopr.spec.template.ClusterTemplate;
 import co.cask.coopr.spec.template.LayoutConstraint;
 import co.cask.coopr.spec.template.ServiceConstraint;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.primitives.Booleans;
+import com.google.common.primitives.Longs;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -40,17 +43,37 @@ import java.util.TreeSet;
  */
 public class NodeLayoutGenerator {
   private static final Logger LOG  = LoggerFactory.getLogger(NodeLayoutGenerator.class);
+  // only check the deadline every 1024 candidate service sets, since a check is much cheaper than reading the clock.
+  private static final long DEADLINE_CHECK_MASK = 0x3ff;
   private final ClusterTemplate clusterTemplate;
   private final Set<String> clusterServices;
   private final Set<String> allowedHardwareTypes;
   private final Set<String> allowedImageTypes;
+  private final SolveDeadline deadline;
 
   public NodeLayoutGenerator(ClusterTemplate clusterTemplate, Set<String> clusterServices,
                              Set<String> allowedHardwareTypes, Set<String> allowedImageTypes) {
+    this(clusterTemplate, clusterServices, allowedHardwareTypes, allowedImageTypes, SolveDeadline.NONE);
+  }
+
+  /**
+   * Create a generator that gives up on generating node layouts by throwing a {@link SolverTimeoutException} once
+   * the given deadline has passed.
+   *
+   * @param clusterTemplate Template of the cluster.
+   * @param clusterServices Services that should be placed on the cluster.
+   * @param allowedHardwareTypes Hardware types that can be used in the cluster.
+   * @param allowedImageTypes Image types that can be used in the cluster.
+   * @param deadline Deadline to stop generating at.
+   */
+  public NodeLayoutGenerator(ClusterTemplate clusterTemplate, Set<String> clusterServices,
+                             Set<String> allowedHardwareTypes, Set<String> allowedImageTypes,
+                             SolveDeadline deadline) {
     this.clusterTemplate = clusterTemplate;
     this.clusterServices = clusterServices;
     this.allowedHardwareTypes = allowedHardwareTypes;
     this.allowedImageTypes = allowedImageTypes;
+    this.deadline = deadline;
   }
 
   /**
@@ -95,6 +118,7 @@ public class NodeLayoutGenerator {
    * list, the more preferred it is. Only one {@link NodeLayout} per valid service set will be returned.
    *
    * @return List of node layouts that can be used in the cluster, ordered by preference.
+   * @throws SolverTimeoutException if the deadline passed before the node layouts were generated.
    */
   public List<NodeLayout> generateNodeLayoutPreferences() {
     long start = System.nanoTime();
@@ -153,53 +177,162 @@ public class NodeLayoutGenerator {
     Set<Set<String>> validServiceSets = Sets.newHashSet();
 
     if (!services.isEmpty()) {
-      LayoutConstraint layoutConstraint = clusterTemplate.getConstraints().getLayoutConstraint();
-      int[] maxCounts = new int[services.size()];
-      for (int i = 0; i < maxCounts.length; i++) {
-        maxCounts[i] = 1;
-      }
-
       List<String> serviceList = Lists.newArrayList(services);
-      for (int i = 1; i <= services.size(); i++) {
-        // This iterator will go through all combinations of service sets of size i.
-        Iterator<int[]> serviceIter = new SlottedCombinationIterator(services.size(), i, maxCounts);
-        while (serviceIter.hasNext()) {
-          // build the candidate service set
-          int[] serviceCounts = serviceIter.next();
-          Set<String> candidateSet = Sets.newHashSet();
-          // the j'th int in serviceCounts indicates whether or not the j'th service in serviceList is in the
-          // candidate set.
-          for (int j = 0; j < serviceCounts.length; j++) {
-            // j'th service is in the candidate set, add it.
-            if (serviceCounts[j] == 1) {
-              candidateSet.add(serviceList.get(j));
-            }
-          }
-
-          // if the candidate set satisfies layout constraints, add it to the list of valid sets.
-          if (isValidServiceSet(candidateSet, layoutConstraint, clusterServices)) {
-            validServiceSets.add(candidateSet);
+      for (long serviceMask : findValidServiceMasks(serviceList)) {
+        Set<String> serviceSet = Sets.newHashSet();
+        for (int i = 0; i < serviceList.size(); i++) {
+          if ((serviceMask & (1L << i)) != 0) {
+            serviceSet.add(serviceList.get(i));
           }
         }
+        validServiceSets.add(serviceSet);
       }
     }
 
     return validServiceSets;
   }
 
+  // search through all possible service combinations, returning the valid ones as masks where the i'th bit is set if
+  // the i'th service in the list is in the service set. Layout constraints are turned into masks up front, so that
+  // checking a candidate service set only takes bitwise operations.
+  private List<Long> findValidServiceMasks(List<String> serviceList) {
+    int numServices = serviceList.size();
+    Preconditions.checkArgument(numServices < Long.SIZE - 1,
+                                "cannot search through combinations of more than %s constrained services",
+                                Long.SIZE - 2);
+    Map<String, Integer> serviceIndices = Maps.newHashMap();
+    for (int i = 0; i < numServices; i++) {
+      serviceIndices.put(serviceList.get(i), i);
+    }
+    LayoutConstraint layoutConstraint = clusterTemplate.getConstraints().getLayoutConstraint();
+
+    // a service set containing every service of a cant coexist constraint is invalid. Constraints with services that
+    // are not being placed can never be broken, so they are skipped.
+    List<Long> cantCoexistMasks = Lists.newArrayList();
+    for (Set<String> cantCoexist : layoutConstraint.getServicesThatMustNotCoexist()) {
+      Long mask = toMask(cantCoexist, serviceIndices);
+      if (mask != null) {
+        cantCoexistMasks.add(mask);
+      }
+    }
+
+    // a service set containing some but not all services of a must coexist constraint is invalid, ignoring services
+    // that are not on the cluster. If a service on the cluster is not being placed, the service set can never contain
+    // all of them, so it can't contain any of them either.
+    List<Long> mustCoexistMasks = Lists.newArrayList();
+    List<Boolean> mustCoexistComplete = Lists.newArrayList();
+    for (Set<String> mustCoexist : layoutConstraint.getServicesThatMustCoexist()) {
+      Set<String> trueMustCoexist = Sets.intersection(mustCoexist, clusterServices);
+      long mask = 0;
+      boolean complete = true;
+      for (String service : trueMustCoexist) {
+        Integer index = serviceIndices.get(service);
+        if (index == null) {
+          complete = false;
+        } else {
+          mask |= 1L << index;
+        }
+      }
+      if (mask != 0) {
+        mustCoexistMasks.add(mask);
+        mustCoexistComplete.add(complete);
+      }
+    }
+    long[] cantMasks = Longs.toArray(cantCoexistMasks);
+    long[] mustMasks = Longs.toArray(mustCoexistMasks);
+    boolean[] mustComplete = Booleans.toArray(mustCoexistComplete);
+
+    List<Long> validMasks = Lists.newArrayList();
+    long end = 1L << numServices;
+    for (long candidate = 1; candidate < end; candidate++) {
+      if ((candidate & DEADLINE_CHECK_MASK) == 0) {
+        deadline.check();
+      }
+      if (isValidServiceMask(candidate, cantMasks, mustMasks, mustComplete)) {
+        validMasks.add(candidate);
+      }
+    }
+    return validMasks;
+  }
+
+  private static boolean isValidServiceMask(long serviceMask, long[] cantCoexistMasks, long[] mustCoexistMasks,
+                                            boolean[] mustCoexistComplete) {
+    for (long cantCoexist : cantCoexistMasks) {
+      if ((serviceMask & cantCoexist) == cantCoexist) {
+        return false;
+      }
+    }
+    for (int i = 0; i < mustCoexistMasks.length; i++) {
+      long overlap = serviceMask & mustCoexistMasks[i];
+      if (overlap != 0 && (!mustCoexistComplete[i] || overlap != mustCoexistMasks[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // get the mask for the given services, or null if some of the services are not in the index.
+  private static Long toMask(Set<String> services, Map<String, Integer> serviceIndices) {
+    long mask = 0;
+    for (String service : services) {
+      Integer index = serviceIndices.get(service);
+      if (index == null) {
+        return null;
+      }
+      mask |= 1L << index;
+    }
+    return mask;
+  }
+
   // given a set of valid service sets, a collection of available hardware types, and a collection of available
   // image types, find the set of all node layouts that are valid given the constraints in the cluster template.
-  // a node layout is a service set, hardware type, and image type.
+  // a node layout is a service set, hardware type, and image type. Service sets are turned into bitsets over the
+  // services with hardware or image requirements, so that checking a node layout is a single intersection with the
+  // services that can't be placed on its hardware and image type.
   Set<NodeLayout> findValidNodeLayouts(Set<Set<String>> validServiceSets) {
     Set<NodeLayout> validNodeLayouts = Sets.newHashSet();
     Map<String, ServiceConstraint> serviceConstraints = clusterTemplate.getConstraints().getServiceConstraints();
 
+    List<String> restrictedServices = Lists.newArrayList();
+    Map<String, Integer> serviceIndices = Maps.newHashMap();
+    for (Map.Entry<String, ServiceConstraint> entry : serviceConstraints.entrySet()) {
+      ServiceConstraint constraint = entry.getValue();
+      if (!isNullOrEmpty(constraint.getRequiredHardwareTypes()) || !isNullOrEmpty(constraint.getRequiredImageTypes())) {
+        serviceIndices.put(entry.getKey(), restrictedServices.size());
+        restrictedServices.add(entry.getKey());
+      }
+    }
+
+    List<Set<String>> serviceSets = Lists.newArrayList(validServiceSets);
+    List<BitSet> serviceSetMasks = Lists.newArrayListWithCapacity(serviceSets.size());
+    for (Set<String> serviceSet : serviceSets) {
+      BitSet mask = new BitSet(restrictedServices.size());
+      for (String service : serviceSet) {
+        Integer index = serviceIndices.get(service);
+        if (index != null) {
+          mask.set(index);
+        }
+      }
+      serviceSetMasks.add(mask);
+    }
+
     for (String hardwareType : allowedHardwareTypes) {
       for (String imageType : allowedImageTypes) {
-        for (Set<String> serviceSet : validServiceSets) {
-          NodeLayout nodeLayout = new NodeLayout(hardwareType, imageType, serviceSet);
-          if (nodeLayout.satisfiesServiceConstraints(serviceConstraints)) {
-            validNodeLayouts.add(nodeLayout);
+        deadline.check();
+        // services that can't be placed on this hardware and image type
+        BitSet disallowed = new BitSet(restrictedServices.size());
+        for (int i = 0; i < restrictedServices.size(); i++) {
+          ServiceConstraint constraint = serviceConstraints.get(restrictedServices.get(i));
+          Set<String> requiredHardwareTypes = constraint.getRequiredHardwareTypes();
+          Set<String> requiredImageTypes = constraint.getRequiredImageTypes();
+          if ((!isNullOrEmpty(requiredHardwareTypes) && !requiredHardwareTypes.contains(hardwareType)) ||
+            (!isNullOrEmpty(requiredImageTypes) && !requiredImageTypes.contains(imageType))) {
+            disallowed.set(i);
+          }
+        }
+        for (int i = 0; i < serviceSets.size(); i++) {
+          if (!serviceSetMasks.get(i).intersects(disallowed)) {
+            validNodeLayouts.add(new NodeLayout(hardwareType, imageType, serviceSets.get(i)));
           }
         }
       }
@@ -208,6 +341,10 @@ public class NodeLayoutGenerator {
     return validNodeLayouts;
   }
 
+  private static boolean isNullOrEmpty(Set<String> set) {
+    return set == null || set.isEmpty();
+  }
+
   // if there are multiple node layouts with the same service set, choose just one of them to use to make future steps
   // faster.  For example, if we have ({s1, s2, s3}, hw1, img1), ({s1, s2, s3}, hw1, img2), ({s1, s2, s3}, hw2, img1),
   // then just pick one of them to use.  If hardware preferences and image preferences are non-null, the order of
@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.layout;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches through an ordered list of partitions of a search space in parallel, returning the result of the first
+ * partition in the list that has one. Partitions are claimed in order by the calling thread and by helpers submitted
+ * to an executor. The calling thread keeps claiming partitions until none are left, so the search completes even if
+ * the executor never runs the helpers, for example because all its threads are busy with other searches. Once a
+ * partition finds a result, every partition after it is cancelled, since its result could not be used anyway.
+ *
+ * @param <T> Type of result.
+ */
+final class PartitionedSearch<T> {
+  private final List<? extends Partition<T>> partitions;
+  private final List<SettableFuture<T>> results;
+  private final AtomicInteger nextPartition;
+  private final AtomicInteger firstFound;
+
+  /**
+   * Search through the given partitions in parallel, returning the result of the first one that has a result.
+   *
+   * @param partitions Partitions to search, in order.
+   * @param executor Executor to run helpers on.
+   * @param parallelism Max number of threads, including the calling thread, to search with.
+   * @param <T> Type of result.
+   * @return Result of the first partition that has a result, or null if none of them do.
+   */
+  static <T> T findFirst(List<? extends Partition<T>> partitions, Executor executor, int parallelism) {
+    return new PartitionedSearch<T>(partitions).search(executor, parallelism);
+  }
+
+  private PartitionedSearch(List<? extends Partition<T>> partitions) {
+    this.partitions = partitions;
+    this.results = Lists.newArrayListWithCapacity(partitions.size());
+    for (int i = 0; i < partitions.size(); i++) {
+      results.add(SettableFuture.<T>create());
+    }
+    this.nextPartition = new AtomicInteger(0);
+    this.firstFound = new AtomicInteger(partitions.size());
+  }
+
+  private T search(Executor executor, int parallelism) {
+    Runnable worker = new Runnable() {
+      @Override
+      public void run() {
+        searchPartitions();
+      }
+    };
+    int numHelpers = Math.min(parallelism, partitions.size()) - 1;
+    for (int i = 0; i < numHelpers; i++) {
+      try {
+        executor.execute(worker);
+      } catch (RejectedExecutionException e) {
+        // the calling thread will search whatever the helpers don't get to
+        break;
+      }
+    }
+    worker.run();
+
+    // every partition has been claimed by a running thread at this point, so all results will be set.
+    try {
+      for (SettableFuture<T> result : results) {
+        T value = result.get();
+        if (value != null) {
+          return value;
+        }
+      }
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      cancelAfter(-1);
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      // rethrow unchecked exceptions as they are, so callers can tell a search that timed out from other failures.
+      cancelAfter(-1);
+      Throwables.propagateIfPossible(e.getCause());
+      throw new UncheckedExecutionException(e.getCause());
+    }
+  }
+
+  private void searchPartitions() {
+    int i;
+    while ((i = nextPartition.getAndIncrement()) < partitions.size()) {
+      if (i > firstFound.get()) {
+        results.get(i).set(null);
+        continue;
+      }
+      try {
+        T result = partitions.get(i).search();
+        if (result != null) {
+          foundAt(i);
+        }
+        results.get(i).set(result);
+      } catch (Throwable t) {
+        results.get(i).setException(t);
+      }
+    }
+  }
+
+  private void foundAt(int i) {
+    int current = firstFound.get();
+    while (i < current) {
+      if (firstFound.compareAndSet(current, i)) {
+        cancelAfter(i);
+        return;
+      }
+      current = firstFound.get();
+    }
+  }
+
+  private void cancelAfter(int i) {
+    for (int j = i + 1; j < partitions.size(); j++) {
+      partitions.get(j).cancel();
+    }
+  }
+
+  /**
+   * Part of a search space.
+   *
+   * @param <T> Type of result.
+   */
+  abstract static class Partition<T> {
+    private volatile boolean cancelled;
+
+    /**
+     * Search through the partition. Implementations should check {@link #isCancelled()} regularly and give up when
+     * it returns true, in which case the return value is ignored.
+     *
+     * @return Result found in the partition, or null if there is none.
+     */
+    abstract T search();
+
+    boolean isCancelled() {
+      return cancelled;
+    }
+
+    void cancel() {
+      cancelled = true;
+    }
+  }
+}
@@ -45,9 +45,13 @@ import java.util.NoSuchElementException;
  * max counts are given, the max defaults to the integer max.
  */
 public class SlottedCombinationIterator implements Iterator<int[]> {
+  // only check the deadline every 256 advances, since advancing is much cheaper than reading the clock.
+  private static final int DEADLINE_CHECK_MASK = 0xff;
   private final int[] counts;
   private final int[] maxCounts;
   private final int lastSlot;
+  private final SolveDeadline deadline;
+  private int advances = 0;
   private boolean stillSearching = true;
   private boolean canAdvance = false;
 
@@ -69,6 +73,7 @@ public class SlottedCombinationIterator implements Iterator<int[]> {
   public SlottedCombinationIterator(int[] initialState, int[] maxCounts) {
     this.counts = Arrays.copyOf(initialState, initialState.length);
     this.lastSlot = initialState.length - 1;
+    this.deadline = SolveDeadline.NONE;
     if (maxCounts == null) {
       this.maxCounts = defaultMaxCounts(initialState.length);
     } else {
@@ -105,6 +110,20 @@ public class SlottedCombinationIterator implements Iterator<int[]> {
    * @param maxCounts Maximum number of items each slot can have. Null means each slot can have integer max.
    */
   public SlottedCombinationIterator(int numSlots, int numItems, int[] maxCounts) {
+    this(numSlots, numItems, maxCounts, SolveDeadline.NONE);
+  }
+
+  /**
+   * Create an iterator with the number of slots given and the number of items given, with a maximum number of items
+   * in each slot specified by the max counts array, that stops iterating by throwing a {@link SolverTimeoutException}
+   * once the given deadline has passed.
+   *
+   * @param numSlots Number of slots to use.
+   * @param numItems Number of items to use.
+   * @param maxCounts Maximum number of items each slot can have. Null means each slot can have integer max.
+   * @param deadline Deadline to stop iterating at.
+   */
+  public SlottedCombinationIterator(int numSlots, int numItems, int[] maxCounts, SolveDeadline deadline) {
     Preconditions.checkArgument(numSlots > 0, "must have more than 0 slots");
     Preconditions.checkArgument(numItems > 0, "must have more than 0 items");
 
@@ -120,6 +139,7 @@ public class SlottedCombinationIterator implements Iterator<int[]> {
     }
 
     this.lastSlot = numSlots - 1;
+    this.deadline = deadline;
     int[] counts = new int[numSlots];
     counts[0] = numItems;
     for (int i = 1; i < counts.length; i++) {
@@ -166,6 +186,9 @@ public class SlottedCombinationIterator implements Iterator<int[]> {
    * non-zero that we can move one slot to its right.
    */
   private void advanceState() {
+    if ((advances++ & DEADLINE_CHECK_MASK) == 0) {
+      deadline.check();
+    }
     int index = rightMostMovableSlot();
     if (index == -1) {
       stillSearching = false;
@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.layout;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which a layout solve must finish. Searches check the deadline cooperatively while they run, and
+ * give up by throwing a {@link SolverTimeoutException} once it has passed. A deadline can be shared by all threads
+ * working on the same solve.
+ */
+public final class SolveDeadline {
+  /**
+   * Deadline that never passes.
+   */
+  public static final SolveDeadline NONE = new SolveDeadline(0, 0);
+  private final long timeoutMillis;
+  private final long deadlineNanos;
+
+  private SolveDeadline(long timeoutMillis, long deadlineNanos) {
+    this.timeoutMillis = timeoutMillis;
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  /**
+   * Create a deadline that passes the given number of milliseconds from now.
+   *
+   * @param timeoutMillis Milliseconds from now that the deadline passes. Zero or less means there is no deadline.
+   * @return Deadline that passes the given number of milliseconds from now.
+   */
+  public static SolveDeadline after(long timeoutMillis) {
+    if (timeoutMillis <= 0) {
+      return NONE;
+    }
+    return new SolveDeadline(timeoutMillis, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+  }
+
+  /**
+   * Get whether or not the deadline has passed.
+   *
+   * @return True if the deadline has passed, false if not.
+   */
+  public boolean isExpired() {
+    // compare the difference instead of the values, since nano time can overflow.
+    return timeoutMillis > 0 && System.nanoTime() - deadlineNanos >= 0;
+  }
+
+  /**
+   * Check that the deadline has not passed.
+   *
+   * @throws SolverTimeoutException if the deadline has passed.
+   */
+  public void check() {
+    if (isExpired()) {
+      throw new SolverTimeoutException("layout solving did not finish within " + timeoutMillis + " ms");
+    }
+  }
+
+  /**
+   * Get the time budget the deadline was created with.
+   *
+   * @return Time budget in milliseconds, or 0 if there is no deadline.
+   */
+  public long getTimeoutMillis() {
+    return timeoutMillis;
+  }
+}
@@ -18,9 +18,12 @@ package co.cask.coopr.layout;
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.cluster.Node;
 import co.cask.coopr.cluster.NodeProperties;
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.http.request.ClusterCreateRequest;
 import co.cask.coopr.layout.change.ClusterLayoutChange;
 import co.cask.coopr.layout.change.ClusterLayoutTracker;
+import co.cask.coopr.management.ServerStats;
 import co.cask.coopr.scheduler.task.NodeService;
 import co.cask.coopr.spec.HardwareType;
 import co.cask.coopr.spec.ImageType;
@@ -31,10 +34,13 @@ import co.cask.coopr.spec.template.Compatibilities;
 import co.cask.coopr.store.entity.EntityStoreService;
 import co.cask.coopr.store.entity.EntityStoreView;
 import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,6 +49,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The solver takes a cluster template, a number of machines, and figures out what services to put on what hardware
@@ -56,11 +64,25 @@ public class Solver {
   private static final Logger LOG  = LoggerFactory.getLogger(Solver.class);
   private final EntityStoreService entityStoreService;
   private final ClusterLayoutUpdater updater;
+  private final ServerStats serverStats;
+  private final LayoutSolutionCache solutionCache;
+  private final Executor searchExecutor;
+  private final int searchParallelism;
+  private final long solveTimeoutMillis;
 
   @Inject
-  private Solver(EntityStoreService entityStoreService, ClusterLayoutUpdater updater) {
+  private Solver(EntityStoreService entityStoreService, ClusterLayoutUpdater updater, ServerStats serverStats,
+                 @Named("solver.executor.service") ListeningExecutorService searchExecutor, Configuration conf) {
     this.entityStoreService = entityStoreService;
     this.updater = updater;
+    this.serverStats = serverStats;
+    this.solutionCache =
+      new LayoutSolutionCache(conf.getInt(Constants.SOLVER_CACHE_SIZE, Constants.DEFAULT_SOLVER_CACHE_SIZE));
+    this.searchExecutor = searchExecutor;
+    this.searchParallelism =
+      conf.getInt(Constants.SOLVER_SEARCH_PARALLELISM, Constants.DEFAULT_SOLVER_SEARCH_PARALLELISM);
+    this.solveTimeoutMillis = TimeUnit.MILLISECONDS.convert(
+      conf.getLong(Constants.SOLVER_TIMEOUT_SECS, Constants.DEFAULT_SOLVER_TIMEOUT_SECS), TimeUnit.SECONDS);
   }
 
   /**
@@ -71,6 +93,7 @@ public class Solver {
    * @param clusterNodes Nodes in the cluster.
    * @param servicesToAdd Services to add to the cluster.
    * @return Nodes that need to have services added to them.
+   * @throws SolverTimeoutException if finding a way to add the services took longer than the solver time budget.
    * @throws Exception
    */
   public Set<Node> addServicesToCluster(Cluster cluster, Set<Node> clusterNodes,
@@ -80,7 +103,15 @@ public class Solver {
     validateServiceCompatibilities(cluster.getClusterTemplate().getCompatibilities(), servicesToAdd);
     validateServiceDependencies(serviceMap);
 
-    ClusterLayoutTracker tracker = updater.addServicesToCluster(cluster, clusterNodes, servicesToAdd);
+    long start = System.nanoTime();
+    ClusterLayoutTracker tracker;
+    try {
+      tracker = updater.addServicesToCluster(cluster, clusterNodes, servicesToAdd,
+                                             SolveDeadline.after(solveTimeoutMillis));
+    } catch (SolverTimeoutException e) {
+      serverStats.getSolverStats().recordTimeout((System.nanoTime() - start) / 1000000);
+      throw e;
+    }
     if (tracker == null) {
       return null;
     }
@@ -119,9 +150,11 @@ public class Solver {
    * @param cluster Cluster to solve a layout for.
    * @param request Request to create a cluster containing cluster settings to use.
    * @return Mapping of node id to node for all nodes in the cluster.
+   * @throws SolverTimeoutException if solving took longer than the solver time budget.
    * @throws Exception
    */
   public Map<String, Node> solveClusterNodes(Cluster cluster, ClusterCreateRequest request) throws Exception {
+    SolveDeadline deadline = SolveDeadline.after(solveTimeoutMillis);
     EntityStoreView entityStore = entityStoreService.getView(cluster.getAccount());
     ClusterTemplate template = cluster.getClusterTemplate();
     Provider provider = cluster.getProvider();
@@ -177,9 +210,11 @@ public class Solver {
       dnsSuffix = template.getClusterDefaults().getDnsSuffix();
     }
 
-    Map<String, Node> nodes =
-      solveConstraints(cluster.getId(), template, request.getName(), request.getNumMachines(), hardwareTypeFlavors,
-                       imageTypeMap, serviceNames, serviceMap, dnsSuffix);
+    LayoutSolutionCache.Solution solution = getSolution(template, serviceNames, hardwareTypeFlavors.keySet(),
+                                                        imageTypeMap.keySet(), request.getNumMachines(), deadline);
+    Map<String, Node> nodes = solution == null ? null :
+      createNodes(cluster.getId(), request.getName(), solution, hardwareTypeFlavors, imageTypeMap, serviceMap,
+                  dnsSuffix);
 
     // Update cluster object
     // TODO: this should happen outside Solver.
@@ -341,9 +376,7 @@ public class Solver {
     }
   }
 
-  // solves for a valid cluster layout based on the constraints. First finds all possible node layouts that can be
-  // used in the cluster based on the services that need to be on the cluster and constraints. Then searches for a
-  // valid number of each node layout based on the constraints.
+  // solves for a valid cluster layout based on the constraints, and creates the nodes for the layout.
   static Map<String, Node> solveConstraints(String clusterId, ClusterTemplate clusterTemplate, String clusterName,
                                             int numMachines,
                                             Map<String, String> hardwareTypeMap,
@@ -351,29 +384,81 @@ public class Solver {
                                             Set<String> serviceNames,
                                             Map<String, Service> serviceMap,
                                             String dnsSuffix) {
+    LayoutSolutionCache.Solution solution = findSolution(clusterTemplate, serviceNames, hardwareTypeMap.keySet(),
+                                                         imageTypeMap.keySet(), numMachines, null, 1,
+                                                         SolveDeadline.NONE);
+    if (solution == null) {
+      return null;
+    }
+    return createNodes(clusterId, clusterName, solution, hardwareTypeMap, imageTypeMap, serviceMap, dnsSuffix);
+  }
+
+  // get the solved cluster layout from the cache, or solve it and cache it if it is not already cached. Solves that
+  // time out are not cached, since they may succeed later with less load on the server.
+  private LayoutSolutionCache.Solution getSolution(ClusterTemplate clusterTemplate, Set<String> serviceNames,
+                                                   Set<String> hardwareTypes, Set<String> imageTypes,
+                                                   int numMachines, SolveDeadline deadline) {
+    long start = System.nanoTime();
+    LayoutSolutionCache.Key key =
+      LayoutSolutionCache.createKey(clusterTemplate, serviceNames, hardwareTypes, imageTypes, numMachines);
+    Optional<LayoutSolutionCache.Solution> cached = solutionCache.get(key);
+    LayoutSolutionCache.Solution solution;
+    if (cached != null) {
+      solution = cached.orNull();
+    } else {
+      try {
+        solution = findSolution(clusterTemplate, serviceNames, hardwareTypes, imageTypes, numMachines,
+                                searchExecutor, searchParallelism, deadline);
+      } catch (SolverTimeoutException e) {
+        serverStats.getSolverStats().recordTimeout((System.nanoTime() - start) / 1000000);
+        throw e;
+      }
+      solutionCache.put(key, solution);
+    }
+    serverStats.getSolverStats().recordSolve(cached != null, (System.nanoTime() - start) / 1000000);
+    return solution;
+  }
+
+  // solves for a valid cluster layout based on the constraints. First finds all possible node layouts that can be
+  // used in the cluster based on the services that need to be on the cluster and constraints. Then searches for a
+  // valid number of each node layout based on the constraints, possibly in parallel using the given executor. Returns
+  // null if there is no valid layout, or throws a SolverTimeoutException if the deadline passes first.
+  private static LayoutSolutionCache.Solution findSolution(ClusterTemplate clusterTemplate, Set<String> serviceNames,
+                                                           Set<String> hardwareTypes, Set<String> imageTypes,
+                                                           int numMachines, Executor executor, int parallelism,
+                                                           SolveDeadline deadline) {
     NodeLayoutGenerator nodeLayoutGenerator =
-      new NodeLayoutGenerator(clusterTemplate, serviceNames, hardwareTypeMap.keySet(), imageTypeMap.keySet());
+      new NodeLayoutGenerator(clusterTemplate, serviceNames, hardwareTypes, imageTypes, deadline);
 
     // We need to deterministically choose the same cluster.  Nodelayouts earlier in the traversal order are
     // preferred.
     List<NodeLayout> traversalOrder = nodeLayoutGenerator.generateNodeLayoutPreferences();
+    deadline.check();
 
     long start = System.nanoTime();
     ClusterLayoutFinder layoutFinder =
-      new ClusterLayoutFinder(traversalOrder, clusterTemplate, serviceNames, numMachines);
+      new ClusterLayoutFinder(traversalOrder, clusterTemplate, serviceNames, numMachines, executor, parallelism,
+                              deadline);
     int[] clusterlayout = layoutFinder.findValidNodeCounts();
     long dur = (System.nanoTime() - start) / 1000000;
     LOG.debug("took {} ms to find cluster layout", dur);
 
-    if (clusterlayout == null) {
-      return null;
-    }
+    return clusterlayout == null ? null : new LayoutSolutionCache.Solution(traversalOrder, clusterlayout);
+  }
 
+  // create the nodes for a solved cluster layout.
+  private static Map<String, Node> createNodes(String clusterId, String clusterName,
+                                               LayoutSolutionCache.Solution solution,
+                                               Map<String, String> hardwareTypeMap,
+                                               Map<String, Map<String, String>> imageTypeMap,
+                                               Map<String, Service> serviceMap,
+                                               String dnsSuffix) {
     Map<String, Node> clusterNodes = Maps.newHashMap();
     int nodeNum = 1000;
-    for (int i = 0; i < clusterlayout.length; i++) {
-      NodeLayout nodeLayout = traversalOrder.get(i);
-      for (int j = 0; j < clusterlayout[i]; j++) {
+    List<NodeLayout> nodeLayouts = solution.getNodeLayouts();
+    for (int i = 0; i < nodeLayouts.size(); i++) {
+      NodeLayout nodeLayout = nodeLayouts.get(i);
+      for (int j = 0; j < solution.getNodeCount(i); j++) {
         String nodeId = UUID.randomUUID().toString();
         Set<Service> nodeServices = Sets.newHashSet();
         for (String serviceName : nodeLayout.getServiceNames()) {
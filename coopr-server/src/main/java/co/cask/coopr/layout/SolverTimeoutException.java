@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.layout;
+
+/**
+ * Thrown to indicate that solving a cluster layout took longer than its time budget. Unchecked, since it is thrown
+ * from deep inside searches and iterators that cannot throw checked exceptions.
+ */
+public class SolverTimeoutException extends RuntimeException {
+
+  /**
+   * New exception with error message.
+   * @param message the error message
+   */
+  public SolverTimeoutException(String message) {
+    super(message);
+  }
+
+  public SolverTimeoutException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  public SolverTimeoutException(Throwable cause) {
+    super(cause);
+  }
+}
@@ -19,6 +19,7 @@ import co.cask.coopr.layout.ClusterLayout;
 import co.cask.coopr.layout.NodeLayout;
 import co.cask.coopr.layout.NodeLayoutComparator;
 import co.cask.coopr.layout.SlottedCombinationIterator;
+import co.cask.coopr.layout.SolveDeadline;
 import co.cask.coopr.spec.template.ServiceConstraint;
 import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Lists;
@@ -38,13 +39,27 @@ import java.util.Set;
 public class AddServiceChangeIterator implements Iterator<ClusterLayoutChange> {
   private final String service;
   private final List<NodeLayout> expandableNodeLayouts;
+  private final SolveDeadline deadline;
   private Iterator<int[]> nodeLayoutCountIterator;
   private int[] nodeLayoutMaxCounts;
   private int nodesToAddTo;
   private int minNodesToAddTo;
 
   public AddServiceChangeIterator(ClusterLayout clusterLayout, String service) {
+    this(clusterLayout, service, SolveDeadline.NONE);
+  }
+
+  /**
+   * Create an iterator through the ways the given service can be added to the given cluster layout, that stops
+   * iterating by throwing a {@link co.cask.coopr.layout.SolverTimeoutException} once the given deadline has passed.
+   *
+   * @param clusterLayout Cluster layout to add the service to.
+   * @param service Service to add.
+   * @param deadline Deadline to stop iterating at.
+   */
+  public AddServiceChangeIterator(ClusterLayout clusterLayout, String service, SolveDeadline deadline) {
     this.service = service;
+    this.deadline = deadline;
     // cluster services are needed in order to prune the constraints to only use ones that pertain to services
     // on the cluster
     Set<String> expandedClusterServices = Sets.newHashSet(service);
@@ -81,7 +96,7 @@ public class AddServiceChangeIterator implements Iterator<ClusterLayoutChange> {
       this.minNodesToAddTo = Math.max(serviceConstraint.getMinCount(), this.minNodesToAddTo);
     }
     this.nodeLayoutCountIterator = (this.nodesToAddTo < 1) ? null :
-      new SlottedCombinationIterator(expandableNodeLayouts.size(), nodesToAddTo, nodeLayoutMaxCounts);
+      new SlottedCombinationIterator(expandableNodeLayouts.size(), nodesToAddTo, nodeLayoutMaxCounts, deadline);
   }
 
   @Override
@@ -97,7 +112,7 @@ public class AddServiceChangeIterator implements Iterator<ClusterLayoutChange> {
         return false;
       } else {
         nodeLayoutCountIterator =
-          new SlottedCombinationIterator(expandableNodeLayouts.size(), nodesToAddTo, nodeLayoutMaxCounts);
+          new SlottedCombinationIterator(expandableNodeLayouts.size(), nodesToAddTo, nodeLayoutMaxCounts, deadline);
       }
     }
     return true;
@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.macro;
+
+import co.cask.coopr.cluster.Node;
+import co.cask.coopr.spec.service.Service;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable index over the nodes of a cluster that is used to evaluate macros. It is built once from the set of
+ * cluster nodes, after which looking up the nodes running a service, the n'th node running a service, or the service
+ * instance number of a node does not require scanning and sorting all cluster nodes again.
+ */
+public final class ClusterTopologyIndex {
+  private static final Ordering<Node> NODE_NUM_ORDERING = Ordering.from(new Comparator<Node>() {
+    @Override
+    public int compare(Node node, Node node2) {
+      Integer nodenum1 = node.getProperties().getNodenum();
+      Integer nodenum2 = node2.getProperties().getNodenum();
+      return nodenum1.compareTo(nodenum2);
+    }
+  });
+  private final Set<Node> nodes;
+  // nodes with the service, in iteration order of the original node set
+  private final ImmutableListMultimap<String, Node> serviceNodes;
+  // nodes with the service, sorted by node number
+  private final ImmutableListMultimap<String, Node> sortedServiceNodes;
+  // service -> node id -> 1 based instance number of the node for the service
+  private final ImmutableTable<String, String, Integer> serviceInstanceNums;
+
+  private ClusterTopologyIndex(Set<Node> nodes) {
+    this.nodes = ImmutableSet.copyOf(nodes);
+
+    ImmutableListMultimap.Builder<String, Node> serviceNodesBuilder = ImmutableListMultimap.builder();
+    for (Node node : this.nodes) {
+      Set<String> nodeServiceNames = Sets.newHashSet();
+      for (Service service : node.getServices()) {
+        if (nodeServiceNames.add(service.getName())) {
+          serviceNodesBuilder.put(service.getName(), node);
+        }
+      }
+    }
+    this.serviceNodes = serviceNodesBuilder.build();
+
+    ImmutableListMultimap.Builder<String, Node> sortedBuilder = ImmutableListMultimap.builder();
+    ImmutableTable.Builder<String, String, Integer> instanceNumsBuilder = ImmutableTable.builder();
+    for (String service : serviceNodes.keySet()) {
+      List<Node> sorted = NODE_NUM_ORDERING.sortedCopy(serviceNodes.get(service));
+      sortedBuilder.putAll(service, sorted);
+      int instanceNum = 1;
+      for (Node node : sorted) {
+        instanceNumsBuilder.put(service, node.getId(), instanceNum);
+        instanceNum++;
+      }
+    }
+    this.sortedServiceNodes = sortedBuilder.build();
+    this.serviceInstanceNums = instanceNumsBuilder.build();
+  }
+
+  /**
+   * Build an index over the given cluster nodes.
+   *
+   * @param nodes Nodes in the cluster.
+   * @return Index over the given nodes.
+   */
+  public static ClusterTopologyIndex of(Set<Node> nodes) {
+    return new ClusterTopologyIndex(nodes);
+  }
+
+  /**
+   * Get an immutable set of all nodes in the index.
+   *
+   * @return Immutable set of all nodes in the index.
+   */
+  public Set<Node> getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Get all nodes that have the given service on them, in the iteration order of the node set the index was built
+   * from.
+   *
+   * @param serviceName Name of the service.
+   * @return Immutable list of nodes with the service on them, empty if no node has the service.
+   */
+  public List<Node> getServiceNodes(String serviceName) {
+    return serviceNodes.get(serviceName);
+  }
+
+  /**
+   * Get all nodes that have the given service on them, sorted by node number.
+   *
+   * @param serviceName Name of the service.
+   * @return Immutable list of nodes with the service on them sorted by node number, empty if no node has the service.
+   */
+  public List<Node> getSortedServiceNodes(String serviceName) {
+    return sortedServiceNodes.get(serviceName);
+  }
+
+  /**
+   * Get the n'th node, by node number, that has the given service on it.
+   *
+   * @param serviceName Name of the service.
+   * @param n 0 based index of the node with the service on it.
+   * @return N'th node on the cluster with the given service.
+   * @throws IncompleteClusterException if there are fewer than n + 1 nodes with the service.
+   */
+  public Node getNthServiceNode(String serviceName, int n) throws IncompleteClusterException {
+    List<Node> sortedNodes = sortedServiceNodes.get(serviceName);
+    if (n >= sortedNodes.size()) {
+      throw new IncompleteClusterException("There are fewer than " + (n + 1) + " nodes with "
+                                             + serviceName + " on the cluster");
+    }
+    return sortedNodes.get(n);
+  }
+
+  /**
+   * Get the instance number of the node for the given service. For example, suppose there are 3 nodes with zookeeper
+   * with node numbers 3, 7, and 17. The instance num of the node with node number 3 is 1, the instance num of the
+   * node with node number 7 is 2, and the instance num of the node with node number 17 is 3.
+   *
+   * @param serviceName Name of the service.
+   * @param node Node to find the instance number for.
+   * @return Instance number of the node, or -1 if the node does not have the service on it.
+   */
+  public int getServiceInstanceNum(String serviceName, Node node) {
+    Integer instanceNum = serviceInstanceNums.get(serviceName, node.getId());
+    return instanceNum == null ? -1 : instanceNum;
+  }
+
+  /**
+   * Get the number of nodes that have the given service on them.
+   *
+   * @param serviceName Name of the service.
+   * @return Number of nodes with the service on them.
+   */
+  public int getServiceCardinality(String serviceName) {
+    return serviceNodes.get(serviceName).size();
+  }
+
+  /**
+   * Get the hostnames of all nodes that have the given service on them, in the same order as
+   * {@link #getServiceNodes(String)}.
+   *
+   * @param serviceName Name of the service.
+   * @return List of hostnames of nodes with the service on them.
+   * @throws IncompleteClusterException if a node with the service has no hostname.
+   */
+  public List<String> getServiceHostnames(String serviceName) throws IncompleteClusterException {
+    List<Node> nodesWithService = serviceNodes.get(serviceName);
+    List<String> output = Lists.newArrayListWithCapacity(nodesWithService.size());
+    for (Node node : nodesWithService) {
+      String hostname = node.getProperties().getHostname();
+      if (hostname == null) {
+        throw new IncompleteClusterException("node " + node.getId() + " has no hostname for macro expansion.");
+      }
+      output.add(hostname);
+    }
+    return output;
+  }
+
+  /**
+   * Get the ip addresses of the given type of all nodes that have the given service on them, in the same order as
+   * {@link #getServiceNodes(String)}.
+   *
+   * @param serviceName Name of the service.
+   * @param ipType Type of ip address to get.
+   * @return List of ip addresses of nodes with the service on them.
+   * @throws IncompleteClusterException if a node with the service has no ip address of the given type.
+   */
+  public List<String> getServiceIPAddresses(String serviceName, String ipType) throws IncompleteClusterException {
+    List<Node> nodesWithService = serviceNodes.get(serviceName);
+    List<String> output = Lists.newArrayListWithCapacity(nodesWithService.size());
+    for (Node node : nodesWithService) {
+      String ip = node.getProperties().getIPAddress(ipType);
+      if (ip == null) {
+        throw new IncompleteClusterException("node " + node.getId() + " has no ip for macro expansion.");
+      }
+      output.add(ip);
+    }
+    return output;
+  }
+}
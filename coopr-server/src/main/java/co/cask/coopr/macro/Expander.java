@@ -23,7 +23,6 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 
 import java.util.Map;
-import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
@@ -66,13 +65,13 @@ public final class Expander {
    * and on the specified node.
    * @param textWithMacros text that may contain macros.
    * @param cluster cluster to evaluate macros for.
-   * @param nodes cluster nodes to evaluate macros for.
+   * @param nodes index over the cluster nodes to evaluate macros for.
    * @param node cluster node to evaluate macros for.
    * @return text with any relevant macros expanded.
    * @throws SyntaxException if a macro is not wellformed.
    * @throws IncompleteClusterException if a macro cannot be expanded because the cluster lacks the information.
    */
-  public static String expand(String textWithMacros, Cluster cluster, Set<Node> nodes, Node node)
+  public static String expand(String textWithMacros, Cluster cluster, ClusterTopologyIndex nodes, Node node)
     throws SyntaxException, IncompleteClusterException {
     int pos = 0;
     StringBuilder builder = nodes == null ? null : new StringBuilder();
@@ -142,14 +141,15 @@ public final class Expander {
    * @param json A JSON tree
    * @param path the path to expand under
    * @param cluster the cluster to use for expanding macros.
-   * @param nodes the cluster nodes to use for expanding macros.
+   * @param nodes index over the cluster nodes to use for expanding macros.
    * @param node the cluster node to use for expanding macros.
    * @return a new JSON tree if any expansion took place, and the original JSON tree otherwise.
    * @throws SyntaxException if a macro expression is ill-formed.
    * @throws IncompleteClusterException if the cluster does not have the meta data to expand all macros.
    */
   public static JsonElement expand(JsonElement json, @Nullable java.util.List<String> path, Cluster cluster,
-                                   Set<Node> nodes, Node node) throws SyntaxException, IncompleteClusterException {
+                                   ClusterTopologyIndex nodes, Node node)
+    throws SyntaxException, IncompleteClusterException {
 
     // if path is given,
     if (path != null && !path.isEmpty()) {
@@ -21,7 +21,6 @@ import co.cask.coopr.macro.eval.Evaluator;
 import com.google.common.base.Objects;
 
 import java.util.List;
-import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
@@ -53,20 +52,21 @@ public class Expression {
   }
 
   /**
-   * Evaluate the expression for a given cluster. Looks up the service name in the cluster to find all nodes that run
-   * the service, then formats and joins all results into a string.
+   * Evaluate the expression for a given cluster. Looks up the service name in the cluster index to find all nodes that
+   * run the service, then formats and joins all results into a string.
    *
    * @param cluster the cluster to evaluate for.
-   * @param clusterNodes the nodes of the cluster to evaluate for.
+   * @param clusterIndex index over the nodes of the cluster to evaluate for.
    * @param node the node of the cluster to evaluate the expression for.
    * @return the replacement string for the expression, or null if the service required for replacement is not in
    *         the cluster.
    * @throws IncompleteClusterException if a node is missing the property that is required for the lookup type.
    */
-  public String evaluate(Cluster cluster, Set<Node> clusterNodes, Node node) throws IncompleteClusterException {
+  public String evaluate(Cluster cluster, ClusterTopologyIndex clusterIndex, Node node)
+    throws IncompleteClusterException {
     StringBuilder builder = new StringBuilder();
 
-    List<String> parts = evaluator.evaluate(cluster, clusterNodes, node);
+    List<String> parts = evaluator.evaluate(cluster, clusterIndex, node);
     if (parts == null) {
       return null;
     }
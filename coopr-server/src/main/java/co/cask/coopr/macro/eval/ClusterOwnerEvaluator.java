@@ -17,11 +17,11 @@ package co.cask.coopr.macro.eval;
 
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.cluster.Node;
+import co.cask.coopr.macro.ClusterTopologyIndex;
 import co.cask.coopr.macro.IncompleteClusterException;
 import com.google.common.collect.ImmutableList;
 
 import java.util.List;
-import java.util.Set;
 
 /**
  * Evaluates a macro that expands to the cluster owner.
@@ -29,7 +29,8 @@ import java.util.Set;
 public class ClusterOwnerEvaluator implements Evaluator {
 
   @Override
-  public List<String> evaluate(Cluster cluster, Set<Node> clusterNodes, Node node) throws IncompleteClusterException {
+  public List<String> evaluate(Cluster cluster, ClusterTopologyIndex clusterIndex, Node node)
+    throws IncompleteClusterException {
     return ImmutableList.of(cluster.getAccount().getUserId());
   }
 
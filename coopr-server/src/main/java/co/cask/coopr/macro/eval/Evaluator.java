@@ -17,10 +17,10 @@ package co.cask.coopr.macro.eval;
 
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.cluster.Node;
+import co.cask.coopr.macro.ClusterTopologyIndex;
 import co.cask.coopr.macro.IncompleteClusterException;
 
 import java.util.List;
-import java.util.Set;
 
 /**
  * Evaluator for a specific type of expression, such as an IP expression or a hostname expression.
@@ -32,10 +32,11 @@ public interface Evaluator {
    * Returns null if the macro does not expand to anything.
    *
    * @param cluster Cluster the macro is being expanded for.
-   * @param clusterNodes Nodes in the cluster the macro is being expanded for.
+   * @param clusterIndex Index over the nodes in the cluster the macro is being expanded for.
    * @param node The cluster node that the macro is being expanded for.
    * @return Evaluated macro expression.
    * @throws IncompleteClusterException if the cluster does not contain the information required to evaluate the macro.
    */
-  List<String> evaluate(Cluster cluster, Set<Node> clusterNodes, Node node) throws IncompleteClusterException;
+  List<String> evaluate(Cluster cluster, ClusterTopologyIndex clusterIndex, Node node)
+    throws IncompleteClusterException;
 }
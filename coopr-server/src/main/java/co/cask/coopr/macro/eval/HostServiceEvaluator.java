@@ -17,13 +17,12 @@ package co.cask.coopr.macro.eval;
 
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.cluster.Node;
+import co.cask.coopr.macro.ClusterTopologyIndex;
 import co.cask.coopr.macro.IncompleteClusterException;
-import co.cask.coopr.spec.service.Service;
 import com.google.common.base.Objects;
 import com.google.common.collect.Lists;
 
 import java.util.List;
-import java.util.Set;
 
 /**
  * Evaluates a macro that expands to be a list of the hostnames of nodes in the cluster that contain a given
@@ -38,26 +37,14 @@ public class HostServiceEvaluator extends ServiceEvaluator {
   }
 
   @Override
-  public List<String> evaluate(Cluster cluster, Set<Node> clusterNodes, Node node) throws IncompleteClusterException {
-    List<String> output = Lists.newArrayList();
+  public List<String> evaluate(Cluster cluster, ClusterTopologyIndex clusterIndex, Node node)
+    throws IncompleteClusterException {
+    List<String> output;
     if (instanceNum != null) {
-      Node instanceNode = getNthServiceNode(clusterNodes, instanceNum);
-      output.add(instanceNode.getProperties().getHostname());
+      Node instanceNode = clusterIndex.getNthServiceNode(serviceName, instanceNum);
+      output = Lists.newArrayList(instanceNode.getProperties().getHostname());
     } else {
-      // go through all nodes, looking for nodes with the service on it.
-      for (Node clusterNode : clusterNodes) {
-        for (Service service : clusterNode.getServices()) {
-          // if the node has the service on it, add the relevant node property.
-          if (serviceName.equals(service.getName())) {
-            String hostname = clusterNode.getProperties().getHostname();
-            if (hostname == null) {
-              throw new IncompleteClusterException("node " + clusterNode.getId() +
-                                                     " has no hostname for macro expansion.");
-            }
-            output.add(hostname);
-          }
-        }
-      }
+      output = clusterIndex.getServiceHostnames(serviceName);
     }
     return output.isEmpty() ? null : output;
   }
@@ -17,12 +17,12 @@ package co.cask.coopr.macro.eval;
 
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.cluster.Node;
+import co.cask.coopr.macro.ClusterTopologyIndex;
 import co.cask.coopr.macro.IncompleteClusterException;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 
 import java.util.List;
-import java.util.Set;
 
 /**
  * Evaluates a macro that expands to an ip address on the specified node.
@@ -35,7 +35,8 @@ public class IPSelfEvaluator implements Evaluator {
   }
 
   @Override
-  public List<String> evaluate(Cluster cluster, Set<Node> clusterNodes, Node node) throws IncompleteClusterException {
+  public List<String> evaluate(Cluster cluster, ClusterTopologyIndex clusterIndex, Node node)
+    throws IncompleteClusterException {
     String ip = node.getProperties().getIPAddress(ipType);
     if (ip == null) {
       throw new IncompleteClusterException("node " + node.getId() + " has no ip for macro expansion.");
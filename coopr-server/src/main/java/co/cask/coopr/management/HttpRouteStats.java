@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.management;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A snapshot of stats for requests to a single route of the http servers, for JMX and the metrics endpoint.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class HttpRouteStats {
+  private final long requests;
+  private final Map<String, Long> statusCodes;
+  private final long bytesIn;
+  private final long bytesOut;
+  private final double meanMillis;
+  private final double p50Millis;
+  private final double p90Millis;
+  private final double p99Millis;
+  private final double p999Millis;
+  private final double maxMillis;
+
+  public HttpRouteStats(long requests, Map<String, Long> statusCodes, long bytesIn, long bytesOut,
+                        double meanMillis, double p50Millis, double p90Millis, double p99Millis, double p999Millis,
+                        double maxMillis) {
+    this.requests = requests;
+    // sorted by status code, but not a SortedMap with a comparator, which JMX cannot represent
+    this.statusCodes = ImmutableMap.copyOf(new TreeMap<String, Long>(statusCodes));
+    this.bytesIn = bytesIn;
+    this.bytesOut = bytesOut;
+    this.meanMillis = meanMillis;
+    this.p50Millis = p50Millis;
+    this.p90Millis = p90Millis;
+    this.p99Millis = p99Millis;
+    this.p999Millis = p999Millis;
+    this.maxMillis = maxMillis;
+  }
+
+  public long getRequests() {
+    return requests;
+  }
+
+  /**
+   * Get a mapping of response status code to the number of responses sent with that status code.
+   *
+   * @return Mapping of response status code to the number of responses sent with that status code.
+   */
+  public Map<String, Long> getStatusCodes() {
+    return statusCodes;
+  }
+
+  /**
+   * Get the number of request body bytes received, before they were decompressed.
+   *
+   * @return Number of request body bytes received.
+   */
+  public long getBytesIn() {
+    return bytesIn;
+  }
+
+  /**
+   * Get the number of response body bytes sent, after they were compressed.
+   *
+   * @return Number of response body bytes sent.
+   */
+  public long getBytesOut() {
+    return bytesOut;
+  }
+
+  /**
+   * Get the mean time in milliseconds from receiving a request to writing the end of its response.
+   *
+   * @return Mean time in milliseconds from receiving a request to writing the end of its response.
+   */
+  public double getMeanMillis() {
+    return meanMillis;
+  }
+
+  public double getP50Millis() {
+    return p50Millis;
+  }
+
+  public double getP90Millis() {
+    return p90Millis;
+  }
+
+  public double getP99Millis() {
+    return p99Millis;
+  }
+
+  public double getP999Millis() {
+    return p999Millis;
+  }
+
+  public double getMaxMillis() {
+    return maxMillis;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    HttpRouteStats that = (HttpRouteStats) o;
+
+    return requests == that.requests && statusCodes.equals(that.statusCodes) && bytesIn == that.bytesIn &&
+      bytesOut == that.bytesOut && Double.compare(meanMillis, that.meanMillis) == 0 &&
+      Double.compare(p50Millis, that.p50Millis) == 0 && Double.compare(p90Millis, that.p90Millis) == 0 &&
+      Double.compare(p99Millis, that.p99Millis) == 0 && Double.compare(p999Millis, that.p999Millis) == 0 &&
+      Double.compare(maxMillis, that.maxMillis) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(requests, statusCodes, bytesIn, bytesOut, meanMillis, p50Millis, p90Millis, p99Millis,
+                            p999Millis, maxMillis);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("requests", requests)
+      .add("statusCodes", statusCodes)
+      .add("bytesIn", bytesIn)
+      .add("bytesOut", bytesOut)
+      .add("meanMillis", meanMillis)
+      .add("p50Millis", p50Millis)
+      .add("p90Millis", p90Millis)
+      .add("p99Millis", p99Millis)
+      .add("p999Millis", p999Millis)
+      .add("maxMillis", maxMillis)
+      .toString();
+  }
+}
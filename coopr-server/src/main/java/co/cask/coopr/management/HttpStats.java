@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.management;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects stats about requests to the http servers for JMX, keyed by the route that handled the request. Recording
+ * a request only touches counters of its route, so stats can be collected for every request.
+ */
+public class HttpStats implements HttpStatsMXBean {
+  /**
+   * Route for requests that were not handled by any handler method, for example because the path did not match or
+   * because they were rejected before reaching a handler.
+   */
+  public static final String UNMATCHED_ROUTE = "unmatched";
+
+  private final ConcurrentMap<String, RouteCounters> routes;
+
+  public HttpStats() {
+    this.routes = Maps.newConcurrentMap();
+  }
+
+  /**
+   * Record a request that was responded to.
+   *
+   * @param route Route that handled the request.
+   * @param statusCode Status code of the response.
+   * @param bytesIn Number of request body bytes received.
+   * @param bytesOut Number of response body bytes sent.
+   * @param latencyNanos Time in nanoseconds from receiving the request to writing the end of its response.
+   */
+  public void record(String route, int statusCode, long bytesIn, long bytesOut, long latencyNanos) {
+    RouteCounters counters = routes.get(route);
+    if (counters == null) {
+      counters = new RouteCounters();
+      RouteCounters oldCounters = routes.putIfAbsent(route, counters);
+      counters = oldCounters == null ? counters : oldCounters;
+    }
+    counters.record(statusCode, bytesIn, bytesOut, latencyNanos);
+  }
+
+  @Override
+  public Map<String, HttpRouteStats> getRoutes() {
+    Map<String, HttpRouteStats> stats = Maps.newTreeMap();
+    for (Map.Entry<String, RouteCounters> entry : routes.entrySet()) {
+      stats.put(entry.getKey(), entry.getValue().getStats());
+    }
+    return stats;
+  }
+
+  /**
+   * Counters for a single route.
+   */
+  private static final class RouteCounters {
+    private final ConcurrentMap<Integer, AtomicLong> statusCodes;
+    private final AtomicLong bytesIn;
+    private final AtomicLong bytesOut;
+    private final LatencyHistogram latencies;
+
+    private RouteCounters() {
+      this.statusCodes = Maps.newConcurrentMap();
+      this.bytesIn = new AtomicLong(0);
+      this.bytesOut = new AtomicLong(0);
+      this.latencies = new LatencyHistogram();
+    }
+
+    private void record(int statusCode, long bytesIn, long bytesOut, long latencyNanos) {
+      AtomicLong count = statusCodes.get(statusCode);
+      if (count == null) {
+        count = new AtomicLong(0);
+        AtomicLong oldCount = statusCodes.putIfAbsent(statusCode, count);
+        count = oldCount == null ? count : oldCount;
+      }
+      count.incrementAndGet();
+      this.bytesIn.addAndGet(bytesIn);
+      this.bytesOut.addAndGet(bytesOut);
+      latencies.record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private HttpRouteStats getStats() {
+      Map<String, Long> statusCounts = Maps.newHashMap();
+      for (Map.Entry<Integer, AtomicLong> entry : statusCodes.entrySet()) {
+        statusCounts.put(String.valueOf(entry.getKey()), entry.getValue().get());
+      }
+      return new HttpRouteStats(latencies.getCount(), statusCounts, bytesIn.get(), bytesOut.get(),
+                                latencies.getMeanMicros() / 1000, toMillis(latencies.getPercentileMicros(50)),
+                                toMillis(latencies.getPercentileMicros(90)),
+                                toMillis(latencies.getPercentileMicros(99)),
+                                toMillis(latencies.getPercentileMicros(99.9)), toMillis(latencies.getMaxMicros()));
+    }
+
+    private static double toMillis(long micros) {
+      return micros / 1000d;
+    }
+  }
+}
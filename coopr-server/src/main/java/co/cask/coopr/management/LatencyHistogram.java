@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.management;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in microseconds that can be recorded to from any thread without locking. Each power of two
+ * is split into {@link #SUB_BUCKETS} linear buckets, so percentiles are accurate to within 12.5% across the whole
+ * range while recording costs a few atomic increments. Latencies above an hour are recorded as an hour.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final long MAX_MICROS = TimeUnit.HOURS.toMicros(1);
+
+  private final AtomicLongArray counts;
+  private final AtomicLong count;
+  private final AtomicLong totalMicros;
+  private final AtomicLong maxMicros;
+
+  public LatencyHistogram() {
+    this.counts = new AtomicLongArray(getBucket(MAX_MICROS) + 1);
+    this.count = new AtomicLong(0);
+    this.totalMicros = new AtomicLong(0);
+    this.maxMicros = new AtomicLong(0);
+  }
+
+  /**
+   * Record a latency.
+   *
+   * @param latency Latency to record.
+   * @param unit Unit of the latency.
+   */
+  public void record(long latency, TimeUnit unit) {
+    long micros = Math.min(Math.max(unit.toMicros(latency), 0), MAX_MICROS);
+    counts.incrementAndGet(getBucket(micros));
+    count.incrementAndGet();
+    totalMicros.addAndGet(micros);
+    long max = maxMicros.get();
+    while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+      max = maxMicros.get();
+    }
+  }
+
+  /**
+   * Get the number of recorded latencies.
+   *
+   * @return Number of recorded latencies.
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Get the mean of recorded latencies in microseconds, or 0 if nothing was recorded.
+   *
+   * @return Mean of recorded latencies in microseconds.
+   */
+  public double getMeanMicros() {
+    long recorded = count.get();
+    return recorded == 0 ? 0 : (double) totalMicros.get() / recorded;
+  }
+
+  public long getMaxMicros() {
+    return maxMicros.get();
+  }
+
+  /**
+   * Get the latency in microseconds that the given percentage of recorded latencies are at or below, reported as the
+   * highest latency of the bucket it falls in. Returns 0 if nothing was recorded.
+   *
+   * @param percentile Percentage of recorded latencies, between 0 and 100.
+   * @return Latency in microseconds that the given percentage of recorded latencies are at or below.
+   */
+  public long getPercentileMicros(double percentile) {
+    long[] snapshot = new long[counts.length()];
+    long total = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return Math.min(getBucketMax(i), maxMicros.get());
+      }
+    }
+    return maxMicros.get();
+  }
+
+  // values below SUB_BUCKETS get a bucket each, larger values get one of SUB_BUCKETS buckets for their power of two
+  static int getBucket(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKETS + (int) (micros >>> shift);
+  }
+
+  static long getBucketMax(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long subBucket = bucket - shift * SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
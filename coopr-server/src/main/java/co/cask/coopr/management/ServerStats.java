@@ -32,6 +32,8 @@ public class ServerStats implements ServerStatsMXBean {
   private final ClusterStats failedClusterStats;
   private final ClusterStats successfulClusterStats;
 
+  private final SolverStats solverStats;
+
   public ServerStats() {
     this.queueLength = new AtomicInteger(0);
 
@@ -43,6 +45,8 @@ public class ServerStats implements ServerStatsMXBean {
     this.clusterStats = new ClusterStats();
     this.failedClusterStats = new ClusterStats();
     this.successfulClusterStats = new ClusterStats();
+
+    this.solverStats = new SolverStats();
   }
 
   @Override
@@ -85,6 +89,11 @@ public class ServerStats implements ServerStatsMXBean {
     return successfulClusterStats;
   }
 
+  @Override
+  public SolverStats getSolverStats() {
+    return solverStats;
+  }
+
   public void setQueueLength(int queueLength) {
     this.queueLength.set(queueLength);
   }
@@ -34,5 +34,7 @@ public interface ServerStatsMXBean {
   ClusterStats getFailedClusterStats();
 
   ClusterStats getSuccessfulClusterStats();
+
+  SolverStats getSolverStats();
 }
 
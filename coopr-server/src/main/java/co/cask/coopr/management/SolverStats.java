@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.management;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters for cluster layout solving used for JMX.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class SolverStats {
+  // upper bounds in milliseconds of the solve duration histogram buckets, with a last bucket for anything longer.
+  private static final long[] BUCKET_BOUNDS = { 10, 100, 1000, 10000, 60000, 300000 };
+  private final AtomicLong cacheHits = new AtomicLong(0);
+  private final AtomicLong cacheMisses = new AtomicLong(0);
+  private final AtomicLong totalSolveMillis = new AtomicLong(0);
+  private final AtomicLong maxSolveMillis = new AtomicLong(0);
+  private final AtomicLong timeouts = new AtomicLong(0);
+  private final AtomicLongArray solveMillisBuckets = new AtomicLongArray(BUCKET_BOUNDS.length + 1);
+
+  /**
+   * Record that a cluster layout was solved.
+   *
+   * @param cacheHit Whether the layout was found in the solution cache.
+   * @param solveMillis Time in milliseconds it took to solve the layout.
+   */
+  public void recordSolve(boolean cacheHit, long solveMillis) {
+    if (cacheHit) {
+      cacheHits.incrementAndGet();
+    } else {
+      cacheMisses.incrementAndGet();
+    }
+    totalSolveMillis.addAndGet(solveMillis);
+    long max = maxSolveMillis.get();
+    while (solveMillis > max && !maxSolveMillis.compareAndSet(max, solveMillis)) {
+      max = maxSolveMillis.get();
+    }
+    // cache hits don't search, so only searches are counted in the histogram used to tune the solver time budget.
+    if (!cacheHit) {
+      solveMillisBuckets.incrementAndGet(getBucket(solveMillis));
+    }
+  }
+
+  /**
+   * Record that solving a cluster layout was given up on because it took longer than the solver time budget.
+   *
+   * @param solveMillis Time in milliseconds spent solving before giving up.
+   */
+  public void recordTimeout(long solveMillis) {
+    timeouts.incrementAndGet();
+    solveMillisBuckets.incrementAndGet(getBucket(solveMillis));
+  }
+
+  private static int getBucket(long solveMillis) {
+    int bucket = 0;
+    while (bucket < BUCKET_BOUNDS.length && solveMillis > BUCKET_BOUNDS[bucket]) {
+      bucket++;
+    }
+    return bucket;
+  }
+
+  public long getSolves() {
+    return cacheHits.get() + cacheMisses.get();
+  }
+
+  public long getCacheHits() {
+    return cacheHits.get();
+  }
+
+  public long getCacheMisses() {
+    return cacheMisses.get();
+  }
+
+  public double getCacheHitRate() {
+    long solves = getSolves();
+    return solves == 0 ? 0 : (double) cacheHits.get() / solves;
+  }
+
+  public long getAvgSolveMillis() {
+    long solves = getSolves();
+    return solves == 0 ? 0 : totalSolveMillis.get() / solves;
+  }
+
+  public long getMaxSolveMillis() {
+    return maxSolveMillis.get();
+  }
+
+  public long getTimeouts() {
+    return timeouts.get();
+  }
+
+  /**
+   * Get how many searches for cluster layouts, including ones that timed out, took how long.
+   *
+   * @return Map of bucket name, in order of duration, to the number of searches whose duration fell in the bucket.
+   */
+  public Map<String, Long> getSolveMillisHistogram() {
+    Map<String, Long> histogram = Maps.newLinkedHashMap();
+    for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+      histogram.put("<=" + BUCKET_BOUNDS[i], solveMillisBuckets.get(i));
+    }
+    histogram.put(">" + BUCKET_BOUNDS[BUCKET_BOUNDS.length - 1], solveMillisBuckets.get(BUCKET_BOUNDS.length));
+    return histogram;
+  }
+}
@@ -1,5 +1,6 @@
 package co.cask.coopr.management.guice;
 
+import co.cask.coopr.management.HttpStats;
 import co.cask.coopr.management.ServerStats;
 import com.google.inject.AbstractModule;
 import com.google.inject.Scopes;
@@ -12,5 +13,6 @@ public class ManagementModule extends AbstractModule {
   @Override
   protected void configure() {
     bind(ServerStats.class).in(Scopes.SINGLETON);
+    bind(HttpStats.class).in(Scopes.SINGLETON);
   }
 }
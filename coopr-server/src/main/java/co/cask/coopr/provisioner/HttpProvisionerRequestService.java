@@ -5,47 +5,90 @@ import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.provisioner.plugin.ResourceCollection;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.inject.Inject;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.config.SocketConfig;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.NoConnectionReuseStrategy;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Service that makes http calls with retries to provisioners for different provisioner operations, such as
- * deleting a tenant or putting tenant information.
+ * deleting a tenant or putting tenant information. Connections to provisioners are kept alive and pooled, and requests
+ * to multiple provisioners are sent concurrently. Each request, including its retries, must finish within a
+ * configurable amount of time or it is considered failed.
  */
 public class HttpProvisionerRequestService implements ProvisionerRequestService {
   private static final Logger LOG  = LoggerFactory.getLogger(HttpProvisionerRequestService.class);
   private static final String BASE_TENANT_PATH = Constants.API_BASE + "/tenants/";
+  // requests are made while holding the tenant lock, so there are rarely concurrent requests to the same provisioner.
+  private static final int MAX_CONNECTIONS_PER_PROVISIONER = 4;
+  // pooled connections to provisioners that have gone away are closed after being idle for this long.
+  private static final long MAX_IDLE_CONNECTION_SECS = 60;
   private final int maxRetries;
   private final long msBetweenRetries;
+  private final int socketTimeout;
+  private final long requestTimeoutMs;
+  private final PoolingHttpClientConnectionManager connectionManager;
   private final CloseableHttpClient httpClient;
+  private final ExecutorService executorService;
   private final Gson gson;
 
   @Inject
   private HttpProvisionerRequestService(Configuration conf, Gson gson) {
     this.maxRetries = conf.getInt(Constants.PROVISIONER_REQUEST_MAX_RETRIES);
     this.msBetweenRetries = conf.getLong(Constants.PROVISIONER_REQUEST_MS_BETWEEN_RETRIES);
-    int socketTimeout = conf.getInt(Constants.PROVISIONER_REQUEST_SOCKET_TIMEOUT_MS);
+    this.socketTimeout = conf.getInt(Constants.PROVISIONER_REQUEST_SOCKET_TIMEOUT_MS);
+    this.requestTimeoutMs = conf.getLong(Constants.PROVISIONER_REQUEST_TIMEOUT_MS,
+                                         Constants.DEFAULT_PROVISIONER_REQUEST_TIMEOUT_MS);
+    int maxConnections = conf.getInt(Constants.PROVISIONER_REQUEST_MAX_CONNECTIONS,
+                                     Constants.DEFAULT_PROVISIONER_REQUEST_MAX_CONNECTIONS);
+    int numThreads = conf.getInt(Constants.PROVISIONER_REQUEST_THREADS,
+                                 Constants.DEFAULT_PROVISIONER_REQUEST_THREADS);
 
+    this.connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(Math.min(MAX_CONNECTIONS_PER_PROVISIONER, maxConnections));
+    connectionManager.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(socketTimeout).build());
     this.httpClient = HttpClients.custom()
-      .setConnectionReuseStrategy(NoConnectionReuseStrategy.INSTANCE)
-      .setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(socketTimeout).build())
+      .setConnectionManager(connectionManager)
       .build();
+
+    // threads are only needed while requests are being sent out, so let them die when idle.
+    ThreadPoolExecutor executor =
+      new ThreadPoolExecutor(numThreads, numThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                             new ThreadFactoryBuilder()
+                               .setNameFormat("provisioner-request-%d")
+                               .setDaemon(true)
+                               .build());
+    executor.allowCoreThreadTimeOut(true);
+    this.executorService = executor;
     this.gson = gson;
   }
 
@@ -57,18 +100,58 @@ public class HttpProvisionerRequestService implements ProvisionerRequestService
 
   @Override
   public boolean putTenant(Provisioner provisioner, String tenantId, ResourceCollection resourceCollection) {
-    HttpPut put = new HttpPut(getTenantURL(provisioner, tenantId));
-    int workers = provisioner.getAssignedWorkers(tenantId);
+    return makeRequestWithRetries(createPutTenantRequest(provisioner, tenantId, resourceCollection));
+  }
+
+  @Override
+  public Set<String> putTenant(Collection<Provisioner> provisioners, String tenantId,
+                               ResourceCollection resourceCollection) {
+    connectionManager.closeExpiredConnections();
+    connectionManager.closeIdleConnections(MAX_IDLE_CONNECTION_SECS, TimeUnit.SECONDS);
+
+    // the deadline starts when the requests are submitted, so time spent waiting for a thread counts against it.
+    final long deadline = System.currentTimeMillis() + requestTimeoutMs;
+    Map<String, Future<Boolean>> results = Maps.newHashMap();
+    for (Provisioner provisioner : provisioners) {
+      // requests are created in this thread since provisioners are not thread safe.
+      final HttpPut put = createPutTenantRequest(provisioner, tenantId, resourceCollection);
+      results.put(provisioner.getId(), executorService.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          return makeRequestWithRetries(put, deadline);
+        }
+      }));
+    }
+
+    Set<String> failed = Sets.newHashSet();
     try {
-      String body = gson.toJson(new ProvisionerTenant(workers, resourceCollection));
-      put.setEntity(new StringEntity(body));
-    } catch (UnsupportedEncodingException e) {
-      // should never happen
-      LOG.error("Unsupported encoding when writing tenant {} to provisioner {}",
-                tenantId, provisioner.getId());
-      Throwables.propagate(e);
+      // requests give up on their own once the deadline has passed, but a request stuck somewhere that does not
+      // honor the deadline is cut off here.
+      for (Map.Entry<String, Future<Boolean>> result : results.entrySet()) {
+        try {
+          long remaining = Math.max(0, deadline - System.currentTimeMillis());
+          if (!result.getValue().get(remaining, TimeUnit.MILLISECONDS)) {
+            failed.add(result.getKey());
+          }
+        } catch (ExecutionException e) {
+          LOG.error("Exception writing tenant {} to provisioner {}", tenantId, result.getKey(), e.getCause());
+          failed.add(result.getKey());
+        } catch (TimeoutException e) {
+          LOG.error("Writing tenant {} to provisioner {} did not finish within {} ms",
+                    tenantId, result.getKey(), requestTimeoutMs);
+          result.getValue().cancel(true);
+          failed.add(result.getKey());
+        }
+      }
+    } catch (InterruptedException e) {
+      LOG.error("Interrupted while writing tenant {} to provisioners.", tenantId, e);
+      for (Future<Boolean> result : results.values()) {
+        result.cancel(true);
+      }
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
     }
-    return makeRequestWithRetries(put);
+    return failed;
   }
 
   @Override
@@ -101,9 +184,42 @@ public class HttpProvisionerRequestService implements ProvisionerRequestService
     return makeRequestWithRetries(put);
   }
 
+  private HttpPut createPutTenantRequest(Provisioner provisioner, String tenantId,
+                                         ResourceCollection resourceCollection) {
+    HttpPut put = new HttpPut(getTenantURL(provisioner, tenantId));
+    int workers = provisioner.getAssignedWorkers(tenantId);
+    try {
+      String body = gson.toJson(new ProvisionerTenant(workers, resourceCollection));
+      put.setEntity(new StringEntity(body));
+    } catch (UnsupportedEncodingException e) {
+      // should never happen
+      LOG.error("Unsupported encoding when writing tenant {} to provisioner {}",
+                tenantId, provisioner.getId());
+      Throwables.propagate(e);
+    }
+    return put;
+  }
+
   private boolean makeRequestWithRetries(HttpRequestBase request) {
+    return makeRequestWithRetries(request, System.currentTimeMillis() + requestTimeoutMs);
+  }
+
+  private boolean makeRequestWithRetries(HttpRequestBase request, long deadline) {
     int numRetried = 0;
     while (numRetried < maxRetries) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        LOG.error("{} request to {} did not succeed within {} ms",
+                  request.getMethod(), request.getURI().toString(), requestTimeoutMs);
+        break;
+      }
+      // don't let a single attempt run past the deadline of the whole request
+      int attemptTimeout = (int) Math.min(socketTimeout, remaining);
+      request.setConfig(RequestConfig.custom()
+                          .setConnectTimeout(attemptTimeout)
+                          .setSocketTimeout(attemptTimeout)
+                          .setConnectionRequestTimeout(attemptTimeout)
+                          .build());
       try {
         int statusCode = makeRequest(request);
         if (statusCode / 100 == 2) {
@@ -119,7 +235,7 @@ public class HttpProvisionerRequestService implements ProvisionerRequestService
       }
       numRetried++;
       try {
-        TimeUnit.MILLISECONDS.sleep(msBetweenRetries);
+        TimeUnit.MILLISECONDS.sleep(Math.min(msBetweenRetries, Math.max(0, deadline - System.currentTimeMillis())));
       } catch (InterruptedException e) {
         LOG.error("Sleep between retries interrupted.", e);
         Throwables.propagate(e);
@@ -132,6 +248,8 @@ public class HttpProvisionerRequestService implements ProvisionerRequestService
   private int makeRequest(HttpRequestBase request) throws IOException {
     CloseableHttpResponse response = httpClient.execute(request);
     try {
+      // the body has to be read for the connection to be returned to the pool instead of being closed.
+      EntityUtils.consume(response.getEntity());
       return response.getStatusLine().getStatusCode();
     } finally {
       response.close();
@@ -1,17 +1,27 @@
 package co.cask.coopr.provisioner;
 
+import co.cask.coopr.http.request.FinishTaskRequest;
 import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
 
+import java.util.List;
 import java.util.Map;
 
 /**
- * Data sent in a provisioner heartbeat.  Currently only tenant usage information.
+ * Data sent in a provisioner heartbeat.  Contains tenant usage information, and optionally tasks that workers of the
+ * provisioner have finished since the last heartbeat.
  */
 public class ProvisionerHeartbeat {
   private final Map<String, Integer> usage;
+  private final List<FinishTaskRequest> finishedTasks;
 
   public ProvisionerHeartbeat(Map<String, Integer> usage) {
+    this(usage, null);
+  }
+
+  public ProvisionerHeartbeat(Map<String, Integer> usage, List<FinishTaskRequest> finishedTasks) {
     this.usage = usage;
+    this.finishedTasks = finishedTasks;
   }
 
   /**
@@ -24,6 +34,15 @@ public class ProvisionerHeartbeat {
     return usage;
   }
 
+  /**
+   * Get the tasks that were finished by workers of the provisioner since the last heartbeat.
+   *
+   * @return Requests to finish tasks, or an empty list if there are none.
+   */
+  public List<FinishTaskRequest> getFinishedTasks() {
+    return finishedTasks == null ? ImmutableList.<FinishTaskRequest>of() : finishedTasks;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -35,18 +54,20 @@ public class ProvisionerHeartbeat {
 
     ProvisionerHeartbeat that = (ProvisionerHeartbeat) o;
 
-    return Objects.equal(usage, that.usage);
+    return Objects.equal(usage, that.usage) &&
+      Objects.equal(getFinishedTasks(), that.getFinishedTasks());
   }
 
   @Override
   public int hashCode() {
-    return usage.hashCode();
+    return Objects.hashCode(usage, getFinishedTasks());
   }
 
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
       .add("usage", usage)
+      .add("finishedTasks", finishedTasks)
       .toString();
   }
 }
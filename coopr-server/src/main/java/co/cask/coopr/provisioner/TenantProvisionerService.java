@@ -10,6 +10,7 @@ import co.cask.coopr.common.queue.QueueService;
 import co.cask.coopr.common.queue.TrackingQueue;
 import co.cask.coopr.common.zookeeper.LockService;
 import co.cask.coopr.common.zookeeper.lib.ZKInterProcessReentrantLock;
+import co.cask.coopr.provisioner.balance.WorkerBalancePolicy;
 import co.cask.coopr.provisioner.plugin.ResourceCollection;
 import co.cask.coopr.provisioner.plugin.ResourceService;
 import co.cask.coopr.scheduler.task.MissingEntityException;
@@ -20,6 +21,7 @@ import co.cask.coopr.store.cluster.ClusterStoreView;
 import co.cask.coopr.store.entity.EntityStoreService;
 import co.cask.coopr.store.provisioner.ProvisionerStore;
 import co.cask.coopr.store.tenant.TenantStore;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -50,6 +52,7 @@ public class TenantProvisionerService {
   private final ResourceService resourceService;
   private final EntityStoreService entityStoreService;
   private final QueueService queueService;
+  private final WorkerBalancePolicy balancePolicy;
 
   @Inject
   private TenantProvisionerService(ProvisionerStore provisionerStore,
@@ -61,6 +64,7 @@ public class TenantProvisionerService {
                                    ResourceService resourceService,
                                    EntityStoreService entityStoreService,
                                    QueueService queueService,
+                                   WorkerBalancePolicy balancePolicy,
                                    Configuration conf) {
     this.provisionerStore = provisionerStore;
     this.tenantStore = tenantStore;
@@ -77,6 +81,7 @@ public class TenantProvisionerService {
     this.provisionerTimeoutSecs = conf.getLong(Constants.PROVISIONER_TIMEOUT_SECS);
     this.balanceQueue = balanceQueue;
     this.queueService = queueService;
+    this.balancePolicy = balancePolicy;
   }
 
   /**
@@ -315,30 +320,66 @@ public class TenantProvisionerService {
    * @throws IOException if there was an exception persisting the worker rebalance
    */
   public void rebalanceTenantWorkers(String tenantId) throws IOException, CapacityException {
+    if (!rebalanceTenantWorkers(ImmutableSet.of(tenantId)).isEmpty()) {
+      throw new CapacityException("Unable to add all workers to tenant " + tenantId +
+                                    " without exceeding worker capacity.");
+    }
+  }
+
+  /**
+   * Rebalance workers for all the given tenants across the provisioners at once. Workers are removed from tenants
+   * that have too many before they are added to tenants that have too few, so that capacity freed up by one tenant
+   * can be used by another. Only the difference between the number of workers a tenant has and the number it needs is
+   * changed, existing workers are not moved between provisioners.
+   *
+   * @param tenantIds Ids of the tenants whose workers need to be rebalanced
+   * @return Ids of the tenants that could not be given all their workers because there is not enough capacity
+   * @throws IOException if there was an exception persisting the worker rebalance
+   */
+  public Set<String> rebalanceTenantWorkers(Collection<String> tenantIds) throws IOException {
     // lock across all tenants to protect against conflicts in setting worker counts for different tenants across
     // different provisioners
     tenantLock.acquire();
     try {
-      Tenant tenant = tenantStore.getTenantByID(tenantId);
-      if (tenant == null) {
-        return;
+      Map<String, Integer> toAdd = Maps.newLinkedHashMap();
+      Map<String, Integer> toRemove = Maps.newLinkedHashMap();
+      for (String tenantId : ImmutableSet.copyOf(tenantIds)) {
+        Tenant tenant = tenantStore.getTenantByID(tenantId);
+        if (tenant == null) {
+          continue;
+        }
+        int diff = tenant.getSpecification().getWorkers() - provisionerStore.getNumAssignedWorkers(tenantId);
+        if (diff < 0) {
+          toRemove.put(tenantId, 0 - diff);
+        } else if (diff > 0) {
+          toAdd.put(tenantId, diff);
+        }
       }
 
-      int diff = tenant.getSpecification().getWorkers() - provisionerStore.getNumAssignedWorkers(tenantId);
-      if (diff < 0) {
+      for (Map.Entry<String, Integer> entry : toRemove.entrySet()) {
+        String tenantId = entry.getKey();
         Account tenantAdmin = new Account(Constants.ADMIN_USER, tenantId);
         ResourceCollection liveResources = resourceService.getLiveResources(tenantAdmin);
         // too many workers assigned, remove some.
-        int toRemove = 0 - diff;
-        LOG.debug("Removing {} workers from tenant {}", toRemove, tenantId);
-        removeWorkers(tenantId, toRemove, liveResources);
-      } else if (diff > 0) {
+        LOG.debug("Removing {} workers from tenant {}", entry.getValue(), tenantId);
+        removeWorkers(tenantId, entry.getValue(), liveResources);
+      }
+
+      Set<String> insufficientCapacity = Sets.newHashSet();
+      for (Map.Entry<String, Integer> entry : toAdd.entrySet()) {
+        String tenantId = entry.getKey();
         Account tenantAdmin = new Account(Constants.ADMIN_USER, tenantId);
         ResourceCollection liveResources = resourceService.getLiveResources(tenantAdmin);
         // not enough workers assigned, assign some more.
-        LOG.debug("Adding {} workers to tenant {}", diff, tenantId);
-        addWorkers(tenantId, diff, liveResources);
+        LOG.debug("Adding {} workers to tenant {}", entry.getValue(), tenantId);
+        try {
+          addWorkers(tenantId, entry.getValue(), liveResources);
+        } catch (CapacityException e) {
+          LOG.error("Not enough capacity trying to balance workers for tenant {}", tenantId, e);
+          insufficientCapacity.add(tenantId);
+        }
       }
+      return insufficientCapacity;
     } finally {
       tenantLock.release();
     }
@@ -379,14 +420,7 @@ public class TenantProvisionerService {
   }
 
   private void syncProvisionerResources(String tenantId, ResourceCollection resourceCollection) throws IOException {
-    for (Provisioner provisioner : provisionerStore.getTenantProvisioners(tenantId)) {
-      if (!provisionerRequestService.putTenant(provisioner, tenantId, resourceCollection)) {
-        LOG.error("Could not write resource metadata for tenant {} to provisioner {}. " +
-                    "The provisioner appears broken, deleting it and rebalancing its tenant workers",
-                  tenantId, provisioner.getId());
-        deleteProvisioner(provisioner);
-      }
-    }
+    putTenant(provisionerStore.getTenantProvisioners(tenantId), tenantId, resourceCollection);
   }
 
   /**
@@ -427,57 +461,74 @@ public class TenantProvisionerService {
     syncResources(account);
   }
 
-  // TODO: abstract out to support different types of balancing policies
-  // Currently a greedy approach, just remove from first available.
   private void removeWorkers(String tenantId, int numToRemove, ResourceCollection resources) throws IOException {
-    // go through each provisioner, removing workers for the tenant until we've removed enough.
-    for (Provisioner provisioner : provisionerStore.getTenantProvisioners(tenantId)) {
-      int numRemoved = provisioner.tryRemoveTenantAssignments(tenantId, numToRemove);
-      if (numRemoved > 0) {
-        provisionerStore.writeProvisioner(provisioner);
-        LOG.debug("Requesting provisioner {} to set workers to {} for tenant {} (removing {})",
-                  provisioner.getId(), provisioner.getAssignedWorkers(tenantId), tenantId, numRemoved);
-        if (provisionerRequestService.putTenant(provisioner, tenantId, resources)) {
+    // the balance policy decides which provisioners to remove workers from, then the new assignments are pushed to all
+    // changed provisioners at once. If a provisioner is broken, it is deleted and the workers that were to be removed
+    // from it are removed from the remaining provisioners instead.
+    while (numToRemove > 0) {
+      Collection<Provisioner> provisioners = provisionerStore.getTenantProvisioners(tenantId);
+      Map<String, Integer> plan = balancePolicy.planRemovals(tenantId, numToRemove, provisioners);
+      List<Provisioner> changed = Lists.newArrayList();
+      Map<String, Integer> numRemovedById = Maps.newHashMap();
+      for (Provisioner provisioner : provisioners) {
+        Integer numPlanned = plan.get(provisioner.getId());
+        if (numPlanned == null) {
+          continue;
+        }
+        int numRemoved = provisioner.tryRemoveTenantAssignments(tenantId, Math.min(numPlanned, numToRemove));
+        if (numRemoved > 0) {
+          provisionerStore.writeProvisioner(provisioner);
+          LOG.debug("Requesting provisioner {} to set workers to {} for tenant {} (removing {})",
+                    provisioner.getId(), provisioner.getAssignedWorkers(tenantId), tenantId, numRemoved);
           numToRemove -= numRemoved;
-        } else {
-          // request failed with retries. something is wrong with the provisioner, delete it and rebalance its workers
-          // TODO: what if this fails?
-          LOG.error("Could not set workers for tenant {} to provisioner {}. " +
-                      "The provisioner appears broken, deleting it and rebalancing its tenant workers",
-                    tenantId, provisioner.getId());
-          deleteProvisioner(provisioner);
+          changed.add(provisioner);
+          numRemovedById.put(provisioner.getId(), numRemoved);
         }
       }
+      if (changed.isEmpty()) {
+        break;
+      }
+      // TODO: what if deleting a broken provisioner fails?
+      for (Provisioner failed : putTenant(changed, tenantId, resources)) {
+        numToRemove += numRemovedById.get(failed.getId());
+      }
     }
   }
 
-  // TODO: abstract out to support different types of balancing policies
-  // Currently a greedy approach, just add to first available.
   private void addWorkers(String tenantId, int numToAdd, ResourceCollection resources)
     throws CapacityException, IOException {
-    for (Provisioner provisioner : provisionerStore.getProvisionersWithFreeCapacity()) {
-      if (numToAdd <= 0) {
-        break;
-      }
-      int numAdded = provisioner.tryAddTenantAssignments(tenantId, numToAdd);
-      if (numAdded > 0) {
-        provisionerStore.writeProvisioner(provisioner);
-        LOG.debug("Requesting provisioner {} to set workers to {} for tenant {} (adding {})",
-                  provisioner.getId(), provisioner.getAssignedWorkers(tenantId), tenantId, numAdded);
-        if (provisionerRequestService.putTenant(provisioner, tenantId, resources)) {
+    // the balance policy decides which provisioners get the workers, then the new assignments are pushed to all
+    // changed provisioners at once. If a provisioner is broken, it is deleted and the workers that were meant for it
+    // are assigned to the remaining provisioners. Rebalancing for the other tenants of the deleted provisioner will be
+    // queued, but will not be triggered until after this method finishes due to the lock that is held.
+    while (numToAdd > 0) {
+      Collection<Provisioner> provisioners = provisionerStore.getProvisionersWithFreeCapacity();
+      Map<String, Integer> plan = balancePolicy.planAdditions(tenantId, numToAdd, provisioners);
+      List<Provisioner> changed = Lists.newArrayList();
+      Map<String, Integer> numAddedById = Maps.newHashMap();
+      for (Provisioner provisioner : provisioners) {
+        Integer numPlanned = plan.get(provisioner.getId());
+        if (numPlanned == null) {
+          continue;
+        }
+        int numAdded = provisioner.tryAddTenantAssignments(tenantId, Math.min(numPlanned, numToAdd));
+        if (numAdded > 0) {
+          provisionerStore.writeProvisioner(provisioner);
+          LOG.debug("Requesting provisioner {} to set workers to {} for tenant {} (adding {})",
+                    provisioner.getId(), provisioner.getAssignedWorkers(tenantId), tenantId, numAdded);
           numToAdd -= numAdded;
-        } else {
-          // request failed with retries. something is wrong with the provisioner, delete it and rebalance its workers.
-          // Rebalancing will be queued, but will not be triggered until after this method finishes due to the
-          // lock that is held.
-          // TODO: what if this fails due to db failure or something of that sort?
-          // should be ok as long as the tenant balance task is in the queue and retried.
-          LOG.error("Could not set workers for tenant {} to provisioner {}. " +
-                      "The provisioner appears broken, deleting it and rebalancing its tenant workers",
-                    tenantId, provisioner.getId());
-          deleteProvisioner(provisioner);
+          changed.add(provisioner);
+          numAddedById.put(provisioner.getId(), numAdded);
         }
       }
+      if (changed.isEmpty()) {
+        break;
+      }
+      // TODO: what if deleting a broken provisioner fails due to db failure or something of that sort?
+      // should be ok as long as the tenant balance task is in the queue and retried.
+      for (Provisioner failed : putTenant(changed, tenantId, resources)) {
+        numToAdd += numAddedById.get(failed.getId());
+      }
     }
     if (numToAdd > 0) {
       throw new CapacityException("Unable to add all " + numToAdd + " workers to tenant "
@@ -485,6 +536,35 @@ public class TenantProvisionerService {
     }
   }
 
+  /**
+   * Push the tenant to all the given provisioners concurrently. Provisioners that could not be written to even after
+   * retries appear broken, so they are deleted and their tenant workers are queued for rebalancing.
+   *
+   * @param provisioners Provisioners to push the tenant to
+   * @param tenantId Id of the tenant to push
+   * @param resources Plugin resources the tenant workers should use
+   * @return Provisioners that could not be written to and were deleted
+   * @throws IOException if there was an exception deleting a broken provisioner
+   */
+  private List<Provisioner> putTenant(Collection<Provisioner> provisioners, String tenantId,
+                                      ResourceCollection resources) throws IOException {
+    List<Provisioner> failed = Lists.newArrayList();
+    if (provisioners.isEmpty()) {
+      return failed;
+    }
+    Set<String> failedIds = provisionerRequestService.putTenant(provisioners, tenantId, resources);
+    for (Provisioner provisioner : provisioners) {
+      if (failedIds.contains(provisioner.getId())) {
+        LOG.error("Could not write tenant {} to provisioner {}. " +
+                    "The provisioner appears broken, deleting it and rebalancing its tenant workers",
+                  tenantId, provisioner.getId());
+        deleteProvisioner(provisioner);
+        failed.add(provisioner);
+      }
+    }
+    return failed;
+  }
+
   /**
    * Create a new Provisioner object where the tenant ids have been replaced with tenant names for external
    * consumption.
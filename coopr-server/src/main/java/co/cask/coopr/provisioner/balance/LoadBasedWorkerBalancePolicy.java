@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.balance;
+
+import co.cask.coopr.provisioner.Provisioner;
+import com.google.common.collect.Maps;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Base for policies that order provisioners by how loaded they are. Workers are planned one at a time, each going to
+ * or coming from the provisioner that is first in load order once the workers planned so far are accounted for.
+ * Ties are broken by provisioner id so that plans are deterministic.
+ */
+public abstract class LoadBasedWorkerBalancePolicy implements WorkerBalancePolicy {
+  private final boolean preferLoaded;
+
+  /**
+   * Create a policy that orders provisioners by load.
+   *
+   * @param preferLoaded If true, workers are added to the most loaded provisioners and removed from the least loaded
+   *                     ones. If false, workers are added to the least loaded provisioners and removed from the
+   *                     most loaded ones.
+   */
+  protected LoadBasedWorkerBalancePolicy(boolean preferLoaded) {
+    this.preferLoaded = preferLoaded;
+  }
+
+  /**
+   * Get the load of a provisioner, as a fraction of its total capacity.
+   *
+   * @param provisioner Provisioner to get the load of.
+   * @param plannedChange Number of workers that have been planned to be added to the provisioner, or negative if
+   *                      workers have been planned to be removed.
+   * @return Load of the provisioner after the planned change.
+   */
+  protected abstract double getLoad(Provisioner provisioner, int plannedChange);
+
+  @Override
+  public Map<String, Integer> planAdditions(String tenantId, int numToAdd, Collection<Provisioner> provisioners) {
+    PriorityQueue<Candidate> candidates = createQueue(provisioners.size(), preferLoaded);
+    for (Provisioner provisioner : provisioners) {
+      if (provisioner.getCapacityFree() > 0) {
+        candidates.add(new Candidate(provisioner));
+      }
+    }
+
+    Map<String, Integer> plan = Maps.newHashMap();
+    for (int i = 0; i < numToAdd && !candidates.isEmpty(); i++) {
+      Candidate candidate = candidates.poll();
+      candidate.planned++;
+      if (candidate.planned < candidate.provisioner.getCapacityFree()) {
+        candidates.add(candidate);
+      }
+      plan.put(candidate.provisioner.getId(), candidate.planned);
+    }
+    return plan;
+  }
+
+  @Override
+  public Map<String, Integer> planRemovals(String tenantId, int numToRemove, Collection<Provisioner> provisioners) {
+    PriorityQueue<Candidate> candidates = createQueue(provisioners.size(), !preferLoaded);
+    for (Provisioner provisioner : provisioners) {
+      if (provisioner.getAssignedWorkers(tenantId) > 0) {
+        candidates.add(new Candidate(provisioner));
+      }
+    }
+
+    Map<String, Integer> plan = Maps.newHashMap();
+    for (int i = 0; i < numToRemove && !candidates.isEmpty(); i++) {
+      Candidate candidate = candidates.poll();
+      candidate.planned--;
+      if (-candidate.planned < candidate.provisioner.getAssignedWorkers(tenantId)) {
+        candidates.add(candidate);
+      }
+      plan.put(candidate.provisioner.getId(), -candidate.planned);
+    }
+    return plan;
+  }
+
+  private PriorityQueue<Candidate> createQueue(int size, final boolean mostLoadedFirst) {
+    return new PriorityQueue<Candidate>(Math.max(1, size), new Comparator<Candidate>() {
+      @Override
+      public int compare(Candidate c1, Candidate c2) {
+        int cmp = Double.compare(getLoad(c1.provisioner, c1.planned), getLoad(c2.provisioner, c2.planned));
+        if (cmp == 0) {
+          return c1.provisioner.getId().compareTo(c2.provisioner.getId());
+        }
+        return mostLoadedFirst ? -cmp : cmp;
+      }
+    });
+  }
+
+  /**
+   * Provisioner along with the change in workers planned for it so far.
+   */
+  private static final class Candidate {
+    private final Provisioner provisioner;
+    private int planned;
+
+    private Candidate(Provisioner provisioner) {
+      this.provisioner = provisioner;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.balance;
+
+import co.cask.coopr.provisioner.Provisioner;
+
+/**
+ * Policy that spreads workers evenly across provisioners. Workers are added to the provisioners with the smallest
+ * fraction of their capacity assigned, and removed from the ones with the largest fraction assigned, so that no
+ * single provisioner becomes a hot spot.
+ */
+public class SpreadWorkerBalancePolicy extends LoadBasedWorkerBalancePolicy {
+
+  public SpreadWorkerBalancePolicy() {
+    super(false);
+  }
+
+  @Override
+  protected double getLoad(Provisioner provisioner, int plannedChange) {
+    int assigned = provisioner.getCapacityTotal() - provisioner.getCapacityFree();
+    return (double) (assigned + plannedChange) / provisioner.getCapacityTotal();
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.balance;
+
+import co.cask.coopr.provisioner.Provisioner;
+
+/**
+ * Policy that spreads workers across provisioners based on how many workers they report as running in their
+ * heartbeats. A provisioner can be running more workers than it is assigned, for example while it is still shutting
+ * down workers that were removed, so its load is the larger of its assigned and live workers. Workers are added to
+ * the least loaded provisioners and removed from the most loaded ones.
+ */
+public class UsageWeightedWorkerBalancePolicy extends LoadBasedWorkerBalancePolicy {
+
+  public UsageWeightedWorkerBalancePolicy() {
+    super(false);
+  }
+
+  @Override
+  protected double getLoad(Provisioner provisioner, int plannedChange) {
+    int assigned = provisioner.getCapacityTotal() - provisioner.getCapacityFree();
+    int live = 0;
+    for (Integer numLive : provisioner.getUsage().values()) {
+      live += numLive;
+    }
+    return (double) (Math.max(assigned, live) + plannedChange) / provisioner.getCapacityTotal();
+  }
+}
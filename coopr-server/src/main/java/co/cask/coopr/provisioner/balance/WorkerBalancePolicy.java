@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.balance;
+
+import co.cask.coopr.provisioner.Provisioner;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Policy for deciding which provisioners should get workers when a tenant needs more of them, and which provisioners
+ * should lose workers when a tenant needs less of them. Policies only decide where to add or remove the workers that
+ * make up the difference between what a tenant has and what it needs, so existing workers are never moved.
+ * Implementations must not modify the given provisioners.
+ */
+public interface WorkerBalancePolicy {
+
+  /**
+   * Decide how many workers for the tenant should be added to each provisioner.
+   *
+   * @param tenantId Id of the tenant that needs more workers.
+   * @param numToAdd Number of workers to add.
+   * @param provisioners Provisioners with free capacity that workers can be added to.
+   * @return Mapping of provisioner id to the number of workers to add to it. The number added to a provisioner never
+   *         exceeds its free capacity, and the total is less than the number to add only if there is not enough
+   *         free capacity.
+   */
+  Map<String, Integer> planAdditions(String tenantId, int numToAdd, Collection<Provisioner> provisioners);
+
+  /**
+   * Decide how many workers for the tenant should be removed from each provisioner.
+   *
+   * @param tenantId Id of the tenant that needs less workers.
+   * @param numToRemove Number of workers to remove.
+   * @param provisioners Provisioners that have workers assigned to the tenant.
+   * @return Mapping of provisioner id to the number of workers to remove from it. The number removed from a
+   *         provisioner never exceeds the number of workers it has assigned to the tenant.
+   */
+  Map<String, Integer> planRemovals(String tenantId, int numToRemove, Collection<Provisioner> provisioners);
+}
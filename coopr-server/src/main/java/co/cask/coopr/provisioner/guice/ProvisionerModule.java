@@ -1,7 +1,10 @@
 package co.cask.coopr.provisioner.guice;
 
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.provisioner.HttpProvisionerRequestService;
 import co.cask.coopr.provisioner.ProvisionerRequestService;
+import co.cask.coopr.provisioner.balance.WorkerBalancePolicy;
 import com.google.inject.AbstractModule;
 import com.google.inject.Scopes;
 
@@ -9,9 +12,15 @@ import com.google.inject.Scopes;
  * Guice module for injection of provisioner related classes.
  */
 public class ProvisionerModule extends AbstractModule {
+  private final Class balancePolicyClass;
+
+  public ProvisionerModule(Configuration conf) throws ClassNotFoundException {
+    this.balancePolicyClass = Class.forName(conf.get(Constants.WORKER_BALANCE_POLICY_CLASS));
+  }
 
   @Override
   protected void configure() {
     bind(ProvisionerRequestService.class).to(HttpProvisionerRequestService.class).in(Scopes.SINGLETON);
+    bind(WorkerBalancePolicy.class).to(balancePolicyClass).in(Scopes.SINGLETON);
   }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.plugin;
+
+import com.google.common.base.Throwables;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utilities for the checksums of the contents of plugin resources, which are hex encoded SHA-256 digests.
+ */
+public final class ResourceChecksums {
+  private static final String ALGORITHM = "SHA-256";
+
+  private ResourceChecksums() {
+  }
+
+  /**
+   * Wrap an output stream in a stream that computes the checksum of everything written through it.
+   *
+   * @param outputStream Output stream to wrap
+   * @return Output stream that computes the checksum of what is written through it
+   */
+  public static DigestOutputStream digesting(OutputStream outputStream) {
+    try {
+      return new DigestOutputStream(outputStream, MessageDigest.getInstance(ALGORITHM));
+    } catch (NoSuchAlgorithmException e) {
+      // every java platform is required to support SHA-256
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Get the checksum of everything written through a stream returned by {@link #digesting(OutputStream)}. Can only be
+   * called once per stream.
+   *
+   * @param outputStream Output stream to get the checksum for
+   * @return Hex encoded checksum of what was written through the stream
+   */
+  public static String getChecksum(DigestOutputStream outputStream) {
+    return Hex.encodeHexString(outputStream.getMessageDigest().digest());
+  }
+}
@@ -19,22 +19,30 @@ import co.cask.coopr.spec.NamedEntity;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 
+import javax.annotation.Nullable;
+
 /**
- * Metadata about a plugin resource, including a name, version, and status.
+ * Metadata about a plugin resource, including a name, version, status, and the checksum of its contents.
  */
 public class ResourceMeta extends NamedEntity {
   private final int version;
   private final ResourceStatus status;
+  private final String checksum;
 
   public ResourceMeta(String name, int version) {
     this(name, version, ResourceStatus.INACTIVE);
   }
 
   public ResourceMeta(String name, Integer version, ResourceStatus status) {
+    this(name, version, status, null);
+  }
+
+  public ResourceMeta(String name, Integer version, ResourceStatus status, @Nullable String checksum) {
     super(name);
     Preconditions.checkArgument(version != null && version >= 0, "Version must be non-null and positive.");
     this.version = version;
     this.status = status;
+    this.checksum = checksum;
   }
 
   /**
@@ -55,6 +63,18 @@ public class ResourceMeta extends NamedEntity {
     return status;
   }
 
+  /**
+   * Get the hex encoded SHA-256 checksum of the contents, or null if the contents were uploaded before checksums
+   * were kept or have not finished uploading.
+   *
+   * @return Checksum of the contents
+   */
+  @Nullable
+  public String getChecksum() {
+    return checksum;
+  }
+
+  // the checksum is left out, since a version of a resource always has the same contents
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -82,6 +102,7 @@ public class ResourceMeta extends NamedEntity {
       .add("name", name)
       .add("version", version)
       .add("status", status)
+      .add("checksum", checksum)
       .toString();
   }
 }
@@ -24,8 +24,11 @@ import co.cask.coopr.scheduler.task.MissingEntityException;
 import co.cask.coopr.spec.plugin.AutomatorType;
 import co.cask.coopr.spec.plugin.ProviderType;
 import co.cask.coopr.spec.plugin.ResourceTypeSpecification;
+import co.cask.coopr.store.TenantGenerations;
 import co.cask.coopr.store.entity.EntityStoreService;
 import co.cask.coopr.store.entity.EntityStoreView;
+import co.cask.coopr.store.provisioner.ContentAddressedPluginStore;
+import co.cask.coopr.store.provisioner.FilePluginStore;
 import co.cask.coopr.store.provisioner.PluginMetaStoreService;
 import co.cask.coopr.store.provisioner.PluginResourceTypeView;
 import co.cask.coopr.store.provisioner.PluginStore;
@@ -41,11 +44,14 @@ import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.DigestOutputStream;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Service for managing plugin modules.
@@ -57,6 +63,7 @@ public class ResourceService extends AbstractIdleService {
   private final EntityStoreService entityStoreService;
   private final PluginMetaStoreService metaStoreService;
   private final LockService lockService;
+  private final TenantGenerations generations;
   private final Gson gson;
 
   @Inject
@@ -64,6 +71,7 @@ public class ResourceService extends AbstractIdleService {
                           EntityStoreService entityStoreService,
                           PluginMetaStoreService metaStoreService,
                           LockService lockService,
+                          TenantGenerations generations,
                           Configuration conf,
                           Gson gson) {
     this.conf = conf;
@@ -71,6 +79,7 @@ public class ResourceService extends AbstractIdleService {
     this.entityStoreService = entityStoreService;
     this.metaStoreService = metaStoreService;
     this.lockService = lockService;
+    this.generations = generations;
     this.gson = gson;
   }
 
@@ -98,12 +107,17 @@ public class ResourceService extends AbstractIdleService {
       final ResourceMeta resourceMeta = new ResourceMeta(name, version);
       LOG.debug("getting output stream for version {} of resource {} of type {} for account {}",
                 version, name, resourceType, account);
-      // output stream is used to stream resource contents to the plugin store
-      final OutputStream os = pluginStore.getResourceOutputStream(account, resourceType, name, version);
+      // output stream is used to stream resource contents to the plugin store. Content addressed stores compute the
+      // checksum of the contents themselves, for other stores it is computed on the way.
+      OutputStream storeStream = pluginStore.getResourceOutputStream(account, resourceType, name, version);
+      final DigestOutputStream digestStream = pluginStore instanceof ContentAddressedPluginStore ?
+        null : ResourceChecksums.digesting(storeStream);
+      final OutputStream os = digestStream == null ? storeStream : digestStream;
       // we write metadata here before the data completes streaming because we are guaranteed the
       // version will never be used again, and because we need to increment the highest version in case another
       // upload of the same name is started while this one is still going. It is deleted if the upload fails.
       metaStoreService.getResourceTypeView(account, resourceType).add(resourceMeta);
+      generations.increment(account.getTenantId());
 
       return new BodyConsumer() {
         @Override
@@ -121,7 +135,14 @@ public class ResourceService extends AbstractIdleService {
         public void finished(HttpResponder responder) {
           try {
             os.close();
-            responder.sendJson(HttpResponseStatus.OK, resourceMeta, ResourceMeta.class, gson);
+            String checksum = digestStream == null ?
+              ((ContentAddressedPluginStore) pluginStore).getChecksum(account, resourceType, name, version) :
+              ResourceChecksums.getChecksum(digestStream);
+            metaStoreService.getResourceTypeView(account, resourceType).setChecksum(name, version, checksum);
+            // metadata may have been read and cached without the checksum while the upload was in progress
+            generations.increment(account.getTenantId());
+            ResourceMeta uploadedMeta = new ResourceMeta(name, version, resourceMeta.getStatus(), checksum);
+            responder.sendJson(HttpResponseStatus.OK, uploadedMeta, ResourceMeta.class, gson);
             LOG.debug("finished uploading resource.");
           } catch (Exception e) {
             LOG.error("Error finishing upload of resource {} of type {} for account {}.",
@@ -138,6 +159,7 @@ public class ResourceService extends AbstractIdleService {
             os.close();
             // deletion flags the entry in the database as deleted
             metaStoreService.getResourceTypeView(account, resourceType).delete(name, version);
+            generations.increment(account.getTenantId());
             // dont need the file in the plugin store if there was an error so delete it
             pluginStore.deleteResource(account, resourceType, name, version);
             responder.sendError(HttpResponseStatus.INTERNAL_SERVER_ERROR, t.getCause().getMessage());
@@ -187,6 +209,16 @@ public class ResourceService extends AbstractIdleService {
     int version = meta.getVersion();
     ZKInterProcessReentrantLock lock = getResourceLock(account, type, name);
     lock.acquire();
+    if (pluginStore instanceof ContentAddressedPluginStore) {
+      // only adds a reference to the contents the superadmin has
+      try {
+        ((ContentAddressedPluginStore) pluginStore).copyResource(Account.SUPERADMIN, account, type, name, version);
+        addCopiedMeta(account, type, meta);
+      } finally {
+        lock.release();
+      }
+      return;
+    }
     InputStream inStream = null;
     OutputStream outStream = null;
     try {
@@ -198,10 +230,7 @@ public class ResourceService extends AbstractIdleService {
         throw new IOException("Unable to get plugin data.");
       }
       ByteStreams.copy(inStream, outStream);
-      PluginResourceTypeView metaView = metaStoreService.getResourceTypeView(account, type);
-      if (!metaView.exists(name, version)) {
-        metaView.add(meta);
-      }
+      addCopiedMeta(account, type, meta);
     } finally {
       if (outStream != null) {
         try {
@@ -221,6 +250,14 @@ public class ResourceService extends AbstractIdleService {
     }
   }
 
+  private void addCopiedMeta(Account account, ResourceType type, ResourceMeta meta) throws IOException {
+    PluginResourceTypeView metaView = metaStoreService.getResourceTypeView(account, type);
+    if (!metaView.exists(meta.getName(), meta.getVersion())) {
+      metaView.add(meta);
+      generations.increment(account.getTenantId());
+    }
+  }
+
   /**
    * Get an input stream for reading the plugin resource.
    *
@@ -244,6 +281,30 @@ public class ResourceService extends AbstractIdleService {
     return pluginStore.getResourceInputStream(account, resourceType, meta.getName(), meta.getVersion());
   }
 
+  /**
+   * Get the file that holds the plugin resource, if the plugin store keeps resources in local files.
+   *
+   * @param account Account the resource belongs to
+   * @param resourceType Type of resource
+   * @param name Name of resource to get the file of
+   * @param version Version of resource to get the file of
+   * @return File that holds the given plugin resource, or null if the resource is not kept in a local file
+   * @throws MissingEntityException if there is no such resource version
+   * @throws IOException if there was an error looking up the resource
+   */
+  @Nullable
+  public File getResourceFile(Account account, ResourceType resourceType, String name, int version)
+    throws MissingEntityException, IOException {
+    if (!(pluginStore instanceof FilePluginStore)) {
+      return null;
+    }
+    ResourceMeta meta = metaStoreService.getResourceTypeView(account, resourceType).get(name, version);
+    if (meta == null) {
+      throw new MissingEntityException("Resource not found.");
+    }
+    return ((FilePluginStore) pluginStore).getResourceFile(account, resourceType, meta.getName(), meta.getVersion());
+  }
+
   /**
    * Atomically stage the specified resource version for the given account and recall the previous staged version.
    * A staged version will get pushed to provisioners during a sync, and will stay staged unless explicitly recalled.
@@ -267,6 +328,7 @@ public class ResourceService extends AbstractIdleService {
         throw new MissingEntityException("Resource does not exist.");
       }
       view.stage(name, version);
+      generations.increment(account.getTenantId());
     } finally {
       lock.release();
     }
@@ -294,6 +356,7 @@ public class ResourceService extends AbstractIdleService {
         throw new MissingEntityException("Resource " + name + " does not exist.");
       }
       view.recall(name, version);
+      generations.increment(account.getTenantId());
     } finally {
       lock.release();
     }
@@ -356,6 +419,7 @@ public class ResourceService extends AbstractIdleService {
         throw new IllegalStateException("Resource must be inactive before it can be deleted.");
       }
       view.delete(name, version);
+      generations.increment(account.getTenantId());
       LOG.debug("deleted version {} of resource {} of type {} for account {} from meta store.",
                 version, name, resourceType, account);
       pluginStore.deleteResource(account, resourceType, meta.getName(), meta.getVersion());
@@ -394,6 +458,7 @@ public class ResourceService extends AbstractIdleService {
         LOG.debug("deleted version {} of resource {} of type {} for account {}.",
                   meta.getVersion(), name, resourceType, account);
       }
+      generations.increment(account.getTenantId());
     } finally {
       lock.release();
     }
@@ -447,6 +512,7 @@ public class ResourceService extends AbstractIdleService {
    */
   public void syncResourceMeta(Account account, ResourceCollection resourceCollection) throws IOException {
     metaStoreService.getAccountView(account).syncResources(resourceCollection);
+    generations.increment(account.getTenantId());
   }
 
   // Helper function for getting all the resource types and formats for plugins belonging to an account.
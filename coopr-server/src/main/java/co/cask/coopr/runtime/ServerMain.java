@@ -22,6 +22,7 @@ import co.cask.cdap.common.guice.IOModule;
 import co.cask.cdap.common.kerberos.SecurityUtil;
 import co.cask.cdap.security.guice.SecurityModules;
 import co.cask.cdap.security.server.ExternalAuthenticationServer;
+import co.cask.coopr.cluster.event.ClusterEventService;
 import co.cask.coopr.codec.json.guice.CodecModules;
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
@@ -34,6 +35,7 @@ import co.cask.coopr.common.zookeeper.guice.ZookeeperModule;
 import co.cask.coopr.http.ExternalHandlerServer;
 import co.cask.coopr.http.InternalHandlerServer;
 import co.cask.coopr.http.guice.HttpModule;
+import co.cask.coopr.management.HttpStats;
 import co.cask.coopr.management.ServerStats;
 import co.cask.coopr.management.guice.ManagementModule;
 import co.cask.coopr.provisioner.guice.ProvisionerModule;
@@ -94,6 +96,7 @@ public final class ServerMain extends DaemonMain {
   private UserStore userStore;
   private CredentialStore credentialStore;
   private QueueService queueService;
+  private ClusterEventService clusterEventService;
   // Authentication
   private boolean securityEnabled;
   private ExternalAuthenticationServer externalAuthenticationServer;
@@ -168,7 +171,7 @@ public final class ServerMain extends DaemonMain {
         new SchedulerModule(conf, callbackExecutorService, solverExecutorService),
         new HttpModule(),
         new ManagementModule(),
-        new ProvisionerModule(),
+        new ProvisionerModule(conf),
         new CodecModules().getModule(),
         new IOModule(),
         new DiscoveryRuntimeModule().getStandaloneModules(),
@@ -194,6 +197,8 @@ public final class ServerMain extends DaemonMain {
       credentialStore.startAndWait();
       queueService = injector.getInstance(QueueService.class);
       queueService.startAndWait();
+      clusterEventService = injector.getInstance(ClusterEventService.class);
+      clusterEventService.startAndWait();
       if (securityEnabled) {
         externalAuthenticationServer = injector.getInstance(ExternalAuthenticationServer.class);
         externalAuthenticationServer.startAndWait();
@@ -204,6 +209,7 @@ public final class ServerMain extends DaemonMain {
       MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
       ObjectName name = new ObjectName("co.cask.coopr:type=ServerStats");
       mbs.registerMBean(serverStats, name);
+      mbs.registerMBean(injector.getInstance(HttpStats.class), new ObjectName("co.cask.coopr:type=HttpStats"));
     } catch (Exception e) {
       LOG.error("Exception starting up.", e);
       System.exit(-1);
@@ -247,7 +253,7 @@ public final class ServerMain extends DaemonMain {
       }
     }
 
-    stopAll(internalHandlerServer, externalHandlerServer, queueService,
+    stopAll(internalHandlerServer, externalHandlerServer, clusterEventService, queueService,
             userStore, resourceService, provisionerStore, tenantStore,
             clusterStoreService, entityStoreService, idService, zkClientService, inMemoryZKServer,
             externalAuthenticationServer);
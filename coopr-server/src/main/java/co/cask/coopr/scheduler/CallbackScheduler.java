@@ -22,6 +22,7 @@ import co.cask.coopr.common.queue.GroupElement;
 import co.cask.coopr.common.queue.QueueGroup;
 import co.cask.coopr.common.queue.QueueService;
 import co.cask.coopr.common.queue.QueueType;
+import co.cask.coopr.common.queue.QueuedElement;
 import co.cask.coopr.common.queue.TrackingQueue;
 import co.cask.coopr.scheduler.callback.CallbackContext;
 import co.cask.coopr.scheduler.callback.CallbackData;
@@ -30,6 +31,7 @@ import co.cask.coopr.scheduler.task.ClusterJob;
 import co.cask.coopr.scheduler.task.TaskService;
 import co.cask.coopr.store.cluster.ClusterStoreService;
 import co.cask.coopr.store.user.UserStore;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.gson.Gson;
@@ -42,7 +44,9 @@ import java.util.Iterator;
 
 /**
  * Polls a queue which contains {@link co.cask.coopr.scheduler.callback.CallbackData} for performing cluster
- * operation callbacks before starting an operation and upon success or failure of an operation.
+ * operation callbacks before starting an operation and upon success or failure of an operation. A callback stays in
+ * its queue until it has completed, including any work it deferred through its {@link CallbackContext}, so that
+ * callbacks that were still in progress when the server went down are run again once it is back up.
  */
 public class CallbackScheduler implements Runnable {
 
@@ -57,6 +61,8 @@ public class CallbackScheduler implements Runnable {
   private final Gson gson;
   private final QueueGroup callbackQueues;
   private final QueueGroup jobQueues;
+  private final QueuePartitioner queuePartitioner;
+  private boolean requeuedOrphans;
 
   @Inject
   private CallbackScheduler(@Named("scheduler.id") String id,
@@ -67,7 +73,8 @@ public class CallbackScheduler implements Runnable {
                             ClusterStoreService clusterStoreService,
                             UserStore userStore,
                             Gson gson,
-                            QueueService queueService) {
+                            QueueService queueService,
+                            QueuePartitioner queuePartitioner) {
     this.id = id;
     this.executorService = executorService;
     this.taskService = taskService;
@@ -76,6 +83,7 @@ public class CallbackScheduler implements Runnable {
     this.gson = gson;
     this.callbackQueues = queueService.getQueueGroup(QueueType.CALLBACK);
     this.jobQueues = queueService.getQueueGroup(QueueType.JOB);
+    this.queuePartitioner = queuePartitioner;
     this.clusterStoreService = clusterStoreService;
     this.userStore = userStore;
   }
@@ -83,28 +91,37 @@ public class CallbackScheduler implements Runnable {
   @Override
   public void run() {
     try {
-      Iterator<GroupElement> callbackIter = callbackQueues.takeIterator(id);
+      if (!requeuedOrphans) {
+        requeueOrphanedCallbacks();
+        requeuedOrphans = true;
+      }
+      Iterator<GroupElement> callbackIter = callbackQueues.takeIterator(id, queuePartitioner);
       while (callbackIter.hasNext()) {
-        final GroupElement gElement = callbackIter.next();
-        final Element element = gElement.getElement();
-        final ListenableFuture future = executorService.submit(new CallbackRunner(gElement));
-        future.addListener(new Runnable() {
-          @Override
-          public void run() {
-            try {
-              callbackQueues.recordProgress(id, gElement.getQueueName(), element.getId(),
-                                            TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY, "Executed");
-            } catch (Exception e) {
-              LOG.error("Exception processing callback", e);
-            }
-          }
-        }, executorService);
+        executorService.submit(new CallbackRunner(callbackIter.next()));
       }
     } catch (Exception e) {
       LOG.error("Got exception:", e);
     }
   }
 
+  /**
+   * Callbacks that this scheduler was consuming when the server last went down will never be completed, so put them
+   * back in their queues to be run again. Callbacks must be idempotent, so running one more than once is fine.
+   */
+  private void requeueOrphanedCallbacks() {
+    for (String queueName : callbackQueues.getQueueNames()) {
+      Iterator<QueuedElement> beingConsumed = callbackQueues.getBeingConsumed(queueName);
+      while (beingConsumed.hasNext()) {
+        QueuedElement queuedElement = beingConsumed.next();
+        if (id.equals(queuedElement.getConsumerId())) {
+          LOG.info("Requeueing callback {} that was in progress before restart.", queuedElement.getElement().getId());
+          callbackQueues.recordProgress(id, queueName, queuedElement.getElement().getId(),
+                                        TrackingQueue.ConsumingStatus.FAILED, "Requeued after restart");
+        }
+      }
+    }
+  }
+
   private class CallbackRunner implements Runnable {
     private final GroupElement gElement;
 
@@ -114,21 +131,37 @@ public class CallbackScheduler implements Runnable {
 
     @Override
     public void run() {
-      CallbackData callbackData = gson.fromJson(gElement.getElement().getValue(), CallbackData.class);
-      CallbackContext callbackContext =
-        new CallbackContext(clusterStoreService, userStore, callbackData.getCluster().getAccount());
-      switch (callbackData.getType()) {
-        case START:
-          onStart(callbackData, callbackContext);
-          break;
-        case SUCCESS:
-          clusterCallback.onSuccess(callbackData, callbackContext);
-          break;
-        case FAILURE:
-          clusterCallback.onFailure(callbackData, callbackContext);
-          break;
-        default:
-          LOG.error("Unknown callback type {}", callbackData.getType());
+      CallbackContext callbackContext = null;
+      try {
+        CallbackData callbackData = gson.fromJson(gElement.getElement().getValue(), CallbackData.class);
+        callbackContext = new CallbackContext(clusterStoreService, userStore, callbackData.getCluster().getAccount());
+        switch (callbackData.getType()) {
+          case START:
+            onStart(callbackData, callbackContext);
+            break;
+          case SUCCESS:
+            clusterCallback.onSuccess(callbackData, callbackContext);
+            break;
+          case FAILURE:
+            clusterCallback.onFailure(callbackData, callbackContext);
+            break;
+          default:
+            LOG.error("Unknown callback type {}", callbackData.getType());
+        }
+      } finally {
+        ListenableFuture<?> completion = callbackContext == null ?
+          Futures.immediateFuture(null) : callbackContext.getCompletion();
+        completion.addListener(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              callbackQueues.recordProgress(id, gElement.getQueueName(), gElement.getElement().getId(),
+                                            TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY, "Executed");
+            } catch (Exception e) {
+              LOG.error("Exception processing callback", e);
+            }
+          }
+        }, executorService);
       }
     }
 
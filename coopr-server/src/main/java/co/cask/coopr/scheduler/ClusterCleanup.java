@@ -32,10 +32,13 @@ import co.cask.coopr.scheduler.task.TaskId;
 import co.cask.coopr.scheduler.task.TaskService;
 import co.cask.coopr.store.cluster.ClusterStore;
 import co.cask.coopr.store.cluster.ClusterStoreService;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -44,6 +47,11 @@ import java.util.concurrent.TimeUnit;
  * Run cleanup tasks.  Leader election is performed between servers sharing a zookeeper quorum so this only happens
  * on the leader server.  If an id increment is specified, will only clean up clusters that the server could have
  * created to prevent conflicts with other servers.
+ *
+ * Task timeouts and cluster expiries are tracked by a {@link DeadlineTracker}, which is meant to be run frequently so
+ * that tasks and clusters are handled close to their deadline. Each run only looks at tasks and clusters whose deadline
+ * has been reached. Every reconcile interval, the tracker is refreshed from the provisioner queues and the cluster
+ * store to pick up tasks taken and leases changed on other servers, and to recover from leadership changes.
  */
 public class ClusterCleanup implements Runnable {
   private static final Logger LOG = LoggerFactory.getLogger(ClusterCleanup.class);
@@ -54,9 +62,11 @@ public class ClusterCleanup implements Runnable {
   private final TaskService taskService;
   private final QueueGroup jobQueues;
   private final QueueGroup provisionerQueues;
-  private final long taskTimeout;
+  private final DeadlineTracker deadlineTracker;
+  private final long reconcileIntervalMillis;
   private final long myMod;
   private final long incrementBy;
+  private volatile long nextReconcileTime;
 
   @Inject
   private ClusterCleanup(ClusterStoreService clusterStoreService,
@@ -64,11 +74,13 @@ public class ClusterCleanup implements Runnable {
                          NodeService nodeService,
                          TaskService taskService,
                          QueueService queueService,
+                         DeadlineTracker deadlineTracker,
                          Configuration conf) {
     this(clusterStoreService.getSystemView(), clusterService, nodeService, taskService,
          queueService.getQueueGroup(QueueType.JOB),
          queueService.getQueueGroup(QueueType.PROVISIONER),
-         conf.getLong(Constants.TASK_TIMEOUT_SECS),
+         deadlineTracker,
+         TimeUnit.MILLISECONDS.convert(conf.getLong(Constants.CLUSTER_CLEANUP_SECS), TimeUnit.SECONDS),
          conf.getLong(Constants.ID_START_NUM),
          conf.getLong(Constants.ID_INCREMENT_BY));
   }
@@ -81,16 +93,46 @@ public class ClusterCleanup implements Runnable {
                  QueueGroup jobQueues,
                  QueueGroup provisionerQueues,
                  long taskTimeout, long startId, long incrementBy) {
+    this(clusterStore, clusterService, nodeService, taskService, jobQueues, provisionerQueues,
+         new DeadlineTracker(taskTimeout, 1), 0, startId, incrementBy);
+  }
+
+  // for unit tests
+  ClusterCleanup(ClusterStore clusterStore,
+                 ClusterService clusterService,
+                 NodeService nodeService,
+                 TaskService taskService,
+                 QueueGroup jobQueues,
+                 QueueGroup provisionerQueues,
+                 DeadlineTracker deadlineTracker,
+                 long reconcileIntervalMillis, long startId, long incrementBy) {
     this.clusterStore = clusterStore;
     this.clusterService = clusterService;
     this.nodeService = nodeService;
     this.taskService = taskService;
     this.jobQueues = jobQueues;
     this.provisionerQueues = provisionerQueues;
-    this.taskTimeout = taskTimeout;
+    this.deadlineTracker = deadlineTracker;
+    this.reconcileIntervalMillis = reconcileIntervalMillis;
     this.incrementBy = incrementBy;
     this.myMod = startId % incrementBy;
-    LOG.info("Task timeout in seconds = {}", this.taskTimeout);
+    LOG.info("Task timeout in seconds = {}",
+             TimeUnit.SECONDS.convert(deadlineTracker.getTaskTimeoutMillis(), TimeUnit.MILLISECONDS));
+  }
+
+  /**
+   * Start tracking deadlines, forcing a reconcile on the next run. Called when this server becomes the leader.
+   */
+  void startTracking() {
+    deadlineTracker.startTracking();
+    nextReconcileTime = 0;
+  }
+
+  /**
+   * Stop tracking deadlines. Called when this server stops being the leader.
+   */
+  void stopTracking() {
+    deadlineTracker.stopTracking();
   }
 
   @Override
@@ -98,34 +140,75 @@ public class ClusterCleanup implements Runnable {
     try {
       long currentTime = System.currentTimeMillis();
 
-      for (String queueName : provisionerQueues.getQueueNames()) {
-        timeoutTasks(queueName, currentTime);
+      if (currentTime >= nextReconcileTime) {
+        reconcile(currentTime);
+        nextReconcileTime = currentTime + reconcileIntervalMillis;
+      }
+
+      Multimap<String, String> timedOutTasks = deadlineTracker.pollTimedOutTasks(currentTime);
+      for (String queueName : timedOutTasks.keySet()) {
+        timeoutTasks(queueName, timedOutTasks.get(queueName), currentTime);
       }
 
-      expireClusters(currentTime);
+      expireClusters(deadlineTracker.pollExpiredClusters(currentTime), currentTime);
+
+    } catch (Throwable e) {
+      LOG.error("Got exception: ", e);
+    }
+  }
+
+  private void reconcile(long currentTime) {
+    LOG.debug("Reconciling task timeouts and cluster expiries at time {}", currentTime);
+    for (String queueName : provisionerQueues.getQueueNames()) {
+      try {
+        Iterator<QueuedElement> beingConsumed = provisionerQueues.getBeingConsumed(queueName);
+        while (beingConsumed.hasNext()) {
+          QueuedElement queuedElement = beingConsumed.next();
+          deadlineTracker.scheduleTaskTimeout(queueName, queuedElement.getElement().getId(),
+                                              queuedElement.getStatusTime());
+        }
+      } catch (Throwable e) {
+        LOG.error("Got exception: ", e);
+      }
+    }
 
+    try {
+      // look ahead to the next reconcile so that clusters whose lease was changed on another server still expire
+      // close to their expire time.
+      for (Cluster cluster : clusterStore.getExpiringClusters(currentTime + reconcileIntervalMillis)) {
+        if (isOwnedCluster(cluster.getId())) {
+          deadlineTracker.scheduleClusterExpiry(cluster.getId(), cluster.getExpireTime());
+        }
+      }
     } catch (Throwable e) {
       LOG.error("Got exception: ", e);
     }
   }
 
-  private void timeoutTasks(String queueName, long currentTime) {
+  private void timeoutTasks(String queueName, Collection<String> taskIds, long currentTime) {
     try {
-      long taskFailTime = currentTime - TimeUnit.MILLISECONDS.convert(taskTimeout, TimeUnit.SECONDS);
+      long taskFailTime = currentTime - deadlineTracker.getTaskTimeoutMillis();
       LOG.debug("Task fail time = {}", taskFailTime);
 
+      // verify against the queue, since a task may have been finished or taken again on another server
+      // since its deadline was recorded.
+      Set<String> dueTaskIds = Sets.newHashSet(taskIds);
       Iterator<QueuedElement> beingConsumed = provisionerQueues.getBeingConsumed(queueName);
 
-      while (beingConsumed.hasNext()) {
+      while (beingConsumed.hasNext() && !dueTaskIds.isEmpty()) {
         QueuedElement queuedElement = beingConsumed.next();
+        String taskId = queuedElement.getElement().getId();
+
+        if (!dueTaskIds.remove(taskId)) {
+          continue;
+        }
 
         if (queuedElement.getStatusTime() > taskFailTime) {
-          LOG.trace("Task {} with queue time {} has not timed out yet", queuedElement.getElement().getId(),
-                    queuedElement.getStatusTime());
+          LOG.trace("Task {} with queue time {} has not timed out yet", taskId, queuedElement.getStatusTime());
+          deadlineTracker.scheduleTaskTimeout(queueName, taskId, queuedElement.getStatusTime());
           continue;
         }
 
-        String taskId = queuedElement.getElement().getId();
         ClusterTask task = clusterStore.getClusterTask(TaskId.fromString(taskId));
 
         if (task == null) {
@@ -139,7 +222,8 @@ public class ClusterCleanup implements Runnable {
           LOG.debug("Timing out task {} whose queue time is {}", task.getTaskId(), queuedElement.getStatusTime());
 
           // Fail the task
-          String statusMessage = String.format("Timed out by after %d secs", taskTimeout);
+          String statusMessage = String.format("Timed out by after %d secs", TimeUnit.SECONDS.convert(
+            deadlineTracker.getTaskTimeoutMillis(), TimeUnit.MILLISECONDS));
           task.setStatusMessage(statusMessage);
           taskService.failTask(task, -1);
 
@@ -156,28 +240,42 @@ public class ClusterCleanup implements Runnable {
     }
   }
 
-  private void expireClusters(long currentTime) {
-    try {
-      LOG.debug("Expiring clusters older than {}", currentTime);
-
-      Set<Cluster> clusters = clusterStore.getExpiringClusters(currentTime);
-
-      if (clusters.isEmpty()) {
-        LOG.debug("Got 0 clusters to be expired for time {}", currentTime);
-        return;
-      }
+  private void expireClusters(Collection<String> clusterIds, long currentTime) {
+    if (clusterIds.isEmpty()) {
+      return;
+    }
+    LOG.debug("Got {} possible clusters to expire for time {}", clusterIds.size(), currentTime);
 
-      LOG.debug("Got {} possible clusters to expire for time {}", clusters.size(), currentTime);
+    for (String clusterId : clusterIds) {
+      try {
+        if (!isOwnedCluster(clusterId)) {
+          continue;
+        }
 
-      for (Cluster cluster : clusters) {
-        // mod check done here instead of db to avoid full table scan.
-        if (Long.valueOf(cluster.getId()) % incrementBy == myMod) {
-          LOG.debug("Deleting cluster {} with expire time {}", cluster.getId(), cluster.getExpireTime());
-          clusterService.requestClusterDelete(cluster.getId(), cluster.getAccount(), new ClusterOperationRequest(null));
+        // verify against the store, since the lease may have been changed on another server.
+        Cluster cluster = clusterStore.getCluster(clusterId);
+        if (cluster == null || cluster.getExpireTime() == 0) {
+          continue;
+        }
+        if (cluster.getExpireTime() > currentTime) {
+          deadlineTracker.scheduleClusterExpiry(clusterId, cluster.getExpireTime());
+          continue;
+        }
+        // clusters that are not yet active are picked up by a later reconcile once they are.
+        if (cluster.getStatus() != Cluster.Status.ACTIVE && cluster.getStatus() != Cluster.Status.INCOMPLETE) {
+          continue;
         }
+
+        LOG.debug("Deleting cluster {} with expire time {}", cluster.getId(), cluster.getExpireTime());
+        clusterService.requestClusterDelete(cluster.getId(), cluster.getAccount(), new ClusterOperationRequest(null));
+      } catch (Throwable e) {
+        LOG.error("Got exception: ", e);
       }
-    } catch (Throwable e) {
-      LOG.error("Got exception: ", e);
     }
   }
+
+  private boolean isOwnedCluster(String clusterId) {
+    // mod check done here instead of db to avoid full table scan.
+    return Long.valueOf(clusterId) % incrementBy == myMod;
+  }
 }
@@ -57,32 +57,41 @@ import java.util.Set;
 public class ClusterScheduler implements Runnable {
 
   private static final Logger LOG = LoggerFactory.getLogger(ClusterScheduler.class);
+  private static final int RESOLVER_CACHE_SIZE = 100;
 
   private final String id;
   private final ClusterStore clusterStore;
   private final TaskService taskService;
   private final IdService idService;
   private final QueueGroup clusterQueues;
+  private final QueuePartitioner queuePartitioner;
+  private final TenantQueueShares tenantQueueShares;
 
   private final Actions actions = Actions.getInstance();
+  private final ServiceDependencyResolverCache resolverCache =
+    new ServiceDependencyResolverCache(actions, RESOLVER_CACHE_SIZE);
 
   @Inject
   private ClusterScheduler(@Named("scheduler.id") String id,
                            ClusterStoreService clusterStoreService,
                            TaskService taskService,
                            IdService idService,
-                           QueueService queueService) {
+                           QueueService queueService,
+                           QueuePartitioner queuePartitioner,
+                           TenantQueueShares tenantQueueShares) {
     this.id = id;
     this.clusterStore = clusterStoreService.getSystemView();
     this.taskService = taskService;
     this.idService = idService;
     this.clusterQueues = queueService.getQueueGroup(QueueType.CLUSTER);
+    this.queuePartitioner = queuePartitioner;
+    this.tenantQueueShares = tenantQueueShares;
   }
 
   @Override
   public void run() {
     try {
-      Iterator<GroupElement> clusterIter = clusterQueues.takeIterator(id);
+      Iterator<GroupElement> clusterIter = clusterQueues.takeIterator(id, queuePartitioner, tenantQueueShares);
       while (clusterIter.hasNext()) {
         GroupElement gElement = clusterIter.next();
         Element clusterElement = gElement.getElement();
@@ -109,7 +118,7 @@ public class ClusterScheduler implements Runnable {
           }
 
           LOG.trace("Cluster {}", cluster);
-          JobPlanner jobPlanner = new JobPlanner(job, clusterNodes);
+          JobPlanner jobPlanner = new JobPlanner(job, clusterNodes, resolverCache);
           List<Set<TaskNode>> linearizedTasks = jobPlanner.linearizeDependentTasks();
 
           // Create cluster tasks.
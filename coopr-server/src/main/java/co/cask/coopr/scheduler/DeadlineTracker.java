@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.scheduler;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.common.utils.TimerWheel;
+import com.google.common.base.Objects;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.inject.Inject;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of when in progress tasks time out and when clusters expire, so that {@link ClusterCleanup} only has to
+ * look at tasks and clusters whose deadline has been reached instead of scanning all of them every run. Deadlines are
+ * kept in memory and are only tracked while tracking is started, which happens on the leader. Task takes and lease
+ * changes that happen on this server are recorded as they happen, while those that happen on other servers are picked
+ * up by the periodic reconcile scan done by {@link ClusterCleanup}.
+ */
+public class DeadlineTracker {
+  private static final int NUM_BUCKETS = 1024;
+  private final long taskTimeoutMillis;
+  private final TimerWheel<TaskKey> taskTimeouts;
+  private final TimerWheel<String> clusterExpiries;
+  private volatile boolean tracking;
+
+  @Inject
+  private DeadlineTracker(Configuration conf) {
+    this(conf.getLong(Constants.TASK_TIMEOUT_SECS),
+         conf.getLong(Constants.CLUSTER_CLEANUP_TICK_MS, Constants.DEFAULT_CLUSTER_CLEANUP_TICK_MS));
+  }
+
+  DeadlineTracker(long taskTimeoutSecs, long tickMillis) {
+    long now = System.currentTimeMillis();
+    this.taskTimeoutMillis = TimeUnit.MILLISECONDS.convert(taskTimeoutSecs, TimeUnit.SECONDS);
+    this.taskTimeouts = new TimerWheel<TaskKey>(tickMillis, NUM_BUCKETS, now);
+    this.clusterExpiries = new TimerWheel<String>(tickMillis, NUM_BUCKETS, now);
+  }
+
+  /**
+   * Record that a task was taken from the given provisioner queue, starting its timeout.
+   *
+   * @param queueName Name of the provisioner queue the task was taken from.
+   * @param taskId Id of the task that was taken.
+   * @param takeTime Time in milliseconds the task was taken.
+   */
+  public void taskTaken(String queueName, String taskId, long takeTime) {
+    if (tracking) {
+      scheduleTaskTimeout(queueName, taskId, takeTime);
+    }
+  }
+
+  /**
+   * Record that a task taken from the given provisioner queue has finished, cancelling its timeout.
+   *
+   * @param queueName Name of the provisioner queue the task was taken from.
+   * @param taskId Id of the task that finished.
+   */
+  public void taskFinished(String queueName, String taskId) {
+    taskTimeouts.cancel(new TaskKey(queueName, taskId));
+  }
+
+  /**
+   * Record that the expire time of the given cluster was set or changed.
+   *
+   * @param clusterId Id of the cluster whose expire time changed.
+   * @param expireTime New expire time of the cluster in milliseconds, with 0 meaning it never expires.
+   */
+  public void clusterLeaseChanged(String clusterId, long expireTime) {
+    if (tracking) {
+      scheduleClusterExpiry(clusterId, expireTime);
+    }
+  }
+
+  /**
+   * Start tracking deadlines. Deadlines recorded before tracking started are not known, so the caller is expected to
+   * reconcile the tracker against the queues and store afterwards.
+   */
+  void startTracking() {
+    taskTimeouts.clear();
+    clusterExpiries.clear();
+    tracking = true;
+  }
+
+  /**
+   * Stop tracking deadlines and forget all known deadlines.
+   */
+  void stopTracking() {
+    tracking = false;
+    taskTimeouts.clear();
+    clusterExpiries.clear();
+  }
+
+  long getTaskTimeoutMillis() {
+    return taskTimeoutMillis;
+  }
+
+  void scheduleTaskTimeout(String queueName, String taskId, long takeTime) {
+    taskTimeouts.schedule(new TaskKey(queueName, taskId), takeTime + taskTimeoutMillis);
+  }
+
+  void scheduleClusterExpiry(String clusterId, long expireTime) {
+    if (expireTime == 0) {
+      clusterExpiries.cancel(clusterId);
+    } else {
+      clusterExpiries.schedule(clusterId, expireTime);
+    }
+  }
+
+  /**
+   * Remove and return all tasks whose timeout has been reached.
+   *
+   * @param now Current time in milliseconds.
+   * @return Multimap of provisioner queue name to ids of tasks in that queue whose timeout has been reached.
+   */
+  Multimap<String, String> pollTimedOutTasks(long now) {
+    Multimap<String, String> timedOut = HashMultimap.create();
+    for (TaskKey key : taskTimeouts.advance(now)) {
+      timedOut.put(key.queueName, key.taskId);
+    }
+    return timedOut;
+  }
+
+  /**
+   * Remove and return all clusters whose expire time has been reached.
+   *
+   * @param now Current time in milliseconds.
+   * @return Ids of clusters whose expire time has been reached.
+   */
+  List<String> pollExpiredClusters(long now) {
+    return clusterExpiries.advance(now);
+  }
+
+  /**
+   * Provisioner queue name and task id pair.
+   */
+  private static final class TaskKey {
+    private final String queueName;
+    private final String taskId;
+
+    private TaskKey(String queueName, String taskId) {
+      this.queueName = queueName;
+      this.taskId = taskId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof TaskKey)) {
+        return false;
+      }
+      TaskKey other = (TaskKey) o;
+      return queueName.equals(other.queueName) && taskId.equals(other.taskId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(queueName, taskId);
+    }
+  }
+}
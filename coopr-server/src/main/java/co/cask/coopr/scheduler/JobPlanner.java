@@ -38,6 +38,17 @@ public class JobPlanner {
   private final ServiceDependencyResolver dependencyResolver;
 
   public JobPlanner(ClusterJob job, Set<Node> clusterNodes) {
+    this(job, clusterNodes, null);
+  }
+
+  /**
+   * Create a planner for the given job that gets its service dependency resolver from the given cache.
+   *
+   * @param job Job to plan.
+   * @param clusterNodes Nodes in the cluster.
+   * @param resolverCache Cache of service dependency resolvers, or null to always create a new resolver.
+   */
+  JobPlanner(ClusterJob job, Set<Node> clusterNodes, ServiceDependencyResolverCache resolverCache) {
     this.clusterAction = job.getClusterAction();
     this.nodesToPlan = job.getPlannedNodes();
     this.serviceNodeMap = ArrayListMultimap.create();
@@ -52,7 +63,8 @@ public class JobPlanner {
       nodeMap.put(node.getId(), node);
     }
 
-    this.dependencyResolver = new ServiceDependencyResolver(actions, serviceMap);
+    this.dependencyResolver = resolverCache == null ?
+      new ServiceDependencyResolver(actions, serviceMap) : resolverCache.getResolver(serviceMap);
     if (job.getPlannedServices() != null) {
       this.servicesToPlan = ImmutableSet.copyOf(expandServices(job.getPlannedServices(), clusterAction));
     } else {
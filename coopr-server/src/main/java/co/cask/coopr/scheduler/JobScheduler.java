@@ -27,6 +27,7 @@ import co.cask.coopr.common.queue.QueueType;
 import co.cask.coopr.common.queue.TrackingQueue;
 import co.cask.coopr.common.zookeeper.LockService;
 import co.cask.coopr.common.zookeeper.lib.ZKInterProcessReentrantLock;
+import co.cask.coopr.macro.ClusterTopologyIndex;
 import co.cask.coopr.macro.Expander;
 import co.cask.coopr.scheduler.task.ClusterJob;
 import co.cask.coopr.scheduler.task.ClusterTask;
@@ -74,6 +75,8 @@ public class JobScheduler implements Runnable {
   private final Gson gson;
   private final QueueGroup jobQueues;
   private final QueueGroup provisionerQueues;
+  private final QueuePartitioner queuePartitioner;
+  private final TenantQueueShares tenantQueueShares;
 
   @Inject
   private JobScheduler(ClusterStoreService clusterStoreService,
@@ -81,7 +84,9 @@ public class JobScheduler implements Runnable {
                        LockService lockService,
                        TaskService taskService,
                        Configuration conf,
-                       Gson gson) {
+                       Gson gson,
+                       QueuePartitioner queuePartitioner,
+                       TenantQueueShares tenantQueueShares) {
     this.clusterStore = clusterStoreService.getSystemView();
     this.lockService = lockService;
     this.taskService = taskService;
@@ -89,12 +94,14 @@ public class JobScheduler implements Runnable {
     this.gson = gson;
     this.jobQueues = queueService.getQueueGroup(QueueType.JOB);
     this.provisionerQueues = queueService.getQueueGroup(QueueType.PROVISIONER);
+    this.queuePartitioner = queuePartitioner;
+    this.tenantQueueShares = tenantQueueShares;
   }
 
   @Override
   public void run() {
     try {
-      Iterator<GroupElement> jobIter = jobQueues.takeIterator(consumerId);
+      Iterator<GroupElement> jobIter = jobQueues.takeIterator(consumerId, queuePartitioner, tenantQueueShares);
       while (jobIter.hasNext()) {
         GroupElement gElement = jobIter.next();
         String queueName = gElement.getQueueName();
@@ -237,6 +244,7 @@ public class JobScheduler implements Runnable {
   private void submitTasks(Set<ClusterTask> notSubmittedTasks, Cluster cluster, Map<String, Node> nodeMap,
                            Set<Node> clusterNodes, ClusterJob job, String queueName) throws Exception {
     JsonObject unexpandedClusterConfig = cluster.getConfig();
+    ClusterTopologyIndex clusterIndex = ClusterTopologyIndex.of(clusterNodes);
 
     for (final ClusterTask task : notSubmittedTasks) {
       Node taskNode = nodeMap.get(task.getNodeId());
@@ -246,7 +254,7 @@ public class JobScheduler implements Runnable {
       if (!task.getTaskName().isHardwareAction()) {
         try {
           // expansion does not modify the original input, but creates a new object
-          clusterConfig = Expander.expand(clusterConfig, null, cluster, clusterNodes, taskNode).getAsJsonObject();
+          clusterConfig = Expander.expand(clusterConfig, null, cluster, clusterIndex, taskNode).getAsJsonObject();
         } catch (Throwable e) {
           LOG.error("Exception while expanding macros for task {}", task.getTaskId(), e);
           taskService.failTask(task, -1);
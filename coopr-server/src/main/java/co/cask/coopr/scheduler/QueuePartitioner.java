@@ -0,0 +1,216 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.scheduler;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.common.utils.ConsistentHash;
+import co.cask.coopr.common.zookeeper.ZKClientExt;
+import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.zookeeper.NodeChildren;
+import org.apache.twill.zookeeper.ZKClient;
+import org.apache.twill.zookeeper.ZKOperations;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.UUID;
+
+/**
+ * Decides which server in a server cluster drives the scheduling of which queues in the cluster, job, solver and
+ * callback queue groups. Queue names in those groups are tenant ids, so this partitions scheduling work by tenant.
+ * Each server registers an ephemeral member node in zookeeper and watches the members. Queue names are mapped to live
+ * members through a {@link ConsistentHash} ring, so a server joining or leaving only moves the tenants of its
+ * neighbors on the ring. Partitioning only spreads the work, it does not make it exclusive: during a membership
+ * change, servers may briefly disagree on who owns a queue. If partitioning is disabled, every queue is accepted,
+ * and it is up to the {@link Scheduler} to run the schedulers on the leader only.
+ */
+public class QueuePartitioner extends AbstractIdleService implements Predicate<String> {
+  private static final Logger LOG = LoggerFactory.getLogger(QueuePartitioner.class);
+  private final ZKClient zkClient;
+  private final boolean enabled;
+  private final int virtualNodes;
+  private final String memberId;
+  private final String memberPath;
+  private volatile ConsistentHash ring;
+  private Cancellable membersWatch;
+
+  @Inject
+  QueuePartitioner(Configuration conf, ZKClient zkClient, @Named("scheduler.id") String schedulerId) {
+    this.zkClient = zkClient;
+    this.enabled = conf.getBoolean(Constants.SchedulerPartition.ENABLED,
+                                   Constants.SchedulerPartition.DEFAULT_ENABLED);
+    this.virtualNodes = conf.getInt(Constants.SchedulerPartition.VIRTUAL_NODES,
+                                    Constants.SchedulerPartition.DEFAULT_VIRTUAL_NODES);
+    // scheduler id is based on the hostname, add a unique suffix in case multiple servers run on the same host.
+    this.memberId = schedulerId + "-" + UUID.randomUUID().toString();
+    this.memberPath = Constants.SchedulerPartition.MEMBERS_PATH + "/" + memberId;
+  }
+
+  /**
+   * Whether or not scheduling is partitioned across servers.
+   *
+   * @return True if scheduling is partitioned across servers, false if not.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Get the id this server uses as a member of the partitioning.
+   *
+   * @return Id this server uses as a member of the partitioning.
+   */
+  public String getMemberId() {
+    return memberId;
+  }
+
+  /**
+   * Get the number of live servers taking part in the partitioning, as last seen by this server.
+   *
+   * @return Number of live servers taking part in the partitioning, or 0 if membership is not currently known.
+   */
+  public int getNumMembers() {
+    ConsistentHash currentRing = ring;
+    return currentRing == null ? 0 : currentRing.getMembers().size();
+  }
+
+  /**
+   * Returns whether or not this server should drive scheduling of the given queue. Until membership is known, for
+   * example right after startup or while disconnected from zookeeper, no queue is accepted when partitioning is
+   * enabled.
+   *
+   * @param queueName Name of the queue to check.
+   * @return True if this server should take elements from the queue, false if not.
+   */
+  @Override
+  public boolean apply(String queueName) {
+    if (!enabled) {
+      return true;
+    }
+    ConsistentHash currentRing = ring;
+    return currentRing != null && memberId.equals(currentRing.get(queueName));
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    if (!enabled) {
+      return;
+    }
+    LOG.info("Registering {} for partitioned scheduling.", memberId);
+    Futures.getUnchecked(ZKClientExt.ensureExists(zkClient, Constants.SchedulerPartition.MEMBERS_PATH));
+    register();
+    membersWatch = ZKOperations.watchChildren(
+      zkClient, Constants.SchedulerPartition.MEMBERS_PATH, new ZKOperations.ChildrenCallback() {
+      @Override
+      public void updated(NodeChildren nodeChildren) {
+        updateMembers(nodeChildren);
+      }
+    });
+    zkClient.addConnectionWatcher(new ConnectionWatcher());
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    if (!enabled) {
+      return;
+    }
+    ring = null;
+    if (membersWatch != null) {
+      membersWatch.cancel();
+    }
+    Futures.getUnchecked(ZKClientExt.delete(zkClient, memberPath, true));
+  }
+
+  private void register() {
+    Futures.addCallback(zkClient.create(memberPath, null, CreateMode.EPHEMERAL), new FutureCallback<String>() {
+      @Override
+      public void onSuccess(String result) {
+        LOG.debug("Created member node {}", result);
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        if (!(t instanceof KeeperException.NodeExistsException)) {
+          LOG.error("Unable to create member node {}", memberPath, t);
+        }
+      }
+    });
+  }
+
+  private void updateMembers(NodeChildren nodeChildren) {
+    ConsistentHash newRing = new ConsistentHash(nodeChildren.getChildren(), virtualNodes);
+    // queues are only claimed once this server sees itself among the members. Members see changes at different
+    // times, so two servers may both claim a queue while the ring is being rebalanced. That is safe, since each
+    // element is taken from its queue by a single server, and jobs are processed under their cluster's job lock.
+    ring = newRing.getMembers().contains(memberId) ? newRing : null;
+    LOG.info("Scheduler members changed to {}.", newRing.getMembers());
+  }
+
+  /**
+   * Stops claiming queues while disconnected from zookeeper, and registers again if the session expired and the
+   * ephemeral member node is gone.
+   */
+  private class ConnectionWatcher implements Watcher {
+    private boolean expired;
+
+    @Override
+    public void process(WatchedEvent event) {
+      if (!isRunning()) {
+        return;
+      }
+      switch (event.getState()) {
+        case Disconnected:
+          LOG.info("Disconnected from ZK, releasing all scheduler partitions for {}.", memberId);
+          ring = null;
+          break;
+        case Expired:
+          expired = true;
+          break;
+        case SyncConnected:
+          if (expired) {
+            LOG.info("Session expired, registering {} for partitioned scheduling again.", memberId);
+            expired = false;
+            register();
+          }
+          Futures.addCallback(zkClient.getChildren(Constants.SchedulerPartition.MEMBERS_PATH),
+                              new FutureCallback<NodeChildren>() {
+            @Override
+            public void onSuccess(NodeChildren result) {
+              updateMembers(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+              LOG.error("Unable to read scheduler members.", t);
+            }
+          });
+          break;
+        default:
+          break;
+      }
+    }
+  }
+}
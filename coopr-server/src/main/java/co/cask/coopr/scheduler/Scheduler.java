@@ -38,14 +38,17 @@ import java.util.concurrent.TimeUnit;
 /**
  * Runs the different schedulers for solving cluster layouts and planning and coordinating cluster jobs. Leader election
  * is run so that only a single server in a server cluster will be running these schedulers at any given time,
- * where a server cluster is defined as all servers using the same zookeeper quorum.
+ * where a server cluster is defined as all servers using the same zookeeper quorum. If scheduler partitioning is
+ * enabled, the cluster, job, solver and callback schedulers run on every server instead, with the
+ * {@link QueuePartitioner} deciding which tenant queues each server takes from, while worker balancing and cleanup
+ * still only run on the leader.
  */
 public class Scheduler extends AbstractIdleService {
   private static final Logger LOG = LoggerFactory.getLogger(Scheduler.class);
 
   private final ScheduledExecutorService executorService;
   private final int schedulerRunInterval;
-  private final int clusterCleanupRunInterval;
+  private final long clusterCleanupTickInterval;
   private final int provisionerCleanupRunInterval;
   private final JobScheduler jobScheduler;
   private final ClusterScheduler clusterScheduler;
@@ -54,7 +57,9 @@ public class Scheduler extends AbstractIdleService {
   private final ClusterCleanup clusterCleanup;
   private final WorkerBalanceScheduler workerBalanceScheduler;
   private final TenantProvisionerCleanup tenantProvisionerCleanup;
+  private final QueuePartitioner queuePartitioner;
   private final Set<ScheduledFuture<?>> scheduledFutures;
+  private final Set<ScheduledFuture<?>> leaderScheduledFutures;
   private final LeaderElection leaderElection;
 
   @Inject
@@ -66,9 +71,11 @@ public class Scheduler extends AbstractIdleService {
                     WorkerBalanceScheduler workerBalanceScheduler,
                     TenantProvisionerCleanup tenantProvisionerCleanup,
                     ClusterCleanup clusterCleanup,
+                    QueuePartitioner queuePartitioner,
                     ZKClient zkClient) {
     this.schedulerRunInterval = conf.getInt(Constants.SCHEDULER_INTERVAL_SECS);
-    this.clusterCleanupRunInterval = conf.getInt(Constants.CLUSTER_CLEANUP_SECS);
+    this.clusterCleanupTickInterval = conf.getLong(Constants.CLUSTER_CLEANUP_TICK_MS,
+                                                   Constants.DEFAULT_CLUSTER_CLEANUP_TICK_MS);
     this.provisionerCleanupRunInterval = conf.getInt(Constants.PROVISIONER_TIMEOUT_CHECK_INTERVAL_SECS);
     this.executorService = Executors.newScheduledThreadPool(5,
                                                             new ThreadFactoryBuilder()
@@ -81,7 +88,9 @@ public class Scheduler extends AbstractIdleService {
     this.workerBalanceScheduler = workerBalanceScheduler;
     this.clusterCleanup = clusterCleanup;
     this.scheduledFutures = Sets.newHashSet();
+    this.leaderScheduledFutures = Sets.newHashSet();
     this.tenantProvisionerCleanup = tenantProvisionerCleanup;
+    this.queuePartitioner = queuePartitioner;
 
     this.leaderElection = new LeaderElection(zkClient, "/server-election", new ElectionHandler() {
       private final ExecutorService executor = Executors.newSingleThreadExecutor(
@@ -93,7 +102,10 @@ public class Scheduler extends AbstractIdleService {
           @Override
           public void run() {
             LOG.info("Became leader...");
-            schedule();
+            if (!Scheduler.this.queuePartitioner.isEnabled()) {
+              scheduleQueueSchedulers();
+            }
+            scheduleLeaderTasks();
           }
         });
       }
@@ -104,7 +116,11 @@ public class Scheduler extends AbstractIdleService {
           @Override
           public void run() {
             LOG.info("Became follower...");
-            unschedule();
+            unschedule(leaderScheduledFutures);
+            Scheduler.this.clusterCleanup.stopTracking();
+            if (!Scheduler.this.queuePartitioner.isEnabled()) {
+              unschedule(scheduledFutures);
+            }
           }
         });
       }
@@ -113,18 +129,26 @@ public class Scheduler extends AbstractIdleService {
 
   @Override
   protected void startUp() throws Exception {
-    // start up is based on leader election
+    // without partitioning, start up is based on leader election
+    if (queuePartitioner.isEnabled()) {
+      queuePartitioner.startAndWait();
+      scheduleQueueSchedulers();
+    }
   }
 
   @Override
   protected void shutDown() throws Exception {
     LOG.info("Stopping scheduler...");
     leaderElection.cancel();
+    if (queuePartitioner.isEnabled()) {
+      unschedule(scheduledFutures);
+      queuePartitioner.stopAndWait();
+    }
     executorService.shutdown();
     executorService.awaitTermination(100, TimeUnit.SECONDS);
   }
 
-  private void schedule() {
+  private void scheduleQueueSchedulers() {
 
     LOG.info("Scheduling cluster scheduler every {} secs...", schedulerRunInterval);
     scheduledFutures.add(
@@ -145,34 +169,38 @@ public class Scheduler extends AbstractIdleService {
     scheduledFutures.add(
       executorService.scheduleAtFixedRate(callbackScheduler, 1, schedulerRunInterval, TimeUnit.SECONDS)
     );
+  }
 
+  private void scheduleLeaderTasks() {
     LOG.info("Scheduling worker balancer every {} secs...", schedulerRunInterval);
-    scheduledFutures.add(
+    leaderScheduledFutures.add(
       executorService.scheduleAtFixedRate(workerBalanceScheduler, 1, schedulerRunInterval, TimeUnit.SECONDS)
     );
 
-    LOG.info("Scheduling cluster cleanup every {} secs...", clusterCleanupRunInterval);
-    scheduledFutures.add(
-      executorService.scheduleAtFixedRate(clusterCleanup, 10, clusterCleanupRunInterval, TimeUnit.SECONDS)
+    LOG.info("Scheduling cluster cleanup every {} ms...", clusterCleanupTickInterval);
+    clusterCleanup.startTracking();
+    leaderScheduledFutures.add(
+      executorService.scheduleAtFixedRate(clusterCleanup, TimeUnit.MILLISECONDS.convert(10, TimeUnit.SECONDS),
+                                          clusterCleanupTickInterval, TimeUnit.MILLISECONDS)
     );
 
     LOG.info("Scheduling provisioner cleanup every {} secs...", provisionerCleanupRunInterval);
     // if the server was down for a while, we don't want to time out provisioners right away but want to
     // give them a chance to get their heartbeats in.  So wait for a while before starting the timeout logic.
-    scheduledFutures.add(
+    leaderScheduledFutures.add(
       executorService.scheduleAtFixedRate(tenantProvisionerCleanup, provisionerCleanupRunInterval,
                                           provisionerCleanupRunInterval, TimeUnit.SECONDS)
     );
   }
 
-  private void unschedule() {
-    for (ScheduledFuture<?> future : scheduledFutures) {
+  private void unschedule(Set<ScheduledFuture<?>> futures) {
+    for (ScheduledFuture<?> future : futures) {
       try {
         future.cancel(false);
       } catch (Throwable t) {
         LOG.error("Caught exception while un-scheduling.", t);
       }
     }
-    scheduledFutures.clear();
+    futures.clear();
   }
 }
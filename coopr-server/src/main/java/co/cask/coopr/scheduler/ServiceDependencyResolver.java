@@ -49,7 +49,7 @@ public class ServiceDependencyResolver {
       });
     this.reversedInstallServiceDependencies = reverseDependencies(installServiceDependencies);
     this.reversedRuntimeServiceDependencies = reverseDependencies(runtimeServiceDependencies);
-    this.clusterDependencies = HashMultimap.create();
+    SetMultimap<ActionOnService, ActionOnService> clusterDependencies = HashMultimap.create();
     Set<Actions.Dependency> serviceActionDependencies = actions.getActionDependencies();
 
     for (Service service : clusterServices.values()) {
@@ -62,6 +62,8 @@ public class ServiceDependencyResolver {
                                    getDirectActionDependencies(service, actionDependency));
       }
     }
+    // resolvers are shared between jobs on clusters with the same services, so must not be modified after creation.
+    this.clusterDependencies = ImmutableSetMultimap.copyOf(clusterDependencies);
   }
 
   /**
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.scheduler;
+
+import co.cask.coopr.spec.service.Service;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded cache of {@link ServiceDependencyResolver}s. A resolver only depends on the services on a cluster, so
+ * resolvers are keyed by the full service definitions, including their versions. Clusters built from the same template
+ * usually have the same services, so planning jobs for them can share a resolver instead of rebuilding it every time,
+ * while a change to any service results in a different key so that a stale resolver is never used.
+ */
+final class ServiceDependencyResolverCache {
+  private final Actions actions;
+  private final Cache<Set<Service>, ServiceDependencyResolver> cache;
+
+  ServiceDependencyResolverCache(Actions actions, int maxSize) {
+    this.actions = actions;
+    this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+  }
+
+  /**
+   * Get the resolver for the given cluster services, creating and caching it if there is none cached yet.
+   *
+   * @param clusterServices Map of service name to service for all services on the cluster.
+   * @return Resolver for the given cluster services.
+   */
+  ServiceDependencyResolver getResolver(Map<String, Service> clusterServices) {
+    Set<Service> key = ImmutableSet.copyOf(clusterServices.values());
+    ServiceDependencyResolver resolver = cache.getIfPresent(key);
+    if (resolver == null) {
+      // two threads may both create the resolver for new services, which is harmless since they are equivalent.
+      resolver = new ServiceDependencyResolver(actions, clusterServices);
+      cache.put(key, resolver);
+    }
+    return resolver;
+  }
+
+  long size() {
+    return cache.size();
+  }
+}
@@ -27,6 +27,7 @@ import co.cask.coopr.common.zookeeper.IdService;
 import co.cask.coopr.http.request.AddServicesRequest;
 import co.cask.coopr.http.request.ClusterCreateRequest;
 import co.cask.coopr.layout.Solver;
+import co.cask.coopr.layout.SolverTimeoutException;
 import co.cask.coopr.management.ServerStats;
 import co.cask.coopr.scheduler.task.ClusterJob;
 import co.cask.coopr.scheduler.task.JobId;
@@ -68,13 +69,17 @@ public class SolverScheduler implements Runnable {
   private final Gson gson;
   private final QueueGroup solverQueues;
   private final QueueGroup clusterQueues;
+  private final QueuePartitioner queuePartitioner;
+  private final TenantQueueShares tenantQueueShares;
 
   @Inject
   private SolverScheduler(@Named("scheduler.id") String id, Solver solver,
                           ClusterStoreService clusterStoreService,
                           QueueService queueService,
                           @Named("solver.executor.service") ListeningExecutorService executorService,
-                          TaskService taskService, ServerStats serverStats, IdService idService, Gson gson) {
+                          TaskService taskService, ServerStats serverStats, IdService idService, Gson gson,
+                          QueuePartitioner queuePartitioner,
+                          TenantQueueShares tenantQueueShares) {
     this.id = id;
     this.solver = solver;
     this.clusterStore = clusterStoreService.getSystemView();
@@ -84,13 +89,15 @@ public class SolverScheduler implements Runnable {
     this.idService = idService;
     this.gson = gson;
     this.solverQueues = queueService.getQueueGroup(QueueType.SOLVER);
+    this.queuePartitioner = queuePartitioner;
+    this.tenantQueueShares = tenantQueueShares;
     this.clusterQueues = queueService.getQueueGroup(QueueType.CLUSTER);
   }
 
   @Override
   public void run() {
     try {
-      Iterator<GroupElement> solveIter = solverQueues.takeIterator(id);
+      Iterator<GroupElement> solveIter = solverQueues.takeIterator(id, queuePartitioner, tenantQueueShares);
       while (solveIter.hasNext()) {
         final GroupElement gElement = solveIter.next();
         final Element solveElement = gElement.getElement();
@@ -194,6 +201,12 @@ public class SolverScheduler implements Runnable {
       } catch (IllegalArgumentException e) {
         LOG.debug("Could not add services {} to cluster {}.", servicesStr, cluster.getId(), e);
         return "Unable to solve layout: " + e.getMessage();
+      } catch (SolverTimeoutException e) {
+        LOG.error("Timed out adding services {} to cluster {}.", servicesStr, cluster.getId(), e);
+        // nothing about the cluster was changed yet, so it can go back to being active.
+        taskService.failJobAndSetClusterStatus(solverJob, cluster, Cluster.Status.ACTIVE,
+                                               "Layout solving timed out: " + e.getMessage());
+        return "Layout solving timed out";
       }
 
       if (changedNodes == null) {
@@ -242,6 +255,9 @@ public class SolverScheduler implements Runnable {
       } catch (IllegalArgumentException e) {
         LOG.error("Layout solving failed due to impossible constraints.", e);
         errorMessage = errorMessage + ": " + e.getMessage();
+      } catch (SolverTimeoutException e) {
+        LOG.error("Layout solving timed out.", e);
+        errorMessage = "Layout solving timed out: " + e.getMessage();
       }
 
       long duration = (System.nanoTime() - start) / 1000000;
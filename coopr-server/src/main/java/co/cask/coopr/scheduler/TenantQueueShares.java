@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.scheduler;
+
+import co.cask.coopr.common.queue.QueueShares;
+import co.cask.coopr.spec.Tenant;
+import co.cask.coopr.spec.TenantSpecification;
+import co.cask.coopr.store.tenant.TenantStore;
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link QueueShares} for the cluster, solver and job queues, whose queue names are tenant ids. Weights and in progress
+ * limits come from the {@link TenantSpecification} of each tenant. Specifications are cached for a short time since
+ * they are looked up for every element taken from the queues.
+ */
+public class TenantQueueShares implements QueueShares {
+  private static final Logger LOG = LoggerFactory.getLogger(TenantQueueShares.class);
+  private static final long CACHE_SECONDS = 30;
+  private final LoadingCache<String, Optional<TenantSpecification>> tenantSpecs;
+
+  @Inject
+  private TenantQueueShares(final TenantStore tenantStore) {
+    this.tenantSpecs = CacheBuilder.newBuilder()
+      .expireAfterWrite(CACHE_SECONDS, TimeUnit.SECONDS)
+      .build(new CacheLoader<String, Optional<TenantSpecification>>() {
+        @Override
+        public Optional<TenantSpecification> load(String tenantId) throws Exception {
+          Tenant tenant = tenantStore.getTenantByID(tenantId);
+          return tenant == null ? Optional.<TenantSpecification>absent() : Optional.of(tenant.getSpecification());
+        }
+      });
+  }
+
+  @Override
+  public int getWeight(String queueName) {
+    TenantSpecification spec = getSpecification(queueName);
+    return spec == null ? 1 : spec.getWeight();
+  }
+
+  @Override
+  public int getMaxInFlight(String queueName) {
+    TenantSpecification spec = getSpecification(queueName);
+    return spec == null ? Integer.MAX_VALUE : spec.getMaxInFlight();
+  }
+
+  private TenantSpecification getSpecification(String tenantId) {
+    try {
+      return tenantSpecs.getUnchecked(tenantId).orNull();
+    } catch (Exception e) {
+      // fall back to equal shares rather than stop scheduling if the tenant store is unavailable.
+      LOG.error("Unable to get specification for tenant {}, using default shares.", tenantId, e);
+      return null;
+    }
+  }
+}
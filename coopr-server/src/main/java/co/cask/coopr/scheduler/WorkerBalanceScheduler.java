@@ -18,21 +18,25 @@ package co.cask.coopr.scheduler;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.queue.Element;
 import co.cask.coopr.common.queue.TrackingQueue;
-import co.cask.coopr.provisioner.CapacityException;
 import co.cask.coopr.provisioner.TenantProvisionerService;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Set;
 
 /**
- * Balances number of workers to place on each provisioner.
+ * Balances number of workers to place on each provisioner. All tenants waiting to be balanced are balanced together.
  */
 public class WorkerBalanceScheduler implements Runnable {
 
   private static final Logger LOG = LoggerFactory.getLogger(WorkerBalanceScheduler.class);
+  private static final int MAX_BATCH_SIZE = 1000;
 
   private final String id;
   private final TrackingQueue balanceQueue;
@@ -50,25 +54,37 @@ public class WorkerBalanceScheduler implements Runnable {
   @Override
   public void run() {
     while (true) {
+      // take all elements that are waiting so that the workers of all affected tenants are balanced at once.
+      List<Element> elements = Lists.newArrayList();
       Element element = balanceQueue.take(id);
-      if (element == null) {
+      while (element != null) {
+        elements.add(element);
+        if (elements.size() >= MAX_BATCH_SIZE) {
+          break;
+        }
+        element = balanceQueue.take(id);
+      }
+      if (elements.isEmpty()) {
         return;
       }
 
+      Set<String> tenantIds = Sets.newHashSet();
+      for (Element taken : elements) {
+        tenantIds.add(taken.getValue());
+      }
       try {
-        tenantProvisionerService.rebalanceTenantWorkers(element.getValue());
-        balanceQueue.recordProgress(id, element.getId(),
-                                    TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY, "balanced");
-      } catch (CapacityException e) {
-        LOG.error("Not enough capacity trying to balance workers for tenant {}", element.getValue(), e);
-        // a failed status puts the element back in the queue, we don't want to consume this element again.
-        // when another provisioner comes online, workers will get rebalanced once again.
-        balanceQueue.recordProgress(id, element.getId(),
-                                    TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY, "not enough capacity");
+        Set<String> insufficientCapacity = tenantProvisionerService.rebalanceTenantWorkers(tenantIds);
+        for (Element taken : elements) {
+          // a failed status puts the element back in the queue, we don't want to consume an element again if there
+          // is not enough capacity. When another provisioner comes online, workers will get rebalanced once again.
+          String message = insufficientCapacity.contains(taken.getValue()) ? "not enough capacity" : "balanced";
+          balanceQueue.recordProgress(id, taken.getId(), TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY, message);
+        }
       } catch (IOException e) {
-        LOG.error("Exception trying to balance workers for tenant {}", element.getValue(), e);
-        balanceQueue.recordProgress(id, element.getId(),
-                                    TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY, "failed");
+        LOG.error("Exception trying to balance workers for tenants {}", tenantIds, e);
+        for (Element taken : elements) {
+          balanceQueue.recordProgress(id, taken.getId(), TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY, "failed");
+        }
       }
     }
   }
@@ -21,23 +21,32 @@ import co.cask.coopr.store.cluster.ClusterStoreService;
 import co.cask.coopr.store.cluster.ClusterStoreView;
 import co.cask.coopr.store.cluster.ReadOnlyClusterStoreView;
 import co.cask.coopr.store.user.UserStore;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Context that a {@link ClusterCallback} can take place in, giving the callback read access to cluster data and user
- * information that would normally be accessible to the owner of the cluster.
+ * information that would normally be accessible to the owner of the cluster. A callback that finishes its work after
+ * the callback method has returned, for example by sending requests in the background, can defer completion of the
+ * callback until that work is done.
  */
 public class CallbackContext {
   private final ClusterStoreView clusterStoreView;
   private final UserStore userStore;
   private final Account account;
+  private final List<ListenableFuture<Void>> deferred;
 
   public CallbackContext(ClusterStoreService clusterStoreService, UserStore userStore, Account account) {
     this.clusterStoreView = clusterStoreService.getView(account);
     this.userStore = userStore;
     this.account = account;
+    this.deferred = Lists.newArrayList();
   }
 
   /**
@@ -58,4 +67,27 @@ public class CallbackContext {
   public Map<String, Object> getAccountProfile() throws IOException {
     return userStore.getProfile(account);
   }
+
+  /**
+   * Defer completion of the callback until the returned future is set. The callback stays in the callback queue until
+   * then, so that it is run again if the server goes down before it completes. The future should be set even if the
+   * work fails for good, otherwise the callback is never removed from the queue.
+   *
+   * @return future to set once the deferred work of the callback is done
+   */
+  public synchronized SettableFuture<Void> deferCompletion() {
+    SettableFuture<Void> completion = SettableFuture.create();
+    deferred.add(completion);
+    return completion;
+  }
+
+  /**
+   * Get a future that completes once all deferred work of the callback is done. If completion was never deferred, the
+   * future is already complete.
+   *
+   * @return future that completes once all deferred work of the callback is done
+   */
+  public synchronized ListenableFuture<List<Void>> getCompletion() {
+    return Futures.successfulAsList(Lists.newArrayList(deferred));
+  }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.scheduler.callback;
+
+/**
+ * Circuit breaker for requests to a single endpoint. After a number of consecutive failures the circuit opens and
+ * requests are held back for a while, so that an endpoint that is down is not hammered by requests that will fail
+ * anyway. Once that time has passed, a single trial request is let through. If it succeeds the circuit closes again,
+ * and if it fails the circuit stays open for another period.
+ */
+final class CircuitBreaker {
+  private final int failureThreshold;
+  private final long openMillis;
+  private int consecutiveFailures;
+  private long openUntil;
+  private boolean trialInProgress;
+
+  /**
+   * Create a closed circuit breaker.
+   *
+   * @param failureThreshold Number of consecutive failures that opens the circuit.
+   * @param openMillis Milliseconds the circuit stays open before a trial request is allowed.
+   */
+  CircuitBreaker(int failureThreshold, long openMillis) {
+    this.failureThreshold = failureThreshold;
+    this.openMillis = openMillis;
+  }
+
+  /**
+   * Get whether or not a request may be sent now. If the circuit is open but its open period has passed, the caller
+   * gets to send the trial request, and must report its outcome through {@link #recordSuccess()} or
+   * {@link #recordFailure()}.
+   *
+   * @return True if a request may be sent, false if requests are being held back.
+   */
+  synchronized boolean allowRequest() {
+    if (consecutiveFailures < failureThreshold) {
+      return true;
+    }
+    if (trialInProgress || System.currentTimeMillis() < openUntil) {
+      return false;
+    }
+    trialInProgress = true;
+    return true;
+  }
+
+  /**
+   * Get how long until requests may be sent again.
+   *
+   * @return Milliseconds until the open period of the circuit ends, or 0 if it is not open.
+   */
+  synchronized long getMillisUntilRetry() {
+    if (consecutiveFailures < failureThreshold) {
+      return 0;
+    }
+    return Math.max(0, openUntil - System.currentTimeMillis());
+  }
+
+  synchronized void recordSuccess() {
+    consecutiveFailures = 0;
+    trialInProgress = false;
+  }
+
+  synchronized void recordFailure() {
+    consecutiveFailures++;
+    trialInProgress = false;
+    if (consecutiveFailures >= failureThreshold) {
+      openUntil = System.currentTimeMillis() + openMillis;
+    }
+  }
+
+  synchronized boolean isOpen() {
+    return consecutiveFailures >= failureThreshold;
+  }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.scheduler.callback;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends callbacks to a single http endpoint in the background. Callbacks are queued and sent by a bounded number of
+ * concurrent requests, optionally batching several callbacks into one request. Failed callbacks are retried with
+ * exponential backoff until they run out of attempts, and a {@link CircuitBreaker} holds back requests while the
+ * endpoint keeps failing. None of this ever blocks the thread that queues a callback.
+ */
+final class HttpCallbackEndpoint {
+  private static final Logger LOG = LoggerFactory.getLogger(HttpCallbackEndpoint.class);
+  private final Gson gson = new Gson();
+  private final String url;
+  private final HttpClient httpClient;
+  private final Executor requestExecutor;
+  private final ScheduledExecutorService retryExecutor;
+  private final CircuitBreaker circuitBreaker;
+  private final Semaphore requestPermits;
+  private final int batchSize;
+  private final int maxAttempts;
+  private final long initialRetryDelayMs;
+  private final long maxRetryDelayMs;
+  private final BlockingDeque<PendingCallback> pending;
+  private final AtomicBoolean drainScheduled;
+
+  /**
+   * Create an endpoint that callbacks can be sent to.
+   *
+   * @param url Url to send callbacks to.
+   * @param httpClient Client to send requests with.
+   * @param requestExecutor Executor to send requests on.
+   * @param retryExecutor Executor to schedule retries on.
+   * @param circuitBreaker Circuit breaker for requests to the endpoint.
+   * @param maxConcurrentRequests Max number of requests to the endpoint that can be in flight at the same time.
+   * @param batchSize Max number of callbacks to send in one request. If greater than one, the body of every request
+   *                  is a json array of callbacks.
+   * @param maxAttempts Max number of times to try sending a callback before giving up on it.
+   * @param initialRetryDelayMs Milliseconds to wait before the first retry of a callback.
+   * @param maxRetryDelayMs Max milliseconds to wait before retrying a callback.
+   */
+  HttpCallbackEndpoint(String url, HttpClient httpClient, Executor requestExecutor,
+                       ScheduledExecutorService retryExecutor, CircuitBreaker circuitBreaker,
+                       int maxConcurrentRequests, int batchSize, int maxAttempts,
+                       long initialRetryDelayMs, long maxRetryDelayMs) {
+    this.url = url;
+    this.httpClient = httpClient;
+    this.requestExecutor = requestExecutor;
+    this.retryExecutor = retryExecutor;
+    this.circuitBreaker = circuitBreaker;
+    this.requestPermits = new Semaphore(maxConcurrentRequests);
+    this.batchSize = batchSize;
+    this.maxAttempts = maxAttempts;
+    this.initialRetryDelayMs = initialRetryDelayMs;
+    this.maxRetryDelayMs = maxRetryDelayMs;
+    this.pending = new LinkedBlockingDeque<PendingCallback>();
+    this.drainScheduled = new AtomicBoolean(false);
+  }
+
+  /**
+   * Queue a callback to be sent to the endpoint.
+   *
+   * @param body Body of the callback.
+   * @param completion Future to set once the callback has been sent, or once it has been given up on.
+   */
+  void send(JsonElement body, SettableFuture<Void> completion) {
+    pending.add(new PendingCallback(body, completion));
+    drain();
+  }
+
+  /**
+   * Get the number of callbacks that are queued and not being sent or waiting for a retry.
+   *
+   * @return Number of callbacks that are queued.
+   */
+  int getNumQueued() {
+    return pending.size();
+  }
+
+  private void drain() {
+    while (!pending.isEmpty() && requestPermits.tryAcquire()) {
+      final List<PendingCallback> batch = Lists.newArrayListWithCapacity(batchSize);
+      pending.drainTo(batch, batchSize);
+      if (batch.isEmpty()) {
+        requestPermits.release();
+        continue;
+      }
+      if (!circuitBreaker.allowRequest()) {
+        // put the callbacks back in front, in their original order.
+        for (int i = batch.size() - 1; i >= 0; i--) {
+          pending.addFirst(batch.get(i));
+        }
+        requestPermits.release();
+        // if there is no wait, a trial request is in flight and will drain the queue once it finishes.
+        long delay = circuitBreaker.getMillisUntilRetry();
+        if (delay > 0) {
+          scheduleDrain(delay);
+        }
+        return;
+      }
+      try {
+        requestExecutor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              deliver(batch);
+            } finally {
+              requestPermits.release();
+              drain();
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // only happens when shutting down, in which case the callbacks will be run again once the server is back up.
+        LOG.warn("Unable to send callbacks to {}, executor has shut down.", url);
+        requestPermits.release();
+        return;
+      }
+    }
+  }
+
+  private void scheduleDrain(long delay) {
+    if (drainScheduled.compareAndSet(false, true)) {
+      retryExecutor.schedule(new Runnable() {
+        @Override
+        public void run() {
+          drainScheduled.set(false);
+          drain();
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void deliver(List<PendingCallback> batch) {
+    boolean success;
+    try {
+      success = post(batch);
+    } catch (Exception e) {
+      LOG.warn("Exception executing http post callback to " + url, e);
+      success = false;
+    }
+
+    if (success) {
+      circuitBreaker.recordSuccess();
+      for (PendingCallback callback : batch) {
+        callback.completion.set(null);
+      }
+    } else {
+      circuitBreaker.recordFailure();
+      for (PendingCallback callback : batch) {
+        retry(callback);
+      }
+    }
+  }
+
+  private boolean post(List<PendingCallback> batch) throws Exception {
+    JsonElement body;
+    if (batchSize > 1) {
+      JsonArray callbacks = new JsonArray();
+      for (PendingCallback callback : batch) {
+        callbacks.add(callback.body);
+      }
+      body = callbacks;
+    } else {
+      body = batch.get(0).body;
+    }
+
+    HttpPost post = new HttpPost(url);
+    try {
+      post.setEntity(new StringEntity(gson.toJson(body)));
+      HttpResponse response = httpClient.execute(post);
+      int statusCode = response.getStatusLine().getStatusCode();
+      EntityUtils.consume(response.getEntity());
+      if (statusCode / 100 == 2) {
+        return true;
+      }
+      LOG.warn("http post callback to {} failed with status code {}", url, statusCode);
+      return false;
+    } finally {
+      post.releaseConnection();
+    }
+  }
+
+  private void retry(final PendingCallback callback) {
+    callback.attempts++;
+    if (callback.attempts >= maxAttempts) {
+      LOG.error("Giving up on http post callback to {} after {} attempts.", url, callback.attempts);
+      callback.completion.set(null);
+      return;
+    }
+    long delay = Math.min(maxRetryDelayMs, initialRetryDelayMs << Math.min(callback.attempts - 1, 30));
+    LOG.debug("Retrying http post callback to {} in {} ms.", url, delay);
+    try {
+      retryExecutor.schedule(new Runnable() {
+        @Override
+        public void run() {
+          pending.add(callback);
+          drain();
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      LOG.warn("Unable to retry callback to {}, executor has shut down.", url);
+    }
+  }
+
+  /**
+   * Callback waiting to be sent, along with the number of times it has been tried.
+   */
+  private static final class PendingCallback {
+    private final JsonElement body;
+    private final SettableFuture<Void> completion;
+    private int attempts;
+
+    private PendingCallback(JsonElement body, SettableFuture<Void> completion) {
+      this.body = body;
+      this.completion = completion;
+    }
+  }
+}
@@ -22,23 +22,24 @@ import co.cask.coopr.scheduler.ClusterAction;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
-import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
-import org.apache.http.client.methods.HttpPost;
 import org.apache.http.config.SocketConfig;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Executes before and after hooks by sending an HTTP POST request to some configurable endpoints, with the post body
@@ -46,6 +47,10 @@ import java.util.Set;
  * urls. If no url is specified, no request will be sent. Additionally, trigger actions can be configured so that
  * the HTTP POST request is sent only for specific cluster actions. This is done by specifying a comma separated list
  * of {@link ClusterAction}s in the configuration for start, success, and/or triggers.
+ *
+ * Requests are sent in the background by an {@link HttpCallbackEndpoint} for each url, so a slow or unavailable
+ * endpoint never holds up cluster operations. Completion of the callback is deferred until its request has been sent,
+ * so callbacks that are still being retried are run again if the server goes down.
  */
 public class HttpPostClusterCallback implements ClusterCallback {
   private static final Logger LOG = LoggerFactory.getLogger(HttpPostClusterCallback.class);
@@ -56,8 +61,7 @@ public class HttpPostClusterCallback implements ClusterCallback {
   private Set<ClusterAction> startTriggerActions;
   private Set<ClusterAction> successTriggerActions;
   private Set<ClusterAction> failureTriggerActions;
-  private HttpClient httpClient;
-
+  private Map<String, HttpCallbackEndpoint> endpoints;
   public void initialize(Configuration conf) {
     this.onStartUrl = conf.get(Constants.HttpCallback.START_URL);
     this.onSuccessUrl = conf.get(Constants.HttpCallback.SUCCESS_URL);
@@ -89,7 +93,35 @@ public class HttpPostClusterCallback implements ClusterCallback {
                                 Constants.HttpCallback.DEFAULT_SOCKET_TIMEOUT))
       .build();
     connectionManager.setDefaultSocketConfig(socketConfig);
-    this.httpClient = HttpClientBuilder.create().setConnectionManager(connectionManager).build();
+    HttpClient httpClient = HttpClientBuilder.create().setConnectionManager(connectionManager).build();
+
+    int maxConcurrentRequests = conf.getInt(Constants.HttpCallback.MAX_CONCURRENT_REQUESTS,
+                                            Constants.HttpCallback.DEFAULT_MAX_CONCURRENT_REQUESTS);
+    int batchSize = conf.getInt(Constants.HttpCallback.BATCH_SIZE, Constants.HttpCallback.DEFAULT_BATCH_SIZE);
+    int maxAttempts = conf.getInt(Constants.HttpCallback.MAX_ATTEMPTS, Constants.HttpCallback.DEFAULT_MAX_ATTEMPTS);
+    long initialRetryDelayMs = conf.getLong(Constants.HttpCallback.RETRY_INITIAL_DELAY_MS,
+                                            Constants.HttpCallback.DEFAULT_RETRY_INITIAL_DELAY_MS);
+    long maxRetryDelayMs = conf.getLong(Constants.HttpCallback.RETRY_MAX_DELAY_MS,
+                                        Constants.HttpCallback.DEFAULT_RETRY_MAX_DELAY_MS);
+    int circuitFailureThreshold = conf.getInt(Constants.HttpCallback.CIRCUIT_FAILURE_THRESHOLD,
+                                              Constants.HttpCallback.DEFAULT_CIRCUIT_FAILURE_THRESHOLD);
+    long circuitOpenMs = conf.getLong(Constants.HttpCallback.CIRCUIT_OPEN_MS,
+                                      Constants.HttpCallback.DEFAULT_CIRCUIT_OPEN_MS);
+
+    // requests are limited per endpoint, so the pool only grows as large as the endpoints allow.
+    ExecutorService requestExecutor = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("http-callback-%d").setDaemon(true).build());
+    ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("http-callback-retry-%d").setDaemon(true).build());
+    this.endpoints = Maps.newHashMap();
+    for (String url : new String[] { onStartUrl, onSuccessUrl, onFailureUrl }) {
+      if (url != null && !endpoints.containsKey(url)) {
+        endpoints.put(url, new HttpCallbackEndpoint(url, httpClient, requestExecutor, retryExecutor,
+                                                    new CircuitBreaker(circuitFailureThreshold, circuitOpenMs),
+                                                    maxConcurrentRequests, batchSize, maxAttempts,
+                                                    initialRetryDelayMs, maxRetryDelayMs));
+      }
+    }
   }
 
   private Set<ClusterAction> parseActionsString(String actionsStr) {
@@ -147,7 +179,6 @@ public class HttpPostClusterCallback implements ClusterCallback {
   }
 
   private void sendPost(String url, CallbackData data, CallbackContext context) {
-    HttpPost post = new HttpPost(url);
     Set<Node> nodes;
     try {
       nodes = context.getClusterStoreView().getClusterNodes(data.getCluster().getId());
@@ -156,23 +187,10 @@ public class HttpPostClusterCallback implements ClusterCallback {
       return;
     }
 
-    try {
-      JsonObject body = new JsonObject();
-      body.add("cluster", gson.toJsonTree(data.getCluster()));
-      body.add("job", gson.toJsonTree(data.getJob()));
-      body.add("nodes", gson.toJsonTree(nodes));
-      post.setEntity(new StringEntity(gson.toJson(body)));
-      httpClient.execute(post);
-    } catch (UnsupportedEncodingException e) {
-      LOG.warn("Exception setting http post body", e);
-    } catch (ClientProtocolException e) {
-      LOG.warn("Exception executing http post callback to " + url, e);
-    } catch (IOException e) {
-      LOG.warn("Exception executing http post callback to " + url, e);
-    } catch (Exception e) {
-      LOG.warn("Exception executing http post callback to " + url, e);
-    } finally {
-      post.releaseConnection();
-    }
+    JsonObject body = new JsonObject();
+    body.add("cluster", gson.toJsonTree(data.getCluster()));
+    body.add("job", gson.toJsonTree(data.getJob()));
+    body.add("nodes", gson.toJsonTree(nodes));
+    endpoints.get(url).send(body, context.deferCompletion());
   }
 }
@@ -16,10 +16,10 @@
 package co.cask.coopr.scheduler.dag;
 
 import com.google.common.base.Objects;
-import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import com.google.common.collect.TreeMultimap;
@@ -71,55 +71,45 @@ public class TaskDag {
   /**
    * Linearize the DAG into a list of stages, where each stage is a set of tasks that can be executed in parallel, and
    * where each task in a stage can only be executed once all the tasks in the previous stage have successfully
-   * completed.
+   * completed. The first stage contains all tasks that do not depend on any other task, and each following stage
+   * contains the tasks whose last dependency is in the stage before it. Runs in time linear in the number of nodes
+   * and edges.
    *
    * @return a list of set of actions that can be performed in order satisfying the dependencies.
    * The actions in each set can be run in parallel.
    */
   public List<Set<TaskNode>> linearize() {
-    LOG.trace("Initial graph - {}", edges);
-
     List<Set<TaskNode>> linearizedNodes = Lists.newArrayList();
-    ArrayListMultimap<TaskNode, TaskNode> copyEdges = ArrayListMultimap.create(edges);
-
-    // nodes that have no edges are sources.  The initial set is actual nodes - edges.values(), but removal of
-    // edges.values() happens right away in the loop so just setting it to nodes right here.
-    Set<TaskNode> sources = Sets.newHashSet(nodes);
-    Set<TaskNode> sinkNodes = Sets.newHashSet();
-    do {
-      sources.addAll(copyEdges.keySet());
-      sources.removeAll(copyEdges.values());
-
-      LOG.trace("SinkNodes - {}", sinkNodes);
-      LOG.trace("Sources - {}", sources);
-      if (sources.isEmpty()) {
-        throw new IllegalStateException("No source nodes found, DAG not serializable");
-      }
+    // number of dependencies of each node that are not in a stage yet. Nodes without any are not in the multiset.
+    Multiset<TaskNode> remainingDependencies = HashMultiset.create(edges.values());
 
-      Set<TaskNode> stageNodes = Sets.newHashSet(Iterables.concat(sinkNodes, sources));
+    Set<TaskNode> stageNodes = Sets.newHashSet();
+    for (TaskNode node : nodes) {
+      if (!remainingDependencies.contains(node)) {
+        stageNodes.add(node);
+      }
+    }
+    int numLinearized = 0;
+    while (!stageNodes.isEmpty()) {
       LOG.trace("Stage Nodes - {}", stageNodes);
       linearizedNodes.add(stageNodes);
-
-      // Determine sink nodes if any
-      sinkNodes.clear();
-      Set<TaskNode> toNodes = Sets.newHashSet();
-      for (TaskNode fromNode : sources) {
-        toNodes.addAll(copyEdges.removeAll(fromNode));
-      }
-
-      // If the node is not a source, or a destination of any other source then they are sink nodes.
-      toNodes.removeAll(copyEdges.keySet());
-      toNodes.removeAll(copyEdges.values());
-      if (!toNodes.isEmpty()) {
-        sinkNodes.addAll(toNodes);
+      numLinearized += stageNodes.size();
+
+      Set<TaskNode> nextStageNodes = Sets.newHashSet();
+      for (TaskNode fromNode : stageNodes) {
+        for (TaskNode toNode : edges.get(fromNode)) {
+          // remove returns the count before removing, so the node has no more dependencies if it was 1.
+          if (remainingDependencies.remove(toNode, 1) == 1) {
+            nextStageNodes.add(toNode);
+          }
+        }
       }
-      sources.clear();
-    } while (!copyEdges.isEmpty());
+      stageNodes = nextStageNodes;
+    }
 
-    // Add final nodes
-    LOG.trace("Final nodes - {}", sinkNodes);
-    if (!sinkNodes.isEmpty()) {
-      linearizedNodes.add(sinkNodes);
+    // nodes that never ran out of dependencies are part of or depend on a cycle.
+    if (linearizedNodes.isEmpty() || numLinearized < nodes.size()) {
+      throw new IllegalStateException("No source nodes found, DAG not serializable");
     }
 
     return linearizedNodes;
@@ -1,13 +1,19 @@
 package co.cask.coopr.scheduler.guice;
 
+import co.cask.coopr.cluster.AdmissionController;
+import co.cask.coopr.cluster.event.ClusterEventService;
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.layout.Solver;
 import co.cask.coopr.scheduler.ClusterCleanup;
 import co.cask.coopr.scheduler.ClusterScheduler;
+import co.cask.coopr.scheduler.DeadlineTracker;
 import co.cask.coopr.scheduler.JobScheduler;
+import co.cask.coopr.scheduler.QueuePartitioner;
 import co.cask.coopr.scheduler.TenantProvisionerCleanup;
 import co.cask.coopr.scheduler.Scheduler;
 import co.cask.coopr.scheduler.SolverScheduler;
+import co.cask.coopr.scheduler.TenantQueueShares;
 import co.cask.coopr.scheduler.WorkerBalanceScheduler;
 import co.cask.coopr.scheduler.callback.ClusterCallback;
 import com.google.common.util.concurrent.ListeningExecutorService;
@@ -48,9 +54,15 @@ public class SchedulerModule extends AbstractModule {
     bind(JobScheduler.class).in(Scopes.SINGLETON);
     bind(ClusterScheduler.class).in(Scopes.SINGLETON);
     bind(SolverScheduler.class).in(Scopes.SINGLETON);
+    bind(Solver.class).in(Scopes.SINGLETON);
+    bind(QueuePartitioner.class).in(Scopes.SINGLETON);
+    bind(TenantQueueShares.class).in(Scopes.SINGLETON);
     bind(Scheduler.class).in(Scopes.SINGLETON);
     bind(WorkerBalanceScheduler.class).in(Scopes.SINGLETON);
     bind(ClusterCleanup.class).in(Scopes.SINGLETON);
+    bind(DeadlineTracker.class).in(Scopes.SINGLETON);
+    bind(AdmissionController.class).in(Scopes.SINGLETON);
+    bind(ClusterEventService.class).in(Scopes.SINGLETON);
     bind(TenantProvisionerCleanup.class).in(Scopes.SINGLETON);
   }
 }
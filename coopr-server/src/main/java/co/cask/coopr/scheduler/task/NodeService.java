@@ -71,10 +71,19 @@ public class NodeService {
    * @throws IOException
    */
   public void completeAction(Node node) throws IOException {
+    markActionComplete(node);
+    clusterStore.writeNode(node);
+  }
+
+  /**
+   * Complete the current action on a node without writing the node to the persistent store.
+   *
+   * @param node Node the completed action took place on.
+   */
+  void markActionComplete(Node node) {
     Node.Action action = validateAndGetAction(node);
     action.setStatus(Node.Status.COMPLETE);
     action.setStatusTime(System.currentTimeMillis());
-    clusterStore.writeNode(node);
   }
 
   /**
@@ -86,12 +95,23 @@ public class NodeService {
    * @throws IOException
    */
   public void failAction(Node node, String stdout, String stderr) throws IOException {
+    markActionFailed(node, stdout, stderr);
+    clusterStore.writeNode(node);
+  }
+
+  /**
+   * Fail the current action on a node without writing the node to the persistent store.
+   *
+   * @param node Node the action failed on.
+   * @param stdout Stdout of failed action.
+   * @param stderr Stderr of failed action.
+   */
+  void markActionFailed(Node node, String stdout, String stderr) {
     Node.Action action = validateAndGetAction(node);
     action.setStatus(Node.Status.FAILED);
     action.setStatusTime(System.currentTimeMillis());
     action.setStdout(truncateLog(stdout, maxLogLength));
     action.setStderr(truncateLog(stderr, maxLogLength));
-    clusterStore.writeNode(node);
   }
 
   private Node.Action validateAndGetAction(Node node) {
@@ -20,14 +20,17 @@ import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.queue.Element;
 import co.cask.coopr.common.queue.QueueGroup;
-import co.cask.coopr.common.queue.QueueService;
 import co.cask.coopr.common.queue.QueueMetrics;
+import co.cask.coopr.common.queue.QueueService;
 import co.cask.coopr.common.queue.QueueType;
+import co.cask.coopr.common.queue.QueuedElement;
 import co.cask.coopr.common.queue.TrackingQueue;
 import co.cask.coopr.http.request.FinishTaskRequest;
+import co.cask.coopr.http.request.FinishTaskResponse;
 import co.cask.coopr.http.request.TakeTaskRequest;
 import co.cask.coopr.management.ServerStats;
 import co.cask.coopr.provisioner.TenantProvisionerService;
+import co.cask.coopr.scheduler.DeadlineTracker;
 import co.cask.coopr.spec.Tenant;
 import co.cask.coopr.store.cluster.ClusterStore;
 import co.cask.coopr.store.cluster.ClusterStoreService;
@@ -37,14 +40,21 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -60,28 +70,31 @@ public class TaskQueueService {
   private final TenantProvisionerService tenantProvisionerService;
   private final CredentialStore credentialStore;
   private final ServerStats serverStats;
+  private final DeadlineTracker deadlineTracker;
   private final QueueGroup taskQueues;
   private final QueueGroup jobQueues;
   private final Gson gson;
   private final LoadingCache<String, QueueMetrics> queueMetricsCache;
 
   @Inject
-  private TaskQueueService(QueueService queueService,
-                           ClusterStoreService clusterStoreService,
-                           TenantProvisionerService tenantProvisionerService,
-                           TaskService taskService,
-                           NodeService nodeService,
-                           TenantStore tenantStore,
-                           CredentialStore credentialStore,
-                           Configuration conf,
-                           ServerStats serverStats,
-                           Gson gson) {
+  TaskQueueService(QueueService queueService,
+                   ClusterStoreService clusterStoreService,
+                   TenantProvisionerService tenantProvisionerService,
+                   TaskService taskService,
+                   NodeService nodeService,
+                   TenantStore tenantStore,
+                   CredentialStore credentialStore,
+                   Configuration conf,
+                   ServerStats serverStats,
+                   DeadlineTracker deadlineTracker,
+                   Gson gson) {
     this.clusterStore = clusterStoreService.getSystemView();
     this.taskService = taskService;
     this.nodeService = nodeService;
     this.tenantProvisionerService = tenantProvisionerService;
     this.credentialStore = credentialStore;
     this.serverStats = serverStats;
+    this.deadlineTracker = deadlineTracker;
     this.taskQueues = queueService.getQueueGroup(QueueType.PROVISIONER);
     this.jobQueues = queueService.getQueueGroup(QueueType.JOB);
     this.tenantStore = tenantStore;
@@ -177,6 +190,7 @@ public class TaskQueueService {
           taskConfig.getProvider().addFields(sensitiveFields);
           taskJson = gson.toJson(taskObject);
           startNodeAction(clusterTask);
+          deadlineTracker.taskTaken(tenantId, clusterTask.getTaskId(), System.currentTimeMillis());
         }
       } else {
         LOG.error("Got empty task JSON for {}, skipping it.", task.getId());
@@ -221,6 +235,7 @@ public class TaskQueueService {
       LOG.warn("Worker {} is not owner of task {}", workerId, taskId);
       throw new  IllegalStateException("Worker is not the owner of the task");
     }
+    deadlineTracker.taskFinished(queueName, taskId);
 
     // Queue update was successful, now update the task object
     ClusterTask clusterTask = clusterStore.getClusterTask(TaskId.fromString(taskId));
@@ -241,6 +256,184 @@ public class TaskQueueService {
     jobQueues.add(queueName, new Element(clusterTask.getJobId()));
   }
 
+  /**
+   * Records the status of several finished tasks from provisioners. Each task is handled like in
+   * {@link #finishClusterTask(FinishTaskRequest)}, except that a task that cannot be finished does not stop the
+   * others from finishing. Instead, the outcome for each task is returned, in the same order as the requests.
+   * All finished tasks and their nodes are written to the store together, before the tasks are removed from their
+   * queues, so that the tasks stay with their workers if the write fails and can be finished again. Ownership of the
+   * tasks is checked with one read of each queue in the batch, and each task is then removed from its queue with a
+   * single update. Each job with a finished task is scheduled for processing only once.
+   *
+   * @param finishRequests Requests to finish tasks.
+   * @return Outcome of finishing each task.
+   * @throws IOException if there was an error looking up a provisioner.
+   */
+  public List<FinishTaskResponse> finishClusterTasks(List<FinishTaskRequest> finishRequests) throws IOException {
+    List<FinishTaskResponse> responses = Lists.newArrayListWithCapacity(finishRequests.size());
+    Map<String, Boolean> registeredProvisioners = Maps.newHashMap();
+    // index of the response, request and task of each task that can be finished
+    List<Integer> finishedIndexes = Lists.newArrayList();
+    List<FinishTaskRequest> finishedRequests = Lists.newArrayList();
+    List<ClusterTask> finishedTasks = Lists.newArrayList();
+    Map<String, Node> updatedNodes = Maps.newHashMap();
+    Set<String> missingNodes = Sets.newHashSet();
+    // consumer of each task being consumed, read once for each queue in the batch
+    Map<String, Map<String, String>> queueConsumers = Maps.newHashMap();
+
+    for (FinishTaskRequest finishRequest : finishRequests) {
+      String workerId = finishRequest.getWorkerId();
+      String queueName = finishRequest.getTenantId();
+      String taskId = finishRequest.getTaskId();
+      String provisionerId = finishRequest.getProvisionerId();
+      String consumerId = provisionerId + "." + workerId;
+
+      Boolean registered = registeredProvisioners.get(provisionerId);
+      if (registered == null) {
+        registered = tenantProvisionerService.getProvisioner(provisionerId) != null;
+        registeredProvisioners.put(provisionerId, registered);
+      }
+      if (!registered) {
+        responses.add(new FinishTaskResponse(taskId, FinishTaskResponse.Status.UNREGISTERED,
+                                             "Provisioner " + provisionerId + " is not registered."));
+        continue;
+      }
+
+      TaskId id;
+      try {
+        id = TaskId.fromString(taskId);
+      } catch (RuntimeException e) {
+        responses.add(new FinishTaskResponse(taskId, FinishTaskResponse.Status.INVALID, "Invalid task id."));
+        continue;
+      }
+
+      // only checks that the worker owns the task, it is removed from the queue once it has been written
+      Map<String, String> consumers = queueConsumers.get(queueName);
+      if (consumers == null) {
+        consumers = getConsumers(queueName);
+        queueConsumers.put(queueName, consumers);
+      }
+      if (!consumerId.equals(consumers.get(taskId))) {
+        LOG.warn("Worker {} is not owner of task {}", workerId, taskId);
+        responses.add(new FinishTaskResponse(taskId, FinishTaskResponse.Status.NOT_OWNER,
+                                             "Worker is not the owner of the task"));
+        continue;
+      }
+
+      ClusterTask clusterTask;
+      try {
+        clusterTask = clusterStore.getClusterTask(id);
+      } catch (IOException e) {
+        LOG.error("Exception finishing task {}.", taskId, e);
+        responses.add(new FinishTaskResponse(taskId, FinishTaskResponse.Status.ERROR,
+                                             "Error finishing task " + taskId));
+        continue;
+      }
+      if (clusterTask == null) {
+        LOG.error("Cannot find task {} finished by worker {}", taskId, workerId);
+        responses.add(new FinishTaskResponse(taskId, FinishTaskResponse.Status.ERROR,
+                                             "Task " + taskId + " not found."));
+        continue;
+      }
+
+      int status = finishRequest.getStatus();
+      if (status == 0) {
+        LOG.debug("Successful finish of the task reported. Task {} by worker {}", taskId, workerId);
+        taskService.setFinished(clusterTask, ClusterTask.Status.COMPLETE, status);
+      } else {
+        LOG.debug("Failure to finish task reported. Task {} by worker {}", taskId, workerId);
+        taskService.setFinished(clusterTask, ClusterTask.Status.FAILED, status);
+      }
+
+      // several tasks in the batch may be for the same node, so each node is read once and written once
+      String message = null;
+      String nodeId = clusterTask.getNodeId();
+      if (nodeId != null && !missingNodes.contains(nodeId)) {
+        Node node = updatedNodes.get(nodeId);
+        try {
+          if (node == null) {
+            node = clusterStore.getNode(nodeId);
+          }
+          if (node == null) {
+            LOG.error("Cannot find node {} for task {} to update the properties", nodeId, taskId);
+            missingNodes.add(nodeId);
+          } else {
+            updateNode(node, clusterTask, finishRequest);
+            updatedNodes.put(nodeId, node);
+          }
+        } catch (IOException e) {
+          LOG.error("Exception finishing task {}.", taskId, e);
+          responses.add(new FinishTaskResponse(taskId, FinishTaskResponse.Status.ERROR,
+                                               "Error finishing task " + taskId));
+          continue;
+        } catch (IllegalStateException e) {
+          // the node has no open action for the task. Like a single finished task, the task is still finished, but
+          // the node is left as it was since its action is checked before anything on it is changed.
+          LOG.error("Unable to update action of node {} for task {}.", nodeId, taskId, e);
+          message = e.getMessage();
+        }
+      }
+
+      finishedIndexes.add(responses.size());
+      finishedRequests.add(finishRequest);
+      finishedTasks.add(clusterTask);
+      responses.add(new FinishTaskResponse(taskId, FinishTaskResponse.Status.FINISHED, message));
+    }
+
+    if (finishedTasks.isEmpty()) {
+      return responses;
+    }
+
+    try {
+      clusterStore.writeClusterTasksAndNodes(finishedTasks, updatedNodes.values());
+    } catch (IOException e) {
+      // nothing was written and the tasks are still owned by their workers, who can try to finish them again
+      LOG.error("Exception writing {} finished tasks.", finishedTasks.size(), e);
+      for (int i = 0; i < finishedTasks.size(); i++) {
+        String taskId = finishedTasks.get(i).getTaskId();
+        responses.set(finishedIndexes.get(i), new FinishTaskResponse(taskId, FinishTaskResponse.Status.ERROR,
+                                                                     "Error finishing task " + taskId));
+      }
+      return responses;
+    }
+
+    SetMultimap<String, String> finishedJobs = LinkedHashMultimap.create();
+    for (int i = 0; i < finishedTasks.size(); i++) {
+      FinishTaskRequest finishRequest = finishedRequests.get(i);
+      ClusterTask clusterTask = finishedTasks.get(i);
+      String queueName = finishRequest.getTenantId();
+      String taskId = finishRequest.getTaskId();
+      TrackingQueue.PossessionState state = taskQueues.recordProgress(
+        finishRequest.getProvisionerId() + "." + finishRequest.getWorkerId(), queueName, taskId,
+        TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY, "");
+      if (state != TrackingQueue.PossessionState.POSSESSES) {
+        // the task is finished in the store, the job will see that when it is processed
+        LOG.warn("Worker {} lost task {} after finishing it.", finishRequest.getWorkerId(), taskId);
+      }
+      deadlineTracker.taskFinished(queueName, taskId);
+      taskService.taskFinished(clusterTask);
+      finishedJobs.put(queueName, clusterTask.getJobId());
+    }
+    serverStats.setQueueLength(getTotalQueueSize());
+
+    // Schedule each job for processing once, no matter how many of its tasks finished
+    for (Map.Entry<String, String> finishedJob : finishedJobs.entries()) {
+      jobQueues.add(finishedJob.getKey(), new Element(finishedJob.getValue()));
+    }
+    return responses;
+  }
+
+  // consumer of each element being consumed in a queue, read with a single lookup of the queue
+  private Map<String, String> getConsumers(String queueName) {
+    Map<String, String> consumers = Maps.newHashMap();
+    Iterator<QueuedElement> beingConsumed = taskQueues.getBeingConsumed(queueName);
+    while (beingConsumed.hasNext()) {
+      QueuedElement queuedElement = beingConsumed.next();
+      consumers.put(queuedElement.getElement().getId(), queuedElement.getConsumerId());
+    }
+    return consumers;
+  }
+
   void startNodeAction(ClusterTask clusterTask) throws IOException {
     // Update node properties if task is associated with a nodeId.
     // There are cases when we don't associate a nodeId with a task so that the node properties don't get overridden
@@ -269,27 +462,33 @@ public class TaskQueueService {
         LOG.error("Cannot find node {} for task {} to update the properties",
                   clusterTask.getNodeId(), clusterTask.getTaskId());
       } else {
-        // Update provisioner results stored with the node and passed on to future tasks
-        node.addResults(finish.getResult());
-
-        // Update node action
-        if (clusterTask.getStatus() == ClusterTask.Status.COMPLETE) {
-          Map<String, String> ipAddresses = finish.getIpaddresses();
-          if (ipAddresses != null) {
-            node.getProperties().setIpaddresses(ipAddresses);
-          }
-          String hostname = finish.getHostname();
-          if (hostname != null && !hostname.isEmpty()) {
-            node.getProperties().setHostname(hostname);
-          }
-          nodeService.completeAction(node);
-        } else {
-          nodeService.failAction(node, finish.getStdout(), finish.getStderr());
-        }
+        updateNode(node, clusterTask, finish);
+        clusterStore.writeNode(node);
+      }
+    }
+  }
 
-        LOG.trace("Updated Node = {}", node);
+  // the action is updated first, so that the node is left unchanged if it has no action for the task
+  private void updateNode(Node node, ClusterTask clusterTask, FinishTaskRequest finish) {
+    // Update node action
+    if (clusterTask.getStatus() == ClusterTask.Status.COMPLETE) {
+      nodeService.markActionComplete(node);
+      Map<String, String> ipAddresses = finish.getIpaddresses();
+      if (ipAddresses != null) {
+        node.getProperties().setIpaddresses(ipAddresses);
+      }
+      String hostname = finish.getHostname();
+      if (hostname != null && !hostname.isEmpty()) {
+        node.getProperties().setHostname(hostname);
       }
+    } else {
+      nodeService.markActionFailed(node, finish.getStdout(), finish.getStderr());
     }
+
+    // Update provisioner results stored with the node and passed on to future tasks
+    node.addResults(finish.getResult());
+
+    LOG.trace("Updated Node = {}", node);
   }
 
   // should rethink whether this is even a useful jmx stat.
@@ -16,6 +16,8 @@
 package co.cask.coopr.scheduler.task;
 
 import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.event.ClusterEvent;
+import co.cask.coopr.cluster.event.ClusterEventService;
 import co.cask.coopr.common.queue.Element;
 import co.cask.coopr.common.queue.QueueGroup;
 import co.cask.coopr.common.queue.QueueService;
@@ -52,6 +54,7 @@ public class TaskService {
   private final IdService idService;
   private final Gson gson;
   private final QueueGroup callbackQueues;
+  private final ClusterEventService clusterEventService;
 
   @Inject
   private TaskService(ClusterStoreService clusterStoreService,
@@ -59,6 +62,7 @@ public class TaskService {
                       ServerStats serverStats,
                       QueueService queueService,
                       IdService idService,
+                      ClusterEventService clusterEventService,
                       Gson gson) {
     this.clusterStore = clusterStoreService.getSystemView();
     this.credentialStore = credentialStore;
@@ -66,6 +70,7 @@ public class TaskService {
     this.idService = idService;
     this.gson = gson;
     this.callbackQueues = queueService.getQueueGroup(QueueType.CALLBACK);
+    this.clusterEventService = clusterEventService;
   }
 
   /**
@@ -150,6 +155,8 @@ public class TaskService {
       job.setStatusMessage(message);
     }
     clusterStore.writeClusterJob(job);
+    clusterEventService.publish(ClusterEvent.of(cluster, job));
+    clusterEventService.publish(ClusterEvent.of(cluster));
 
     serverStats.getFailedClusterStats().incrementStat(job.getClusterAction());
     callbackQueues.add(cluster.getAccount().getTenantId(),
@@ -207,6 +214,7 @@ public class TaskService {
     // Note: writing job status as RUNNING, will allow other operations on the job
     // (like cancel, etc.) to happen in parallel.
     clusterStore.writeClusterJob(job);
+    clusterEventService.publish(ClusterEvent.of(cluster, job));
     callbackQueues.add(cluster.getAccount().getTenantId(),
                        new Element(gson.toJson(new CallbackData(CallbackData.Type.START, cluster, job))));
   }
@@ -231,6 +239,8 @@ public class TaskService {
       cluster.setStatus(Cluster.Status.ACTIVE);
     }
     clusterStore.writeCluster(cluster);
+    clusterEventService.publish(ClusterEvent.of(cluster, job));
+    clusterEventService.publish(ClusterEvent.of(cluster));
 
     serverStats.getSuccessfulClusterStats().incrementStat(job.getClusterAction());
     if (job.getClusterAction() == ClusterAction.CLUSTER_DELETE) {
@@ -251,6 +261,7 @@ public class TaskService {
     clusterTask.setStatus(ClusterTask.Status.IN_PROGRESS);
     clusterTask.setSubmitTime(System.currentTimeMillis());
     clusterStore.writeClusterTask(clusterTask);
+    clusterEventService.publish(ClusterEvent.of(clusterTask));
 
     // Update stats
     serverStats.getProvisionerStats().incrementStat(clusterTask.getTaskName());
@@ -269,6 +280,7 @@ public class TaskService {
     clusterTask.setStatus(ClusterTask.Status.DROPPED);
     clusterTask.setStatusTime(System.currentTimeMillis());
     clusterStore.writeClusterTask(clusterTask);
+    clusterEventService.publish(ClusterEvent.of(clusterTask));
 
     // Update stats
     serverStats.getDroppedProvisionerStats().incrementStat(clusterTask.getTaskName());
@@ -283,13 +295,9 @@ public class TaskService {
    * @throws IOException
    */
   public void failTask(ClusterTask clusterTask, int status) throws IOException {
-    clusterTask.setStatus(ClusterTask.Status.FAILED);
-    clusterTask.setStatusCode(status);
-    clusterTask.setStatusTime(System.currentTimeMillis());
+    setFinished(clusterTask, ClusterTask.Status.FAILED, status);
     clusterStore.writeClusterTask(clusterTask);
-
-    // Update stats
-    serverStats.getFailedProvisionerStats().incrementStat(clusterTask.getTaskName());
+    taskFinished(clusterTask);
   }
 
   /**
@@ -301,13 +309,39 @@ public class TaskService {
    * @throws IOException
    */
   public void completeTask(ClusterTask clusterTask, int status) throws IOException {
-    clusterTask.setStatus(ClusterTask.Status.COMPLETE);
-    clusterTask.setStatusCode(status);
-    clusterTask.setStatusTime(System.currentTimeMillis());
+    setFinished(clusterTask, ClusterTask.Status.COMPLETE, status);
     clusterStore.writeClusterTask(clusterTask);
+    taskFinished(clusterTask);
+  }
+
+  /**
+   * Set the status, status code, and status time of a finished task without writing it to the persistent store.
+   * Once the task has been written, {@link #taskFinished(ClusterTask)} should be called.
+   *
+   * @param clusterTask Task that finished.
+   * @param status Either {@link ClusterTask.Status#COMPLETE} or {@link ClusterTask.Status#FAILED}.
+   * @param statusCode Status code of the finished task.
+   */
+  void setFinished(ClusterTask clusterTask, ClusterTask.Status status, int statusCode) {
+    clusterTask.setStatus(status);
+    clusterTask.setStatusCode(statusCode);
+    clusterTask.setStatusTime(System.currentTimeMillis());
+  }
+
+  /**
+   * Publish the event and update the stats for a finished task that has been written to the persistent store.
+   *
+   * @param clusterTask Task that finished.
+   */
+  void taskFinished(ClusterTask clusterTask) {
+    clusterEventService.publish(ClusterEvent.of(clusterTask));
 
     // update stats
-    serverStats.getSuccessfulProvisionerStats().incrementStat(clusterTask.getTaskName());
+    if (clusterTask.getStatus() == ClusterTask.Status.COMPLETE) {
+      serverStats.getSuccessfulProvisionerStats().incrementStat(clusterTask.getTaskName());
+    } else {
+      serverStats.getFailedProvisionerStats().incrementStat(clusterTask.getTaskName());
+    }
   }
 
   private void wipeSensitiveFields(Cluster cluster) throws IOException {
@@ -17,6 +17,7 @@
 package co.cask.coopr.spec;
 
 import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
 
 /**
  * A tenant as seen from external world, meaning it contains the name and settings for a tenant, but no id.
@@ -26,13 +27,24 @@ public final class TenantSpecification extends NamedEntity {
   private final int workers;
   private final int maxClusters;
   private final int maxNodes;
+  private final int weight;
+  private final int maxInFlight;
 
-  public TenantSpecification(String name, String description, Integer workers, Integer maxClusters, Integer maxNodes) {
+  public TenantSpecification(String name, String description, Integer workers, Integer maxClusters, Integer maxNodes,
+                             Integer weight, Integer maxInFlight) {
     super(name);
+    Preconditions.checkArgument(weight == null || weight > 0, "weight must be positive.");
+    Preconditions.checkArgument(maxInFlight == null || maxInFlight > 0, "maxInFlight must be positive.");
     this.description = description;
     this.workers = workers == null ? 0 : workers;
     this.maxClusters = maxClusters == null ? Integer.MAX_VALUE : maxClusters;
     this.maxNodes = maxNodes == null ? Integer.MAX_VALUE : maxNodes;
+    this.weight = weight == null ? 1 : weight;
+    this.maxInFlight = maxInFlight == null ? Integer.MAX_VALUE : maxInFlight;
+  }
+
+  public TenantSpecification(String name, String description, Integer workers, Integer maxClusters, Integer maxNodes) {
+    this(name, description, workers, maxClusters, maxNodes, null, null);
   }
 
   // TODO: add builder so optional fields are easier to handle
@@ -56,6 +68,25 @@ public final class TenantSpecification extends NamedEntity {
     return maxNodes;
   }
 
+  /**
+   * Get the relative share of cluster, solver and job scheduling the tenant gets when several tenants have work queued.
+   *
+   * @return Relative scheduling share of the tenant.
+   */
+  public int getWeight() {
+    return weight;
+  }
+
+  /**
+   * Get the max number of elements from each of the tenant's cluster, solver and job queues that can be in progress at
+   * the same time.
+   *
+   * @return Max number of in progress elements per scheduler queue of the tenant.
+   */
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (!(o instanceof TenantSpecification)) {
@@ -66,12 +97,14 @@ public final class TenantSpecification extends NamedEntity {
       Objects.equal(description, other.description) &&
       Objects.equal(workers, other.workers) &&
       Objects.equal(maxClusters, other.maxClusters) &&
-      Objects.equal(maxNodes, other.maxNodes);
+      Objects.equal(maxNodes, other.maxNodes) &&
+      Objects.equal(weight, other.weight) &&
+      Objects.equal(maxInFlight, other.maxInFlight);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(name, description, workers, maxClusters, maxNodes);
+    return Objects.hashCode(name, description, workers, maxClusters, maxNodes, weight, maxInFlight);
   }
 
   @Override
@@ -82,6 +115,8 @@ public final class TenantSpecification extends NamedEntity {
       .add("workers", workers)
       .add("maxClusters", maxClusters)
       .add("maxNodes", maxNodes)
+      .add("weight", weight)
+      .add("maxInFlight", maxInFlight)
       .toString();
   }
 }
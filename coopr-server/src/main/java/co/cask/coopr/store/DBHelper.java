@@ -85,6 +85,38 @@ public final class DBHelper {
     }
   }
 
+  /**
+   * Add a column to an embedded derby table if the table does not have it yet. Returns whether or not the column was
+   * added.
+   *
+   * @param dbConnectionPool Connection pool to use to add the column.
+   * @param table Name of the table to add the column to.
+   * @param columnDefinition Definition of the column, such as "checksum VARCHAR(64)".
+   * @return Whether or not the column was added.
+   * @throws SQLException
+   */
+  public static boolean addDerbyColumnIfNotExists(DBConnectionPool dbConnectionPool,
+                                                  String table, String columnDefinition) throws SQLException {
+    Connection conn = dbConnectionPool.getConnection();
+    try {
+      Statement statement = conn.createStatement();
+      try {
+        statement.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + columnDefinition);
+        return true;
+      } catch (SQLException e) {
+        // same code as for tables, derby uses it for any object that already exists
+        if (!e.getSQLState().equals("X0Y32")) {
+          throw e;
+        }
+        return false;
+      } finally {
+        statement.close();
+      }
+    } finally {
+      conn.close();
+    }
+  }
+
   /**
    * Drop all embedded derby dbs.
    */
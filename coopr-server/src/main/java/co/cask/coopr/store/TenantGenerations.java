@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store;
+
+import co.cask.coopr.common.zookeeper.ZKClientExt;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.inject.Inject;
+import org.apache.twill.zookeeper.NodeData;
+import org.apache.twill.zookeeper.ZKClient;
+import org.apache.twill.zookeeper.ZKOperations;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.data.Stat;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tracks a generation for each tenant that changes whenever an admin entity or plugin resource of the tenant changes.
+ * Generations are kept in zookeeper, so that changes made through any server are seen by every server. Each server
+ * caches the generations of the tenants it has looked up and keeps them current with a watch, so getting a generation
+ * does not usually require a call to zookeeper. Generations are only meant to be compared for equality, for example
+ * to validate cached responses, and are unique across the life of the zookeeper node.
+ */
+public class TenantGenerations {
+  private static final String BASE_PATH = "/generations";
+
+  private final ZKClient zkClient;
+  private final ConcurrentMap<String, Stat> generations;
+
+  @Inject
+  private TenantGenerations(ZKClient zkClient) {
+    this.zkClient = zkClient;
+    this.generations = Maps.newConcurrentMap();
+  }
+
+  /**
+   * Get the current generation of the given tenant.
+   *
+   * @param tenantId Id of the tenant to get the generation of
+   * @return Current generation of the tenant
+   * @throws IOException if there was an error reading the generation
+   */
+  public String get(String tenantId) throws IOException {
+    Stat stat = generations.get(tenantId);
+    if (stat == null) {
+      stat = watch(tenantId);
+    }
+    return Long.toHexString(stat.getCzxid()) + "-" + stat.getVersion();
+  }
+
+  /**
+   * Move the given tenant to a new generation. Should be called after every change to an admin entity or plugin
+   * resource of the tenant.
+   *
+   * @param tenantId Id of the tenant that changed
+   * @throws IOException if there was an error writing the generation
+   */
+  public void increment(String tenantId) throws IOException {
+    String path = getPath(tenantId);
+    try {
+      Stat stat = Futures.getUnchecked(ZKClientExt.createOrSet(zkClient, path, null, CreateMode.PERSISTENT)).getStat();
+      if (stat == null) {
+        stat = Futures.getUnchecked(zkClient.exists(path));
+      }
+      // update the local generation right away so that reads on this server see their own changes
+      if (stat != null && generations.containsKey(tenantId)) {
+        update(tenantId, stat);
+      }
+    } catch (Exception e) {
+      throw new IOException("Exception changing generation of tenant " + tenantId, e);
+    }
+  }
+
+  private synchronized Stat watch(final String tenantId) throws IOException {
+    Stat stat = generations.get(tenantId);
+    if (stat != null) {
+      return stat;
+    }
+    String path = getPath(tenantId);
+    try {
+      Futures.getUnchecked(ZKClientExt.ensureExists(zkClient, path));
+      update(tenantId, Futures.getUnchecked(zkClient.exists(path)));
+    } catch (Exception e) {
+      throw new IOException("Exception getting generation of tenant " + tenantId, e);
+    }
+    ZKOperations.watchData(zkClient, path, new ZKOperations.DataCallback() {
+      @Override
+      public void updated(NodeData nodeData) {
+        if (nodeData != null && nodeData.getStat() != null) {
+          update(tenantId, nodeData.getStat());
+        }
+      }
+    });
+    return generations.get(tenantId);
+  }
+
+  // watches and local increments can arrive out of order, so only move forward.
+  private synchronized void update(String tenantId, Stat stat) {
+    Stat current = generations.get(tenantId);
+    if (current == null || stat.getCzxid() > current.getCzxid() ||
+      (stat.getCzxid() == current.getCzxid() && stat.getVersion() > current.getVersion())) {
+      generations.put(tenantId, stat);
+    }
+  }
+
+  private static String getPath(String tenantId) {
+    return BASE_PATH + "/" + tenantId;
+  }
+}
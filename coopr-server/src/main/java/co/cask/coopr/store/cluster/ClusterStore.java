@@ -8,6 +8,7 @@ import co.cask.coopr.scheduler.task.JobId;
 import co.cask.coopr.scheduler.task.TaskId;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -62,6 +63,14 @@ public interface ClusterStore extends ClusterStoreView {
    */
   void writeClusterTask(ClusterTask clusterTask) throws IOException;
 
+  /**
+   * Write several cluster tasks and nodes to the store together, in a single transaction.
+   * @param clusterTasks The cluster tasks to write.
+   * @param nodes The nodes to write.
+   * @throws IOException if there was a problem writing the cluster tasks or nodes, in which case none are written.
+   */
+  void writeClusterTasksAndNodes(Collection<ClusterTask> clusterTasks, Collection<Node> nodes) throws IOException;
+
   /**
    * Deletes the cluster task that has the given id.
    * @param taskId Id of the cluster task to delete.
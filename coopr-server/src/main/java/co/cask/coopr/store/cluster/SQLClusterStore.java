@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -190,6 +191,39 @@ public class SQLClusterStore implements ClusterStore {
     }
   }
 
+  @Override
+  public void writeClusterTasksAndNodes(Collection<ClusterTask> clusterTasks,
+                                        Collection<Node> nodes) throws IOException {
+    try {
+      Connection conn = dbConnectionPool.getConnection(false);
+      try {
+        for (ClusterTask clusterTask : clusterTasks) {
+          TaskId taskId = TaskId.fromString(clusterTask.getTaskId());
+          byte[] taskBytes = dbQueryExecutor.toBytes(clusterTask, ClusterTask.class);
+          DBPut taskPut = new ClusterTaskDBPut(clusterTask, taskBytes, taskId, Long.parseLong(taskId.getClusterId()));
+          taskPut.executePut(conn);
+        }
+        for (Node node : nodes) {
+          DBPut nodePut = new NodeDBPut(node, dbQueryExecutor.toBytes(node, Node.class));
+          nodePut.executePut(conn);
+        }
+        conn.commit();
+      } catch (SQLException e) {
+        LOG.error("Exception writing {} tasks and {} nodes. Rolling back...", clusterTasks.size(), nodes.size(), e);
+        try {
+          conn.rollback();
+        } catch (SQLException se) {
+          LOG.error("Exception rolling back.", se);
+        }
+        throw e;
+      } finally {
+        conn.close();
+      }
+    } catch (SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
   @Override
   public void deleteClusterTask(TaskId taskId) throws IOException {
     try {
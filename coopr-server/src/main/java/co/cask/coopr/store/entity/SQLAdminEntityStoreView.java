@@ -18,6 +18,7 @@ package co.cask.coopr.store.entity;
 import co.cask.coopr.account.Account;
 import co.cask.coopr.store.DBConnectionPool;
 import co.cask.coopr.store.DBPut;
+import co.cask.coopr.store.TenantGenerations;
 import com.google.common.base.Preconditions;
 import com.google.gson.Gson;
 
@@ -25,15 +26,19 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import javax.annotation.Nullable;
 
 /**
  * Implementation of {@link BaseSQLEntityStoreView} from the view of a tenant admin.
  */
 public class SQLAdminEntityStoreView extends BaseSQLEntityStoreView {
+  private final TenantGenerations generations;
 
-  SQLAdminEntityStoreView(Account account, DBConnectionPool dbConnectionPool, Gson gson) {
+  SQLAdminEntityStoreView(Account account, DBConnectionPool dbConnectionPool, Gson gson,
+                          @Nullable TenantGenerations generations) {
     super(account, dbConnectionPool, gson);
     Preconditions.checkArgument(account.isAdmin(), "Entity store only writable by admins");
+    this.generations = generations;
   }
 
   @Override
@@ -46,6 +51,7 @@ public class SQLAdminEntityStoreView extends BaseSQLEntityStoreView {
       } finally {
         conn.close();
       }
+      entitiesChanged();
     } catch (SQLException e) {
       throw new IOException("Exception writing entity of type " + entityType.name().toLowerCase()
                               + " with name " + entityName + accountErrorSnippet);
@@ -66,6 +72,7 @@ public class SQLAdminEntityStoreView extends BaseSQLEntityStoreView {
       } finally {
         conn.close();
       }
+      entitiesChanged();
     } catch (SQLException e) {
       throw new IOException("Exception deleting all versions of type " + entityType.name().toLowerCase()
                               + " with name " + entityName + accountErrorSnippet);
@@ -87,6 +94,7 @@ public class SQLAdminEntityStoreView extends BaseSQLEntityStoreView {
       } finally {
         conn.close();
       }
+      entitiesChanged();
     } catch (SQLException e) {
       throw new IOException("Exception deleting entity of type " + entityType.name().toLowerCase()
                               + " with name " + entityName + " and version " + entityVersion + accountErrorSnippet);
@@ -157,4 +165,10 @@ public class SQLAdminEntityStoreView extends BaseSQLEntityStoreView {
       return statement;
     }
   }
+
+  private void entitiesChanged() throws IOException {
+    if (generations != null) {
+      generations.increment(account.getTenantId());
+    }
+  }
 }
@@ -8,6 +8,7 @@ import co.cask.coopr.spec.service.Service;
 import co.cask.coopr.spec.template.ClusterTemplate;
 import co.cask.coopr.store.DBConnectionPool;
 import co.cask.coopr.store.DBHelper;
+import co.cask.coopr.store.TenantGenerations;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.gson.Gson;
 import com.google.inject.Inject;
@@ -23,6 +24,7 @@ import java.sql.Statement;
 public class SQLEntityStoreService extends AbstractIdleService implements EntityStoreService {
   private final DBConnectionPool dbConnectionPool;
   private final Gson gson;
+  private TenantGenerations generations;
 
   @Inject
   private SQLEntityStoreService(DBConnectionPool dbConnectionPool, Gson gson) {
@@ -30,6 +32,17 @@ public class SQLEntityStoreService extends AbstractIdleService implements Entity
     this.gson = gson;
   }
 
+  /**
+   * Set the tenant generations to change whenever an entity is written or deleted. Generations are kept in zookeeper,
+   * so they are not tracked when the store is used without zookeeper.
+   *
+   * @param generations Tenant generations to change when entities change
+   */
+  @Inject(optional = true)
+  void setTenantGenerations(TenantGenerations generations) {
+    this.generations = generations;
+  }
+
   // for unit tests only
   public void clearData() throws SQLException {
     Connection conn = dbConnectionPool.getConnection();
@@ -69,7 +82,7 @@ public class SQLEntityStoreService extends AbstractIdleService implements Entity
   @Override
   public EntityStoreView getView(Account account) {
     if (account.isAdmin()) {
-      return new SQLAdminEntityStoreView(account, dbConnectionPool, gson);
+      return new SQLAdminEntityStoreView(account, dbConnectionPool, gson, generations);
     } else {
       return new SQLUserEntityStoreView(account, dbConnectionPool, gson);
     }
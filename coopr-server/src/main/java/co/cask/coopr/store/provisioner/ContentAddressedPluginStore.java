@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.provisioner;
+
+import co.cask.coopr.account.Account;
+import co.cask.coopr.provisioner.plugin.ResourceType;
+
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link PluginStore} that keeps the contents of resources once, keyed by their checksum, no matter how many
+ * resources have the same contents. Copying a resource adds a reference to its contents instead of copying them.
+ * Since the store computes the checksum of everything written to it, callers can get it from the store instead of
+ * computing it again.
+ */
+public interface ContentAddressedPluginStore extends PluginStore {
+
+  /**
+   * Get the checksum of the contents of a plugin resource, as given by
+   * {@link co.cask.coopr.provisioner.plugin.ResourceChecksums}.
+   *
+   * @param account Account that owns the plugin resource
+   * @param type Type of resource
+   * @param name Name of the resource
+   * @param version Version of the resource
+   * @return Checksum of the contents of the resource, or null if there is no resource or it has no checksum
+   * @throws IOException if there was an error reading the checksum
+   */
+  @Nullable
+  String getChecksum(Account account, ResourceType type, String name, int version) throws IOException;
+
+  /**
+   * Copy a plugin resource from one account to another, overwriting the resource in the other account if it exists.
+   *
+   * @param from Account that owns the plugin resource to copy
+   * @param to Account to copy the plugin resource to
+   * @param type Type of resource to copy
+   * @param name Name of the resource to copy
+   * @param version Version of the resource to copy
+   * @throws IOException if there is no such resource to copy, or there was an error copying it
+   */
+  void copyResource(Account from, Account to, ResourceType type, String name, int version) throws IOException;
+}
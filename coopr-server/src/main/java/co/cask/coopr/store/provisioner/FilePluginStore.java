@@ -0,0 +1,43 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.store.provisioner;
+
+import co.cask.coopr.account.Account;
+import co.cask.coopr.provisioner.plugin.ResourceType;
+
+import java.io.File;
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link PluginStore} that keeps resources in files on the local file system. Resources of such a store can be sent
+ * straight from their file, instead of being copied through an input stream.
+ */
+public interface FilePluginStore extends PluginStore {
+
+  /**
+   * Get the file that holds a plugin resource.
+   *
+   * @param account Account that owns the plugin resource
+   * @param type Type of resource to get
+   * @param name Name of the resource to get
+   * @param version Version of the resource to get
+   * @return File that holds the plugin resource, or null if there is no resource
+   * @throws IOException if there was an error getting the file
+   */
+  @Nullable
+  File getResourceFile(Account account, ResourceType type, String name, int version) throws IOException;
+}
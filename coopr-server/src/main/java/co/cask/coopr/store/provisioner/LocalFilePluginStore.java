@@ -18,21 +18,50 @@ package co.cask.coopr.store.provisioner;
 import co.cask.coopr.account.Account;
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.provisioner.plugin.ResourceChecksums;
 import co.cask.coopr.provisioner.plugin.ResourceType;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.security.DigestOutputStream;
+import java.util.UUID;
+import javax.annotation.Nullable;
 
 /**
- * Plugin store that writes resources to the local file system. Modules are namespaced by the data directory given
- * in the configuration, plugin type, plugin type id, resource type, name, and version.
+ * Plugin store that writes resources to the local file system. The contents of resources are stored once, as blobs
+ * named by their checksum, no matter how many resources have the same contents. Each resource is a small reference
+ * file holding the checksum of its contents, namespaced by the data directory given in the configuration, tenant,
+ * plugin type, plugin type id, resource type, name, and version.
+ *
+ * Blobs are reference counted on disk, with an entry for each resource that refers to them, so that several servers
+ * can share the data directory over a distributed file system such as NFS. A blob is deleted once its last reference
+ * is. Resources written before blobs were introduced are plain files without a reference file, and are still read.
+ * Within a server, adding and removing references are done under a lock, so that a reference added while the last
+ * other one is being removed never finds its blob moved aside for deletion.
  */
-public class LocalFilePluginStore implements PluginStore {
+public class LocalFilePluginStore implements FilePluginStore, ContentAddressedPluginStore {
+  private static final Logger LOG  = LoggerFactory.getLogger(LocalFilePluginStore.class);
+  private static final String BLOBS_DIR = "blobs";
+  private static final String TMP_DIR = "tmp";
+  private static final String REFS_SUFFIX = ".refs";
+  private static final String REF_SUFFIX = ".ref";
+
+  private final Object referencesLock = new Object();
   private String baseDir;
+  private File blobsDir;
+  private File tmpDir;
 
   @Override
   public void initialize(Configuration conf) {
@@ -40,13 +69,17 @@ public class LocalFilePluginStore implements PluginStore {
     if (!baseDir.endsWith(File.separator)) {
       baseDir = baseDir + File.separator;
     }
+    blobsDir = new File(baseDir, BLOBS_DIR);
+    tmpDir = new File(blobsDir, TMP_DIR);
   }
 
   /**
-   * Get an output stream for the given resource. Files are namespaced by base data directory,
-   * plugin type, plugin name, resource type, resource name, and resource version. For example, version 2 of resource
-   * 'hadoop' of type 'cookbook'' for automator type 'chef-solo' with data directory '/var/coopr/data/plugins' will be
-   * written to '/var/coopr/data/plugins/automatortypes/chef-solo/cookbook/hadoop/2'.
+   * Get an output stream for the given resource. Contents are written to a temporary file, and moved to the blob for
+   * their checksum when the stream is closed, unless the blob already exists. Resources are namespaced by base data
+   * directory, plugin type, plugin name, resource type, resource name, and resource version. For example, version 2 of
+   * resource 'hadoop' of type 'cookbook'' for automator type 'chef-solo' with data directory
+   * '/var/coopr/data/plugins' will hold the checksum of its contents in
+   * '/var/coopr/data/plugins/automatortypes/chef-solo/cookbook/hadoop/2.ref'.
    *
    * @param account Account that owns the plugin resource
    * @param type Type of resource
@@ -56,40 +89,251 @@ public class LocalFilePluginStore implements PluginStore {
    * @throws IOException if there was an error creating the file
    */
   @Override
-  public OutputStream getResourceOutputStream(Account account, ResourceType type, String name, int version)
-    throws IOException {
-    File file = getFile(account, type, name, version);
-    File parent = file.getParentFile();
-    if (!parent.exists()) {
-      if (!parent.mkdirs()) {
-        throw new IOException("Unable to create directory " + parent.getAbsolutePath());
+  public OutputStream getResourceOutputStream(final Account account, final ResourceType type,
+                                              final String name, final int version) throws IOException {
+    final File tmpFile = createTmpFile();
+    final DigestOutputStream digestOutputStream = ResourceChecksums.digesting(new FileOutputStream(tmpFile));
+    return new FilterOutputStream(digestOutputStream) {
+      private boolean closed;
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
       }
-    }
-    if (!file.exists()) {
-      if (!file.createNewFile()) {
-        throw new IOException("Unable to create file " + file.getAbsolutePath());
+
+      @Override
+      public void close() throws IOException {
+        if (closed) {
+          return;
+        }
+        closed = true;
+        try {
+          super.close();
+          commit(account, type, name, version, ResourceChecksums.getChecksum(digestOutputStream), tmpFile);
+        } finally {
+          if (tmpFile.exists() && !tmpFile.delete()) {
+            LOG.warn("Unable to delete temporary file {}.", tmpFile);
+          }
+        }
       }
-    }
-    return new FileOutputStream(file);
+    };
   }
 
   @Override
   public InputStream getResourceInputStream(Account account, ResourceType type, String name, int version)
     throws IOException {
-    File file = getFile(account, type, name, version);
-    if (!file.exists()) {
+    File file = getResourceFile(account, type, name, version);
+    if (file == null) {
       return null;
     }
-    return new FileInputStream(file);
+    try {
+      return new FileInputStream(file);
+    } catch (FileNotFoundException e) {
+      // deleted since it was looked up
+      return null;
+    }
+  }
+
+  @Override
+  public File getResourceFile(Account account, ResourceType type, String name, int version) throws IOException {
+    File file = getFile(account, type, name, version);
+    String checksum = readChecksum(file);
+    if (checksum == null) {
+      return file.isFile() ? file : null;
+    }
+    File blob = getBlob(checksum);
+    return blob.isFile() ? blob : null;
+  }
+
+  @Override
+  public String getChecksum(Account account, ResourceType type, String name, int version) throws IOException {
+    return readChecksum(getFile(account, type, name, version));
+  }
+
+  @Override
+  public void copyResource(Account from, Account to, ResourceType type, String name, int version) throws IOException {
+    File fromFile = getFile(from, type, name, version);
+    String checksum = readChecksum(fromFile);
+    if (checksum == null) {
+      if (!fromFile.isFile()) {
+        throw new IOException("Resource " + fromFile + " does not exist.");
+      }
+      // move contents written before blobs were introduced into a blob, which the copy can then refer to
+      InputStream inputStream = new FileInputStream(fromFile);
+      try {
+        OutputStream outputStream = getResourceOutputStream(from, type, name, version);
+        try {
+          ByteStreams.copy(inputStream, outputStream);
+        } finally {
+          outputStream.close();
+        }
+      } finally {
+        inputStream.close();
+      }
+      checksum = readChecksum(fromFile);
+    }
+
+    String referenceKey = getReferenceKey(to, type, name, version);
+    synchronized (referencesLock) {
+      addReference(checksum, referenceKey);
+      if (!getBlob(checksum).isFile()) {
+        removeReference(checksum, referenceKey);
+        throw new IOException("Contents of resource " + fromFile + " do not exist.");
+      }
+    }
+    writeChecksum(to, type, name, version, checksum);
   }
 
   @Override
   public void deleteResource(Account account, ResourceType type, String name, int version) throws IOException {
     File file = getFile(account, type, name, version);
+    String checksum = readChecksum(file);
+    File refFile = getRefFile(file);
+    if (refFile.exists() && !refFile.delete()) {
+      throw new IOException("Unable to delete file " + refFile.getAbsolutePath());
+    }
     if (file.exists()) {
       // TODO: delete directory structure if empty
       file.delete();
     }
+    if (checksum != null) {
+      removeReference(checksum, getReferenceKey(account, type, name, version));
+    }
+  }
+
+  // the reference is added before the blob is checked for, so that a concurrent removal of its last other reference
+  // either sees this reference, or has moved the blob away by the time it is checked for.
+  private void commit(Account account, ResourceType type, String name, int version,
+                      String checksum, File tmpFile) throws IOException {
+    synchronized (referencesLock) {
+      addReference(checksum, getReferenceKey(account, type, name, version));
+      File blob = getBlob(checksum);
+      if (!blob.isFile()) {
+        mkdirs(blob.getParentFile());
+        if (!tmpFile.renameTo(blob) && !blob.isFile()) {
+          throw new IOException("Unable to move " + tmpFile + " to " + blob);
+        }
+      }
+    }
+    writeChecksum(account, type, name, version, checksum);
+  }
+
+  // point the resource to the blob with the given checksum, releasing the blob it referred to before, if any
+  private void writeChecksum(Account account, ResourceType type, String name, int version,
+                             String checksum) throws IOException {
+    File file = getFile(account, type, name, version);
+    String previousChecksum = readChecksum(file);
+    mkdirs(file.getParentFile());
+    File tmpRefFile = createTmpFile();
+    Files.write(checksum, tmpRefFile, Charsets.UTF_8);
+    File refFile = getRefFile(file);
+    if (!tmpRefFile.renameTo(refFile)) {
+      // renaming over an existing file fails on some platforms
+      if (!refFile.delete() || !tmpRefFile.renameTo(refFile)) {
+        tmpRefFile.delete();
+        throw new IOException("Unable to write file " + refFile.getAbsolutePath());
+      }
+    }
+    if (file.exists()) {
+      // contents written before blobs were introduced
+      file.delete();
+    }
+    if (previousChecksum != null && !previousChecksum.equals(checksum)) {
+      removeReference(previousChecksum, getReferenceKey(account, type, name, version));
+    }
+  }
+
+  @Nullable
+  private String readChecksum(File file) throws IOException {
+    File refFile = getRefFile(file);
+    try {
+      return Files.toString(refFile, Charsets.UTF_8).trim();
+    } catch (FileNotFoundException e) {
+      return null;
+    }
+  }
+
+  private void addReference(String checksum, String referenceKey) throws IOException {
+    File refsDir = getRefsDir(checksum);
+    File reference = new File(refsDir, referenceKey);
+    // the directory may be removed along with the last reference to the blob by another server, so try again once
+    for (int attempt = 0;; attempt++) {
+      mkdirs(refsDir);
+      try {
+        reference.createNewFile();
+        return;
+      } catch (IOException e) {
+        if (attempt > 0) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  // the blob is moved away before deleting it, and moved back if another server added a reference in the meantime
+  private void removeReference(String checksum, String referenceKey) throws IOException {
+    synchronized (referencesLock) {
+      File refsDir = getRefsDir(checksum);
+      File reference = new File(refsDir, referenceKey);
+      if (reference.exists() && !reference.delete()) {
+        throw new IOException("Unable to delete file " + reference.getAbsolutePath());
+      }
+      if (hasReferences(refsDir)) {
+        return;
+      }
+      File blob = getBlob(checksum);
+      File trash = new File(tmpDir, UUID.randomUUID().toString());
+      mkdirs(tmpDir);
+      if (!blob.renameTo(trash)) {
+        return;
+      }
+      if (hasReferences(refsDir)) {
+        if (!trash.renameTo(blob) && !blob.isFile()) {
+          throw new IOException("Unable to move " + trash + " back to " + blob);
+        }
+      } else {
+        LOG.debug("Deleting blob {} that is no longer referenced.", checksum);
+        refsDir.delete();
+      }
+      trash.delete();
+    }
+  }
+
+  private boolean hasReferences(File refsDir) {
+    String[] references = refsDir.list();
+    return references != null && references.length > 0;
+  }
+
+  private File createTmpFile() throws IOException {
+    mkdirs(tmpDir);
+    File tmpFile = new File(tmpDir, UUID.randomUUID().toString());
+    if (!tmpFile.createNewFile()) {
+      throw new IOException("Unable to create file " + tmpFile.getAbsolutePath());
+    }
+    return tmpFile;
+  }
+
+  private void mkdirs(File dir) throws IOException {
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+      throw new IOException("Unable to create directory " + dir.getAbsolutePath());
+    }
+  }
+
+  private File getBlob(String checksum) {
+    return new File(new File(blobsDir, checksum.substring(0, 2)), checksum);
+  }
+
+  private File getRefsDir(String checksum) {
+    return new File(new File(blobsDir, checksum.substring(0, 2)), checksum + REFS_SUFFIX);
+  }
+
+  private File getRefFile(File file) {
+    return new File(file.getPath() + REF_SUFFIX);
+  }
+
+  private String getReferenceKey(Account account, ResourceType type, String name, int version) throws IOException {
+    String path = getFile(account, type, name, version).getPath().substring(baseDir.length());
+    return URLEncoder.encode(path, Charsets.UTF_8.name());
   }
 
   private File getFile(Account account, ResourceType type,  String name, int version) {
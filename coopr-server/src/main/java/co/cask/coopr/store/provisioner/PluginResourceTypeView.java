@@ -75,6 +75,16 @@ public interface PluginResourceTypeView {
    */
   public ResourceMeta get(String name, int version) throws IOException;
 
+  /**
+   * Set the checksum of the contents of the given version of the given resource, once its contents are known.
+   *
+   * @param name Name of the resource to set the checksum of
+   * @param version Version of the resource to set the checksum of
+   * @param checksum Hex encoded SHA-256 checksum of the contents of the resource
+   * @throws IOException
+   */
+  public void setChecksum(String name, int version, String checksum) throws IOException;
+
   /**
    * Delete the given version of the given resource from the store.
    *
@@ -72,11 +72,15 @@ public class SQLPluginMetaStoreService extends AbstractIdleService implements Pl
           "deleted BOOLEAN, " +
           "create_time TIMESTAMP," +
           "delete_time TIMESTAMP," +
+          "checksum VARCHAR(64)," +
           "PRIMARY KEY(tenant_id, plugin_type, plugin_name, resource_type, name, version) )",
         dbConnectionPool);
       if (created) {
         DBHelper.createDerbyIndex(dbConnectionPool, "plugin_meta_index", "pluginMeta",
                                   "tenant_id", "plugin_type", "plugin_name", "resource_type", "name", "version");
+      } else {
+        // tables created before checksums were kept
+        DBHelper.addDerbyColumnIfNotExists(dbConnectionPool, "pluginMeta", "checksum VARCHAR(64)");
       }
     }
   }
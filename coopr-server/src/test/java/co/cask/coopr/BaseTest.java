@@ -29,8 +29,11 @@ import co.cask.coopr.common.queue.guice.QueueModule;
 import co.cask.coopr.common.zookeeper.IdService;
 import co.cask.coopr.common.zookeeper.guice.ZookeeperModule;
 import co.cask.coopr.http.guice.HttpModule;
+import co.cask.coopr.management.guice.ManagementModule;
 import co.cask.coopr.provisioner.MockProvisionerRequestService;
 import co.cask.coopr.provisioner.ProvisionerRequestService;
+import co.cask.coopr.provisioner.balance.SpreadWorkerBalancePolicy;
+import co.cask.coopr.provisioner.balance.WorkerBalancePolicy;
 import co.cask.coopr.provisioner.plugin.ResourceService;
 import co.cask.coopr.scheduler.callback.ClusterCallback;
 import co.cask.coopr.scheduler.callback.MockClusterCallback;
@@ -153,6 +156,7 @@ public class BaseTest {
         new TestStoreModule(),
         new QueueModule(zkClientService),
         new HttpModule(),
+        new ManagementModule(),
         new SchedulerModule(conf, MoreExecutors.sameThreadExecutor(), MoreExecutors.sameThreadExecutor()),
         new CodecModules().getModule(),
         new IOModule(),
@@ -166,6 +170,7 @@ public class BaseTest {
             bind(ClusterCallback.class).toInstance(mockClusterCallback);
             bind(ProvisionerRequestService.class).to(MockProvisionerRequestService.class).in(Scopes.SINGLETON);
             bind(MockProvisionerRequestService.class).in(Scopes.SINGLETON);
+            bind(WorkerBalancePolicy.class).to(SpreadWorkerBalancePolicy.class).in(Scopes.SINGLETON);
           }
         }
       )
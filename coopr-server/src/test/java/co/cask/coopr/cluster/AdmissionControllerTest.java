@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.cluster;
+
+import co.cask.coopr.BaseTest;
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.common.queue.Element;
+import co.cask.coopr.common.queue.QueueGroup;
+import co.cask.coopr.common.queue.QueueType;
+import co.cask.coopr.spec.Tenant;
+import co.cask.coopr.spec.TenantSpecification;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * Tests for {@link AdmissionController}.
+ */
+public class AdmissionControllerTest extends BaseTest {
+
+  @After
+  public void cleanupAdmissionTest() {
+    for (QueueType queueType : new QueueType[] { QueueType.SOLVER, QueueType.CLUSTER, QueueType.PROVISIONER }) {
+      queueService.getQueueGroup(queueType).removeAll();
+    }
+  }
+
+  @Test
+  public void testTenantLimitIsRelativeToWorkers() throws Exception {
+    tenantStore.writeTenant(new Tenant("t1", new TenantSpecification("tenant1", 2, 10, 100)));
+    tenantStore.writeTenant(new Tenant("t2", new TenantSpecification("tenant2", 0, 10, 100)));
+    AdmissionController admissionController = createController(0, 2, 0);
+    QueueGroup solverQueues = queueService.getQueueGroup(QueueType.SOLVER);
+    QueueGroup provisionerQueues = queueService.getQueueGroup(QueueType.PROVISIONER);
+
+    // tenant with 2 workers can have 4 things in flight
+    solverQueues.add("t1", new Element("cluster1", "{}"));
+    solverQueues.add("t1", new Element("cluster2", "{}"));
+    provisionerQueues.add("t1", new Element("task1", "{}"));
+    admissionController.admit("t1");
+    provisionerQueues.add("t1", new Element("task2", "{}"));
+    assertRejected(admissionController, "t1");
+
+    // tenant without workers gets the limit of a single worker
+    admissionController.admit("t2");
+    solverQueues.add("t2", new Element("cluster3", "{}"));
+    solverQueues.add("t2", new Element("cluster4", "{}"));
+    assertRejected(admissionController, "t2");
+
+    Assert.assertEquals(new AdmissionMetrics(4, 4, 1, 1), admissionController.getTenantMetrics("t1"));
+    Map<String, AdmissionMetrics> tenantMetrics = admissionController.getTenantMetrics();
+    Assert.assertEquals(new AdmissionMetrics(2, 2, 1, 1), tenantMetrics.get("tenant2"));
+  }
+
+  @Test
+  public void testServerLimitAcrossTenants() throws Exception {
+    tenantStore.writeTenant(new Tenant("t1", new TenantSpecification("tenant1", 10, 10, 100)));
+    tenantStore.writeTenant(new Tenant("t2", new TenantSpecification("tenant2", 10, 10, 100)));
+    AdmissionController admissionController = createController(3, 0, 0);
+    QueueGroup clusterQueues = queueService.getQueueGroup(QueueType.CLUSTER);
+
+    clusterQueues.add("t1", new Element("cluster1", "CLUSTER_CONFIGURE"));
+    clusterQueues.add("t1", new Element("cluster2", "CLUSTER_CONFIGURE"));
+    admissionController.admit("t2");
+    clusterQueues.add("t2", new Element("cluster3", "CLUSTER_CONFIGURE"));
+    assertRejected(admissionController, "t2");
+    assertRejected(admissionController, "t1");
+
+    Assert.assertEquals(new AdmissionMetrics(3, 3, 1, 2), admissionController.getServerMetrics());
+  }
+
+  @Test
+  public void testAdmitWaitsForWorkToDrain() throws Exception {
+    tenantStore.writeTenant(new Tenant("t1", new TenantSpecification("tenant1", 1, 10, 100)));
+    AdmissionController admissionController = createController(0, 1, 10000);
+    final QueueGroup solverQueues = queueService.getQueueGroup(QueueType.SOLVER);
+    solverQueues.add("t1", new Element("cluster1", "{}"));
+
+    Thread drainer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          return;
+        }
+        solverQueues.removeAll("t1");
+      }
+    };
+    drainer.start();
+    admissionController.admit("t1");
+    drainer.join();
+
+    Assert.assertEquals(1, admissionController.getTenantMetrics("t1").getAdmitted());
+    Assert.assertEquals(0, admissionController.getTenantMetrics("t1").getRejected());
+  }
+
+  private void assertRejected(AdmissionController admissionController, String tenantId) throws Exception {
+    try {
+      admissionController.admit(tenantId);
+      Assert.fail("operation for tenant " + tenantId + " should not have been admitted");
+    } catch (AdmissionException e) {
+      Assert.assertEquals(7, e.getRetryAfterSeconds());
+    }
+  }
+
+  private AdmissionController createController(int maxInFlight, int inFlightPerWorker, long maxWaitMs) {
+    Configuration conf = Configuration.create();
+    conf.setInt(Constants.Admission.MAX_IN_FLIGHT, maxInFlight);
+    conf.setInt(Constants.Admission.IN_FLIGHT_PER_WORKER, inFlightPerWorker);
+    conf.setLong(Constants.Admission.MAX_WAIT_MS, maxWaitMs);
+    conf.setInt(Constants.Admission.RETRY_AFTER_SECONDS, 7);
+    return new AdmissionController(tenantStore, queueService, conf);
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.cluster.event;
+
+import co.cask.coopr.BaseTest;
+import co.cask.coopr.account.Account;
+import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.scheduler.ClusterAction;
+import co.cask.coopr.scheduler.task.ClusterJob;
+import co.cask.coopr.scheduler.task.JobId;
+import com.google.common.collect.ImmutableSet;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link ClusterEventService}.
+ */
+public class ClusterEventServiceTest extends BaseTest {
+  private static ClusterEventService clusterEventService;
+
+  @BeforeClass
+  public static void setupEventTest() {
+    clusterEventService = injector.getInstance(ClusterEventService.class);
+    clusterEventService.startAndWait();
+  }
+
+  @AfterClass
+  public static void cleanupEventTest() {
+    clusterEventService.stopAndWait();
+  }
+
+  @Test(timeout = 20000)
+  public void testEventsDeliveredInOrder() throws Exception {
+    Cluster cluster = createCluster("tenant1", "user1", "1");
+    ClusterJob job = new ClusterJob(new JobId(cluster.getId(), 1), ClusterAction.CLUSTER_CREATE);
+
+    CollectingSubscriber subscriber = new CollectingSubscriber("tenant1", null);
+    subscribe(subscriber, null);
+
+    clusterEventService.publish(ClusterEvent.of(cluster));
+    job.setJobStatus(ClusterJob.Status.RUNNING);
+    clusterEventService.publish(ClusterEvent.of(cluster, job));
+    job.setJobStatus(ClusterJob.Status.COMPLETE);
+    clusterEventService.publish(ClusterEvent.of(cluster, job));
+
+    ReceivedEvent clusterEvent = subscriber.take();
+    Assert.assertEquals(ClusterEvent.Type.CLUSTER, clusterEvent.event.getType());
+    Assert.assertEquals(cluster.getId(), clusterEvent.event.getClusterId());
+    Assert.assertEquals("user1", clusterEvent.event.getOwnerId());
+    Assert.assertEquals(Cluster.Status.PENDING.name(), clusterEvent.event.getStatus());
+    ReceivedEvent runningEvent = subscriber.take();
+    Assert.assertEquals(ClusterEvent.Type.JOB, runningEvent.event.getType());
+    Assert.assertEquals(job.getJobId(), runningEvent.event.getJobId());
+    Assert.assertEquals(ClusterAction.CLUSTER_CREATE.name(), runningEvent.event.getAction());
+    Assert.assertEquals(ClusterJob.Status.RUNNING.name(), runningEvent.event.getStatus());
+    ReceivedEvent completeEvent = subscriber.take();
+    Assert.assertEquals(ClusterJob.Status.COMPLETE.name(), completeEvent.event.getStatus());
+    Assert.assertTrue(clusterEvent.sequenceId < runningEvent.sequenceId);
+    Assert.assertTrue(runningEvent.sequenceId < completeEvent.sequenceId);
+  }
+
+  @Test(timeout = 20000)
+  public void testSubscribersOnlyGetAcceptedEvents() throws Exception {
+    Cluster cluster1 = createCluster("tenant2", "user1", "1");
+    Cluster cluster2 = createCluster("tenant2", "user1", "2");
+    Cluster otherTenantCluster = createCluster("tenant3", "user1", "1");
+
+    CollectingSubscriber cluster2Subscriber = new CollectingSubscriber("tenant2", cluster2.getId());
+    subscribe(cluster2Subscriber, null);
+
+    clusterEventService.publish(ClusterEvent.of(otherTenantCluster));
+    clusterEventService.publish(ClusterEvent.of(cluster1));
+    clusterEventService.publish(ClusterEvent.of(cluster2));
+
+    ReceivedEvent received = cluster2Subscriber.take();
+    Assert.assertEquals(cluster2.getId(), received.event.getClusterId());
+    Assert.assertNull(cluster2Subscriber.events.poll(500, TimeUnit.MILLISECONDS));
+  }
+
+  @Test(timeout = 20000)
+  public void testResumeFromLastSeenEvent() throws Exception {
+    Cluster cluster = createCluster("tenant4", "user1", "1");
+    CollectingSubscriber subscriber = new CollectingSubscriber("tenant4", null);
+    subscribe(subscriber, null);
+
+    cluster.setStatus(Cluster.Status.PENDING);
+    clusterEventService.publish(ClusterEvent.of(cluster));
+    ReceivedEvent first = subscriber.take();
+    cluster.setStatus(Cluster.Status.ACTIVE);
+    clusterEventService.publish(ClusterEvent.of(cluster));
+    ReceivedEvent second = subscriber.take();
+    cluster.setStatus(Cluster.Status.TERMINATED);
+    clusterEventService.publish(ClusterEvent.of(cluster));
+    ReceivedEvent third = subscriber.take();
+
+    // a new subscriber that saw the first event should get the second and third, then new events.
+    CollectingSubscriber resumed = new CollectingSubscriber("tenant4", null);
+    subscribe(resumed, first.sequenceId);
+    Assert.assertEquals(second.sequenceId, resumed.take().sequenceId);
+    Assert.assertEquals(third.sequenceId, resumed.take().sequenceId);
+    cluster.setStatus(Cluster.Status.PENDING);
+    clusterEventService.publish(ClusterEvent.of(cluster));
+    ReceivedEvent fourth = resumed.take();
+    Assert.assertTrue(fourth.sequenceId > third.sequenceId);
+    Assert.assertEquals(Cluster.Status.PENDING.name(), fourth.event.getStatus());
+  }
+
+  @Test(timeout = 20000)
+  public void testFailingSubscriberIsClosed() throws Exception {
+    Cluster cluster = createCluster("tenant5", "user1", "1");
+    CollectingSubscriber failing = new CollectingSubscriber("tenant5", null);
+    failing.fail = true;
+    CollectingSubscriber healthy = new CollectingSubscriber("tenant5", null);
+    subscribe(failing, null);
+    subscribe(healthy, null);
+
+    clusterEventService.publish(ClusterEvent.of(cluster));
+    healthy.take();
+    Assert.assertTrue(failing.closed.await(10, TimeUnit.SECONDS));
+    clusterEventService.publish(ClusterEvent.of(cluster));
+    healthy.take();
+    Assert.assertTrue(failing.events.isEmpty());
+  }
+
+  // subscribing is asynchronous and subscriptions are handled in order on a single thread, so wait until a second
+  // subscriber that ignores all events is being handled before publishing events.
+  private void subscribe(CollectingSubscriber subscriber, Long resumeId) throws Exception {
+    clusterEventService.subscribe(subscriber, resumeId);
+    final CountDownLatch subscribed = new CountDownLatch(1);
+    clusterEventService.subscribe(new CollectingSubscriber(subscriber.tenantId, null) {
+      @Override
+      public String getTenantId() {
+        subscribed.countDown();
+        return super.getTenantId();
+      }
+
+      @Override
+      public boolean accept(ClusterEvent event) {
+        return false;
+      }
+    }, null);
+    Assert.assertTrue(subscribed.await(10, TimeUnit.SECONDS));
+  }
+
+  private static Cluster createCluster(String tenantId, String userId, String clusterId) {
+    return Cluster.builder()
+      .setID(clusterId)
+      .setAccount(new Account(userId, tenantId))
+      .setName("cluster" + clusterId)
+      .setServices(ImmutableSet.of("s1"))
+      .build();
+  }
+
+  private static class ReceivedEvent {
+    private final long sequenceId;
+    private final ClusterEvent event;
+
+    private ReceivedEvent(long sequenceId, ClusterEvent event) {
+      this.sequenceId = sequenceId;
+      this.event = event;
+    }
+  }
+
+  private static class CollectingSubscriber implements ClusterEventSubscriber {
+    private final String tenantId;
+    private final String clusterId;
+    private final BlockingQueue<ReceivedEvent> events = new LinkedBlockingQueue<ReceivedEvent>();
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private boolean fail;
+
+    private CollectingSubscriber(String tenantId, String clusterId) {
+      this.tenantId = tenantId;
+      this.clusterId = clusterId;
+    }
+
+    @Override
+    public String getTenantId() {
+      return tenantId;
+    }
+
+    @Override
+    public boolean accept(ClusterEvent event) {
+      return clusterId == null || clusterId.equals(event.getClusterId());
+    }
+
+    @Override
+    public void onEvent(long sequenceId, ClusterEvent event) throws IOException {
+      if (fail) {
+        throw new IOException("connection closed");
+      }
+      events.add(new ReceivedEvent(sequenceId, event));
+    }
+
+    @Override
+    public void onHeartbeat() throws IOException {
+    }
+
+    @Override
+    public void close() {
+      closed.countDown();
+    }
+
+    private ReceivedEvent take() throws InterruptedException {
+      return events.take();
+    }
+  }
+}
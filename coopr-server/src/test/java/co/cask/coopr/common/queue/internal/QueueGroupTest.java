@@ -3,16 +3,24 @@ package co.cask.coopr.common.queue.internal;
 import co.cask.coopr.common.queue.Element;
 import co.cask.coopr.common.queue.GroupElement;
 import co.cask.coopr.common.queue.QueueGroup;
+import co.cask.coopr.common.queue.QueueSchedulingMetrics;
+import co.cask.coopr.common.queue.QueueShares;
 import co.cask.coopr.common.queue.QueueType;
 import co.cask.coopr.common.queue.QueuedElement;
 import co.cask.coopr.common.queue.TrackingQueue;
+import com.google.common.base.Predicates;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -132,6 +140,96 @@ public abstract class QueueGroupTest {
     Assert.assertFalse(iter.hasNext());
   }
 
+  @Test
+  public void testTakeIteratorWithQueueFilter() {
+    QueueGroup queues = getQueueGroup(QueueType.PROVISIONER);
+    queues.add("tenant1", new Element("id1", "val"));
+    queues.add("tenant2", new Element("id2", "val"));
+    queues.add("tenant3", new Element("id3", "val"));
+
+    Iterator<GroupElement> iter = queues.takeIterator("consumer", Predicates.in(Sets.newHashSet("tenant2")));
+    GroupElement taken = iter.next();
+    Assert.assertEquals("tenant2", taken.getQueueName());
+    Assert.assertEquals("id2", taken.getElement().getId());
+    Assert.assertFalse(iter.hasNext());
+
+    // elements in queues that were filtered out should still be there
+    Assert.assertEquals(1, queues.size("tenant1"));
+    Assert.assertEquals(1, queues.size("tenant3"));
+  }
+
+  @Test
+  public void testTakeIteratorWithWeights() {
+    QueueGroup queues = getQueueGroup(QueueType.CLUSTER);
+    for (int i = 0; i < 20; i++) {
+      queues.add("tenant1", new Element("id1-" + i, "val"));
+      queues.add("tenant2", new Element("id2-" + i, "val"));
+    }
+    QueueShares shares = new TestQueueShares(ImmutableMap.of("tenant1", 3), ImmutableMap.<String, Integer>of());
+
+    // tenant1 should get 3 elements for every element tenant2 gets.
+    Map<String, Integer> counts = takeCounts(queues.takeIterator("consumer", Predicates.<String>alwaysTrue(), shares),
+                                             16);
+    Assert.assertEquals(12, (int) counts.get("tenant1"));
+    Assert.assertEquals(4, (int) counts.get("tenant2"));
+
+    // deficits carry over to the next iterator, so the split stays the same across iterators.
+    List<String> taken = Lists.newArrayList();
+    for (int i = 0; i < 4; i++) {
+      taken.add(queues.takeIterator("consumer", Predicates.<String>alwaysTrue(), shares).next().getQueueName());
+    }
+    Assert.assertEquals(ImmutableList.of("tenant1", "tenant1", "tenant1", "tenant2"), taken);
+
+    // once tenant1 is drained, the rest of tenant2 is taken.
+    counts = takeCounts(queues.takeIterator("consumer", Predicates.<String>alwaysTrue(), shares), 100);
+    Assert.assertEquals(5, (int) counts.get("tenant1"));
+    Assert.assertEquals(15, (int) counts.get("tenant2"));
+  }
+
+  @Test
+  public void testTakeIteratorWithMaxInFlight() {
+    QueueGroup queues = getQueueGroup(QueueType.CLUSTER);
+    for (int i = 0; i < 5; i++) {
+      queues.add("tenant1", new Element("id1-" + i, "val"));
+      queues.add("tenant2", new Element("id2-" + i, "val"));
+    }
+    QueueShares shares = new TestQueueShares(ImmutableMap.<String, Integer>of(), ImmutableMap.of("tenant1", 2));
+
+    Map<String, Integer> counts = takeCounts(queues.takeIterator("consumer", Predicates.<String>alwaysTrue(), shares),
+                                             100);
+    Assert.assertEquals(2, (int) counts.get("tenant1"));
+    Assert.assertEquals(5, (int) counts.get("tenant2"));
+
+    // finishing an element makes room for another one.
+    queues.recordProgress("consumer", "tenant1", "id1-0", TrackingQueue.ConsumingStatus.FINISHED_SUCCESSFULLY, "");
+    Iterator<GroupElement> iter = queues.takeIterator("consumer", Predicates.<String>alwaysTrue(), shares);
+    Assert.assertEquals("id1-2", iter.next().getElement().getId());
+    Assert.assertFalse(iter.hasNext());
+  }
+
+  @Test
+  public void testSchedulingMetrics() throws InterruptedException {
+    QueueGroup queues = getQueueGroup(QueueType.JOB);
+    queues.add("tenant1", new Element("id1", "val"));
+    queues.add("tenant1", new Element("id2", "val"));
+    queues.add("tenant2", new Element("id3", "val"));
+    TimeUnit.MILLISECONDS.sleep(20);
+
+    // elements taken directly from a queue are not scheduled through the group.
+    queues.take("tenant2", "consumer");
+    Assert.assertTrue(queues.getSchedulingMetrics().isEmpty());
+
+    Iterator<GroupElement> iter = queues.takeIterator("consumer");
+    while (iter.hasNext()) {
+      iter.next();
+    }
+    Map<String, QueueSchedulingMetrics> metrics = queues.getSchedulingMetrics();
+    Assert.assertEquals(ImmutableSet.of("tenant1"), metrics.keySet());
+    Assert.assertEquals(2, metrics.get("tenant1").getTaken());
+    Assert.assertTrue(metrics.get("tenant1").getAvgLatencyMs() >= 20);
+    Assert.assertTrue(metrics.get("tenant1").getMaxLatencyMs() >= metrics.get("tenant1").getAvgLatencyMs());
+  }
+
 
   @Test
   public void testOneQueueGetQueuedAndConsumed() {
@@ -320,6 +418,16 @@ public abstract class QueueGroupTest {
     }
   }
 
+  // take up to the given number of elements from the iterator, returning how many were taken from each queue.
+  private Map<String, Integer> takeCounts(Iterator<GroupElement> iter, int max) {
+    Map<String, Integer> counts = Maps.newHashMap();
+    for (int i = 0; i < max && iter.hasNext(); i++) {
+      String queueName = iter.next().getQueueName();
+      counts.put(queueName, counts.containsKey(queueName) ? counts.get(queueName) + 1 : 1);
+    }
+    return counts;
+  }
+
   private Set<String> getIds(Iterator<QueuedElement> iter) {
     Set<String> out = Sets.newHashSet();
     while (iter.hasNext()) {
@@ -327,4 +435,27 @@ public abstract class QueueGroupTest {
     }
     return out;
   }
+
+  /**
+   * Queue shares with fixed weights and in progress limits.
+   */
+  private static final class TestQueueShares implements QueueShares {
+    private final Map<String, Integer> weights;
+    private final Map<String, Integer> maxInFlight;
+
+    private TestQueueShares(Map<String, Integer> weights, Map<String, Integer> maxInFlight) {
+      this.weights = weights;
+      this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public int getWeight(String queueName) {
+      return weights.containsKey(queueName) ? weights.get(queueName) : 1;
+    }
+
+    @Override
+    public int getMaxInFlight(String queueName) {
+      return maxInFlight.containsKey(queueName) ? maxInFlight.get(queueName) : Integer.MAX_VALUE;
+    }
+  }
 }
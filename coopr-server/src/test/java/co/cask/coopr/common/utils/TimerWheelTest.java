@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.common.utils;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for {@link TimerWheel}.
+ */
+public class TimerWheelTest {
+
+  @Test
+  public void testExpiresAtDeadline() {
+    TimerWheel<String> wheel = new TimerWheel<String>(10, 8, 1000);
+    wheel.schedule("a", 1025);
+    wheel.schedule("b", 1030);
+    wheel.schedule("c", 1100);
+
+    // deadlines are rounded up to the next tick, so nothing expires early.
+    Assert.assertTrue(wheel.advance(1024).isEmpty());
+    Assert.assertTrue(wheel.advance(1029).isEmpty());
+    Assert.assertEquals(ImmutableSet.of("a", "b"), ImmutableSet.copyOf(wheel.advance(1030)));
+    Assert.assertEquals(1, wheel.size());
+    Assert.assertEquals(ImmutableSet.of("c"), ImmutableSet.copyOf(wheel.advance(1100)));
+    Assert.assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void testDeadlinesBeyondOneRotation() {
+    // wheel covers 80ms per rotation, deadlines further out must survive passing through their bucket.
+    TimerWheel<String> wheel = new TimerWheel<String>(10, 8, 0);
+    wheel.schedule("near", 50);
+    wheel.schedule("far", 50 + 80 * 3);
+
+    Assert.assertEquals(ImmutableSet.of("near"), ImmutableSet.copyOf(wheel.advance(60)));
+    for (long now = 70; now < 290; now += 10) {
+      Assert.assertTrue(wheel.advance(now).isEmpty());
+    }
+    Assert.assertEquals(ImmutableSet.of("far"), ImmutableSet.copyOf(wheel.advance(290)));
+  }
+
+  @Test
+  public void testAdvanceMoreThanRotation() {
+    TimerWheel<Integer> wheel = new TimerWheel<Integer>(10, 8, 0);
+    Set<Integer> expected = Sets.newHashSet();
+    for (int i = 1; i <= 100; i++) {
+      wheel.schedule(i, i * 10);
+      if (i <= 50) {
+        expected.add(i);
+      }
+    }
+    List<Integer> expired = wheel.advance(500);
+    Assert.assertEquals(expected.size(), expired.size());
+    Assert.assertEquals(expected, ImmutableSet.copyOf(expired));
+    Assert.assertEquals(50, wheel.size());
+  }
+
+  @Test
+  public void testRescheduleAndCancel() {
+    TimerWheel<String> wheel = new TimerWheel<String>(10, 8, 0);
+    wheel.schedule("a", 20);
+    wheel.schedule("b", 20);
+    wheel.schedule("a", 200);
+    Assert.assertTrue(wheel.cancel("b"));
+    Assert.assertFalse(wheel.cancel("b"));
+
+    Assert.assertTrue(wheel.advance(100).isEmpty());
+    Assert.assertEquals(ImmutableSet.of("a"), ImmutableSet.copyOf(wheel.advance(200)));
+  }
+
+  @Test
+  public void testPastDeadlineExpiresOnNextAdvance() {
+    TimerWheel<String> wheel = new TimerWheel<String>(10, 8, 0);
+    wheel.advance(1000);
+    wheel.schedule("late", 10);
+    Assert.assertEquals(ImmutableSet.of("late"), ImmutableSet.copyOf(wheel.advance(1010)));
+  }
+}
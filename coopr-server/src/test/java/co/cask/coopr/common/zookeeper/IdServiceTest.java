@@ -15,9 +15,13 @@
  */
 package co.cask.coopr.common.zookeeper;
 
+import co.cask.coopr.scheduler.task.JobId;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import org.apache.twill.internal.zookeeper.InMemoryZKServer;
+import org.apache.twill.zookeeper.ZKClient;
 import org.apache.twill.zookeeper.ZKClientService;
+import org.apache.twill.zookeeper.ZKClients;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -27,10 +31,16 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -91,4 +101,46 @@ public class IdServiceTest {
     Assert.assertEquals(expected, actual);
   }
 
+  @Test(timeout = 60000)
+  public void testIdBlocksAcrossServers() throws Exception {
+    // two servers leasing blocks of 7 from the same counter, in their own namespace so other tests don't interfere
+    ZKClient namespacedClient = ZKClients.namespace(zkClient, "/testIdBlocks");
+    final IdService idService1 = new IdService(namespacedClient, 5, 4, 7);
+    final IdService idService2 = new IdService(namespacedClient, 5, 4, 7);
+    idService1.startAndWait();
+    idService2.startAndWait();
+    final int idsPerThread = 50;
+    final int numThreads = 10;
+    final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    List<Future<?>> futures = Lists.newArrayList();
+
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      for (int i = 0; i < numThreads; i++) {
+        final IdService idService = i % 2 == 0 ? idService1 : idService2;
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            for (int j = 0; j < idsPerThread; j++) {
+              long id = idService.getNewTaskId(new JobId("00000001", 1)).getTaskNum();
+              Assert.assertTrue("duplicate id " + id, ids.add(id));
+            }
+          }
+        }));
+      }
+      // rethrows any assertion failure from the threads
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    Assert.assertEquals(numThreads * idsPerThread, ids.size());
+    // ids keep the start num and increment by semantics
+    for (long id : ids) {
+      Assert.assertEquals(1, id % 4);
+      Assert.assertTrue(id >= 5);
+    }
+  }
+
 }
@@ -20,6 +20,8 @@ import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.queue.Element;
 import co.cask.coopr.common.queue.QueueMetrics;
 import co.cask.coopr.http.handler.AdminHandler;
+import co.cask.coopr.management.HttpRouteStats;
+import co.cask.coopr.management.HttpStats;
 import co.cask.coopr.spec.HardwareType;
 import co.cask.coopr.spec.ImageType;
 import co.cask.coopr.spec.Provider;
@@ -30,9 +32,13 @@ import co.cask.coopr.spec.template.ClusterTemplate;
 import co.cask.coopr.spec.template.PartialTemplate;
 import co.cask.coopr.store.entity.EntityStoreView;
 import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.ObjectArrays;
+import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -43,6 +49,7 @@ import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.util.EntityUtils;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.junit.Assert;
 import org.junit.Test;
@@ -128,6 +135,75 @@ public class AdminHandlerTest extends ServiceTestBase {
                             gson.toJsonTree(Entities.PartialTemplateExample.TEST_PARTIAL1).getAsJsonObject());
   }
 
+  @Test
+  public void testLargeEntityListIsStreamedInChunks() throws Exception {
+    // enough providers to span several response chunks
+    EntityStoreView view = entityStoreService.getView(ADMIN_ACCOUNT);
+    String description = Strings.repeat("d", 1000);
+    Set<Provider> expected = Sets.newHashSet();
+    for (int i = 0; i < 300; i++) {
+      Provider provider = Provider.builder()
+        .setProviderType(Entities.JOYENT)
+        .setProvisionerFields(ImmutableMap.<String, Object>of("key", "val" + i))
+        .setName("provider" + i)
+        .setDescription(description)
+        .build();
+      view.writeProvider(provider);
+      expected.add(provider);
+    }
+
+    try {
+      HttpResponse response = doGetExternalAPI("/providers", ADMIN_HEADERS);
+      assertResponseStatus(response, HttpResponseStatus.OK);
+      Reader reader = new InputStreamReader(response.getEntity().getContent(), Charsets.UTF_8);
+      Set<Provider> actual = gson.fromJson(reader, new TypeToken<Set<Provider>>() { }.getType());
+      Assert.assertEquals(expected, actual);
+    } finally {
+      for (Provider provider : expected) {
+        view.deleteProvider(provider.getName());
+      }
+    }
+  }
+
+  @Test
+  public void testConditionalGetUsesEntityTags() throws Exception {
+    EntityStoreView view = entityStoreService.getView(ADMIN_ACCOUNT);
+    view.writeProvider(Entities.ProviderExample.JOYENT);
+    try {
+      HttpResponse response = doGetExternalAPI("/providers/joyent", ADMIN_HEADERS);
+      assertResponseStatus(response, HttpResponseStatus.OK);
+      Header etag = response.getFirstHeader(HttpHeaders.Names.ETAG);
+      Assert.assertNotNull(etag);
+      EntityUtils.consume(response.getEntity());
+
+      // unchanged entity should not be sent again
+      Header[] conditionalHeaders =
+        ObjectArrays.concat(ADMIN_HEADERS, new BasicHeader(HttpHeaders.Names.IF_NONE_MATCH, etag.getValue()));
+      response = doGetExternalAPI("/providers/joyent", conditionalHeaders);
+      assertResponseStatus(response, HttpResponseStatus.NOT_MODIFIED);
+      Assert.assertEquals(etag.getValue(), response.getFirstHeader(HttpHeaders.Names.ETAG).getValue());
+
+      // any write in the tenant changes the tag
+      view.writeProvider(Entities.ProviderExample.RACKSPACE);
+      response = doGetExternalAPI("/providers", conditionalHeaders);
+      assertResponseStatus(response, HttpResponseStatus.OK);
+      Assert.assertFalse(etag.getValue().equals(response.getFirstHeader(HttpHeaders.Names.ETAG).getValue()));
+      Reader reader = new InputStreamReader(response.getEntity().getContent(), Charsets.UTF_8);
+      Set<Provider> actual = gson.fromJson(reader, new TypeToken<Set<Provider>>() { }.getType());
+      Assert.assertEquals(ImmutableSet.of(Entities.ProviderExample.JOYENT, Entities.ProviderExample.RACKSPACE), actual);
+
+      // tags are per tenant
+      Header newEtag = response.getFirstHeader(HttpHeaders.Names.ETAG);
+      response = doGetExternalAPI("/providers", ObjectArrays.concat(
+        SUPERADMIN_HEADERS, new BasicHeader(HttpHeaders.Names.IF_NONE_MATCH, newEtag.getValue())));
+      assertResponseStatus(response, HttpResponseStatus.OK);
+      EntityUtils.consume(response.getEntity());
+    } finally {
+      view.deleteProvider(Entities.ProviderExample.JOYENT.getName());
+      view.deleteProvider(Entities.ProviderExample.RACKSPACE.getName());
+    }
+  }
+
   @Test
   public void testNonAdminUserGetsForbiddenStatus() throws Exception {
     String[] resources = { "/providers", "/hardwaretypes", "/imagetypes", "/services", "/clustertemplates" };
@@ -148,6 +224,51 @@ public class AdminHandlerTest extends ServiceTestBase {
     assertResponseStatus(doGetExternalAPI("/metrics/queues", USER1_HEADERS), HttpResponseStatus.FORBIDDEN);
   }
 
+  @Test
+  public void testForbiddenIfNonadminGetsSchedulingMetrics() throws Exception {
+    tenantStore.writeTenant(
+      new Tenant(UUID.randomUUID().toString(), new TenantSpecification(USER1_ACCOUNT.getTenantId(), 10, 10, 100)));
+    assertResponseStatus(doGetExternalAPI("/metrics/scheduling", USER1_HEADERS), HttpResponseStatus.FORBIDDEN);
+    assertResponseStatus(doGetExternalAPI("/metrics/scheduling", ADMIN_HEADERS), HttpResponseStatus.OK);
+  }
+
+  @Test
+  public void testHandlerMetricsOnlyForSuperadmin() throws Exception {
+    assertResponseStatus(doGetExternalAPI("/metrics/handlers", ADMIN_HEADERS), HttpResponseStatus.FORBIDDEN);
+    HttpResponse response = doGetExternalAPI("/metrics/handlers", SUPERADMIN_HEADERS);
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    Reader reader = new InputStreamReader(response.getEntity().getContent(), Charsets.UTF_8);
+    Map<String, HandlerWorkloadMetrics> metrics =
+      gson.fromJson(reader, new TypeToken<Map<String, HandlerWorkloadMetrics>>() { }.getType());
+    Assert.assertEquals(ImmutableSet.of("tasks", "reads", "writes"), metrics.keySet());
+    // at least the request for the metrics is in progress
+    Assert.assertTrue(metrics.get("reads").getInProgress() > 0);
+  }
+
+  @Test
+  public void testHttpMetricsByRoute() throws Exception {
+    assertResponseStatus(doGetExternalAPI("/providers/missing", ADMIN_HEADERS), HttpResponseStatus.NOT_FOUND);
+    assertResponseStatus(doGetExternalAPI("/providers/missing/2", ADMIN_HEADERS), HttpResponseStatus.NOT_FOUND);
+    assertResponseStatus(doGetExternalAPI("/no/such/path", ADMIN_HEADERS), HttpResponseStatus.NOT_FOUND);
+    assertResponseStatus(doGetExternalAPI("/metrics/http", ADMIN_HEADERS), HttpResponseStatus.FORBIDDEN);
+
+    HttpResponse response = doGetExternalAPI("/metrics/http", SUPERADMIN_HEADERS);
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    Reader reader = new InputStreamReader(response.getEntity().getContent(), Charsets.UTF_8);
+    Map<String, HttpRouteStats> metrics =
+      gson.fromJson(reader, new TypeToken<Map<String, HttpRouteStats>>() { }.getType());
+    // overloaded handler methods are told apart by their path template
+    for (String route : ImmutableSet.of("GET /v2/providers/{provider-id}",
+                                        "GET /v2/providers/{provider-id}/{version}", HttpStats.UNMATCHED_ROUTE)) {
+      HttpRouteStats stats = metrics.get(route);
+      Assert.assertNotNull(route, stats);
+      Assert.assertTrue(stats.getStatusCodes().get("404") > 0);
+      Assert.assertTrue(stats.getBytesOut() > 0);
+      Assert.assertTrue(stats.getMaxMillis() >= stats.getP50Millis());
+    }
+    Assert.assertTrue(metrics.get("GET /v2/metrics/http").getStatusCodes().get("403") > 0);
+  }
+
   @Test
   public void resolveTest() throws Exception {
     EntityStoreView view = entityStoreService.getView(ADMIN_ACCOUNT);
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ByteRange}.
+ */
+public class ByteRangeTest {
+
+  @Test
+  public void testParseRanges() {
+    ByteRange range = ByteRange.parse("bytes=0-499", 1000);
+    Assert.assertEquals(0, range.getStart());
+    Assert.assertEquals(499, range.getEnd());
+    Assert.assertEquals(500, range.getLength());
+    Assert.assertEquals("bytes 0-499/1000", range.getContentRange());
+
+    // open ended and suffix ranges
+    Assert.assertEquals("bytes 500-999/1000", ByteRange.parse("bytes=500-", 1000).getContentRange());
+    Assert.assertEquals("bytes 900-999/1000", ByteRange.parse("bytes=-100", 1000).getContentRange());
+    Assert.assertEquals("bytes 0-999/1000", ByteRange.parse("bytes=-5000", 1000).getContentRange());
+    // ranges past the end are cut at the end of the content
+    Assert.assertEquals("bytes 990-999/1000", ByteRange.parse("bytes=990-2000", 1000).getContentRange());
+  }
+
+  @Test
+  public void testWholeContentForUnsupportedRanges() {
+    Assert.assertNull(ByteRange.parse(null, 1000));
+    Assert.assertNull(ByteRange.parse("items=0-10", 1000));
+    Assert.assertNull(ByteRange.parse("bytes=0-10,20-30", 1000));
+    Assert.assertNull(ByteRange.parse("bytes=10-0", 1000));
+    Assert.assertNull(ByteRange.parse("bytes=a-b", 1000));
+  }
+
+  @Test
+  public void testUnsatisfiableRanges() {
+    for (String header : new String[] { "bytes=1000-", "bytes=2000-3000", "bytes=-0" }) {
+      try {
+        ByteRange.parse(header, 1000);
+        Assert.fail("range " + header + " should not be satisfiable");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.http;
+
+import co.cask.coopr.cluster.Cluster;
+import co.cask.coopr.cluster.event.ClusterEvent;
+import co.cask.coopr.cluster.event.ClusterEventService;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import org.apache.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+
+/**
+ * Tests for streaming cluster events.
+ */
+public class ClusterEventHandlerTest extends ServiceTestBase {
+  private static ClusterEventService clusterEventService;
+
+  @BeforeClass
+  public static void setupEventHandlerTest() {
+    clusterEventService = injector.getInstance(ClusterEventService.class);
+    clusterEventService.startAndWait();
+  }
+
+  @AfterClass
+  public static void cleanupEventHandlerTest() {
+    clusterEventService.stopAndWait();
+  }
+
+  @Test(timeout = 30000)
+  public void testStreamClusterEvents() throws Exception {
+    Cluster cluster = Cluster.builder()
+      .setID("123")
+      .setAccount(USER1_ACCOUNT)
+      .setName("cluster1")
+      .setServices(ImmutableSet.of("s1"))
+      .build();
+    clusterStoreService.getView(USER1_ACCOUNT).writeCluster(cluster);
+
+    // other users cannot see the cluster, so cannot see its events
+    assertResponseStatus(doGetExternalAPI("/events/clusters/123", USER2_HEADERS), HttpResponseStatus.NOT_FOUND);
+    assertResponseStatus(doGetExternalAPI("/events/clusters/123?lastEventId=abc", USER1_HEADERS),
+                         HttpResponseStatus.BAD_REQUEST);
+
+    // resume from the start so that the event is seen whether it is published before or after subscribing
+    HttpResponse response = doGetExternalAPI("/events/clusters/123?lastEventId=-1", USER1_HEADERS);
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    Assert.assertEquals("text/event-stream", response.getFirstHeader("Content-Type").getValue());
+    cluster.setStatus(Cluster.Status.ACTIVE);
+    clusterEventService.publish(ClusterEvent.of(cluster));
+
+    // the stream never ends, so the reader is not closed since closing it would try to consume the rest of the stream.
+    // The stream is closed when the event service stops.
+    BufferedReader reader = new BufferedReader(new InputStreamReader(response.getEntity().getContent(),
+                                                                     Charsets.UTF_8));
+    String line = reader.readLine();
+    Assert.assertTrue(line.startsWith("id: "));
+    Assert.assertEquals("event: cluster", reader.readLine());
+    line = reader.readLine();
+    Assert.assertTrue(line.startsWith("data: "));
+    ClusterEvent event = gson.fromJson(line.substring("data: ".length()), ClusterEvent.class);
+    Assert.assertEquals("123", event.getClusterId());
+    Assert.assertEquals(Cluster.Status.ACTIVE.name(), event.getStatus());
+    Assert.assertEquals("", reader.readLine());
+  }
+}
@@ -42,6 +42,8 @@ import co.cask.coopr.scheduler.task.JobId;
 import co.cask.coopr.scheduler.task.SchedulableTask;
 import co.cask.coopr.spec.HardwareType;
 import co.cask.coopr.spec.ImageType;
+import co.cask.coopr.spec.Tenant;
+import co.cask.coopr.spec.TenantSpecification;
 import co.cask.coopr.spec.service.Service;
 import co.cask.coopr.spec.template.Administration;
 import co.cask.coopr.spec.template.ClusterDefaults;
@@ -67,6 +69,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.util.EntityUtils;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
@@ -1817,6 +1820,30 @@ public class ClusterHandlerTest extends ServiceTestBase {
     return gson.fromJson(reader, JsonObject.class).get("id").getAsString();
   }
 
+  @Test
+  public void testClusterCreateRejectedWhenTenantSaturated() throws Exception {
+    // with 1 worker, the tenant can have 20 operations and tasks in flight with the default settings
+    tenantStore.writeTenant(new Tenant(TENANT_ID, new TenantSpecification(TENANT, 1, 100, 1000)));
+    for (int i = 0; i < 20; i++) {
+      solverQueues.add(TENANT_ID, new Element("cluster" + i, "{}"));
+    }
+
+    ClusterCreateRequest clusterCreateRequest = ClusterCreateRequest.builder()
+      .setName("saturated")
+      .setClusterTemplateName(smallTemplate.getName())
+      .setNumMachines(1)
+      .build();
+    HttpResponse response = doPostExternalAPI("/clusters", gson.toJson(clusterCreateRequest), USER1_HEADERS);
+    Assert.assertEquals(429, response.getStatusLine().getStatusCode());
+    Assert.assertEquals(String.valueOf(Constants.Admission.DEFAULT_RETRY_AFTER_SECONDS),
+                        response.getFirstHeader(HttpHeaders.RETRY_AFTER).getValue());
+
+    // once work drains, the request is admitted
+    solverQueues.removeAll();
+    response = doPostExternalAPI("/clusters", gson.toJson(clusterCreateRequest), USER1_HEADERS);
+    assertResponseStatus(response, HttpResponseStatus.OK);
+  }
+
   @BeforeClass
   public static void initData() throws Exception {
     Set<String> services = ImmutableSet.of("namenode", "datanode", "resourcemanager", "nodemanager",
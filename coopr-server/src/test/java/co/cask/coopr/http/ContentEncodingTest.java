@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.http;
+
+import co.cask.coopr.Entities;
+import co.cask.coopr.http.request.FinishTaskRequest;
+import co.cask.coopr.spec.Provider;
+import co.cask.coopr.store.entity.EntityStoreView;
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ObjectArrays;
+import com.google.gson.reflect.TypeToken;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests for compressing responses and decompressing requests.
+ */
+public class ContentEncodingTest extends ServiceTestBase {
+  private static final Header ACCEPT_GZIP = new BasicHeader(HttpHeaders.Names.ACCEPT_ENCODING, HttpHeaders.Values.GZIP);
+
+  @Test
+  public void testLargeResponsesAreCompressed() throws Exception {
+    EntityStoreView view = entityStoreService.getView(ADMIN_ACCOUNT);
+    Provider provider = Provider.builder()
+      .setProviderType(Entities.JOYENT)
+      .setProvisionerFields(ImmutableMap.<String, Object>of("key", "val"))
+      .setName("large-provider")
+      .setDescription(Strings.repeat("d", 4096))
+      .build();
+    view.writeProvider(provider);
+    try {
+      HttpResponse response = doGetExternalAPI("/providers", ObjectArrays.concat(ADMIN_HEADERS, ACCEPT_GZIP));
+      assertResponseStatus(response, HttpResponseStatus.OK);
+      Assert.assertEquals(HttpHeaders.Values.GZIP,
+                          response.getFirstHeader(HttpHeaders.Names.CONTENT_ENCODING).getValue());
+      Reader reader = new InputStreamReader(new GZIPInputStream(response.getEntity().getContent()), Charsets.UTF_8);
+      Set<Provider> providers = gson.fromJson(reader, new TypeToken<Set<Provider>>() { }.getType());
+      Assert.assertEquals(ImmutableSet.of(provider), providers);
+
+      // clients that do not accept compressed content get it as is
+      response = doGetExternalAPI("/providers", ADMIN_HEADERS);
+      assertResponseStatus(response, HttpResponseStatus.OK);
+      Assert.assertNull(response.getFirstHeader(HttpHeaders.Names.CONTENT_ENCODING));
+      EntityUtils.consume(response.getEntity());
+    } finally {
+      view.deleteProvider(provider.getName());
+    }
+  }
+
+  @Test
+  public void testSmallResponsesAreNotCompressed() throws Exception {
+    HttpResponse response = doGetExternalAPI("/providers", ObjectArrays.concat(ADMIN_HEADERS, ACCEPT_GZIP));
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    Assert.assertNull(response.getFirstHeader(HttpHeaders.Names.CONTENT_ENCODING));
+    Assert.assertEquals("[]", EntityUtils.toString(response.getEntity()));
+  }
+
+  @Test
+  public void testCompressedRequestBodiesAreDecompressed() throws Exception {
+    FinishTaskRequest finishRequest = new FinishTaskRequest("workerX", "nonexistant-provider", "tenantY", "taskId",
+                                                            Strings.repeat("stdout", 1000), "stderr", 0,
+                                                            null, null, null);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    OutputStream gzipOut = new GZIPOutputStream(bytes);
+    gzipOut.write(gson.toJson(finishRequest).getBytes(Charsets.UTF_8));
+    gzipOut.close();
+
+    HttpPost post = new HttpPost(getBaseUrlInternalAPI() + "/tasks/finish");
+    post.setHeader(HttpHeaders.Names.CONTENT_ENCODING, HttpHeaders.Values.GZIP);
+    post.setEntity(new ByteArrayEntity(bytes.toByteArray()));
+    HttpResponse response = new DefaultHttpClient().execute(post);
+    // a body that could not be decoded would be rejected as a bad request
+    assertResponseStatus(response, HttpResponseStatus.FORBIDDEN);
+  }
+}
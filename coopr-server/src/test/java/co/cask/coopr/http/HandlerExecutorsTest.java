@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.http;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.common.conf.guice.ConfigurationModule;
+import co.cask.http.AbstractHttpHandler;
+import co.cask.http.HttpResponder;
+import co.cask.http.NettyHttpService;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Guice;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+
+/**
+ * Tests for {@link HandlerExecutors}.
+ */
+public class HandlerExecutorsTest {
+  private CountDownLatch release;
+  private BlockingHandler handler;
+  private HandlerExecutors handlerExecutors;
+  private NettyHttpService service;
+  private ExecutorService clientExecutor;
+  private String baseUrl;
+
+  @Before
+  public void setupHandlerExecutorsTest() {
+    Configuration conf = Configuration.create();
+    conf.setInt(Constants.HandlerExecutors.READS_THREADS, 1);
+    conf.setInt(Constants.HandlerExecutors.READS_MAX_QUEUED, 1);
+    handlerExecutors = Guice.createInjector(new ConfigurationModule(conf)).getInstance(HandlerExecutors.class);
+    handlerExecutors.acquire();
+    release = new CountDownLatch(1);
+    handler = new BlockingHandler(release);
+
+    service = NettyHttpService.builder()
+      .setHost("localhost")
+      .setPort(0)
+      .setExecThreadPoolSize(0)
+      .addHttpHandlers(ImmutableList.of(handler))
+      .modifyChannelPipeline(new Function<ChannelPipeline, ChannelPipeline>() {
+        @Override
+        public ChannelPipeline apply(@Nullable ChannelPipeline input) {
+          input.addBefore("dispatcher", "executor", handlerExecutors.newExecutionHandler(
+            new Function<HttpRequest, HandlerWorkload>() {
+              @Override
+              public HandlerWorkload apply(HttpRequest request) {
+                return HttpMethod.GET.equals(request.getMethod()) ? HandlerWorkload.READS : HandlerWorkload.WRITES;
+              }
+            }));
+          return input;
+        }
+      })
+      .build();
+    service.startAndWait();
+    baseUrl = "http://localhost:" + service.getBindAddress().getPort();
+    clientExecutor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void cleanupHandlerExecutorsTest() throws InterruptedException {
+    release.countDown();
+    clientExecutor.shutdownNow();
+    service.stopAndWait();
+    handlerExecutors.release();
+  }
+
+  @Test(timeout = 20000)
+  public void testRequestsBeyondLimitAreRejected() throws Exception {
+    // first read takes the only thread, second read waits for it
+    Future<Integer> inProgress = execute(new HttpGet(baseUrl + "/block"));
+    waitForMetrics(HandlerWorkload.READS, 0, 1);
+    Future<Integer> queued = execute(new HttpGet(baseUrl + "/block"));
+    waitForMetrics(HandlerWorkload.READS, 1, 1);
+
+    Assert.assertEquals(HttpResponseStatus.SERVICE_UNAVAILABLE.getCode(),
+                        execute(new HttpGet(baseUrl + "/block")).get().intValue());
+    // writes have their own threads and are not held up by the reads
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), execute(new HttpPost(baseUrl + "/write")).get().intValue());
+
+    release.countDown();
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), inProgress.get().intValue());
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), queued.get().intValue());
+    waitForMetrics(HandlerWorkload.READS, 0, 0);
+    waitForMetrics(HandlerWorkload.WRITES, 0, 0);
+
+    HandlerWorkloadMetrics readMetrics = handlerExecutors.getMetrics().get(HandlerWorkload.READS);
+    Assert.assertEquals(2, readMetrics.getHandled());
+    Assert.assertEquals(1, readMetrics.getRejected());
+    Assert.assertTrue(readMetrics.getMeanQueueMillis() > 0);
+    Assert.assertTrue(readMetrics.getMeanHandleMillis() > 0);
+    HandlerWorkloadMetrics writeMetrics = handlerExecutors.getMetrics().get(HandlerWorkload.WRITES);
+    Assert.assertEquals(1, writeMetrics.getHandled());
+    Assert.assertEquals(0, writeMetrics.getRejected());
+    Assert.assertEquals(0, handlerExecutors.getMetrics().get(HandlerWorkload.TASKS).getHandled());
+  }
+
+  @Test(timeout = 20000)
+  public void testThreadsStopWhenLastUserReleases() throws Exception {
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), execute(new HttpPost(baseUrl + "/write")).get().intValue());
+    Thread writeThread = handler.lastWriteThread;
+
+    handlerExecutors.acquire();
+    handlerExecutors.release();
+    Assert.assertTrue(writeThread.isAlive());
+
+    handlerExecutors.release();
+    writeThread.join();
+
+    // acquiring again starts new threads
+    handlerExecutors.acquire();
+    Assert.assertEquals(HttpResponseStatus.OK.getCode(), execute(new HttpPost(baseUrl + "/write")).get().intValue());
+    Assert.assertNotSame(writeThread, handler.lastWriteThread);
+    Assert.assertTrue(handler.lastWriteThread.isAlive());
+  }
+
+  private Future<Integer> execute(final HttpUriRequest request) {
+    return clientExecutor.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        HttpResponse response = new DefaultHttpClient().execute(request);
+        EntityUtils.consume(response.getEntity());
+        return response.getStatusLine().getStatusCode();
+      }
+    });
+  }
+
+  // metrics are updated after the response is sent, so clients may see a response before the metrics change
+  private void waitForMetrics(HandlerWorkload workload, int queued, int inProgress) throws InterruptedException {
+    HandlerWorkloadMetrics metrics = handlerExecutors.getMetrics().get(workload);
+    while (metrics.getQueued() != queued || metrics.getInProgress() != inProgress) {
+      TimeUnit.MILLISECONDS.sleep(10);
+      metrics = handlerExecutors.getMetrics().get(workload);
+    }
+  }
+
+  /**
+   * Handler with a read that blocks until released.
+   */
+  public static final class BlockingHandler extends AbstractHttpHandler {
+    private final CountDownLatch release;
+    private volatile Thread lastWriteThread;
+
+    private BlockingHandler(CountDownLatch release) {
+      this.release = release;
+    }
+
+    @GET
+    @Path("/block")
+    public void block(HttpRequest request, HttpResponder responder) throws InterruptedException {
+      release.await();
+      responder.sendStatus(HttpResponseStatus.OK);
+    }
+
+    @POST
+    @Path("/write")
+    public void write(HttpRequest request, HttpResponder responder) {
+      lastWriteThread = Thread.currentThread();
+      responder.sendStatus(HttpResponseStatus.OK);
+    }
+  }
+}
@@ -26,11 +26,20 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ObjectArrays;
 import com.google.common.collect.Sets;
 import com.google.common.io.CharStreams;
 import com.google.gson.reflect.TypeToken;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.junit.Assert;
 import org.junit.Before;
@@ -38,10 +47,17 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.io.Reader;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -95,6 +111,61 @@ public class PluginHandlerTest extends ServiceTestBase {
     testPutAndGet(PluginType.PROVIDER, "joyent", "keys");
   }
 
+  @Test(timeout = 20000)
+  public void testFinishedUploadChangesTag() throws Exception {
+    final ResourceType type = new ResourceType(PluginType.AUTOMATOR, "shell", "scripts");
+    String path = getNamePath(type, "hello");
+    HttpResponse response = doGetExternalAPI(path, ADMIN_HEADERS);
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    Assert.assertTrue(bodyToMetaSet(response).isEmpty());
+
+    // start a chunked upload, and read its metadata while the upload is still going
+    PipedOutputStream uploadStream = new PipedOutputStream();
+    final HttpPost post = new HttpPost(getBaseUrlExternalAPI() + path);
+    post.setHeaders(ADMIN_HEADERS);
+    post.setEntity(new InputStreamEntity(new PipedInputStream(uploadStream), -1));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<HttpResponse> upload = executor.submit(new Callable<HttpResponse>() {
+        @Override
+        public HttpResponse call() throws Exception {
+          return new DefaultHttpClient().execute(post);
+        }
+      });
+      // large enough for the client to send it as a chunk
+      String firstPart = RandomStringUtils.randomAlphanumeric(4 * Constants.PLUGIN_RESOURCE_CHUNK_SIZE);
+      uploadStream.write(firstPart.getBytes(Charsets.UTF_8));
+      uploadStream.flush();
+
+      Set<ResourceMeta> metas = ImmutableSet.of();
+      Header etag = null;
+      while (metas.isEmpty()) {
+        TimeUnit.MILLISECONDS.sleep(10);
+        response = doGetExternalAPI(path, ADMIN_HEADERS);
+        assertResponseStatus(response, HttpResponseStatus.OK);
+        etag = response.getFirstHeader(HttpHeaders.Names.ETAG);
+        metas = bodyToMetaSet(response);
+      }
+      Assert.assertNull(metas.iterator().next().getChecksum());
+
+      uploadStream.write("contents".getBytes(Charsets.UTF_8));
+      uploadStream.close();
+      response = upload.get();
+      assertResponseStatus(response, HttpResponseStatus.OK);
+      EntityUtils.consume(response.getEntity());
+
+      // the metadata read during the upload must not be served once the checksum is known
+      response = doGetExternalAPI(path, ObjectArrays.concat(
+        ADMIN_HEADERS, new BasicHeader(HttpHeaders.Names.IF_NONE_MATCH, etag.getValue())));
+      assertResponseStatus(response, HttpResponseStatus.OK);
+      Assert.assertFalse(etag.getValue().equals(response.getFirstHeader(HttpHeaders.Names.ETAG).getValue()));
+      metas = bodyToMetaSet(response);
+      Assert.assertEquals(DigestUtils.sha256Hex(firstPart + "contents"), metas.iterator().next().getChecksum());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   @Test
   public void testActivateDeactivateAutomatorTypeModule() throws Exception {
     testVersions(PluginType.AUTOMATOR, "shell", "scripts");
@@ -232,6 +303,7 @@ public class PluginHandlerTest extends ServiceTestBase {
     ResourceMeta responseMeta = gson.fromJson(reader, ResourceMeta.class);
     Assert.assertEquals(name, responseMeta.getName());
     Assert.assertEquals(ResourceStatus.INACTIVE, responseMeta.getStatus());
+    Assert.assertEquals(DigestUtils.sha256Hex(contents), responseMeta.getChecksum());
   }
 
   private void testPutAndGet(PluginType type, String pluginName, String resourceType) throws Exception {
@@ -242,7 +314,9 @@ public class PluginHandlerTest extends ServiceTestBase {
     // get metadata
     HttpResponse response = doGetExternalAPI(getNamePath(pluginResourceType, meta.getName()), ADMIN_HEADERS);
     assertResponseStatus(response, HttpResponseStatus.OK);
-    Assert.assertEquals(ImmutableSet.of(meta), bodyToMetaSet(response));
+    Set<ResourceMeta> metas = bodyToMetaSet(response);
+    Assert.assertEquals(ImmutableSet.of(meta), metas);
+    Assert.assertEquals(DigestUtils.sha256Hex(contents), metas.iterator().next().getChecksum());
 
     // get actual contents
     String typeStr = type.name().toLowerCase() + "types";
@@ -2,8 +2,12 @@ package co.cask.coopr.http;
 
 import co.cask.coopr.Entities;
 import co.cask.coopr.account.Account;
+import co.cask.coopr.http.request.FinishTaskRequest;
+import co.cask.coopr.http.request.FinishTaskResponse;
 import co.cask.coopr.provisioner.Provisioner;
 import co.cask.coopr.provisioner.ProvisionerHeartbeat;
+import co.cask.coopr.provisioner.plugin.PluginType;
+import co.cask.coopr.provisioner.plugin.ResourceMeta;
 import co.cask.coopr.provisioner.plugin.ResourceType;
 import co.cask.coopr.spec.Tenant;
 import co.cask.coopr.spec.TenantSpecification;
@@ -11,14 +15,19 @@ import co.cask.coopr.spec.plugin.AutomatorType;
 import co.cask.coopr.spec.plugin.ProviderType;
 import co.cask.coopr.store.provisioner.SQLProvisionerStore;
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
 import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.junit.Assert;
 import org.junit.Before;
@@ -155,6 +164,78 @@ public class ProvisionerHandlerTest extends ServiceTestBase {
     Assert.assertEquals(heartbeat.getUsage(), actualProvisioner.getUsage());
   }
 
+  @Test
+  public void testHeartbeatWithFinishedTasks() throws Exception {
+    Provisioner provisioner = new Provisioner("p2", "host", 12345, 100, null, null);
+    assertResponseStatus(doPutInternalAPI("/provisioners/" + provisioner.getId(), GSON.toJson(provisioner)),
+                         HttpResponseStatus.OK);
+
+    ProvisionerHeartbeat heartbeat = new ProvisionerHeartbeat(
+      ImmutableMap.of("tenantX", 1),
+      ImmutableList.of(
+        new FinishTaskRequest("worker1", provisioner.getId(), "tenantX", "9-9-9", "", "", 0, null, null, null),
+        new FinishTaskRequest("worker1", "p3", "tenantX", "9-9-8", "", "", 0, null, null, null)));
+    HttpResponse response = doPostInternalAPI("/provisioners/" + provisioner.getId() + "/heartbeat",
+                                              GSON.toJson(heartbeat));
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    Reader reader = new InputStreamReader(response.getEntity().getContent(), Charsets.UTF_8);
+    List<FinishTaskResponse> responses =
+      gson.fromJson(reader, new TypeToken<List<FinishTaskResponse>>() { }.getType());
+    Assert.assertEquals(
+      ImmutableList.of(FinishTaskResponse.Status.NOT_OWNER, FinishTaskResponse.Status.INVALID),
+      ImmutableList.of(responses.get(0).getStatus(), responses.get(1).getStatus()));
+    Assert.assertEquals("9-9-8", responses.get(1).getTaskId());
+  }
+
+  @Test
+  public void testGetResourceFile() throws Exception {
+    String url = writeResourceFile("0123456789");
+
+    HttpResponse response = doGetInternalAPI(url);
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    Assert.assertEquals("10", response.getFirstHeader(HttpHeaders.CONTENT_LENGTH).getValue());
+    Assert.assertEquals("bytes", response.getFirstHeader(HttpHeaders.ACCEPT_RANGES).getValue());
+    Assert.assertEquals("0123456789", EntityUtils.toString(response.getEntity()));
+  }
+
+  @Test
+  public void testGetResourceFileRange() throws Exception {
+    String url = writeResourceFile("0123456789");
+
+    HttpResponse response = doGetInternalAPI(url, new Header[] { new BasicHeader(HttpHeaders.RANGE, "bytes=2-5") });
+    assertResponseStatus(response, HttpResponseStatus.PARTIAL_CONTENT);
+    Assert.assertEquals("bytes 2-5/10", response.getFirstHeader(HttpHeaders.CONTENT_RANGE).getValue());
+    Assert.assertEquals("4", response.getFirstHeader(HttpHeaders.CONTENT_LENGTH).getValue());
+    Assert.assertEquals("2345", EntityUtils.toString(response.getEntity()));
+
+    // last 3 bytes
+    response = doGetInternalAPI(url, new Header[] { new BasicHeader(HttpHeaders.RANGE, "bytes=-3") });
+    assertResponseStatus(response, HttpResponseStatus.PARTIAL_CONTENT);
+    Assert.assertEquals("bytes 7-9/10", response.getFirstHeader(HttpHeaders.CONTENT_RANGE).getValue());
+    Assert.assertEquals("3", response.getFirstHeader(HttpHeaders.CONTENT_LENGTH).getValue());
+    Assert.assertEquals("789", EntityUtils.toString(response.getEntity()));
+
+    // starts past the end of the file
+    response = doGetInternalAPI(url, new Header[] { new BasicHeader(HttpHeaders.RANGE, "bytes=10-12") });
+    assertResponseStatus(response, HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+    Assert.assertEquals("bytes */10", response.getFirstHeader(HttpHeaders.CONTENT_RANGE).getValue());
+    EntityUtils.consume(response.getEntity());
+  }
+
+  // writes a resource that the plugin store gives out as a file, and returns the url to get it from
+  private String writeResourceFile(String content) throws IOException {
+    pluginStore.setFileDir(tmpFolder.newFolder());
+    ResourceType resourceType = new ResourceType(PluginType.AUTOMATOR, "chef-solo", "cookbooks");
+    metaStoreService.getResourceTypeView(ADMIN_ACCOUNT, resourceType).add(new ResourceMeta("hadoop", 1));
+    OutputStream outputStream = pluginStore.getResourceOutputStream(ADMIN_ACCOUNT, resourceType, "hadoop", 1);
+    try {
+      outputStream.write(content.getBytes(Charsets.UTF_8));
+    } finally {
+      outputStream.close();
+    }
+    return "/tenants/" + ADMIN_ACCOUNT.getTenantId() + "/automatortypes/chef-solo/cookbooks/hadoop/versions/1";
+  }
+
   @Test
   public void testProviderTypes() throws Exception {
     testNonPostRestAPIs("providertypes", gson.toJsonTree(Entities.ProviderTypeExample.JOYENT).getAsJsonObject(),
@@ -0,0 +1,249 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.http;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.common.conf.guice.ConfigurationModule;
+import co.cask.coopr.spec.Tenant;
+import co.cask.coopr.spec.TenantSpecification;
+import co.cask.coopr.store.tenant.TenantStore;
+import co.cask.http.AbstractHttpHandler;
+import co.cask.http.HttpResponder;
+import co.cask.http.NettyHttpService;
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.inject.Guice;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+/**
+ * Tests for {@link RequestRateLimiter}.
+ */
+public class RequestRateLimiterTest {
+  // names looked up in the tenant store, and the threads they were looked up on
+  private final List<String> lookups = Collections.synchronizedList(Lists.<String>newArrayList());
+  private final List<String> lookupThreads = Collections.synchronizedList(Lists.<String>newArrayList());
+
+  @Test
+  public void testUserAndTenantLimits() {
+    FakeTicker ticker = new FakeTicker();
+    // users get 1 request per second with bursts of 2, tenants get twice that
+    RequestRateLimiter rateLimiter = new RequestRateLimiter(createConf(2, 1, 2), createTenantStore(), ticker);
+
+    Assert.assertEquals(0, rateLimiter.tryAcquire(HandlerWorkload.READS, "tenant1", "user1"));
+    Assert.assertEquals(0, rateLimiter.tryAcquire(HandlerWorkload.READS, "tenant1", "user1"));
+    Assert.assertEquals(TimeUnit.SECONDS.toNanos(1), rateLimiter.tryAcquire(HandlerWorkload.READS, "tenant1", "user1"));
+    Assert.assertEquals(0, rateLimiter.tryAcquire(HandlerWorkload.READS, "tenant1", "user2"));
+    Assert.assertEquals(0, rateLimiter.tryAcquire(HandlerWorkload.READS, "tenant1", "user2"));
+    // tenant is out of tokens even though user3 is not
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(500),
+                        rateLimiter.tryAcquire(HandlerWorkload.READS, "tenant1", "user3"));
+    // other tenants, other workloads and tasks have their own limits
+    Assert.assertEquals(0, rateLimiter.tryAcquire(HandlerWorkload.READS, "tenant2", "user1"));
+    Assert.assertEquals(0, rateLimiter.tryAcquire(HandlerWorkload.WRITES, "tenant1", "user1"));
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(0, rateLimiter.tryAcquire(HandlerWorkload.TASKS, "tenant1", "user1"));
+    }
+
+    // buckets fill up over time
+    ticker.advance(500, TimeUnit.MILLISECONDS);
+    Assert.assertEquals(0, rateLimiter.tryAcquire(HandlerWorkload.READS, "tenant1", "user3"));
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(500),
+                        rateLimiter.tryAcquire(HandlerWorkload.READS, "tenant1", "user1"));
+  }
+
+  @Test
+  public void testZeroRateIsUnlimited() {
+    RequestRateLimiter rateLimiter = new RequestRateLimiter(createConf(0, 0, 1), createTenantStore(), new FakeTicker());
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals(0, rateLimiter.tryAcquire(HandlerWorkload.READS, "tenant1", "user1"));
+    }
+  }
+
+  @Test
+  public void testGiveBackIsCappedAtCapacity() {
+    RequestRateLimiter.TokenBucket bucket = new RequestRateLimiter.TokenBucket();
+    // capacity of 2 tokens, one is taken and then given back after the bucket has refilled
+    Assert.assertEquals(0, bucket.tryTake(1, 2, 0));
+    Assert.assertEquals(0, bucket.tryTake(1, 2, TimeUnit.SECONDS.toNanos(1)));
+    bucket.giveBack();
+    bucket.giveBack();
+    Assert.assertEquals(0, bucket.tryTake(1, 2, TimeUnit.SECONDS.toNanos(1)));
+    Assert.assertEquals(0, bucket.tryTake(1, 2, TimeUnit.SECONDS.toNanos(1)));
+    Assert.assertEquals(TimeUnit.SECONDS.toNanos(1), bucket.tryTake(1, 2, TimeUnit.SECONDS.toNanos(1)));
+  }
+
+  @Test
+  public void testUnknownTenantsDoNotEvictKnownTenants() throws Exception {
+    Configuration conf = createConf(0, 0, 1);
+    conf.setInt(Constants.RateLimit.MAX_BUCKETS, 2);
+    RequestRateLimiter rateLimiter = new RequestRateLimiter(conf, createTenantStore(), new FakeTicker());
+    Assert.assertEquals(Optional.of("tenant1"), rateLimiter.getTenantId("tenant1"));
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(Optional.<String>absent(), rateLimiter.getTenantId("unknown" + i));
+    }
+    // both the known tenant and the unknown ones are still cached
+    Assert.assertEquals(Optional.of("tenant1"), rateLimiter.getTenantId("tenant1"));
+    Assert.assertEquals(Optional.<String>absent(), rateLimiter.getTenantId("unknown0"));
+    Assert.assertEquals(11, lookups.size());
+  }
+
+  @Test(timeout = 20000)
+  public void testRequestsBeyondLimitAreRejected() throws Exception {
+    final RequestRateLimiter rateLimiter = new RequestRateLimiter(createConf(0, 1, 1), createTenantStore(),
+                                                                       new FakeTicker());
+    final HandlerExecutors handlerExecutors =
+      Guice.createInjector(new ConfigurationModule(Configuration.create())).getInstance(HandlerExecutors.class);
+    handlerExecutors.acquire();
+    final Function<HttpRequest, HandlerWorkload> classifier = new Function<HttpRequest, HandlerWorkload>() {
+      @Override
+      public HandlerWorkload apply(HttpRequest request) {
+        return HandlerWorkload.READS;
+      }
+    };
+    // set up like in the servers, with the limiter behind the executors
+    NettyHttpService service = NettyHttpService.builder()
+      .setHost("localhost")
+      .setPort(0)
+      .setExecThreadPoolSize(0)
+      .addHttpHandlers(ImmutableList.of(new PingHandler()))
+      .modifyChannelPipeline(new Function<ChannelPipeline, ChannelPipeline>() {
+        @Override
+        public ChannelPipeline apply(@Nullable ChannelPipeline input) {
+          input.addBefore("dispatcher", "executor", handlerExecutors.newExecutionHandler(classifier));
+          input.addBefore("dispatcher", "rate-limiter", rateLimiter.newRateLimitHandler(classifier));
+          return input;
+        }
+      })
+      .build();
+    service.startAndWait();
+    try {
+      String url = "http://localhost:" + service.getBindAddress().getPort() + "/ping";
+      DefaultHttpClient client = new DefaultHttpClient();
+      Assert.assertEquals(HttpResponseStatus.OK.getCode(), get(client, url, "user1").getStatusLine().getStatusCode());
+      HttpResponse response = get(client, url, "user1");
+      Assert.assertEquals(429, response.getStatusLine().getStatusCode());
+      Assert.assertEquals("1", response.getFirstHeader(HttpHeaders.Names.RETRY_AFTER).getValue());
+      // connection is kept open, and requests without user are not limited
+      Assert.assertEquals(HttpResponseStatus.OK.getCode(), get(client, url, null).getStatusLine().getStatusCode());
+      // unknown tenants are rejected without taking a token
+      Assert.assertEquals(HttpResponseStatus.NOT_FOUND.getCode(),
+                          get(client, url, "unknown", "user2").getStatusLine().getStatusCode());
+      Assert.assertEquals(HttpResponseStatus.OK.getCode(),
+                          get(client, url, "tenant1", "user2").getStatusLine().getStatusCode());
+      // tenants are looked up on handler threads, never on I/O threads
+      Assert.assertEquals(ImmutableList.of("tenant1", "unknown"), lookups);
+      for (String lookupThread : lookupThreads) {
+        Assert.assertTrue(lookupThread, lookupThread.startsWith("handler-reads-"));
+      }
+    } finally {
+      service.stopAndWait();
+      handlerExecutors.release();
+    }
+  }
+
+  private HttpResponse get(DefaultHttpClient client, String url, String userId) throws Exception {
+    return get(client, url, userId == null ? null : "tenant1", userId);
+  }
+
+  private HttpResponse get(DefaultHttpClient client, String url, String tenantName, String userId) throws Exception {
+    HttpGet get = new HttpGet(url);
+    if (userId != null) {
+      get.addHeader(Constants.TENANT_HEADER, tenantName);
+      get.addHeader(Constants.USER_HEADER, userId);
+    }
+    HttpResponse response = client.execute(get);
+    EntityUtils.consume(response.getEntity());
+    return response;
+  }
+
+  private Configuration createConf(float tenantRate, float userRate, float burstSeconds) {
+    Configuration conf = Configuration.create();
+    conf.setFloat(Constants.RateLimit.READS_TENANT_RATE, tenantRate);
+    conf.setFloat(Constants.RateLimit.READS_USER_RATE, userRate);
+    conf.setFloat(Constants.RateLimit.BURST_SECONDS, burstSeconds);
+    return conf;
+  }
+
+  // store that only knows of tenant1 and tenant2, whose ids are their names
+  private TenantStore createTenantStore() {
+    return (TenantStore) Proxy.newProxyInstance(
+      TenantStore.class.getClassLoader(), new Class<?>[] { TenantStore.class }, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        Preconditions.checkArgument(method.getName().equals("getTenantByName"), "Unexpected call to %s", method);
+        String name = (String) args[0];
+        lookups.add(name);
+        lookupThreads.add(Thread.currentThread().getName());
+        if (!name.equals("tenant1") && !name.equals("tenant2")) {
+          return null;
+        }
+        return new Tenant(name, new TenantSpecification(name, 10, 10, 100));
+      }
+    });
+  }
+
+  /**
+   * Ticker that only moves when told to.
+   */
+  private static final class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+    private void advance(long time, TimeUnit unit) {
+      nanos += unit.toNanos(time);
+    }
+  }
+
+  /**
+   * Handler that answers every request.
+   */
+  public static final class PingHandler extends AbstractHttpHandler {
+
+    @GET
+    @Path("/ping")
+    public void ping(HttpRequest request, HttpResponder responder) {
+      responder.sendStatus(HttpResponseStatus.OK);
+    }
+  }
+}
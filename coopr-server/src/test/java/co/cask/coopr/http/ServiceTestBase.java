@@ -157,6 +157,10 @@ public class ServiceTestBase extends BaseTest {
     return doGet(resource, null, internalBase);
   }
 
+  public static HttpResponse doGetInternalAPI(String resource, Header[] headers) throws Exception {
+    return doGet(resource, headers, internalBase);
+  }
+
   public static HttpResponse doGetExternalAPI(String resource, Header[] headers) throws Exception {
     return doGet(resource, headers, externalBase);
   }
@@ -241,6 +245,10 @@ public class ServiceTestBase extends BaseTest {
     return getBaseUrl(internalPort);
   }
 
+  public static String getBaseUrlExternalAPI() {
+    return getBaseUrl(externalPort);
+  }
+
   private static String getBaseUrl(int port) {
     return String.format("http://%s:%d%s", HOSTNAME, port, Constants.API_BASE);
   }
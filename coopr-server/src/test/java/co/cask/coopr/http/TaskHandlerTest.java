@@ -21,7 +21,10 @@ import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.cluster.Node;
 import co.cask.coopr.cluster.NodeProperties;
 import co.cask.coopr.common.queue.Element;
+import co.cask.coopr.common.queue.QueueGroup;
+import co.cask.coopr.common.queue.QueueType;
 import co.cask.coopr.http.request.FinishTaskRequest;
+import co.cask.coopr.http.request.FinishTaskResponse;
 import co.cask.coopr.http.request.TakeTaskRequest;
 import co.cask.coopr.scheduler.ClusterAction;
 import co.cask.coopr.scheduler.task.ClusterJob;
@@ -36,9 +39,12 @@ import co.cask.coopr.spec.service.Service;
 import co.cask.coopr.spec.service.ServiceAction;
 import co.cask.coopr.spec.template.ClusterTemplate;
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
 import org.apache.http.HttpResponse;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.junit.After;
@@ -48,6 +54,7 @@ import org.junit.Test;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.List;
 
 /**
  *
@@ -204,6 +211,85 @@ public class TaskHandlerTest extends ServiceTestBase {
     Assert.assertNull(element);
   }
 
+  @Test
+  public void testFinishTasks() throws Exception {
+    String tenantId = USER1_ACCOUNT.getTenantId();
+    QueueGroup jobQueues = queueService.getQueueGroup(QueueType.JOB);
+    jobQueues.removeAll(tenantId);
+    ClusterJob clusterJob = new ClusterJob(JobId.fromString("1-1"), ClusterAction.CLUSTER_CREATE);
+    clusterStore.writeClusterJob(clusterJob);
+    ClusterTask task1 = addTask("1-1-1", "node_id3");
+    ClusterTask task2 = addTask("1-1-2", "node_id4");
+    ClusterTask task3 = addTask("1-1-3", "node_id5");
+    TakeTaskRequest takeRequest = new TakeTaskRequest("worker1", PROVISIONER_ID, tenantId);
+    for (int i = 0; i < 3; i++) {
+      TestHelper.takeTask(getBaseUrlInternalAPI(), takeRequest);
+    }
+
+    JsonObject provisionerResult = new JsonObject();
+    provisionerResult.addProperty("ip", "127.0.0.1");
+    List<FinishTaskRequest> finishRequests = ImmutableList.of(
+      new FinishTaskRequest("worker1", PROVISIONER_ID, tenantId, task1.getTaskId(),
+                            "", "", 0, null, null, provisionerResult),
+      new FinishTaskRequest("worker1", PROVISIONER_ID, tenantId, task2.getTaskId(),
+                            "some stdout", "some stderr", 1, null, null, null),
+      new FinishTaskRequest("worker2", PROVISIONER_ID, tenantId, task3.getTaskId(),
+                            "", "", 0, null, null, null),
+      new FinishTaskRequest("worker1", "nonexistant-provider", tenantId, task3.getTaskId(),
+                            "", "", 0, null, null, null));
+    HttpResponse response = doPostInternalAPI("/tasks/finish/batch", gson.toJson(finishRequests));
+    assertResponseStatus(response, HttpResponseStatus.OK);
+    Reader reader = new InputStreamReader(response.getEntity().getContent(), Charsets.UTF_8);
+    List<FinishTaskResponse> responses = gson.fromJson(reader, new TypeToken<List<FinishTaskResponse>>() { }.getType());
+    Assert.assertEquals(4, responses.size());
+    Assert.assertEquals(FinishTaskResponse.Status.FINISHED, responses.get(0).getStatus());
+    Assert.assertEquals(FinishTaskResponse.Status.FINISHED, responses.get(1).getStatus());
+    Assert.assertEquals(FinishTaskResponse.Status.NOT_OWNER, responses.get(2).getStatus());
+    Assert.assertEquals(FinishTaskResponse.Status.UNREGISTERED, responses.get(3).getStatus());
+    Assert.assertEquals(task3.getTaskId(), responses.get(3).getTaskId());
+
+    Assert.assertEquals(ClusterTask.Status.COMPLETE,
+                        clusterStore.getClusterTask(TaskId.fromString(task1.getTaskId())).getStatus());
+    Assert.assertEquals(ClusterTask.Status.FAILED,
+                        clusterStore.getClusterTask(TaskId.fromString(task2.getTaskId())).getStatus());
+    Assert.assertEquals(task3.getStatus(),
+                        clusterStore.getClusterTask(TaskId.fromString(task3.getTaskId())).getStatus());
+
+    Node node1 = clusterStore.getNode(task1.getNodeId());
+    Assert.assertEquals(Node.Status.COMPLETE, node1.getActions().get(node1.getActions().size() - 1).getStatus());
+    Assert.assertEquals(provisionerResult, node1.getProvisionerResults());
+    Node node2 = clusterStore.getNode(task2.getNodeId());
+    Node.Action failedAction = node2.getActions().get(node2.getActions().size() - 1);
+    Assert.assertEquals(Node.Status.FAILED, failedAction.getStatus());
+    Assert.assertEquals("some stderr", failedAction.getStderr());
+
+    // both finished tasks are for the same job, which should only be scheduled once
+    Assert.assertEquals(1, Iterators.size(jobQueues.getQueued(tenantId)));
+    jobQueues.removeAll(tenantId);
+  }
+
+  private ClusterTask addTask(String taskId, String nodeId) throws Exception {
+    Node node = new Node(nodeId, "1", ImmutableSet.<Service>of(),
+                         NodeProperties.builder().setHostname("host").build());
+    clusterStore.writeNode(node);
+    ClusterTask clusterTask = new ClusterTask(
+      ProvisionerAction.CREATE, TaskId.fromString(taskId), node.getId(), "service", ClusterAction.CLUSTER_CREATE,
+      "test", USER1_ACCOUNT);
+    clusterStore.writeClusterTask(clusterTask);
+    TaskConfig taskConfig = new TaskConfig(
+      node.getProperties(),
+      Entities.ProviderExample.JOYENT,
+      ImmutableMap.<String, NodeProperties>of(node.getId(), node.getProperties()),
+      new TaskServiceAction("svcA", new ServiceAction("shell", ImmutableMap.<String, String>of())),
+      new JsonObject(),
+      new JsonObject()
+    );
+    SchedulableTask schedulableTask = new SchedulableTask(clusterTask, taskConfig);
+    provisionerQueues.add(USER1_ACCOUNT.getTenantId(),
+                          new Element(clusterTask.getTaskId(), gson.toJson(schedulableTask)));
+    return clusterTask;
+  }
+
   private JsonObject getResponseJson(HttpResponse response) throws IOException {
     Reader reader = new InputStreamReader(response.getEntity().getContent(), Charsets.UTF_8);
     return gson.fromJson(reader, JsonObject.class);
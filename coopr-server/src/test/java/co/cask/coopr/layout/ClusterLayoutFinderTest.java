@@ -25,17 +25,41 @@ import co.cask.coopr.spec.template.SizeConstraint;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.junit.AfterClass;
 import org.junit.Assert;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
  */
 public class ClusterLayoutFinderTest extends BaseSolverTest {
+  private static ExecutorService executor;
+
+  @BeforeClass
+  public static void setupExecutor() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterClass
+  public static void teardownExecutor() {
+    executor.shutdownNow();
+  }
+
   @Test
   public void testIsValidCluster() {
     List<NodeLayout> nodeLayouts = ImmutableList.of(
@@ -124,6 +148,165 @@ public class ClusterLayoutFinderTest extends BaseSolverTest {
     Assert.assertNull(finder.findValidNodeCounts());
   }
 
+  @Test
+  public void testMatchesExhaustiveSearch() {
+    // compare against validating every combination in order of preference, on random templates small enough for that.
+    Random random = new Random(0);
+    List<String> allServices = ImmutableList.of("svc1", "svc2", "svc3", "svc4", "svc5");
+    for (int trial = 0; trial < 500; trial++) {
+      Map<String, ServiceConstraint> constraints = Maps.newHashMap();
+      for (String service : allServices) {
+        if (random.nextInt(3) > 0) {
+          int min = random.nextInt(3);
+          Integer max = random.nextInt(4) == 0 ? null : min + random.nextInt(4);
+          constraints.put(service, new ServiceConstraint(null, null, min, max));
+        }
+      }
+      List<NodeLayout> nodePreferences = Lists.newArrayList();
+      int numLayouts = 1 + random.nextInt(5);
+      for (int i = 0; i < numLayouts; i++) {
+        Set<String> layoutServices = Sets.newHashSet();
+        for (String service : allServices) {
+          if (random.nextInt(3) == 0) {
+            layoutServices.add(service);
+          }
+        }
+        if (layoutServices.isEmpty()) {
+          layoutServices.add(allServices.get(random.nextInt(allServices.size())));
+        }
+        nodePreferences.add(new NodeLayout("small", "centos6", layoutServices));
+      }
+      int numMachines = 1 + random.nextInt(8);
+      ClusterTemplate template = createTemplate(ImmutableSet.copyOf(allServices), constraints);
+
+      int[] expected = null;
+      ClusterLayoutFinder validator =
+        new ClusterLayoutFinder(nodePreferences, template, template.getClusterDefaults().getServices(), numMachines);
+      Iterator<int[]> iter = new SlottedCombinationIterator(numLayouts, numMachines);
+      while (iter.hasNext()) {
+        int[] candidate = iter.next();
+        if (validator.isValidCluster(candidate)) {
+          expected = candidate;
+          break;
+        }
+      }
+      ClusterLayoutFinder finder =
+        new ClusterLayoutFinder(nodePreferences, template, template.getClusterDefaults().getServices(), numMachines);
+      int[] actual = finder.findValidNodeCounts();
+      Assert.assertTrue("layouts " + nodePreferences + ", constraints " + constraints + ", " + numMachines
+                          + " machines, expected " + Arrays.toString(expected) + " but got " + Arrays.toString(actual),
+                        Arrays.equals(expected, actual));
+
+      // splitting the search up right away should not change the result
+      finder = new ClusterLayoutFinder(nodePreferences, template, template.getClusterDefaults().getServices(),
+                                       numMachines, executor, 4, 0, SolveDeadline.NONE);
+      Assert.assertTrue(Arrays.equals(expected, finder.findValidNodeCounts()));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testLargeSearchWithoutSolution() {
+    assertLargeSearchWithoutSolution(null);
+  }
+
+  @Test(timeout = 10000)
+  public void testParallelLargeSearchWithoutSolution() {
+    assertLargeSearchWithoutSolution(executor);
+  }
+
+  private void assertLargeSearchWithoutSolution(Executor executor) {
+    Assert.assertNull(createLargeSearchWithoutSolution(executor, SolveDeadline.NONE).findValidNodeCounts());
+  }
+
+  @Test(timeout = 10000)
+  public void testSearchTimesOut() throws InterruptedException {
+    assertSearchTimesOut(null);
+  }
+
+  @Test(timeout = 10000)
+  public void testParallelSearchTimesOut() throws InterruptedException {
+    assertSearchTimesOut(executor);
+  }
+
+  private void assertSearchTimesOut(Executor executor) throws InterruptedException {
+    SolveDeadline deadline = SolveDeadline.after(1);
+    TimeUnit.MILLISECONDS.sleep(10);
+    try {
+      createLargeSearchWithoutSolution(executor, deadline).findValidNodeCounts();
+      Assert.fail("search should have timed out");
+    } catch (SolverTimeoutException e) {
+      // expected
+    }
+  }
+
+  private ClusterLayoutFinder createLargeSearchWithoutSolution(Executor executor, SolveDeadline deadline) {
+    // only one master, and zookeeper can only go on master nodes, so the min zookeeper count can never be met.
+    // Nothing about any single node layout shows that, so every placement of the workers has to be ruled out.
+    Map<String, ServiceConstraint> constraints = ImmutableMap.of(
+      "master", new ServiceConstraint(null, null, 1, 1),
+      "zookeeper", new ServiceConstraint(null, null, 3, 3));
+    List<NodeLayout> nodePreferences = Lists.newArrayList();
+    for (int i = 0; i < 6; i++) {
+      nodePreferences.add(new NodeLayout("large", "centos6", ImmutableSet.of("master", "zookeeper", "worker" + i)));
+    }
+    for (int i = 0; i < 6; i++) {
+      nodePreferences.add(new NodeLayout("medium", "centos6", ImmutableSet.of("worker" + i)));
+    }
+    Set<String> services = Sets.newHashSet("master", "zookeeper");
+    for (int i = 0; i < 6; i++) {
+      services.add("worker" + i);
+    }
+    ClusterTemplate template = createTemplate(services, constraints);
+
+    return new ClusterLayoutFinder(nodePreferences, template, services, 200, executor, 4, 0, deadline);
+  }
+
+  @Test(timeout = 10000)
+  public void testLargeSearchWithSolution() {
+    assertLargeSearchWithSolution(null);
+  }
+
+  @Test(timeout = 10000)
+  public void testParallelLargeSearchWithSolution() {
+    assertLargeSearchWithSolution(executor);
+  }
+
+  private void assertLargeSearchWithSolution(Executor executor) {
+    // the most preferred layout has to give up a zookeeper to make room for the one on the namenode, which is the
+    // least preferred layout. Every way of placing the workers with 3 of the most preferred layout has to be ruled out.
+    Map<String, ServiceConstraint> constraints = ImmutableMap.of(
+      "namenode", new ServiceConstraint(null, null, 1, 1),
+      "zookeeper", new ServiceConstraint(null, null, 3, 3));
+    List<NodeLayout> nodePreferences = Lists.newArrayList();
+    for (int i = 0; i < 8; i++) {
+      nodePreferences.add(new NodeLayout("large", "centos6", ImmutableSet.of("datanode", "zookeeper", "worker" + i)));
+    }
+    nodePreferences.add(new NodeLayout("medium", "centos6", ImmutableSet.of("datanode")));
+    nodePreferences.add(new NodeLayout("large-mem", "centos6", ImmutableSet.of("namenode", "zookeeper")));
+    Set<String> services = Sets.newHashSet("datanode", "namenode", "zookeeper");
+    for (int i = 0; i < 8; i++) {
+      services.add("worker" + i);
+    }
+    ClusterTemplate template = createTemplate(services, constraints);
+
+    ClusterLayoutFinder finder =
+      new ClusterLayoutFinder(nodePreferences, template, services, 500, executor, 4, 0, SolveDeadline.NONE);
+    Assert.assertTrue(Arrays.equals(new int[]{2, 0, 0, 0, 0, 0, 0, 0, 497, 1}, finder.findValidNodeCounts()));
+  }
+
+  private ClusterTemplate createTemplate(Set<String> services, Map<String, ServiceConstraint> serviceConstraints) {
+    return ClusterTemplate.builder()
+      .setName("test")
+      .setDescription("test template")
+      .setClusterDefaults(ClusterDefaults.builder().setServices(services).setProvider("joyent").build())
+      .setCompatibilities(Compatibilities.builder().setServices(services).build())
+      .setConstraints(new Constraints(
+        serviceConstraints,
+        new LayoutConstraint(ImmutableSet.<Set<String>>of(), ImmutableSet.<Set<String>>of()),
+        SizeConstraint.EMPTY))
+      .build();
+  }
+
   private void assertClusterLayout(List<NodeLayout> nodeLayouts, ClusterTemplate template,
                                    int[] nodeCounts, int numMachines, boolean expected) {
     ClusterLayoutFinder clusterLayoutFinder =
@@ -20,7 +20,16 @@ import co.cask.coopr.account.Account;
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.cluster.Node;
 import co.cask.coopr.cluster.NodeProperties;
+import co.cask.coopr.spec.service.Service;
+import co.cask.coopr.spec.template.ClusterDefaults;
+import co.cask.coopr.spec.template.ClusterTemplate;
+import co.cask.coopr.spec.template.Compatibilities;
+import co.cask.coopr.spec.template.Constraints;
+import co.cask.coopr.spec.template.LayoutConstraint;
+import co.cask.coopr.spec.template.ServiceConstraint;
+import co.cask.coopr.spec.template.SizeConstraint;
 import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multiset;
 import com.google.common.collect.Sets;
@@ -30,6 +39,9 @@ import org.junit.Test;
 
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -75,6 +87,67 @@ public class ClusterLayoutUpdaterTest extends BaseSolverTest {
     Assert.assertEquals(expected, layout);
   }
 
+  @Test
+  public void testServicesAreNotLostWhenBacktracking() throws Exception {
+    // reactor is added first, and adding it to both nodes leaves no node for zookeeper, so the search has to back up
+    // and add reactor to one node only. zookeeper must still be added after that.
+    Set<String> services = ImmutableSet.of("zookeeper", "reactor");
+    ServiceConstraint constraint = new ServiceConstraint(ImmutableSet.of("medium"), ImmutableSet.of("centos6"), 1, 2);
+    ClusterTemplate template = ClusterTemplate.builder()
+      .setName("backtrack")
+      .setClusterDefaults(ClusterDefaults.builder().setServices(services).setProvider("joyent").build())
+      .setCompatibilities(Compatibilities.builder().setServices(services).build())
+      .setConstraints(new Constraints(
+        ImmutableMap.of("zookeeper", constraint, "reactor", constraint),
+        new LayoutConstraint(ImmutableSet.<Set<String>>of(),
+                             ImmutableSet.<Set<String>>of(ImmutableSet.of("zookeeper", "reactor"))),
+        SizeConstraint.EMPTY))
+      .build();
+    Set<Node> emptyNodes = Sets.newHashSet();
+    for (int i = 0; i < 2; i++) {
+      emptyNodes.add(new Node(UUID.randomUUID().toString(), "456", ImmutableSet.<Service>of(),
+                              NodeProperties.builder().setHardwaretype("medium").setImagetype("centos6").build()));
+    }
+    Cluster emptyCluster = Cluster.builder()
+      .setID("456")
+      .setAccount(new Account("user1", "tenant1"))
+      .setName("empty")
+      .setProvider(Entities.ProviderExample.RACKSPACE)
+      .setClusterTemplate(template)
+      .build();
+
+    Multiset<NodeLayout> expectedCounts = HashMultiset.create();
+    expectedCounts.add(new NodeLayout("medium", "centos6", ImmutableSet.of("reactor")));
+    expectedCounts.add(new NodeLayout("medium", "centos6", ImmutableSet.of("zookeeper")));
+    ClusterLayout expected = new ClusterLayout(template.getConstraints(), expectedCounts);
+    Assert.assertEquals(expected, updater.addServicesToCluster(emptyCluster, emptyNodes, services).getCurrentLayout());
+  }
+
+  @Test
+  public void testParallelSearchMatchesSequential() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      // split the search up right away
+      ClusterLayoutUpdater parallelUpdater = new ClusterLayoutUpdater(executor, 4, 0);
+      Set<String> servicesToAdd = ImmutableSet.of(resourcemanager.getName(), nodemanager.getName(),
+                                                  hbasemaster.getName(), regionserver.getName());
+      Assert.assertEquals(updater.addServicesToCluster(cluster, nodes, servicesToAdd).getCurrentLayout(),
+                          parallelUpdater.addServicesToCluster(cluster, nodes, servicesToAdd).getCurrentLayout());
+      Assert.assertNull(parallelUpdater.addServicesToCluster(cluster, nodes, ImmutableSet.of(
+        resourcemanager.getName(), nodemanager.getName(), zookeeper.getName())));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(expected = SolverTimeoutException.class)
+  public void testStopsAtDeadline() throws Exception {
+    SolveDeadline deadline = SolveDeadline.after(1);
+    TimeUnit.MILLISECONDS.sleep(10);
+    updater.addServicesToCluster(cluster, nodes, ImmutableSet.of(resourcemanager.getName(), nodemanager.getName()),
+                                 deadline);
+  }
+
   @Test
   public void testNoSolutionReturnsNull() throws Exception {
     // zookeeper is forced onto its own node, should not be possible to add it
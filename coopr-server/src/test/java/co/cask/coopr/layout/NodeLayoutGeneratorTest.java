@@ -25,12 +25,19 @@ import co.cask.coopr.spec.template.SizeConstraint;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -122,6 +129,17 @@ public class NodeLayoutGeneratorTest extends BaseSolverTest {
       expected, nodeLayoutGenerator.findValidServiceSets(reactorTemplate.getClusterDefaults().getServices()));
   }
 
+  @Test(expected = SolverTimeoutException.class)
+  public void testStopsAtDeadline() throws Exception {
+    SolveDeadline deadline = SolveDeadline.after(1);
+    TimeUnit.MILLISECONDS.sleep(10);
+    NodeLayoutGenerator nodeLayoutGenerator =
+      new NodeLayoutGenerator(reactorTemplate, reactorTemplate.getClusterDefaults().getServices(),
+                              ImmutableSet.<String>of("small", "medium", "large", "large-cpu", "large-mem"),
+                              ImmutableSet.<String>of("centos6", "ubuntu12", "sl6"), deadline);
+    nodeLayoutGenerator.generateNodeLayoutPreferences();
+  }
+
   @Test
   public void testGetValidNodeLayouts() {
     Set<NodeLayout> expected = ImmutableSet.of(
@@ -152,6 +170,99 @@ public class NodeLayoutGeneratorTest extends BaseSolverTest {
     Assert.assertEquals(expected, nodeLayoutGenerator.findValidNodeLayouts(validServiceSets));
   }
 
+  @Test
+  public void testMatchesServiceSetValidation() {
+    // compare the mask based search against checking every service set and node layout one by one.
+    Random random = new Random(0);
+    List<String> services = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      services.add("svc" + i);
+    }
+    Set<String> clusterServices = ImmutableSet.<String>builder().addAll(services).add("notplaced").build();
+    List<String> hardwareTypes = ImmutableList.of("small", "medium", "large");
+    List<String> imageTypes = ImmutableList.of("centos6", "ubuntu12");
+    for (int trial = 0; trial < 50; trial++) {
+      Set<Set<String>> mustCoexist = Sets.newHashSet();
+      Set<Set<String>> cantCoexist = Sets.newHashSet();
+      for (int i = 0; i < 3; i++) {
+        mustCoexist.add(randomSubset(random, clusterServices, 2 + random.nextInt(2)));
+        cantCoexist.add(randomSubset(random, clusterServices, 2 + random.nextInt(2)));
+      }
+      Map<String, ServiceConstraint> serviceConstraints = Maps.newHashMap();
+      for (String service : services) {
+        if (random.nextInt(3) == 0) {
+          serviceConstraints.put(service, new ServiceConstraint(randomSubset(random, hardwareTypes, random.nextInt(3)),
+                                                                randomSubset(random, imageTypes, random.nextInt(2)),
+                                                                0, null));
+        }
+      }
+      ClusterTemplate template = ClusterTemplate.builder()
+        .setName("random")
+        .setClusterDefaults(ClusterDefaults.builder().setServices(clusterServices).setProvider("joyent").build())
+        .setCompatibilities(Compatibilities.builder().setServices(clusterServices).build())
+        .setConstraints(new Constraints(serviceConstraints, new LayoutConstraint(mustCoexist, cantCoexist),
+                                        SizeConstraint.EMPTY))
+        .build();
+      NodeLayoutGenerator generator = new NodeLayoutGenerator(template, clusterServices,
+                                                              ImmutableSet.copyOf(hardwareTypes),
+                                                              ImmutableSet.copyOf(imageTypes));
+
+      Set<Set<String>> expectedServiceSets = Sets.newHashSet();
+      Set<NodeLayout> expectedNodeLayouts = Sets.newHashSet();
+      for (Set<String> serviceSet : Sets.powerSet(ImmutableSet.copyOf(services))) {
+        if (!serviceSet.isEmpty() &&
+          NodeLayoutGenerator.isValidServiceSet(serviceSet, template.getConstraints().getLayoutConstraint(),
+                                                clusterServices)) {
+          expectedServiceSets.add(serviceSet);
+          for (String hardwareType : hardwareTypes) {
+            for (String imageType : imageTypes) {
+              NodeLayout nodeLayout = new NodeLayout(hardwareType, imageType, serviceSet);
+              if (nodeLayout.satisfiesServiceConstraints(serviceConstraints)) {
+                expectedNodeLayouts.add(nodeLayout);
+              }
+            }
+          }
+        }
+      }
+      Set<Set<String>> serviceSets = generator.findValidServiceSets(ImmutableSet.copyOf(services));
+      Assert.assertEquals(expectedServiceSets, serviceSets);
+      Assert.assertEquals(expectedNodeLayouts, generator.findValidNodeLayouts(serviceSets));
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testManyConstrainedServices() {
+    // 20 constrained services means about a million candidate service sets.
+    Set<String> services = Sets.newHashSet();
+    Set<Set<String>> mustCoexist = Sets.newHashSet();
+    Set<Set<String>> cantCoexist = Sets.newHashSet();
+    for (int i = 0; i < 10; i++) {
+      services.add("master" + i);
+      services.add("slave" + i);
+      mustCoexist.add(ImmutableSet.of("master" + i, "slave" + ((i + 1) % 10)));
+      cantCoexist.add(ImmutableSet.of("master" + i, "slave" + i));
+    }
+    ClusterTemplate template = ClusterTemplate.builder()
+      .setName("large")
+      .setClusterDefaults(ClusterDefaults.builder().setServices(services).setProvider("joyent").build())
+      .setCompatibilities(Compatibilities.builder().setServices(services).build())
+      .setConstraints(new Constraints(ImmutableMap.<String, ServiceConstraint>of(),
+                                      new LayoutConstraint(mustCoexist, cantCoexist), SizeConstraint.EMPTY))
+      .build();
+    NodeLayoutGenerator generator =
+      new NodeLayoutGenerator(template, services, ImmutableSet.of("small"), ImmutableSet.of("centos6"));
+    Set<Set<String>> serviceSets = generator.findValidServiceSets(services);
+    // each master has to be with the next slave, so choosing the masters decides the service set. Since a master
+    // can't be with its own slave, no two neighboring masters can be chosen, which leaves 122 non-empty choices.
+    Assert.assertEquals(122, serviceSets.size());
+  }
+
+  private static Set<String> randomSubset(Random random, Collection<String> elements, int size) {
+    List<String> shuffled = Lists.newArrayList(elements);
+    Collections.shuffle(shuffled, random);
+    return ImmutableSet.copyOf(shuffled.subList(0, size));
+  }
+
   @Test
   public void testNarrowNodeLayouts() {
     Set<NodeLayout> input = ImmutableSet.of(
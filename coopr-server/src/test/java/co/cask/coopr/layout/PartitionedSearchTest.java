@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.layout;
+
+import com.google.common.collect.Lists;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link PartitionedSearch}.
+ */
+public class PartitionedSearchTest {
+  private static ExecutorService executor;
+
+  @BeforeClass
+  public static void setup() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterClass
+  public static void teardown() {
+    executor.shutdownNow();
+  }
+
+  @Test(timeout = 10000)
+  public void testFirstResultInOrderIsReturned() {
+    // the later partition finishes first, but the earlier one should still win.
+    final CountDownLatch laterFinished = new CountDownLatch(1);
+    List<TestPartition> partitions = Lists.newArrayList(
+      new TestPartition(null),
+      new TestPartition("first") {
+        @Override
+        String search() {
+          awaitUninterruptibly(laterFinished);
+          return super.search();
+        }
+      },
+      new TestPartition("second") {
+        @Override
+        String search() {
+          laterFinished.countDown();
+          return super.search();
+        }
+      });
+    Assert.assertEquals("first", PartitionedSearch.findFirst(partitions, executor, 3));
+  }
+
+  @Test(timeout = 10000)
+  public void testLaterPartitionsAreCancelled() {
+    final CountDownLatch started = new CountDownLatch(1);
+    TestPartition blocked = new TestPartition("never") {
+      @Override
+      String search() {
+        started.countDown();
+        while (!isCancelled()) {
+          Thread.yield();
+        }
+        return super.search();
+      }
+    };
+    TestPartition found = new TestPartition("found") {
+      @Override
+      String search() {
+        awaitUninterruptibly(started);
+        return super.search();
+      }
+    };
+    List<TestPartition> partitions = Lists.newArrayList(new TestPartition(null), found, blocked);
+    Assert.assertEquals("found", PartitionedSearch.findFirst(partitions, executor, 3));
+    Assert.assertTrue(blocked.isCancelled());
+    Assert.assertFalse(found.isCancelled());
+  }
+
+  @Test
+  public void testNoResult() {
+    List<TestPartition> partitions = Lists.newArrayList(new TestPartition(null), new TestPartition(null));
+    Assert.assertNull(PartitionedSearch.findFirst(partitions, executor, 4));
+  }
+
+  @Test(timeout = 10000)
+  public void testCallerSearchesIfHelpersNeverRun() {
+    Executor neverRuns = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        // drop it
+      }
+    };
+    List<TestPartition> partitions = Lists.newArrayList(new TestPartition(null), new TestPartition(null),
+                                                        new TestPartition("last"));
+    Assert.assertEquals("last", PartitionedSearch.findFirst(partitions, neverRuns, 3));
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    try {
+      Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class TestPartition extends PartitionedSearch.Partition<String> {
+    private final String result;
+
+    private TestPartition(String result) {
+      this.result = result;
+    }
+
+    @Override
+    String search() {
+      return result;
+    }
+  }
+}
@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -197,6 +198,17 @@ public class SlottedCombinationIteratorTest {
     new SlottedCombinationIterator(new int[]{5}, new int[]{10, 5});
   }
 
+  @Test(expected = SolverTimeoutException.class)
+  public void testStopsAtDeadline() throws InterruptedException {
+    SolveDeadline deadline = SolveDeadline.after(1);
+    TimeUnit.MILLISECONDS.sleep(10);
+    // 20 items in 20 slots has far too many combinations to go through, iterating should stop at the deadline.
+    Iterator<int[]> iter = new SlottedCombinationIterator(20, 20, null, deadline);
+    while (iter.hasNext()) {
+      iter.next();
+    }
+  }
+
   private void assertIteratorIsExpected(List<int[]> expected, Iterator<int[]> iter) {
     for (int i = 0; i < expected.size(); i++) {
       Assert.assertTrue(iter.hasNext());
@@ -19,6 +19,8 @@ import co.cask.coopr.Entities;
 import co.cask.coopr.cluster.Cluster;
 import co.cask.coopr.cluster.Node;
 import co.cask.coopr.http.request.ClusterCreateRequest;
+import co.cask.coopr.management.ServerStats;
+import co.cask.coopr.management.SolverStats;
 import co.cask.coopr.spec.service.Service;
 import co.cask.coopr.spec.service.ServiceDependencies;
 import co.cask.coopr.spec.service.ServiceStageDependencies;
@@ -156,6 +158,54 @@ public class SolverTest extends BaseSolverTest {
     Assert.assertEquals(1, serviceSetCounts.count(ImmutableSet.of("reactor", "zookeeper")));
   }
 
+  @Test
+  public void testSolutionsAreCached() throws Exception {
+    SolverStats stats = injector.getInstance(ServerStats.class).getSolverStats();
+    ClusterCreateRequest request = ClusterCreateRequest.builder()
+      .setName("mycluster")
+      .setClusterTemplateName(reactorTemplate.getName())
+      .setNumMachines(7)
+      .setInitialLeaseDuration(0L)
+      .build();
+    long hits = stats.getCacheHits();
+    long misses = stats.getCacheMisses();
+    Map<String, Node> nodes1 = solver.solveClusterNodes(
+      getBaseBuilder().setClusterTemplate(reactorTemplate).setProvider(provider).build(), request);
+    Assert.assertEquals(misses + 1, stats.getCacheMisses());
+
+    // same template at the same size should use the cached layout, but still get its own nodes
+    Map<String, Node> nodes2 = solver.solveClusterNodes(
+      getBaseBuilder().setID("456").setClusterTemplate(reactorTemplate).setProvider(provider).build(), request);
+    Assert.assertEquals(hits + 1, stats.getCacheHits());
+    Assert.assertEquals(nodes1.size(), nodes2.size());
+    Assert.assertTrue(Sets.intersection(nodes1.keySet(), nodes2.keySet()).isEmpty());
+    Assert.assertEquals(getServiceSetCounts(nodes1), getServiceSetCounts(nodes2));
+
+    // a new version of the template should not use the cached layout
+    ClusterTemplate newVersion = ClusterTemplate.builder()
+      .setName(reactorTemplate.getName())
+      .setClusterDefaults(reactorTemplate.getClusterDefaults())
+      .setCompatibilities(reactorTemplate.getCompatibilities())
+      .setConstraints(reactorTemplate.getConstraints())
+      .build();
+    newVersion.setVersion(reactorTemplate.getVersion() + 1);
+    solver.solveClusterNodes(getBaseBuilder().setClusterTemplate(newVersion).setProvider(provider).build(), request);
+    Assert.assertEquals(misses + 2, stats.getCacheMisses());
+    Assert.assertEquals(hits + 1, stats.getCacheHits());
+  }
+
+  private Multiset<Set<String>> getServiceSetCounts(Map<String, Node> nodes) {
+    Multiset<Set<String>> serviceSetCounts = HashMultiset.create();
+    for (Node node : nodes.values()) {
+      Set<String> serviceNames = Sets.newHashSet();
+      for (Service service : node.getServices()) {
+        serviceNames.add(service.getName());
+      }
+      serviceSetCounts.add(serviceNames);
+    }
+    return serviceSetCounts;
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testDisallowedServicesThrowsException() throws Exception {
     ClusterCreateRequest request = ClusterCreateRequest.builder()
@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.macro;
+
+import co.cask.coopr.cluster.Node;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests for the {@link ClusterTopologyIndex}.
+ */
+public class ClusterTopologyIndexTest {
+  private static final ClusterTopologyIndex INDEX = ExpressionTest.clusterIndex;
+
+  @Test
+  public void testServiceNodesKeepSetOrder() {
+    Assert.assertEquals(ImmutableList.of("bar", "foo", "one"), ids(INDEX.getServiceNodes("svc1")));
+    Assert.assertEquals(ImmutableList.of("foo", "two"), ids(INDEX.getServiceNodes("svc2")));
+    Assert.assertTrue(INDEX.getServiceNodes("svc4").isEmpty());
+  }
+
+  @Test
+  public void testSortedServiceNodes() throws Exception {
+    Assert.assertEquals(ImmutableList.of("foo", "bar", "one"), ids(INDEX.getSortedServiceNodes("svc1")));
+    Assert.assertEquals("foo", INDEX.getNthServiceNode("svc1", 0).getId());
+    Assert.assertEquals("one", INDEX.getNthServiceNode("svc1", 2).getId());
+  }
+
+  @Test(expected = IncompleteClusterException.class)
+  public void testNthServiceNodeOutOfBounds() throws Exception {
+    INDEX.getNthServiceNode("svc2", 2);
+  }
+
+  @Test
+  public void testInstanceNumAndCardinality() {
+    Assert.assertEquals(1, INDEX.getServiceInstanceNum("svc1", ExpressionTest.node1));
+    Assert.assertEquals(2, INDEX.getServiceInstanceNum("svc1", ExpressionTest.node2));
+    Assert.assertEquals(-1, INDEX.getServiceInstanceNum("svc3", ExpressionTest.node1));
+    Assert.assertEquals(3, INDEX.getServiceCardinality("svc1"));
+    Assert.assertEquals(1, INDEX.getServiceCardinality("svc3"));
+    Assert.assertEquals(0, INDEX.getServiceCardinality("svc4"));
+  }
+
+  private List<String> ids(List<Node> nodes) {
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    for (Node node : nodes) {
+      builder.add(node.getId());
+    }
+    return builder.build();
+  }
+}
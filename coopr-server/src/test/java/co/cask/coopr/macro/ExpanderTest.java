@@ -24,14 +24,12 @@ import com.google.gson.JsonObject;
 import org.junit.Assert;
 import org.junit.Test;
 
-import java.util.Set;
-
 /**
  * tests the macro expander.
  */
 public class ExpanderTest {
 
-  private static Set<Node> clusterNodes = ExpressionTest.clusterNodes;
+  private static ClusterTopologyIndex clusterNodes = ExpressionTest.clusterIndex;
   private static Cluster cluster = ExpressionTest.cluster;
   private static Node node1 = ExpressionTest.node1;
   private static Node node2 = ExpressionTest.node2;
@@ -40,6 +40,7 @@ public class ExpressionTest {
   private static final String IP_TYPE = "access_v4";
   static Cluster cluster;
   static Set<Node> clusterNodes;
+  static ClusterTopologyIndex clusterIndex;
   static Node node1;
   static Node node2;
 
@@ -79,36 +80,37 @@ public class ExpressionTest {
       .setServices(ImmutableSet.of(svc1.getName(), svc2.getName(), svc3.getName()))
       .build();
     clusterNodes = Sets.newTreeSet(Sets.newHashSet(foo, bar, one, two, thr));
+    clusterIndex = ClusterTopologyIndex.of(clusterNodes);
     node1 = foo;
     node2 = bar;
   }
 
   @Test(expected = IncompleteClusterException.class)
   public void testNoHost() throws Exception {
-    new Expression(new HostServiceEvaluator("svc3", null), null, null).evaluate(cluster, clusterNodes, node1);
+    new Expression(new HostServiceEvaluator("svc3", null), null, null).evaluate(cluster, clusterIndex, node1);
   }
 
   @Test(expected = IncompleteClusterException.class)
   public void testNoIp() throws Exception {
-    new Expression(new IPServiceEvaluator("svc2", IP_TYPE, null), null, null).evaluate(cluster, clusterNodes, node1);
+    new Expression(new IPServiceEvaluator("svc2", IP_TYPE, null), null, null).evaluate(cluster, clusterIndex, node1);
   }
 
   @Test(expected = IncompleteClusterException.class)
   public void testOutOfBounds() throws Exception {
-    new Expression(new IPServiceEvaluator("svc1", IP_TYPE, 3), null, null).evaluate(cluster, clusterNodes, node1);
+    new Expression(new IPServiceEvaluator("svc1", IP_TYPE, 3), null, null).evaluate(cluster, clusterIndex, node1);
   }
 
   @Test
   public void testNoService() throws Exception {
     Assert.assertNull(new Expression(
-      new IPServiceEvaluator("svc4", IP_TYPE, null), null, null).evaluate(cluster, clusterNodes, node1));
+      new IPServiceEvaluator("svc4", IP_TYPE, null), null, null).evaluate(cluster, clusterIndex, node1));
   }
 
   @Test
   public void testClusterOwner() throws Exception {
     Assert.assertEquals(
       cluster.getAccount().getUserId(),
-      new Expression(new ClusterOwnerEvaluator(), null, null).evaluate(cluster, clusterNodes, node1));
+      new Expression(new ClusterOwnerEvaluator(), null, null).evaluate(cluster, clusterIndex, node1));
   }
 
   @Test
@@ -116,7 +118,7 @@ public class ExpressionTest {
     Assert.assertEquals(
       "9.6.8.1,9.7.8.4,9.1.3.4",
       new Expression(new IPServiceEvaluator("svc1", IP_TYPE, null), null, null)
-        .evaluate(cluster, clusterNodes, node1));
+        .evaluate(cluster, clusterIndex, node1));
   }
 
   @Test
@@ -124,11 +126,11 @@ public class ExpressionTest {
     Assert.assertEquals(
       "1",
       new Expression(new ServiceInstanceEvaluator("svc1"), null, null)
-        .evaluate(cluster, clusterNodes, node1));
+        .evaluate(cluster, clusterIndex, node1));
     Assert.assertEquals(
       "2",
       new Expression(new ServiceInstanceEvaluator("svc1"), null, null)
-        .evaluate(cluster, clusterNodes, node2));
+        .evaluate(cluster, clusterIndex, node2));
   }
 
   @Test
@@ -136,21 +138,21 @@ public class ExpressionTest {
     Assert.assertEquals(
       node1.getProperties().getHostname(),
       new Expression(new HostSelfEvaluator(), null, null)
-        .evaluate(cluster, clusterNodes, node1));
+        .evaluate(cluster, clusterIndex, node1));
     Assert.assertEquals(
       node2.getProperties().getHostname(),
       new Expression(new HostSelfEvaluator(), null, null)
-        .evaluate(cluster, clusterNodes, node2));
+        .evaluate(cluster, clusterIndex, node2));
   }
 
   @Test
   public void testServiceInstanceHost() throws Exception {
     Assert.assertEquals(
       node1.getProperties().getHostname(),
-      new Expression(new HostServiceEvaluator("svc1", 0), null, null).evaluate(cluster, clusterNodes, node1));
+      new Expression(new HostServiceEvaluator("svc1", 0), null, null).evaluate(cluster, clusterIndex, node1));
     Assert.assertEquals(
       node2.getProperties().getHostname(),
-      new Expression(new HostServiceEvaluator("svc1", 1), null, null).evaluate(cluster, clusterNodes, node1));
+      new Expression(new HostServiceEvaluator("svc1", 1), null, null).evaluate(cluster, clusterIndex, node1));
   }
 
   @Test
@@ -158,42 +160,42 @@ public class ExpressionTest {
     Assert.assertEquals(
       node1.getProperties().getIPAddress(IP_TYPE),
       new Expression(new IPSelfEvaluator(IP_TYPE), null, null)
-        .evaluate(cluster, clusterNodes, node1));
+        .evaluate(cluster, clusterIndex, node1));
     Assert.assertEquals(
       node2.getProperties().getIPAddress(IP_TYPE),
       new Expression(new IPSelfEvaluator(IP_TYPE), null, null)
-        .evaluate(cluster, clusterNodes, node2));
+        .evaluate(cluster, clusterIndex, node2));
   }
 
   @Test
   public void testServiceIpInstance() throws Exception {
     Assert.assertEquals(
       node1.getProperties().getIPAddress(IP_TYPE),
-      new Expression(new IPServiceEvaluator("svc1", IP_TYPE, 0), null, null).evaluate(cluster, clusterNodes, node1));
+      new Expression(new IPServiceEvaluator("svc1", IP_TYPE, 0), null, null).evaluate(cluster, clusterIndex, node1));
     Assert.assertEquals(
       node2.getProperties().getIPAddress(IP_TYPE),
-      new Expression(new IPServiceEvaluator("svc1", IP_TYPE, 1), null, null).evaluate(cluster, clusterNodes, node1));
+      new Expression(new IPServiceEvaluator("svc1", IP_TYPE, 1), null, null).evaluate(cluster, clusterIndex, node1));
   }
 
   @Test
   public void testFormatOnly() throws Exception {
     Assert.assertEquals(
       "oof:2181,owt:2181",
-      new Expression(new HostServiceEvaluator("svc2", null), "$:2181", null).evaluate(cluster, clusterNodes, node1));
+      new Expression(new HostServiceEvaluator("svc2", null), "$:2181", null).evaluate(cluster, clusterIndex, node1));
   }
 
   @Test
   public void testJoinOnly() throws Exception {
     Assert.assertEquals(
       "rab-oof-eno",
-      new Expression(new HostServiceEvaluator("svc1", null), null, "-").evaluate(cluster, clusterNodes, node1));
+      new Expression(new HostServiceEvaluator("svc1", null), null, "-").evaluate(cluster, clusterIndex, node1));
   }
 
   @Test
   public void testFormatJoin() throws Exception {
     Assert.assertEquals(
       "oof:2181++owt:2181",
-      new Expression(new HostServiceEvaluator("svc2", null), "$:2181", "++").evaluate(cluster, clusterNodes, node1));
+      new Expression(new HostServiceEvaluator("svc2", null), "$:2181", "++").evaluate(cluster, clusterIndex, node1));
   }
 
   @Test
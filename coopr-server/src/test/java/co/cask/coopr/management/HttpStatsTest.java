@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.management;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+/**
+ * Tests for {@link HttpStats} and {@link LatencyHistogram}.
+ */
+public class HttpStatsTest {
+
+  @Test
+  public void testHistogramBucketsStayWithinPrecision() {
+    for (long micros = 0; micros < TimeUnit.HOURS.toMicros(1); micros = micros * 3 / 2 + 1) {
+      int bucket = LatencyHistogram.getBucket(micros);
+      Assert.assertTrue(LatencyHistogram.getBucketMax(bucket) >= micros);
+      Assert.assertTrue(LatencyHistogram.getBucketMax(bucket) <= micros + micros / 8);
+      Assert.assertTrue(bucket == 0 || LatencyHistogram.getBucketMax(bucket - 1) < micros);
+    }
+  }
+
+  @Test
+  public void testHistogramPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assert.assertEquals(0, histogram.getPercentileMicros(99));
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i, TimeUnit.MILLISECONDS);
+    }
+
+    Assert.assertEquals(1000, histogram.getCount());
+    Assert.assertEquals(500500, histogram.getMeanMicros(), 0.001);
+    Assert.assertEquals(1000000, histogram.getMaxMicros());
+    assertWithinPrecision(500000, histogram.getPercentileMicros(50));
+    assertWithinPrecision(990000, histogram.getPercentileMicros(99));
+    Assert.assertEquals(1000000, histogram.getPercentileMicros(100));
+  }
+
+  @Test
+  public void testStatsByRoute() throws Exception {
+    HttpStats stats = new HttpStats();
+    // latencies that are the highest of their bucket, so that percentiles are exact
+    stats.record("POST /v2/tasks/take", 200, 100, 1000, TimeUnit.MICROSECONDS.toNanos(1023));
+    stats.record("POST /v2/tasks/take", 204, 100, 0, TimeUnit.MICROSECONDS.toNanos(4095));
+    stats.record(HttpStats.UNMATCHED_ROUTE, 404, 0, 10, TimeUnit.MICROSECONDS.toNanos(1023));
+
+    Map<String, HttpRouteStats> routes = stats.getRoutes();
+    Assert.assertEquals(new HttpRouteStats(2, ImmutableMap.of("200", 1L, "204", 1L), 200, 1000,
+                                           2.559, 1.023, 4.095, 4.095, 4.095, 4.095),
+                        routes.get("POST /v2/tasks/take"));
+    Assert.assertEquals(new HttpRouteStats(1, ImmutableMap.of("404", 1L), 0, 10,
+                                           1.023, 1.023, 1.023, 1.023, 1.023, 1.023),
+                        routes.get(HttpStats.UNMATCHED_ROUTE));
+
+    // stats must be representable as open types to be exposed through JMX
+    MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("co.cask.coopr:type=HttpStats,name=HttpStatsTest");
+    mbs.registerMBean(stats, name);
+    try {
+      TabularData data = (TabularData) mbs.getAttribute(name, "Routes");
+      CompositeData route = (CompositeData) data.get(new Object[] { "POST /v2/tasks/take" }).get("value");
+      Assert.assertEquals(2L, route.get("requests"));
+      Assert.assertEquals(4.095, route.get("p99Millis"));
+    } finally {
+      mbs.unregisterMBean(name);
+    }
+  }
+
+  private void assertWithinPrecision(long expected, long actual) {
+    Assert.assertTrue(actual + " is not close to " + expected, actual >= expected && actual <= expected * 9 / 8);
+  }
+}
@@ -1,8 +1,11 @@
 package co.cask.coopr.provisioner;
 
 import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.conf.guice.ConfigurationModule;
 import co.cask.coopr.provisioner.plugin.ResourceCollection;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.junit.AfterClass;
@@ -11,6 +14,10 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+
 /**
  *
  */
@@ -68,4 +75,62 @@ public class HttpProvisionerRequestServiceTest {
       Assert.assertEquals(2, stubProvisioner.getDeleteCount("tenant" + i));
     }
   }
+
+  @Test
+  public void testPutTenantToManyProvisioners() throws IOException {
+    List<Provisioner> provisioners = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      provisioners.add(new Provisioner("p" + i, host, port, 100, null, null));
+    }
+    // nothing listens on the port of a closed socket, so requests to this provisioner fail
+    ServerSocket closedSocket = new ServerSocket(0);
+    closedSocket.close();
+    provisioners.add(new Provisioner("dead", host, closedSocket.getLocalPort(), 100, null, null));
+
+    Assert.assertEquals(ImmutableSet.of("dead"),
+                        provisionerRequestService.putTenant(provisioners, "tenant", new ResourceCollection()));
+    Assert.assertEquals(10, stubProvisioner.getPutCount("tenant"));
+  }
+
+  @Test(timeout = 20000)
+  public void testRequestFailsAfterDeadline() throws IOException {
+    Configuration conf = Configuration.create();
+    conf.setLong(Constants.PROVISIONER_REQUEST_TIMEOUT_MS, 500);
+    ProvisionerRequestService service = Guice.createInjector(new ConfigurationModule(conf))
+      .getInstance(HttpProvisionerRequestService.class);
+    // connections to the socket are accepted by the os, but it never responds to requests
+    ServerSocket unresponsiveSocket = new ServerSocket(0);
+    try {
+      Provisioner provisioner = new Provisioner("id", host, unresponsiveSocket.getLocalPort(), 100, null, null);
+      long start = System.currentTimeMillis();
+      Assert.assertFalse(service.putTenant(provisioner, "tenant", new ResourceCollection()));
+      // well under the 10 second socket timeout that applies without a deadline
+      Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+    } finally {
+      unresponsiveSocket.close();
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void testQueuedRequestsShareDeadline() throws IOException {
+    Configuration conf = Configuration.create();
+    conf.setLong(Constants.PROVISIONER_REQUEST_TIMEOUT_MS, 500);
+    conf.setInt(Constants.PROVISIONER_REQUEST_THREADS, 1);
+    ProvisionerRequestService service = Guice.createInjector(new ConfigurationModule(conf))
+      .getInstance(HttpProvisionerRequestService.class);
+    ServerSocket unresponsiveSocket = new ServerSocket(0);
+    try {
+      List<Provisioner> provisioners = Lists.newArrayList();
+      for (int i = 0; i < 4; i++) {
+        provisioners.add(new Provisioner("p" + i, host, unresponsiveSocket.getLocalPort(), 100, null, null));
+      }
+      long start = System.currentTimeMillis();
+      Assert.assertEquals(ImmutableSet.of("p0", "p1", "p2", "p3"),
+                          service.putTenant(provisioners, "tenant", new ResourceCollection()));
+      // with a single thread, requests that waited for the thread do not get a fresh deadline of their own
+      Assert.assertTrue(System.currentTimeMillis() - start < 1500);
+    } finally {
+      unresponsiveSocket.close();
+    }
+  }
 }
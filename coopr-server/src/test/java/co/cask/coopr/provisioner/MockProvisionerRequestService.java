@@ -3,6 +3,7 @@ package co.cask.coopr.provisioner;
 import co.cask.coopr.provisioner.plugin.ResourceCollection;
 import com.google.common.collect.Sets;
 
+import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -22,6 +23,18 @@ public class MockProvisionerRequestService implements ProvisionerRequestService
     return !deadProvisioners.contains(provisioner.getId());
   }
 
+  @Override
+  public Set<String> putTenant(Collection<Provisioner> provisioners, String tenantId,
+                               ResourceCollection resourceCollection) {
+    Set<String> failed = Sets.newHashSet();
+    for (Provisioner provisioner : provisioners) {
+      if (deadProvisioners.contains(provisioner.getId())) {
+        failed.add(provisioner.getId());
+      }
+    }
+    return failed;
+  }
+
   @Override
   public boolean putTenantWorkers(Provisioner provisioner, String tenantId) {
     return !deadProvisioners.contains(provisioner.getId());
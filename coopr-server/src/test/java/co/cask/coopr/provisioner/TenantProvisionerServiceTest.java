@@ -10,6 +10,7 @@ import co.cask.coopr.common.queue.TrackingQueue;
 import co.cask.coopr.scheduler.task.MissingEntityException;
 import co.cask.coopr.spec.Tenant;
 import co.cask.coopr.spec.TenantSpecification;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
@@ -18,6 +19,8 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.Set;
+
 /**
  *
  */
@@ -120,6 +123,71 @@ public class TenantProvisionerServiceTest extends BaseTest {
     Assert.assertNull(service.getProvisioner(provisioner1.getId()));
   }
 
+  @Test
+  public void testWorkersForDeadProvisionerAreAssignedElsewhere() throws Exception {
+    Tenant tenant = new Tenant("id123", new TenantSpecification("tenantX", 150, 10, 100));
+    Provisioner provisioner1 = new Provisioner("p1", "host1", 12345, 100, null, null);
+    Provisioner provisioner2 = new Provisioner("p2", "host2", 12345, 100, null, null);
+    Provisioner provisioner3 = new Provisioner("p3", "host3", 12345, 100, null, null);
+    service.writeProvisioner(provisioner1);
+    service.writeProvisioner(provisioner2);
+    service.writeProvisioner(provisioner3);
+    tenantStore.writeTenant(tenant);
+
+    provisionerRequestService.addDeadProvisioner(provisioner1.getId());
+
+    service.rebalanceTenantWorkers(tenant.getId());
+    Assert.assertNull(service.getProvisioner(provisioner1.getId()));
+    // the workers meant for the dead provisioner should have gone to the live ones in the same rebalance
+    Provisioner p2 = service.getProvisioner(provisioner2.getId());
+    Provisioner p3 = service.getProvisioner(provisioner3.getId());
+    Assert.assertEquals(tenant.getSpecification().getWorkers(),
+                        p2.getAssignedWorkers(tenant.getSpecification().getName()) +
+                          p3.getAssignedWorkers(tenant.getSpecification().getName()));
+  }
+
+  @Test
+  public void testWorkersAreSpreadAcrossProvisioners() throws Exception {
+    Tenant tenant = new Tenant("id123", new TenantSpecification("tenantX", 90, 10, 100));
+    Provisioner provisioner1 = new Provisioner("p1", "host1", 12345, 100, null, null);
+    Provisioner provisioner2 = new Provisioner("p2", "host2", 12345, 100, null, null);
+    Provisioner provisioner3 = new Provisioner("p3", "host3", 12345, 100, null, null);
+    service.writeProvisioner(provisioner1);
+    service.writeProvisioner(provisioner2);
+    service.writeProvisioner(provisioner3);
+    tenantStore.writeTenant(tenant);
+
+    service.rebalanceTenantWorkers(tenant.getId());
+    for (Provisioner provisioner : ImmutableList.of(provisioner1, provisioner2, provisioner3)) {
+      Provisioner actual = service.getProvisioner(provisioner.getId());
+      Assert.assertEquals(30, actual.getAssignedWorkers(tenant.getSpecification().getName()));
+    }
+  }
+
+  @Test
+  public void testRebalanceManyTenantsAtOnce() throws Exception {
+    // tenant1 is shrinking and tenant2 is growing into the capacity that tenant1 frees up
+    Tenant tenant1 = new Tenant("tenant1", new TenantSpecification("tenant1", 20, 10, 100));
+    Tenant tenant2 = new Tenant("tenant2", new TenantSpecification("tenant2", 80, 10, 100));
+    Provisioner provisioner = new Provisioner("p1", "host1", 12345, 100, null,
+                                              ImmutableMap.<String, Integer>of(tenant1.getId(), 90));
+    service.writeProvisioner(provisioner);
+    tenantStore.writeTenant(tenant1);
+    tenantStore.writeTenant(tenant2);
+
+    Set<String> insufficientCapacity =
+      service.rebalanceTenantWorkers(ImmutableList.of(tenant2.getId(), tenant1.getId(), tenant2.getId()));
+    Assert.assertTrue(insufficientCapacity.isEmpty());
+    Provisioner actual = service.getProvisioner(provisioner.getId());
+    Assert.assertEquals(20, actual.getAssignedWorkers(tenant1.getSpecification().getName()));
+    Assert.assertEquals(80, actual.getAssignedWorkers(tenant2.getSpecification().getName()));
+
+    // not enough capacity for tenant2 to grow any more
+    tenantStore.writeTenant(new Tenant(tenant2.getId(), new TenantSpecification("tenant2", 90, 10, 100)));
+    Assert.assertEquals(ImmutableSet.of(tenant2.getId()),
+                        service.rebalanceTenantWorkers(ImmutableList.of(tenant1.getId(), tenant2.getId())));
+  }
+
   @Test
   public void testDeadProvisionerGetsDeletedDuringRemoveWorkers() throws Exception {
     Tenant tenant = new Tenant("id123", new TenantSpecification("tenantX", 40, 10, 100));
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.provisioner.balance;
+
+import co.cask.coopr.provisioner.Provisioner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Tests for worker balance policies.
+ */
+public class WorkerBalancePolicyTest {
+  private static final String TENANT = "tenant";
+
+  @Test
+  public void testSpreadAddsToLeastLoaded() {
+    List<Provisioner> provisioners = ImmutableList.of(
+      new Provisioner("p1", "host1", 12345, 100, null, ImmutableMap.<String, Integer>of("other", 60)),
+      new Provisioner("p2", "host2", 12345, 100, null, ImmutableMap.<String, Integer>of("other", 20)),
+      new Provisioner("p3", "host3", 12345, 100, null, null));
+
+    // p3 is empty so it gets workers until it is as loaded as p2, then p2 and p3 share them evenly.
+    Assert.assertEquals(ImmutableMap.of("p2", 5, "p3", 25),
+                        new SpreadWorkerBalancePolicy().planAdditions(TENANT, 30, provisioners));
+  }
+
+  @Test
+  public void testSpreadRemovesFromMostLoaded() {
+    List<Provisioner> provisioners = ImmutableList.of(
+      new Provisioner("p1", "host1", 12345, 100, null, ImmutableMap.<String, Integer>of(TENANT, 30, "other", 50)),
+      new Provisioner("p2", "host2", 12345, 100, null, ImmutableMap.<String, Integer>of(TENANT, 30)));
+
+    Assert.assertEquals(ImmutableMap.of("p1", 25),
+                        new SpreadWorkerBalancePolicy().planRemovals(TENANT, 25, provisioners));
+    // cannot remove more than the tenant has on each provisioner
+    Assert.assertEquals(ImmutableMap.of("p1", 30, "p2", 30),
+                        new SpreadWorkerBalancePolicy().planRemovals(TENANT, 100, provisioners));
+  }
+
+  @Test
+  public void testBinPackFillsMostLoaded() {
+    List<Provisioner> provisioners = ImmutableList.of(
+      new Provisioner("p1", "host1", 12345, 100, null, ImmutableMap.<String, Integer>of("other", 60)),
+      new Provisioner("p2", "host2", 12345, 100, null, ImmutableMap.<String, Integer>of("other", 90)),
+      new Provisioner("p3", "host3", 12345, 100, null, null));
+
+    Assert.assertEquals(ImmutableMap.of("p1", 20, "p2", 10),
+                        new BinPackWorkerBalancePolicy().planAdditions(TENANT, 30, provisioners));
+    // cannot add more than the free capacity
+    Assert.assertEquals(ImmutableMap.of("p1", 40, "p2", 10, "p3", 100),
+                        new BinPackWorkerBalancePolicy().planAdditions(TENANT, 200, provisioners));
+  }
+
+  @Test
+  public void testBinPackRemovesFromLeastLoaded() {
+    List<Provisioner> provisioners = ImmutableList.of(
+      new Provisioner("p1", "host1", 12345, 100, null, ImmutableMap.<String, Integer>of(TENANT, 10, "other", 50)),
+      new Provisioner("p2", "host2", 12345, 100, null, ImmutableMap.<String, Integer>of(TENANT, 20)));
+
+    Assert.assertEquals(ImmutableMap.of("p2", 20, "p1", 5),
+                        new BinPackWorkerBalancePolicy().planRemovals(TENANT, 25, provisioners));
+  }
+
+  @Test
+  public void testUsageWeightedUsesLiveWorkers() {
+    // both have the same assignments, but p1 is still running workers it is no longer assigned.
+    List<Provisioner> provisioners = ImmutableList.of(
+      new Provisioner("p1", "host1", 12345, 100, ImmutableMap.<String, Integer>of("other", 50),
+                      ImmutableMap.<String, Integer>of("other", 10)),
+      new Provisioner("p2", "host2", 12345, 100, ImmutableMap.<String, Integer>of("other", 10),
+                      ImmutableMap.<String, Integer>of("other", 10)));
+
+    Assert.assertEquals(ImmutableMap.of("p2", 20),
+                        new UsageWeightedWorkerBalancePolicy().planAdditions(TENANT, 20, provisioners));
+    // assigned workers alone would have split them evenly
+    Assert.assertEquals(ImmutableMap.of("p1", 10, "p2", 10),
+                        new SpreadWorkerBalancePolicy().planAdditions(TENANT, 20, provisioners));
+  }
+
+  @Test
+  public void testPlanWithoutProvisioners() {
+    List<Provisioner> provisioners = ImmutableList.of();
+    Assert.assertTrue(new SpreadWorkerBalancePolicy().planAdditions(TENANT, 10, provisioners).isEmpty());
+    Assert.assertTrue(new BinPackWorkerBalancePolicy().planRemovals(TENANT, 10, provisioners).isEmpty());
+  }
+}
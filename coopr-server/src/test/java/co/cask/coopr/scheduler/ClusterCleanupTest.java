@@ -250,6 +250,37 @@ public class ClusterCleanupTest extends ServiceTestBase {
     Assert.assertEquals(ClusterAction.CLUSTER_DELETE.name(), e3.getValue());
   }
 
+  @Test
+  public void testExpireWithoutReconcile() throws Exception {
+    DeadlineTracker deadlineTracker = new DeadlineTracker(1, 1);
+    ClusterCleanup clusterCleanup = new ClusterCleanup(clusterStore, clusterService, nodeService, taskService,
+                                                       jobQueues, provisionerQueues, deadlineTracker,
+                                                       TimeUnit.MILLISECONDS.convert(1, TimeUnit.HOURS), 1, 1);
+    clusterCleanup.startTracking();
+    String queueName = account.getTenantId();
+
+    // first run reconciles against the store, after which the store is not scanned again for an hour.
+    clusterCleanup.run();
+
+    long now = System.currentTimeMillis();
+    Cluster expired = createCluster("2001", now - 1000, now - 100, Cluster.Status.ACTIVE);
+    Cluster prolonged = createCluster("2002", now - 1000, now - 100, Cluster.Status.ACTIVE);
+    clusterCleanup.run();
+    Assert.assertEquals(0, Iterators.size(clusterQueues.getQueued(queueName)));
+
+    // lease changes recorded on this server are picked up without a scan, and verified against the store.
+    deadlineTracker.clusterLeaseChanged(expired.getId(), expired.getExpireTime());
+    deadlineTracker.clusterLeaseChanged(prolonged.getId(), prolonged.getExpireTime());
+    prolonged.setExpireTime(now + 100000);
+    clusterStoreService.getView(account).writeCluster(prolonged);
+    clusterCleanup.run();
+
+    Assert.assertEquals(1, Iterators.size(clusterQueues.getQueued(queueName)));
+    Element element = clusterQueues.take(queueName, "consumer1");
+    Assert.assertEquals(expired.getId(), element.getId());
+    Assert.assertEquals(ClusterAction.CLUSTER_DELETE.name(), element.getValue());
+  }
+
   private Cluster createCluster(String id, long createTime, long expireTime, Cluster.Status status) throws Exception {
     Cluster cluster = Cluster.builder()
       .setID(id)
@@ -33,19 +33,25 @@ import co.cask.coopr.spec.service.ServiceStageDependencies;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.junit.Assert;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  *
  */
 public class JobPlannerTest {
+  private static final Logger LOG = LoggerFactory.getLogger(JobPlannerTest.class);
   private static final ServiceAction CHEF_ACTION = new ServiceAction("chef-solo", TestHelper.actionMapOf("script", "data"));
 
   @Test
@@ -928,6 +934,63 @@ public class JobPlannerTest {
     Assert.assertTrue(linearizedTasks.get(0).contains(taskNode2));
   }
 
+  @Test(timeout = 30000)
+  public void testLargeClusterPlan() {
+    // 1000 nodes and 30 services. Each of the 5 master services is on its own node, and the other nodes each have 5 of
+    // the 25 worker services, which depend on a master and on the previous worker on the node.
+    Map<ProvisionerAction, ServiceAction> serviceActions = ImmutableMap.of(
+      ProvisionerAction.INSTALL, CHEF_ACTION,
+      ProvisionerAction.CONFIGURE, CHEF_ACTION,
+      ProvisionerAction.START, CHEF_ACTION);
+    List<Service> masters = Lists.newArrayList();
+    for (int i = 0; i < 5; i++) {
+      masters.add(Service.builder().setName("master" + i).setProvisionerActions(serviceActions).build());
+    }
+    List<Service> workers = Lists.newArrayList();
+    for (int i = 0; i < 25; i++) {
+      ServiceDependencies dependencies = i % 5 == 0 ?
+        ServiceDependencies.runtimeRequires("master" + (i / 5)) :
+        ServiceDependencies.runtimeRequires("master" + (i / 5), "worker" + (i - 1));
+      workers.add(Service.builder().setName("worker" + i).setDependencies(dependencies)
+                    .setProvisionerActions(serviceActions).build());
+    }
+    Set<Node> clusterNodes = Sets.newHashSet();
+    int numTasks = 0;
+    for (int i = 0; i < 1000; i++) {
+      Set<Service> services = i < 5 ?
+        ImmutableSet.of(masters.get(i)) : ImmutableSet.copyOf(workers.subList((i % 5) * 5, (i % 5) * 5 + 5));
+      clusterNodes.add(new Node("node" + i, "1", services, NodeProperties.builder().setHostname("host" + i).build()));
+      // create, confirm and bootstrap, plus install, configure and start for each service.
+      numTasks += 3 + 3 * services.size();
+    }
+
+    ClusterJob job = new ClusterJob(JobId.fromString("123-001"), ClusterAction.CLUSTER_CREATE);
+    long start = System.currentTimeMillis();
+    List<Set<TaskNode>> linearizedTasks = new JobPlanner(job, clusterNodes).linearizeDependentTasks();
+    long dur = System.currentTimeMillis() - start;
+    LOG.info("took {} ms to plan a cluster with {} tasks into {} stages.", dur, numTasks, linearizedTasks.size());
+
+    Map<TaskNode, Integer> stages = Maps.newHashMap();
+    for (int i = 0; i < linearizedTasks.size(); i++) {
+      for (TaskNode taskNode : linearizedTasks.get(i)) {
+        Assert.assertNull(stages.put(taskNode, i));
+      }
+    }
+    Assert.assertEquals(numTasks, stages.size());
+    // every worker must start after its master and after the previous worker on the node.
+    for (int i = 5; i < 1000; i++) {
+      for (int j = (i % 5) * 5; j < (i % 5) * 5 + 5; j++) {
+        int workerStart = stages.get(new TaskNode("node" + i, ProvisionerAction.START.name(), "worker" + j));
+        Assert.assertTrue(workerStart >
+          stages.get(new TaskNode("node" + (j / 5), ProvisionerAction.START.name(), "master" + (j / 5))));
+        if (j % 5 != 0) {
+          Assert.assertTrue(workerStart >
+            stages.get(new TaskNode("node" + i, ProvisionerAction.START.name(), "worker" + (j - 1))));
+        }
+      }
+    }
+  }
+
   private ClusterTask createClusterTask(String name, String taskId, String hostId) {
     return new ClusterTask(
       ProvisionerAction.valueOf(name), TaskId.fromString(taskId), hostId, "service", ClusterAction.CLUSTER_CREATE,
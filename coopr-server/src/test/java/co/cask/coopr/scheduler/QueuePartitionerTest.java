@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2012-2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.scheduler;
+
+import co.cask.coopr.common.conf.Configuration;
+import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.common.queue.Element;
+import co.cask.coopr.common.queue.GroupElement;
+import co.cask.coopr.common.queue.QueueGroup;
+import co.cask.coopr.common.queue.QueueService;
+import co.cask.coopr.common.queue.QueueType;
+import co.cask.coopr.common.queue.guice.QueueModule;
+import co.cask.coopr.common.zookeeper.guice.ZookeeperModule;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.inject.Guice;
+import org.apache.twill.internal.zookeeper.InMemoryZKServer;
+import org.apache.twill.zookeeper.ZKClientService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests partitioning of scheduler queues across multiple servers sharing an in-process zookeeper.
+ */
+public class QueuePartitionerTest {
+  private static final int NUM_TENANTS = 50;
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+  private InMemoryZKServer zkServer;
+  private final List<ZKClientService> zkClients = Lists.newArrayList();
+  private final List<QueuePartitioner> partitioners = Lists.newArrayList();
+
+  @Before
+  public void before() throws IOException {
+    zkServer = InMemoryZKServer.builder().setDataDir(tmpFolder.newFolder()).setTickTime(1000).build();
+    zkServer.startAndWait();
+  }
+
+  @After
+  public void after() {
+    for (QueuePartitioner partitioner : partitioners) {
+      partitioner.stopAndWait();
+    }
+    for (ZKClientService zkClient : zkClients) {
+      zkClient.stopAndWait();
+    }
+    zkServer.stopAndWait();
+  }
+
+  @Test
+  public void testDisabledAcceptsAllQueues() {
+    QueuePartitioner partitioner = new QueuePartitioner(Configuration.create(), newZKClient(), "server");
+    partitioner.startAndWait();
+    partitioners.add(partitioner);
+    Assert.assertFalse(partitioner.isEnabled());
+    for (int i = 0; i < NUM_TENANTS; i++) {
+      Assert.assertTrue(partitioner.apply("tenant" + i));
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void testQueuesPartitionedAndRebalanced() throws Exception {
+    QueuePartitioner server1 = startServer("server1");
+    QueuePartitioner server2 = startServer("server2");
+    QueuePartitioner server3 = startServer("server3");
+    waitForMembers(3, server1, server2, server3);
+
+    Map<String, QueuePartitioner> owners = getOwners(server1, server2, server3);
+    // with 50 tenants, every server should get some of them
+    Assert.assertEquals(Sets.newHashSet(server1, server2, server3), Sets.newHashSet(owners.values()));
+
+    // a server joining should only take tenants away from others, never move tenants between existing servers
+    QueuePartitioner server4 = startServer("server4");
+    waitForMembers(4, server1, server2, server3, server4);
+    Map<String, QueuePartitioner> ownersAfterJoin = getOwners(server1, server2, server3, server4);
+    for (Map.Entry<String, QueuePartitioner> entry : ownersAfterJoin.entrySet()) {
+      if (entry.getValue() != server4) {
+        Assert.assertEquals(owners.get(entry.getKey()), entry.getValue());
+      }
+    }
+
+    // a server leaving should only move its own tenants
+    server2.stopAndWait();
+    partitioners.remove(server2);
+    waitForMembers(3, server1, server3, server4);
+    Map<String, QueuePartitioner> ownersAfterLeave = getOwners(server1, server3, server4);
+    for (Map.Entry<String, QueuePartitioner> entry : ownersAfterJoin.entrySet()) {
+      if (entry.getValue() != server2) {
+        Assert.assertEquals(entry.getValue(), ownersAfterLeave.get(entry.getKey()));
+      }
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void testServersTakeOnlyFromOwnedQueues() throws Exception {
+    QueuePartitioner server1 = startServer("server1");
+    QueuePartitioner server2 = startServer("server2");
+    waitForMembers(2, server1, server2);
+
+    QueueService queueService = Guice.createInjector(new ZookeeperModule(zkClients.get(0)),
+                                                     new QueueModule(zkClients.get(0)))
+      .getInstance(QueueService.class);
+    queueService.startAndWait();
+    try {
+      QueueGroup clusterQueues = queueService.getQueueGroup(QueueType.CLUSTER);
+      for (int i = 0; i < NUM_TENANTS; i++) {
+        clusterQueues.add("tenant" + i, new Element("cluster" + i, "val"));
+      }
+
+      Map<String, QueuePartitioner> owners = getOwners(server1, server2);
+      Set<String> taken = Sets.newHashSet();
+      for (QueuePartitioner server : Lists.newArrayList(server1, server2)) {
+        Iterator<GroupElement> iter = clusterQueues.takeIterator(server.getMemberId(), server);
+        while (iter.hasNext()) {
+          GroupElement element = iter.next();
+          Assert.assertSame(server, owners.get(element.getQueueName()));
+          Assert.assertTrue(taken.add(element.getQueueName()));
+        }
+      }
+      Assert.assertEquals(NUM_TENANTS, taken.size());
+    } finally {
+      queueService.stopAndWait();
+    }
+  }
+
+  private ZKClientService newZKClient() {
+    ZKClientService zkClient = ZKClientService.Builder.of(zkServer.getConnectionStr()).build();
+    zkClient.startAndWait();
+    zkClients.add(zkClient);
+    return zkClient;
+  }
+
+  private QueuePartitioner startServer(String serverId) {
+    Configuration conf = Configuration.create();
+    conf.setBoolean(Constants.SchedulerPartition.ENABLED, true);
+    QueuePartitioner partitioner = new QueuePartitioner(conf, newZKClient(), serverId);
+    partitioner.startAndWait();
+    partitioners.add(partitioner);
+    return partitioner;
+  }
+
+  // every tenant must be owned by exactly one of the given servers.
+  private Map<String, QueuePartitioner> getOwners(QueuePartitioner... servers) {
+    Map<String, QueuePartitioner> owners = Maps.newHashMap();
+    for (int i = 0; i < NUM_TENANTS; i++) {
+      String tenant = "tenant" + i;
+      for (QueuePartitioner server : servers) {
+        if (server.apply(tenant)) {
+          Assert.assertNull(tenant + " is owned by multiple servers", owners.put(tenant, server));
+        }
+      }
+      Assert.assertTrue(tenant + " is not owned by any server", owners.containsKey(tenant));
+    }
+    return owners;
+  }
+
+  // wait until every server sees the given number of members and every tenant has exactly one owner.
+  private void waitForMembers(int numMembers, QueuePartitioner... servers) throws InterruptedException {
+    while (true) {
+      int numOwned = 0;
+      for (int i = 0; i < NUM_TENANTS; i++) {
+        for (QueuePartitioner server : servers) {
+          if (server.apply("tenant" + i)) {
+            numOwned++;
+          }
+        }
+      }
+      if (numOwned == NUM_TENANTS && allSeeMembers(numMembers, servers)) {
+        return;
+      }
+      TimeUnit.MILLISECONDS.sleep(50);
+    }
+  }
+
+  private boolean allSeeMembers(int numMembers, QueuePartitioner... servers) {
+    for (QueuePartitioner server : servers) {
+      if (server.getNumMembers() != numMembers) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -38,6 +38,8 @@ import com.google.common.collect.ImmutableMultiset;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multiset;
 import com.google.gson.JsonObject;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -287,6 +289,20 @@ public class SchedulerTest extends ServiceTestBase {
     Assert.assertEquals(0, jobQueues.size(tenantId));
   }
 
+  @Test(timeout = 20000)
+  public void testOrphanedCallbacksAreRequeued() throws Exception {
+    String tenantId = cluster.getAccount().getTenantId();
+    String schedulerId = injector.getInstance(Key.get(String.class, Names.named("scheduler.id")));
+    CallbackData callbackData = new CallbackData(CallbackData.Type.SUCCESS, cluster, job);
+    callbackQueues.add(tenantId, new Element(gson.toJson(callbackData)));
+    // callback was taken by this server before it went down, so it was never completed
+    Assert.assertNotNull(callbackQueues.take(tenantId, schedulerId));
+
+    CallbackScheduler callbackScheduler = injector.getInstance(CallbackScheduler.class);
+    waitForCallback(callbackScheduler);
+    Assert.assertEquals(CallbackData.Type.SUCCESS, mockClusterCallback.getReceivedCallbacks().get(0).getType());
+  }
+
   private void waitForCallback(CallbackScheduler callbackScheduler) throws InterruptedException {
     int initialSize = mockClusterCallback.getReceivedCallbacks().size();
     int size = initialSize;
@@ -66,6 +66,25 @@ public class ServiceDependencyResolverTest {
     Assert.assertTrue(actual.get("base").isEmpty());
   }
 
+  @Test
+  public void testResolversAreCached() {
+    Service base = Service.builder().setName("base").build();
+    Service s1 = Service.builder().setName("s1").setDependencies(ServiceDependencies.runtimeRequires("base")).build();
+    Map<String, Service> serviceMap = ImmutableMap.of(base.getName(), base, s1.getName(), s1);
+    ServiceDependencyResolverCache cache = new ServiceDependencyResolverCache(Actions.getInstance(), 10);
+
+    ServiceDependencyResolver resolver = cache.getResolver(serviceMap);
+    Assert.assertSame(resolver, cache.getResolver(ImmutableMap.of(s1.getName(), s1, base.getName(), base)));
+    Assert.assertEquals(1, cache.size());
+
+    // a new version of a service must not use the resolver for the old version
+    Service s1v2 = Service.builder().setName("s1").setVersion(2).build();
+    ServiceDependencyResolver newResolver = cache.getResolver(ImmutableMap.of(base.getName(), base, "s1", s1v2));
+    Assert.assertNotSame(resolver, newResolver);
+    Assert.assertTrue(newResolver.getRuntimeServiceDependencies().isEmpty());
+    Assert.assertEquals(2, cache.size());
+  }
+
   @Test
   public void testMinimizeDependenciesWithProvides() {
     Service base =  Service.builder().setName("base").build();
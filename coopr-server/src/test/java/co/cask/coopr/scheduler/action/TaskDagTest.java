@@ -17,12 +17,18 @@ package co.cask.coopr.scheduler.action;
 
 import co.cask.coopr.scheduler.dag.TaskDag;
 import co.cask.coopr.scheduler.dag.TaskNode;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 /**
@@ -147,4 +153,84 @@ public class TaskDagTest {
     //noinspection AssertEqualsBetweenInconvertibleTypes
     Assert.assertEquals(expected, actual);
   }
+
+  @Test
+  public void testMatchesRoundBasedLinearization() {
+    Random random = new Random(0);
+    for (int i = 0; i < 200; i++) {
+      // edges only go from lower to higher numbered nodes, so the graph has no cycles.
+      int numNodes = 1 + random.nextInt(30);
+      List<TaskNode> nodes = Lists.newArrayList();
+      for (int j = 0; j < numNodes; j++) {
+        nodes.add(new TaskNode(String.valueOf(j % 3), "task" + j, "service" + j));
+      }
+      TaskDag taskDag = new TaskDag();
+      Set<TaskNode> dagNodes = Sets.newHashSet();
+      SetMultimap<TaskNode, TaskNode> dagEdges = HashMultimap.create();
+      for (int j = 0; j < numNodes; j++) {
+        if (random.nextInt(4) == 0) {
+          taskDag.addTaskNode(nodes.get(j));
+          dagNodes.add(nodes.get(j));
+        }
+        for (int k = j + 1; k < numNodes; k++) {
+          if (random.nextInt(5) == 0) {
+            taskDag.addDependency(nodes.get(j), nodes.get(k));
+            dagNodes.add(nodes.get(j));
+            dagNodes.add(nodes.get(k));
+            dagEdges.put(nodes.get(j), nodes.get(k));
+          }
+        }
+      }
+      if (dagNodes.isEmpty()) {
+        continue;
+      }
+      Assert.assertEquals(taskDag.toString(), linearizeByRounds(dagNodes, dagEdges), taskDag.linearize());
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testLargeDag() {
+    // a chain of 7 tasks on each of 10000 hosts, where every host waits for the first task of the first host.
+    TaskDag taskDag = new TaskDag();
+    for (int host = 0; host < 10000; host++) {
+      for (int task = 1; task < 7; task++) {
+        taskDag.addDependency(new TaskNode(String.valueOf(host), "task" + (task - 1), ""),
+                              new TaskNode(String.valueOf(host), "task" + task, ""));
+      }
+      if (host > 0) {
+        taskDag.addDependency(new TaskNode("0", "task0", ""), new TaskNode(String.valueOf(host), "task0", ""));
+      }
+    }
+
+    List<Set<TaskNode>> actual = taskDag.linearize();
+    Assert.assertEquals(8, actual.size());
+    Assert.assertEquals(ImmutableSet.of(new TaskNode("0", "task0", "")), actual.get(0));
+    Assert.assertEquals(10000, actual.get(1).size());
+    Assert.assertEquals(9999, actual.get(7).size());
+  }
+
+  // linearizes the dag one round at a time by recomputing source and sink nodes of the remaining edges every round,
+  // to check the linearization against.
+  private List<Set<TaskNode>> linearizeByRounds(Set<TaskNode> nodes, SetMultimap<TaskNode, TaskNode> edges) {
+    List<Set<TaskNode>> linearizedNodes = Lists.newArrayList();
+    Set<TaskNode> sources = Sets.newHashSet(nodes);
+    Set<TaskNode> sinkNodes = Sets.newHashSet();
+    do {
+      sources.addAll(edges.keySet());
+      sources.removeAll(edges.values());
+      Assert.assertFalse(sources.isEmpty());
+      linearizedNodes.add(Sets.newHashSet(Iterables.concat(sinkNodes, sources)));
+      sinkNodes.clear();
+      for (TaskNode fromNode : sources) {
+        sinkNodes.addAll(edges.removeAll(fromNode));
+      }
+      sinkNodes.removeAll(edges.keySet());
+      sinkNodes.removeAll(edges.values());
+      sources.clear();
+    } while (!edges.isEmpty());
+    if (!sinkNodes.isEmpty()) {
+      linearizedNodes.add(sinkNodes);
+    }
+    return linearizedNodes;
+  }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2014 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.cask.coopr.scheduler.callback;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CircuitBreaker}.
+ */
+public class CircuitBreakerTest {
+
+  @Test
+  public void testOpensAfterConsecutiveFailures() {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(3, 60000);
+    circuitBreaker.recordFailure();
+    circuitBreaker.recordFailure();
+    circuitBreaker.recordSuccess();
+    // success resets the count
+    circuitBreaker.recordFailure();
+    circuitBreaker.recordFailure();
+    Assert.assertTrue(circuitBreaker.allowRequest());
+    Assert.assertFalse(circuitBreaker.isOpen());
+
+    circuitBreaker.recordFailure();
+    Assert.assertTrue(circuitBreaker.isOpen());
+    Assert.assertFalse(circuitBreaker.allowRequest());
+    Assert.assertTrue(circuitBreaker.getMillisUntilRetry() > 0);
+  }
+
+  @Test
+  public void testSingleTrialAfterOpenPeriod() throws Exception {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(1, 50);
+    circuitBreaker.recordFailure();
+    Assert.assertFalse(circuitBreaker.allowRequest());
+
+    Thread.sleep(100);
+    Assert.assertEquals(0, circuitBreaker.getMillisUntilRetry());
+    // only one trial request is let through
+    Assert.assertTrue(circuitBreaker.allowRequest());
+    Assert.assertFalse(circuitBreaker.allowRequest());
+
+    // failed trial keeps the circuit open for another period
+    circuitBreaker.recordFailure();
+    Assert.assertFalse(circuitBreaker.allowRequest());
+
+    Thread.sleep(100);
+    Assert.assertTrue(circuitBreaker.allowRequest());
+    circuitBreaker.recordSuccess();
+    Assert.assertFalse(circuitBreaker.isOpen());
+    Assert.assertTrue(circuitBreaker.allowRequest());
+    Assert.assertTrue(circuitBreaker.allowRequest());
+  }
+}
@@ -17,9 +17,13 @@ package co.cask.coopr.scheduler.callback;
 
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.HttpResponder;
+import com.google.common.base.Charsets;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 
@@ -27,46 +31,90 @@ import javax.ws.rs.Path;
  *
  */
 public class DummyHandler extends AbstractHttpHandler {
-  private int startCount = 0;
-  private int successCount = 0;
-  private int failureCount = 0;
+  private final AtomicInteger startCount = new AtomicInteger();
+  private final AtomicInteger successCount = new AtomicInteger();
+  private final AtomicInteger failureCount = new AtomicInteger();
+  private final AtomicInteger flakyCount = new AtomicInteger();
+  private final AtomicInteger flakyFailuresLeft = new AtomicInteger();
+  private final AtomicInteger batchRequestCount = new AtomicInteger();
+  private final AtomicInteger batchCallbackCount = new AtomicInteger();
 
   public void clear() {
-    startCount = 0;
-    successCount = 0;
-    failureCount = 0;
+    startCount.set(0);
+    successCount.set(0);
+    failureCount.set(0);
+    flakyCount.set(0);
+    flakyFailuresLeft.set(0);
+    batchRequestCount.set(0);
+    batchCallbackCount.set(0);
   }
 
   public int getStartCount() {
-    return startCount;
+    return startCount.get();
   }
 
   public int getSuccessCount() {
-    return successCount;
+    return successCount.get();
   }
 
   public int getFailureCount() {
-    return failureCount;
+    return failureCount.get();
+  }
+
+  public int getFlakyCount() {
+    return flakyCount.get();
+  }
+
+  public void setFlakyFailures(int numFailures) {
+    flakyFailuresLeft.set(numFailures);
+  }
+
+  public int getBatchRequestCount() {
+    return batchRequestCount.get();
+  }
+
+  public int getBatchCallbackCount() {
+    return batchCallbackCount.get();
   }
 
   @POST
   @Path("/start/endpoint")
   public void start(HttpRequest request, HttpResponder responder) throws Exception {
-    startCount++;
+    startCount.incrementAndGet();
     responder.sendStatus(HttpResponseStatus.OK);
   }
 
   @POST
   @Path("/success/endpoint")
   public void success(HttpRequest request, HttpResponder responder) throws Exception {
-    successCount++;
+    successCount.incrementAndGet();
     responder.sendStatus(HttpResponseStatus.OK);
   }
 
   @POST
   @Path("/failure/endpoint")
   public void failure(HttpRequest request, HttpResponder responder) throws Exception {
-    failureCount++;
+    failureCount.incrementAndGet();
+    responder.sendStatus(HttpResponseStatus.OK);
+  }
+
+  @POST
+  @Path("/flaky/endpoint")
+  public void flaky(HttpRequest request, HttpResponder responder) throws Exception {
+    if (flakyFailuresLeft.getAndDecrement() > 0) {
+      responder.sendStatus(HttpResponseStatus.SERVICE_UNAVAILABLE);
+      return;
+    }
+    flakyCount.incrementAndGet();
+    responder.sendStatus(HttpResponseStatus.OK);
+  }
+
+  @POST
+  @Path("/batch/endpoint")
+  public void batch(HttpRequest request, HttpResponder responder) throws Exception {
+    JsonElement body = new JsonParser().parse(request.getContent().toString(Charsets.UTF_8));
+    batchRequestCount.incrementAndGet();
+    batchCallbackCount.addAndGet(body.getAsJsonArray().size());
     responder.sendStatus(HttpResponseStatus.OK);
   }
 }
@@ -14,6 +14,8 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  *
  */
@@ -25,7 +27,7 @@ public class HttpPostClusterCallbackTest extends BaseTest {
   private static int port;
 
   @Test
-  public void testCalls() {
+  public void testCalls() throws Exception {
     HttpPostClusterCallback callback = new HttpPostClusterCallback();
 
     String base = "http://" + host + ":" + port;
@@ -43,13 +45,14 @@ public class HttpPostClusterCallbackTest extends BaseTest {
     callback.onSuccess(data, context);
     callback.onSuccess(data, context);
     callback.onFailure(data, context);
+    context.getCompletion().get(10, TimeUnit.SECONDS);
     Assert.assertEquals(handler.getStartCount(), 1);
     Assert.assertEquals(handler.getFailureCount(), 1);
     Assert.assertEquals(handler.getSuccessCount(), 2);
   }
 
   @Test
-  public void testTriggers() {
+  public void testTriggers() throws Exception {
     HttpPostClusterCallback callback = new HttpPostClusterCallback();
 
     String base = "http://" + host + ":" + port;
@@ -64,12 +67,14 @@ public class HttpPostClusterCallbackTest extends BaseTest {
     CallbackData data = new CallbackData(CallbackData.Type.START, cluster, job);
     CallbackContext context = new CallbackContext(clusterStoreService, userStore, cluster.getAccount());
     callback.onStart(data, context);
+    context.getCompletion().get(10, TimeUnit.SECONDS);
     Assert.assertEquals(0, handler.getStartCount());
 
     // should get triggered
     job = new ClusterJob(new JobId(cluster.getId(), 1), ClusterAction.CLUSTER_CONFIGURE);
     data = new CallbackData(CallbackData.Type.START, cluster, job);
     callback.onStart(data, context);
+    context.getCompletion().get(10, TimeUnit.SECONDS);
     Assert.assertEquals(1, handler.getStartCount());
   }
 
@@ -88,6 +93,66 @@ public class HttpPostClusterCallbackTest extends BaseTest {
     Assert.assertTrue(callback.onStart(data, context));
   }
 
+  @Test
+  public void testFailedCallbacksAreRetried() throws Exception {
+    HttpPostClusterCallback callback = new HttpPostClusterCallback();
+
+    conf = Configuration.create();
+    conf.set(Constants.HttpCallback.SUCCESS_URL, "http://" + host + ":" + port + "/flaky/endpoint");
+    conf.setLong(Constants.HttpCallback.RETRY_INITIAL_DELAY_MS, 10);
+    callback.initialize(conf);
+    handler.setFlakyFailures(3);
+
+    ClusterJob job = new ClusterJob(new JobId(cluster.getId(), 1), ClusterAction.CLUSTER_CREATE);
+    CallbackData data = new CallbackData(CallbackData.Type.SUCCESS, cluster, job);
+    CallbackContext context = new CallbackContext(clusterStoreService, userStore, cluster.getAccount());
+    callback.onSuccess(data, context);
+    context.getCompletion().get(10, TimeUnit.SECONDS);
+    Assert.assertEquals(1, handler.getFlakyCount());
+  }
+
+  @Test
+  public void testOnStartDoesNotWaitForRequest() throws Exception {
+    HttpPostClusterCallback callback = new HttpPostClusterCallback();
+
+    conf = Configuration.create();
+    conf.set(Constants.HttpCallback.START_URL, "http://" + host + ":" + port + "/flaky/endpoint");
+    conf.setLong(Constants.HttpCallback.RETRY_INITIAL_DELAY_MS, 500);
+    callback.initialize(conf);
+    handler.setFlakyFailures(1);
+
+    ClusterJob job = new ClusterJob(new JobId(cluster.getId(), 1), ClusterAction.CLUSTER_CREATE);
+    CallbackData data = new CallbackData(CallbackData.Type.START, cluster, job);
+    CallbackContext context = new CallbackContext(clusterStoreService, userStore, cluster.getAccount());
+    Assert.assertTrue(callback.onStart(data, context));
+    // the request is retried in the background, completing the callback only once it succeeds
+    Assert.assertFalse(context.getCompletion().isDone());
+    context.getCompletion().get(10, TimeUnit.SECONDS);
+    Assert.assertEquals(1, handler.getFlakyCount());
+  }
+
+  @Test
+  public void testBatchedCallbacks() throws Exception {
+    HttpPostClusterCallback callback = new HttpPostClusterCallback();
+
+    conf = Configuration.create();
+    conf.set(Constants.HttpCallback.SUCCESS_URL, "http://" + host + ":" + port + "/batch/endpoint");
+    conf.setInt(Constants.HttpCallback.BATCH_SIZE, 10);
+    conf.setInt(Constants.HttpCallback.MAX_CONCURRENT_REQUESTS, 1);
+    callback.initialize(conf);
+
+    ClusterJob job = new ClusterJob(new JobId(cluster.getId(), 1), ClusterAction.CLUSTER_CREATE);
+    CallbackData data = new CallbackData(CallbackData.Type.SUCCESS, cluster, job);
+    CallbackContext context = new CallbackContext(clusterStoreService, userStore, cluster.getAccount());
+    for (int i = 0; i < 25; i++) {
+      callback.onSuccess(data, context);
+    }
+    context.getCompletion().get(10, TimeUnit.SECONDS);
+    Assert.assertEquals(25, handler.getBatchCallbackCount());
+    // callbacks queue up behind the request in flight and are then sent together, at most 10 at a time
+    Assert.assertTrue(handler.getBatchRequestCount() >= 3);
+  }
+
   @Before
   public void setupTest() {
     handler.clear();
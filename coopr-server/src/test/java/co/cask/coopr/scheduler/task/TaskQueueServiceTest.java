@@ -17,13 +17,31 @@
 package co.cask.coopr.scheduler.task;
 
 import co.cask.coopr.BaseTest;
+import co.cask.coopr.account.Account;
+import co.cask.coopr.cluster.Node;
+import co.cask.coopr.cluster.NodeProperties;
 import co.cask.coopr.common.conf.Constants;
 import co.cask.coopr.common.queue.Element;
 import co.cask.coopr.common.queue.QueueGroup;
 import co.cask.coopr.common.queue.QueueMetrics;
 import co.cask.coopr.common.queue.QueueType;
+import co.cask.coopr.http.request.FinishTaskRequest;
+import co.cask.coopr.http.request.FinishTaskResponse;
+import co.cask.coopr.management.ServerStats;
+import co.cask.coopr.provisioner.Provisioner;
+import co.cask.coopr.provisioner.TenantProvisionerService;
+import co.cask.coopr.scheduler.ClusterAction;
+import co.cask.coopr.scheduler.DeadlineTracker;
+import co.cask.coopr.spec.ProvisionerAction;
 import co.cask.coopr.spec.Tenant;
 import co.cask.coopr.spec.TenantSpecification;
+import co.cask.coopr.spec.service.Service;
+import co.cask.coopr.store.cluster.ClusterStore;
+import co.cask.coopr.store.cluster.ClusterStoreService;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import org.junit.After;
 import org.junit.Assert;
@@ -31,24 +49,33 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
 import java.util.Map;
 
 /**
  *
  */
 public class TaskQueueServiceTest extends BaseTest {
+  private static final Account ACCOUNT = new Account("user", "id1");
   private static TaskQueueService service;
   private static QueueGroup provisionerQueues;
+  private static QueueGroup jobQueues;
 
   @BeforeClass
   public static void setupTestClass() {
     service = injector.getInstance(TaskQueueService.class);
     provisionerQueues = queueService.getQueueGroup(QueueType.PROVISIONER);
+    jobQueues = queueService.getQueueGroup(QueueType.JOB);
   }
 
   @After
   public void cleanupTest() {
     provisionerQueues.removeAll();
+    jobQueues.removeAll();
   }
 
   @Test
@@ -82,4 +109,105 @@ public class TaskQueueServiceTest extends BaseTest {
     Assert.assertEquals(new QueueMetrics(0, 0), service.getTaskQueueMetricsSnapshot("non-id"));
     Assert.assertEquals(expected, service.getTaskQueueMetricsSnapshot());
   }
+
+  @Test
+  public void testFailedWriteLeavesTasksWithWorker() throws Exception {
+    provisionerStore.writeProvisioner(new Provisioner("p1", "host", 12345, 100, null, null));
+    ClusterTask task = takeTask("1-1-1", null);
+    List<FinishTaskRequest> finishRequests = ImmutableList.of(
+      new FinishTaskRequest("worker1", "p1", ACCOUNT.getTenantId(), task.getTaskId(), "", "", 0, null, null, null));
+
+    TaskQueueService failingService = new TaskQueueService(
+      queueService, createFailingStoreService(), injector.getInstance(TenantProvisionerService.class),
+      injector.getInstance(TaskService.class), injector.getInstance(NodeService.class), tenantStore, credentialStore,
+      conf, injector.getInstance(ServerStats.class), injector.getInstance(DeadlineTracker.class), gson);
+    Assert.assertEquals(
+      ImmutableList.of(new FinishTaskResponse(task.getTaskId(), FinishTaskResponse.Status.ERROR,
+                                              "Error finishing task " + task.getTaskId())),
+      failingService.finishClusterTasks(finishRequests));
+    Assert.assertEquals(1, Iterators.size(provisionerQueues.getBeingConsumed(ACCOUNT.getTenantId())));
+    Assert.assertEquals(task.getStatus(), clusterStore.getClusterTask(TaskId.fromString(task.getTaskId())).getStatus());
+    Assert.assertEquals(0, Iterators.size(jobQueues.getQueued(ACCOUNT.getTenantId())));
+
+    // the worker can finish the task again once the store works
+    Assert.assertEquals(FinishTaskResponse.Status.FINISHED,
+                        service.finishClusterTasks(finishRequests).get(0).getStatus());
+    Assert.assertEquals(0, Iterators.size(provisionerQueues.getBeingConsumed(ACCOUNT.getTenantId())));
+    Assert.assertEquals(ClusterTask.Status.COMPLETE,
+                        clusterStore.getClusterTask(TaskId.fromString(task.getTaskId())).getStatus());
+    Assert.assertEquals(1, Iterators.size(jobQueues.getQueued(ACCOUNT.getTenantId())));
+  }
+
+  @Test
+  public void testTaskWithoutNodeActionIsFinished() throws Exception {
+    provisionerStore.writeProvisioner(new Provisioner("p1", "host", 12345, 100, null, null));
+    Node node = new Node("node1", "1", ImmutableSet.<Service>of(), NodeProperties.builder().build());
+    clusterStore.writeNode(node);
+    ClusterTask task = takeTask("1-1-2", node.getId());
+    List<FinishTaskRequest> finishRequests = ImmutableList.of(
+      new FinishTaskRequest("worker1", "p1", ACCOUNT.getTenantId(), task.getTaskId(), "", "", 0, "host1", null, null));
+
+    List<FinishTaskResponse> responses = service.finishClusterTasks(finishRequests);
+    Assert.assertEquals(FinishTaskResponse.Status.FINISHED, responses.get(0).getStatus());
+    Assert.assertNotNull(responses.get(0).getMessage());
+    // the task is finished like any other, so that it is not handed to a worker and run again
+    Assert.assertEquals(0, Iterators.size(provisionerQueues.getBeingConsumed(ACCOUNT.getTenantId())));
+    Assert.assertEquals(0, Iterators.size(provisionerQueues.getQueued(ACCOUNT.getTenantId())));
+    Assert.assertEquals(ClusterTask.Status.COMPLETE,
+                        clusterStore.getClusterTask(TaskId.fromString(task.getTaskId())).getStatus());
+    Assert.assertEquals(1, Iterators.size(jobQueues.getQueued(ACCOUNT.getTenantId())));
+    // but the node is left as it was
+    Node storedNode = clusterStore.getNode(node.getId());
+    Assert.assertTrue(storedNode.getActions().isEmpty());
+    Assert.assertNull(storedNode.getProperties().getHostname());
+  }
+
+  @Test
+  public void testOtherWorkerIsNotOwner() throws Exception {
+    provisionerStore.writeProvisioner(new Provisioner("p1", "host", 12345, 100, null, null));
+    ClusterTask task = takeTask("1-1-3", null);
+    List<FinishTaskRequest> finishRequests = ImmutableList.of(
+      new FinishTaskRequest("worker2", "p1", ACCOUNT.getTenantId(), task.getTaskId(), "", "", 0, null, null, null));
+
+    Assert.assertEquals(FinishTaskResponse.Status.NOT_OWNER,
+                        service.finishClusterTasks(finishRequests).get(0).getStatus());
+    Assert.assertEquals(1, Iterators.size(provisionerQueues.getBeingConsumed(ACCOUNT.getTenantId())));
+    Assert.assertEquals(task.getStatus(), clusterStore.getClusterTask(TaskId.fromString(task.getTaskId())).getStatus());
+  }
+
+  // writes a task and has it taken by worker1 of provisioner p1
+  private ClusterTask takeTask(String taskId, String nodeId) throws IOException {
+    ClusterTask task = new ClusterTask(ProvisionerAction.CREATE, TaskId.fromString(taskId), nodeId, "service",
+                                       ClusterAction.CLUSTER_CREATE, "test", ACCOUNT);
+    clusterStore.writeClusterTask(task);
+    provisionerQueues.add(ACCOUNT.getTenantId(), new Element(task.getTaskId(), ""));
+    Assert.assertEquals(task.getTaskId(), provisionerQueues.take(ACCOUNT.getTenantId(), "p1.worker1").getId());
+    return task;
+  }
+
+  // cluster store service whose store fails to write tasks and nodes together, and works for everything else
+  private ClusterStoreService createFailingStoreService() {
+    final ClusterStore failingStore = (ClusterStore) Proxy.newProxyInstance(
+      ClusterStore.class.getClassLoader(), new Class<?>[] { ClusterStore.class }, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getName().equals("writeClusterTasksAndNodes")) {
+          throw new IOException("write failed");
+        }
+        try {
+          return method.invoke(clusterStore, args);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      }
+    });
+    return (ClusterStoreService) Proxy.newProxyInstance(
+      ClusterStoreService.class.getClassLoader(), new Class<?>[] { ClusterStoreService.class }, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Preconditions.checkArgument(method.getName().equals("getSystemView"), "Unexpected call to %s", method);
+        return failingStore;
+      }
+    });
+  }
 }
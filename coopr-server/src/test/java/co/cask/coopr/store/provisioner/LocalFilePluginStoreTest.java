@@ -15,16 +15,28 @@
  */
 package co.cask.coopr.store.provisioner;
 
+import co.cask.coopr.account.Account;
 import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.common.conf.Constants;
+import co.cask.coopr.provisioner.plugin.PluginType;
+import co.cask.coopr.provisioner.plugin.ResourceType;
 import co.cask.coopr.store.guice.TestStoreModule;
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Rule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  *
@@ -32,6 +44,9 @@ import java.io.IOException;
 public class LocalFilePluginStoreTest extends PluginStoreTest {
   private static LocalFilePluginStore store;
   private static Configuration conf;
+  private final Account account1 = new Account(Constants.ADMIN_USER, "tenant1");
+  private final Account account2 = new Account(Constants.ADMIN_USER, "tenant2");
+  private final ResourceType cookbooks = new ResourceType(PluginType.AUTOMATOR, "chef-solo", "cookbooks");
   @Rule
   public TemporaryFolder tmpFolder = new TemporaryFolder();
 
@@ -55,4 +70,112 @@ public class LocalFilePluginStoreTest extends PluginStoreTest {
   void clearData() {
     // tmp folder will get deleted itself.
   }
+
+  @Test
+  public void testGetResourceFile() throws Exception {
+    getInitializedStore();
+    Assert.assertNull(store.getResourceFile(account1, cookbooks, "hadoop", 1));
+
+    writeResource(account1, cookbooks, "hadoop", 1, "this is the cookbook");
+
+    File file = store.getResourceFile(account1, cookbooks, "hadoop", 1);
+    Assert.assertEquals("this is the cookbook", Files.toString(file, Charsets.UTF_8));
+    Assert.assertNull(store.getResourceFile(account1, cookbooks, "hadoop", 2));
+  }
+
+  @Test
+  public void testSameContentsAreStoredOnce() throws Exception {
+    getInitializedStore();
+    writeResource(account1, cookbooks, "hadoop", 1, "this is the cookbook");
+    writeResource(account2, cookbooks, "hadoop", 1, "this is the cookbook");
+    writeResource(account2, cookbooks, "hadoop", 2, "this is the new cookbook");
+
+    File blob = store.getResourceFile(account1, cookbooks, "hadoop", 1);
+    Assert.assertEquals(blob, store.getResourceFile(account2, cookbooks, "hadoop", 1));
+    Assert.assertEquals(DigestUtils.sha256Hex("this is the cookbook"), blob.getName());
+    Assert.assertEquals(blob.getName(), store.getChecksum(account2, cookbooks, "hadoop", 1));
+    Assert.assertNull(store.getChecksum(account1, cookbooks, "hadoop", 2));
+    Assert.assertFalse(blob.equals(store.getResourceFile(account2, cookbooks, "hadoop", 2)));
+
+    // contents are kept until the last resource with them is deleted
+    store.deleteResource(account1, cookbooks, "hadoop", 1);
+    Assert.assertNull(store.getResourceFile(account1, cookbooks, "hadoop", 1));
+    Assert.assertEquals("this is the cookbook", readResource(account2, cookbooks, "hadoop", 1));
+    store.deleteResource(account2, cookbooks, "hadoop", 1);
+    Assert.assertFalse(blob.exists());
+    Assert.assertEquals("this is the new cookbook", readResource(account2, cookbooks, "hadoop", 2));
+  }
+
+  @Test
+  public void testOverwriteReleasesPreviousContents() throws Exception {
+    getInitializedStore();
+    writeResource(account1, cookbooks, "hadoop", 1, "this is the cookbook");
+    File blob = store.getResourceFile(account1, cookbooks, "hadoop", 1);
+    writeResource(account1, cookbooks, "hadoop", 1, "this is the new cookbook");
+
+    Assert.assertFalse(blob.exists());
+    Assert.assertEquals("this is the new cookbook", readResource(account1, cookbooks, "hadoop", 1));
+  }
+
+  @Test
+  public void testCopyResource() throws Exception {
+    getInitializedStore();
+    writeResource(Account.SUPERADMIN, cookbooks, "hadoop", 1, "this is the cookbook");
+    store.copyResource(Account.SUPERADMIN, account1, cookbooks, "hadoop", 1);
+    store.copyResource(Account.SUPERADMIN, account2, cookbooks, "hadoop", 1);
+
+    File blob = store.getResourceFile(Account.SUPERADMIN, cookbooks, "hadoop", 1);
+    Assert.assertEquals(blob, store.getResourceFile(account1, cookbooks, "hadoop", 1));
+    Assert.assertEquals(blob, store.getResourceFile(account2, cookbooks, "hadoop", 1));
+
+    store.deleteResource(Account.SUPERADMIN, cookbooks, "hadoop", 1);
+    store.deleteResource(account1, cookbooks, "hadoop", 1);
+    Assert.assertEquals("this is the cookbook", readResource(account2, cookbooks, "hadoop", 1));
+
+    try {
+      store.copyResource(Account.SUPERADMIN, account1, cookbooks, "hadoop", 1);
+      Assert.fail("resource that does not exist should not be copied");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testResourcesWrittenBeforeBlobs() throws Exception {
+    File dataDir = tmpFolder.newFolder();
+    conf.set(Constants.LocalFilePluginStore.DATA_DIR, dataDir.getAbsolutePath());
+    store.initialize(conf);
+    File file = new File(dataDir, "tenant1/automator/chef-solo/cookbooks/hadoop/1");
+    Files.createParentDirs(file);
+    Files.write("this is the cookbook", file, Charsets.UTF_8);
+
+    Assert.assertEquals(file, store.getResourceFile(account1, cookbooks, "hadoop", 1));
+    Assert.assertEquals("this is the cookbook", readResource(account1, cookbooks, "hadoop", 1));
+
+    // copying moves the contents into a blob
+    store.copyResource(account1, account2, cookbooks, "hadoop", 1);
+    Assert.assertFalse(file.exists());
+    File blob = store.getResourceFile(account1, cookbooks, "hadoop", 1);
+    Assert.assertEquals(blob, store.getResourceFile(account2, cookbooks, "hadoop", 1));
+    Assert.assertEquals("this is the cookbook", Files.toString(blob, Charsets.UTF_8));
+  }
+
+  private void writeResource(Account account, ResourceType type, String name, int version,
+                             String contents) throws IOException {
+    OutputStream outputStream = store.getResourceOutputStream(account, type, name, version);
+    try {
+      outputStream.write(contents.getBytes(Charsets.UTF_8));
+    } finally {
+      outputStream.close();
+    }
+  }
+
+  private String readResource(Account account, ResourceType type, String name, int version) throws IOException {
+    InputStream inputStream = store.getResourceInputStream(account, type, name, version);
+    try {
+      return new String(ByteStreams.toByteArray(inputStream), Charsets.UTF_8);
+    } finally {
+      inputStream.close();
+    }
+  }
 }
@@ -20,19 +20,24 @@ import co.cask.coopr.common.conf.Configuration;
 import co.cask.coopr.provisioner.plugin.ResourceType;
 import com.google.common.base.Objects;
 import com.google.common.collect.Maps;
+import com.google.common.io.Files;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
 
 /**
- * Plugin store that keeps plugin modules in memory. Used for testing since nothing is persisted to disk.
+ * Plugin store that keeps plugin modules in memory. Used for testing since nothing is persisted to disk. Resources are
+ * only given out as files if a directory for them has been set, so that tests can cover both ways of reading them.
  */
-public class MemoryPluginStore implements PluginStore {
+public class MemoryPluginStore implements FilePluginStore {
   private final ConcurrentMap<Key, ByteArrayOutputStream> store;
+  private volatile File fileDir;
 
   public MemoryPluginStore() {
     this.store = Maps.newConcurrentMap();
@@ -41,6 +46,12 @@ public class MemoryPluginStore implements PluginStore {
   // for unit tests
   public void clearData() {
     store.clear();
+    fileDir = null;
+  }
+
+  // for unit tests, resources are written to files in the given directory when their file is asked for
+  public void setFileDir(@Nullable File fileDir) {
+    this.fileDir = fileDir;
   }
 
   @Override
@@ -66,6 +77,17 @@ public class MemoryPluginStore implements PluginStore {
     return new ByteArrayInputStream(store.get(key).toByteArray());
   }
 
+  @Override
+  public File getResourceFile(Account account, ResourceType type, String name, int version) throws IOException {
+    Key key = new Key(account, type, name, version);
+    if (fileDir == null || !store.containsKey(key)) {
+      return null;
+    }
+    File file = File.createTempFile(name, ".resource", fileDir);
+    Files.write(store.get(key).toByteArray(), file);
+    return file;
+  }
+
   @Override
   public void deleteResource(Account account, ResourceType type,  String name, int version) throws IOException {
     store.remove(new Key(account, type, name, version));
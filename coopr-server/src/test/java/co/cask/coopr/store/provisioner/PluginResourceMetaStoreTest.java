@@ -86,6 +86,23 @@ public abstract class PluginResourceMetaStoreTest {
     Assert.assertNull(view.get(name, version));
   }
 
+  @Test
+  public void testChecksums() throws Exception {
+    PluginMetaStoreService service = getPluginResourceMetaStoreService();
+    PluginResourceTypeView view = service.getResourceTypeView(account1, type1);
+    String checksum = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    view.add(new ResourceMeta("r1", 1, ResourceStatus.INACTIVE, checksum));
+    view.add(new ResourceMeta("r1", 2));
+    Assert.assertEquals(checksum, view.get("r1", 1).getChecksum());
+    Assert.assertNull(view.get("r1", 2).getChecksum());
+
+    // checksum is set once the contents have been uploaded
+    view.setChecksum("r1", 2, checksum);
+    Assert.assertEquals(checksum, view.get("r1", 2).getChecksum());
+    view.stage("r1", 2);
+    Assert.assertEquals(checksum, view.getResourcesToSync().iterator().next().getChecksum());
+  }
+
   @Test
   public void testAccountSeparation() throws Exception {
     PluginMetaStoreService service = getPluginResourceMetaStoreService();